@@ -10,8 +10,8 @@ import java.nio.file.Paths;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import com.codahale.metrics.Timer;
 
 import io.bdeploy.bhive.audit.AuditParameterExtractor;
+import io.bdeploy.bhive.meta.MetaManifest;
 import io.bdeploy.bhive.objects.ManifestDatabase;
 import io.bdeploy.bhive.objects.ObjectDatabase;
 import io.bdeploy.bhive.objects.ObjectManager;
@@ -37,7 +38,6 @@ import io.bdeploy.common.metrics.Metrics;
 import io.bdeploy.common.metrics.Metrics.MetricGroup;
 import io.bdeploy.common.util.ExceptionHelper;
 import io.bdeploy.common.util.FutureHelper;
-import io.bdeploy.common.util.NamedDaemonThreadFactory;
 import io.bdeploy.common.util.PathHelper;
 import io.bdeploy.common.util.RuntimeAssert;
 import io.bdeploy.common.util.Threads;
@@ -228,16 +228,21 @@ public class BHive implements AutoCloseable, BHiveExecution {
 
     @Override
     public void close() {
-        if (zipFs != null) {
-            try {
-                zipFs.close();
-            } catch (IOException e) {
-                log.warn("Cannot close ZIP FS: {}", uri, e);
+        try {
+            MetaManifest.flush(this);
+        } finally {
+            objects.close();
+            if (zipFs != null) {
+                try {
+                    zipFs.close();
+                } catch (IOException e) {
+                    log.warn("Cannot close ZIP FS: {}", uri, e);
+                }
+                PathHelper.deleteRecursive(objTmp);
             }
-            PathHelper.deleteRecursive(objTmp);
+            manifests.close();
+            auditor.close();
         }
-        manifests.close();
-        auditor.close();
     }
 
     /**
@@ -248,7 +253,7 @@ public class BHive implements AutoCloseable, BHiveExecution {
 
         private BHive hive;
         private ObjectManager mgr;
-        private ExecutorService fileOps;
+        private ForkJoinPool fileOps;
         private static final AtomicInteger fileOpNum = new AtomicInteger(0);
 
         /** Counter how often an operation should be retried. 0 means no retries at all */
@@ -259,8 +264,16 @@ public class BHive implements AutoCloseable, BHiveExecution {
          */
         void initOperation(BHive hive) {
             this.hive = hive;
-            this.fileOps = Executors.newFixedThreadPool(hive.parallelism,
-                    new NamedDaemonThreadFactory(() -> "File-OPS-" + fileOpNum.incrementAndGet()));
+
+            // workers may be created by other workers, so capture the context class loader of the thread running the operation.
+            // the default factory would use the system class loader instead (JDK 17).
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            this.fileOps = new ForkJoinPool(hive.parallelism, pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("File-OPS-" + fileOpNum.incrementAndGet());
+                t.setContextClassLoader(loader);
+                return t;
+            }, null, false);
             this.mgr = new ObjectManager(hive.objects, hive.manifests, hive.reporter, fileOps);
         }
 
@@ -42,6 +42,9 @@ public class ExportTool extends ConfiguredCliTool<ExportConfig> {
 
         @Help("Parallelism - how many threads to use to export. Default: 4")
         int jobs() default 4;
+
+        @Help(value = "Hard-link files from the hive where possible. Exported files must not be modified", arg = false)
+        boolean link() default false;
     }
 
     public ExportTool() {
@@ -60,7 +63,7 @@ public class ExportTool extends ConfiguredCliTool<ExportConfig> {
             hive.setParallelism(config.jobs());
 
             ExportOperation export = new ExportOperation().setManifest(Manifest.Key.parse(config.manifest()))
-                    .setTarget(targetPath);
+                    .setTarget(targetPath).setLinkObjects(config.link());
             hive.execute(export);
         }
 
@@ -45,6 +45,9 @@ public class FetchTool extends RemoteServiceTool<FetchConfig> {
 
         @Help("Manifest(s) to push. May appear multiple times. Format is 'name:tag'")
         String[] manifest() default {};
+
+        @Help("Number of parallel streams used to transfer objects. Default: 4")
+        int streams() default 4;
     }
 
     public FetchTool() {
@@ -59,7 +62,8 @@ public class FetchTool extends RemoteServiceTool<FetchConfig> {
 
         try (BHive hive = new BHive(path.toUri(), getAuditorFactory().apply(path), getActivityReporter());
                 Transaction t = hive.getTransactions().begin()) {
-            FetchOperation op = new FetchOperation().setRemote(svc).setHiveName(config.source());
+            FetchOperation op = new FetchOperation().setRemote(svc).setHiveName(config.source())
+                    .setParallelStreams(config.streams());
 
             for (String m : config.manifest()) {
                 Manifest.Key key = Manifest.Key.parse(m);
@@ -47,6 +47,9 @@ public class PushTool extends RemoteServiceTool<PushConfig> {
 
         @Help("Manifest(s) to push. May appear multiple times. Format is 'name:tag'")
         String[] manifest() default {};
+
+        @Help("Number of parallel streams used to transfer objects. Default: 4")
+        int streams() default 4;
     }
 
     public PushTool() {
@@ -60,7 +63,8 @@ public class PushTool extends RemoteServiceTool<PushConfig> {
 
         Path path = Paths.get(config.hive());
         try (BHive hive = new BHive(path.toUri(), getAuditorFactory().apply(path), getActivityReporter())) {
-            PushOperation op = new PushOperation().setRemote(svc).setHiveName(config.target());
+            PushOperation op = new PushOperation().setRemote(svc).setHiveName(config.target())
+                    .setParallelStreams(config.streams());
 
             for (String m : config.manifest()) {
                 Manifest.Key key = Manifest.Key.parse(m);
@@ -1,6 +1,10 @@
 package io.bdeploy.bhive.meta;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
@@ -9,6 +13,7 @@ import java.util.SortedSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.bdeploy.bhive.BHive;
 import io.bdeploy.bhive.BHiveExecution;
 import io.bdeploy.bhive.BHiveTransactions.Transaction;
 import io.bdeploy.bhive.model.Manifest;
@@ -99,6 +104,11 @@ public class MetaManifest<T> {
      * @return The current version of the metadata. <code>null</code> if no metadata for the given {@link Class} is present.
      */
     public T read(BHiveExecution source) {
+        MetaManifestWriteBehind.Pending pending = MetaManifestWriteBehind.getPending(source, metaName);
+        if (pending != null) {
+            return pending.data == null ? null : StorageHelper.fromRawBytes(pending.data, metaClazz);
+        }
+
         Optional<Long> id = source.execute(new ManifestMaxIdOperation().setManifestName(metaName));
         Manifest.Key key;
 
@@ -128,6 +138,75 @@ public class MetaManifest<T> {
      * @return the {@link Key} of the current metadata manifest.
      */
     public Manifest.Key write(BHiveExecution target, T meta) {
+        // this write supersedes any pending deferred write.
+        MetaManifestWriteBehind.discard(target, metaName);
+
+        return writeAll(target, Collections.singletonMap(this, meta == null ? null : StorageHelper.toRawBytes(meta))).get(0);
+    }
+
+    /**
+     * Writes the given metadata object to the given {@link BHiveExecution} in the background.
+     * <p>
+     * Updates of the same metadata within a short period of time are coalesced, and updates of multiple metadata objects are
+     * written at once. {@link #read(BHiveExecution)} returns the latest update immediately when reading from the same
+     * {@link BHive} in this JVM. Other readers see updates only once written.
+     * <p>
+     * Use this for frequent updates of state which does not need to be visible to others immediately. Writing happens
+     * immediately if the target is not a {@link BHive}, as it might not be usable later on.
+     *
+     * @param target the target {@link BHiveExecution}
+     * @param meta the metadata object. <code>null</code> will cause the entry to be deleted.
+     */
+    public void writeDeferred(BHiveExecution target, T meta) {
+        if (!(target instanceof BHive)) {
+            write(target, meta);
+            return;
+        }
+        MetaManifestWriteBehind.schedule((BHive) target, this, meta == null ? null : StorageHelper.toRawBytes(meta));
+    }
+
+    /**
+     * Writes all pending deferred updates of metadata to the given {@link BHive}.
+     *
+     * @param target the target {@link BHive}
+     * @see #writeDeferred(BHiveExecution, Object)
+     */
+    public static void flush(BHive target) {
+        MetaManifestWriteBehind.flush(target);
+    }
+
+    /**
+     * Writes multiple metadata objects at once. The database is locked only once for all of them.
+     *
+     * @param target the target {@link BHiveExecution}
+     * @param metas the serialized metadata objects to write, <code>null</code> to delete.
+     * @return the {@link Key}s of the written metadata manifests, in the order of the given metadata objects.
+     */
+    static List<Manifest.Key> writeAll(BHiveExecution target, Map<MetaManifest<?>, byte[]> metas) {
+        List<Manifest.Key> result = new ArrayList<>();
+        try (Transaction t = target.getTransactions().begin()) {
+            InsertManifestOperation insert = new InsertManifestOperation();
+            for (Entry<MetaManifest<?>, byte[]> entry : metas.entrySet()) {
+                Manifest mf = entry.getKey().prepare(target, entry.getValue());
+                insert.addManifest(mf);
+                result.add(mf.getKey());
+            }
+            target.execute(insert);
+        }
+
+        for (MetaManifest<?> meta : metas.keySet()) {
+            target.execute(new ManifestDeleteOldByIdOperation().setAmountToKeep(META_HIST_SIZE).setToDelete(meta.metaName));
+        }
+        return result;
+    }
+
+    /**
+     * Inserts the objects required for the next version of the metadata {@link Manifest}, must be called within a
+     * {@link Transaction}.
+     *
+     * @return the next version of the metadata {@link Manifest}, not yet inserted.
+     */
+    private Manifest prepare(BHiveExecution target, byte[] data) {
         String targetTag = "1";
         Optional<Long> id = target.execute(new ManifestMaxIdOperation().setManifestName(metaName));
         Tree oldTree = null;
@@ -149,34 +228,27 @@ public class MetaManifest<T> {
         Manifest.Builder newMf = new Manifest.Builder(targetKey);
         Tree.Builder newTree = new Tree.Builder();
 
-        try (Transaction t = target.getTransactions().begin()) {
-            // add the new metadata object
-            String metaFileName = metaFileName();
-            if (meta != null) {
-                // if null, we don't write the entry -> delete.
-                ObjectId oid = target.execute(new ImportObjectOperation().setData(StorageHelper.toRawBytes(meta)));
-                newTree.add(new Tree.Key(metaFileName, EntryType.BLOB), oid);
-            }
-
-            // now copy other entries to the new tree
-            if (oldTree != null) {
-                for (Entry<Tree.Key, ObjectId> entry : oldTree.getChildren().entrySet()) {
-                    if (entry.getKey().getName().equals(metaFileName)) {
-                        continue; // we updated this one.
-                    }
+        // add the new metadata object
+        String metaFileName = metaFileName();
+        if (data != null) {
+            // if null, we don't write the entry -> delete.
+            ObjectId oid = target.execute(new ImportObjectOperation().setData(data));
+            newTree.add(new Tree.Key(metaFileName, EntryType.BLOB), oid);
+        }
 
-                    newTree.add(entry.getKey(), entry.getValue());
+        // now copy other entries to the new tree
+        if (oldTree != null) {
+            for (Entry<Tree.Key, ObjectId> entry : oldTree.getChildren().entrySet()) {
+                if (entry.getKey().getName().equals(metaFileName)) {
+                    continue; // we updated this one.
                 }
-            }
 
-            // insert tree and manifest
-            ObjectId newTreeId = target.execute(new InsertArtificialTreeOperation().setTree(newTree));
-            target.execute(new InsertManifestOperation().addManifest(newMf.setRoot(newTreeId).build(target)));
+                newTree.add(entry.getKey(), entry.getValue());
+            }
         }
 
-        target.execute(new ManifestDeleteOldByIdOperation().setAmountToKeep(META_HIST_SIZE).setToDelete(metaName));
-
-        return targetKey;
+        ObjectId newTreeId = target.execute(new InsertArtificialTreeOperation().setTree(newTree));
+        return newMf.setRoot(newTreeId).build(target);
     }
 
     /**
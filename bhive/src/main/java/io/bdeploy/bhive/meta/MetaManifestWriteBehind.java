@@ -0,0 +1,189 @@
+package io.bdeploy.bhive.meta;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.bdeploy.bhive.BHive;
+import io.bdeploy.bhive.BHiveExecution;
+import io.bdeploy.bhive.BHiveTransactions;
+import io.bdeploy.common.util.NamedDaemonThreadFactory;
+
+/**
+ * Collects deferred updates of {@link MetaManifest}s per {@link BHive} and writes them in batches.
+ * <p>
+ * The first update schedules writing all updates after a short period of time. Updates of the same metadata in the meantime
+ * replace the pending update. Pending updates stay visible to readers until they have been written.
+ * <p>
+ * Updates which cannot be written in the background are kept and retried later. Updates which cannot be written when flushing
+ * are discarded, and the failure is reported to the caller instead.
+ */
+class MetaManifestWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(MetaManifestWriteBehind.class);
+
+    /** The time to wait for further updates before writing */
+    private static final long WRITE_DELAY_MS = 100;
+
+    /** The time to wait before retrying to write updates after a failure */
+    private static final long RETRY_DELAY_MS = 5_000;
+
+    private static final ScheduledExecutorService WRITE_POOL = Executors.newSingleThreadScheduledExecutor(
+            new NamedDaemonThreadFactory("Meta Manifest Writer"));
+
+    /**
+     * Batches with pending updates. Keyed by the {@link BHiveTransactions} as they uniquely identify a {@link BHive} and are
+     * available from any {@link BHiveExecution}. Batches are removed once written, so no {@link BHive} is held on to.
+     */
+    private static final Map<BHiveTransactions, MetaManifestWriteBehind> batches = new ConcurrentHashMap<>();
+
+    private final BHive hive;
+    private final Object writeLock = new Object();
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduled;
+
+    /**
+     * A pending update of a {@link MetaManifest}.
+     */
+    static final class Pending {
+
+        private final MetaManifest<?> meta;
+
+        /** The serialized metadata object, <code>null</code> to delete it */
+        final byte[] data;
+
+        private Pending(MetaManifest<?> meta, byte[] data) {
+            this.meta = meta;
+            this.data = data;
+        }
+    }
+
+    private MetaManifestWriteBehind(BHive hive) {
+        this.hive = hive;
+    }
+
+    /**
+     * Schedules an update of the given {@link MetaManifest}, replacing a pending update of the same metadata.
+     */
+    static void schedule(BHive hive, MetaManifest<?> meta, byte[] data) {
+        batches.compute(hive.getTransactions(), (k, batch) -> {
+            MetaManifestWriteBehind result = batch != null ? batch : new MetaManifestWriteBehind(hive);
+            result.add(new Pending(meta, data));
+            return result;
+        });
+    }
+
+    /**
+     * @return the pending update of the given metadata, <code>null</code> if there is none.
+     */
+    static Pending getPending(BHiveExecution source, String metaName) {
+        MetaManifestWriteBehind batch = batches.get(source.getTransactions());
+        if (batch == null) {
+            return null;
+        }
+        synchronized (batch) {
+            return batch.pending.get(metaName);
+        }
+    }
+
+    /**
+     * Discards the pending update of the given metadata, as it is superseded by an update written directly. Waits for a write
+     * of pending updates in progress, so the direct update is written last.
+     */
+    static void discard(BHiveExecution target, String metaName) {
+        MetaManifestWriteBehind batch = batches.get(target.getTransactions());
+        if (batch == null) {
+            return;
+        }
+        synchronized (batch.writeLock) {
+            synchronized (batch) {
+                batch.pending.remove(metaName);
+            }
+        }
+        batch.removeIfDone();
+    }
+
+    /**
+     * Writes all pending updates for the given {@link BHive}.
+     *
+     * @throws IllegalStateException in case the updates cannot be written. They are discarded in this case.
+     */
+    static void flush(BHive hive) {
+        MetaManifestWriteBehind batch = batches.get(hive.getTransactions());
+        if (batch != null) {
+            batch.write(true);
+        }
+    }
+
+    private synchronized void add(Pending update) {
+        pending.put(update.meta.getMetaName(), update);
+        scheduleWrite(WRITE_DELAY_MS);
+    }
+
+    private synchronized void scheduleWrite(long delay) {
+        if (scheduled == null || scheduled.isDone()) {
+            scheduled = WRITE_POOL.schedule(() -> write(false), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @param flush whether the write has been requested explicitly. Failures are thrown in this case, otherwise writing is
+     *            retried later.
+     */
+    private void write(boolean flush) {
+        synchronized (writeLock) {
+            Map<String, Pending> toWrite;
+            synchronized (this) {
+                // updates from now on need to be written by another run.
+                scheduled = null;
+                toWrite = new LinkedHashMap<>(pending);
+            }
+            if (toWrite.isEmpty()) {
+                return;
+            }
+
+            Map<MetaManifest<?>, byte[]> metas = new LinkedHashMap<>();
+            toWrite.values().forEach(p -> metas.put(p.meta, p.data));
+            try {
+                MetaManifest.writeAll(hive, metas);
+            } catch (RuntimeException e) {
+                if (!flush) {
+                    log.error("Cannot write {} metadata updates to {}, retrying in {}ms", metas.size(), hive, RETRY_DELAY_MS, e);
+                    scheduleWrite(RETRY_DELAY_MS);
+                    return;
+                }
+
+                // the caller is responsible for the failed updates now.
+                remove(toWrite);
+                throw new IllegalStateException("Cannot write " + metas.size() + " metadata updates to " + hive, e);
+            }
+            remove(toWrite);
+        }
+    }
+
+    /**
+     * Removes the given updates once they have been handled. Updates which have been replaced in the meantime are kept.
+     */
+    private void remove(Map<String, Pending> done) {
+        synchronized (this) {
+            done.forEach(pending::remove);
+        }
+        removeIfDone();
+    }
+
+    private void removeIfDone() {
+        batches.computeIfPresent(hive.getTransactions(), (k, batch) -> {
+            synchronized (batch) {
+                return batch.pending.isEmpty() ? null : batch;
+            }
+        });
+    }
+
+}
@@ -12,39 +12,54 @@ import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.regex.Pattern;
-
-import javax.annotation.Generated;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-import io.bdeploy.common.util.Hex;
-
 /**
  * Uniquely identifies a certain object. That is (typically) the content of an
  * arbitrary file which has been imported into the hive or a {@link Tree}.
+ * <p>
+ * The identifier is kept as the raw SHA-1 digest rather than its hex {@link String} representation to keep the memory footprint
+ * small, as huge amounts of {@link ObjectId}s are held in memory by some operations. The serialized (JSON) form still uses the hex
+ * {@link String} representation.
  */
+@JsonAutoDetect(fieldVisibility = Visibility.NONE)
 public class ObjectId implements Serializable, Comparable<ObjectId> {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
     private static final int BUFFER_SIZE = 8192;
-    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{40}");
-
-    private final String id;
+    private static final int HEX_LENGTH = 40;
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
 
     /**
-     * Create an {@link ObjectId} from a pre-existing ID (e.g. stored on disc).
+     * The length of the raw SHA-1 digest backing an {@link ObjectId}.
      */
-    private ObjectId(String id) {
-        this.id = id;
+    public static final int RAW_LENGTH = 20;
+
+    // the raw digest, bytes 0-7, 8-15 and 16-19 in big endian order.
+    private final long hi;
+    private final long mid;
+    private final int lo;
+
+    private ObjectId(long hi, long mid, int lo) {
+        this.hi = hi;
+        this.mid = mid;
+        this.lo = lo;
     }
 
     /**
      * @return the {@link String} representation of this ID.
      */
+    @JsonProperty("id")
     public String getId() {
-        return id;
+        char[] result = new char[HEX_LENGTH];
+        toHex(hi, result, 0, 16);
+        toHex(mid, result, 16, 16);
+        toHex(lo, result, 32, 8);
+        return new String(result);
     }
 
     /**
@@ -57,11 +72,50 @@ public class ObjectId implements Serializable, Comparable<ObjectId> {
     @JsonCreator
     public static ObjectId parse(@JsonProperty("id") String id) {
         // sanity check if id is a valid ObjectId.
-        if (ID_PATTERN.matcher(id).matches()) {
-            return new ObjectId(id);
+        if (id == null || id.length() != HEX_LENGTH) {
+            return null;
+        }
+
+        long hi = fromHex(id, 0, 16);
+        long mid = fromHex(id, 16, 32);
+        long lo = fromHex(id, 32, 40);
+        if (hi == -1 && !isAllF(id, 0, 16) || mid == -1 && !isAllF(id, 16, 32) || lo == -1) {
+            return null;
         }
+        return new ObjectId(hi, mid, (int) lo);
+    }
+
+    /**
+     * Reads an {@link ObjectId} from the raw digest ({@value #RAW_LENGTH} bytes) at the given absolute index in the buffer.
+     */
+    public static ObjectId readFrom(ByteBuffer buffer, int index) {
+        return new ObjectId(buffer.getLong(index), buffer.getLong(index + 8), buffer.getInt(index + 16));
+    }
+
+    /**
+     * Writes the raw digest ({@value #RAW_LENGTH} bytes) of this {@link ObjectId} to the given absolute index in the buffer.
+     */
+    public void writeTo(ByteBuffer buffer, int index) {
+        buffer.putLong(index, hi);
+        buffer.putLong(index + 8, mid);
+        buffer.putInt(index + 16, lo);
+    }
 
-        return null;
+    /**
+     * Compares this {@link ObjectId} to the raw digest at the given absolute index in the buffer without reading it into a
+     * new {@link ObjectId}.
+     *
+     * @return a value with the same semantics as {@link #compareTo(ObjectId)}.
+     */
+    public int compareTo(ByteBuffer buffer, int index) {
+        int result = Long.compareUnsigned(hi, buffer.getLong(index));
+        if (result == 0) {
+            result = Long.compareUnsigned(mid, buffer.getLong(index + 8));
+        }
+        if (result == 0) {
+            result = Integer.compareUnsigned(lo, buffer.getInt(index + 16));
+        }
+        return result;
     }
 
     /**
@@ -70,7 +124,7 @@ public class ObjectId implements Serializable, Comparable<ObjectId> {
     public static ObjectId create(byte[] data, int offset, int len) {
         MessageDigest digest = createDigest();
         digest.update(data, offset, len);
-        return new ObjectId(Hex.bytesToHex(digest.digest()));
+        return fromDigest(digest);
     }
 
     /**
@@ -95,7 +149,7 @@ public class ObjectId implements Serializable, Comparable<ObjectId> {
             // here. We can later on detect problems easily as long as the meta-data
             // is written sync (manifests, etc.).
         }
-        return new ObjectId(Hex.bytesToHex(digest.digest()));
+        return fromDigest(digest);
     }
 
     /**
@@ -114,7 +168,7 @@ public class ObjectId implements Serializable, Comparable<ObjectId> {
             while ((read = source.read(buf)) > 0) {
                 digest.update(buf, 0, read);
             }
-            return new ObjectId(Hex.bytesToHex(digest.digest()));
+            return fromDigest(digest);
         } catch (IOException e) {
             throw new IllegalStateException("Cannot calculate checksum of object from stream", e);
         }
@@ -122,7 +176,47 @@ public class ObjectId implements Serializable, Comparable<ObjectId> {
 
     @Override
     public String toString() {
-        return id;
+        return getId();
+    }
+
+    private static ObjectId fromDigest(MessageDigest digest) {
+        return readFrom(ByteBuffer.wrap(digest.digest()), 0);
+    }
+
+    private static void toHex(long value, char[] target, int offset, int digits) {
+        for (int i = digits - 1; i >= 0; --i) {
+            target[offset + i] = HEX_CHARS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    /**
+     * @return the parsed value, or -1 if the given range contains characters other than lower case hex digits.
+     */
+    private static long fromHex(String hex, int from, int to) {
+        long result = 0;
+        for (int i = from; i < to; ++i) {
+            char c = hex.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                digit = c - 'a' + 10;
+            } else {
+                return -1;
+            }
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+
+    private static boolean isAllF(String hex, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            if (hex.charAt(i) != 'f') {
+                return false;
+            }
+        }
+        return true;
     }
 
     private static MessageDigest createDigest() {
@@ -135,39 +229,33 @@ public class ObjectId implements Serializable, Comparable<ObjectId> {
 
     @Override
     public int compareTo(ObjectId o) {
-        return id.compareTo(o.id);
+        // unsigned comparison yields the same order as comparing the hex representation.
+        int result = Long.compareUnsigned(hi, o.hi);
+        if (result == 0) {
+            result = Long.compareUnsigned(mid, o.mid);
+        }
+        if (result == 0) {
+            result = Integer.compareUnsigned(lo, o.lo);
+        }
+        return result;
     }
 
-    @Generated("Eclipse")
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((id == null) ? 0 : id.hashCode());
-        return result;
+        // the digest is uniformly distributed already, no need to mix further.
+        return (int) (hi >>> 32);
     }
 
-    @Generated("Eclipse")
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
             return true;
         }
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
+        if (obj == null || getClass() != obj.getClass()) {
             return false;
         }
         ObjectId other = (ObjectId) obj;
-        if (id == null) {
-            if (other.id != null) {
-                return false;
-            }
-        } else if (!id.equals(other.id)) {
-            return false;
-        }
-        return true;
+        return hi == other.hi && mid == other.mid && lo == other.lo;
     }
 
 }
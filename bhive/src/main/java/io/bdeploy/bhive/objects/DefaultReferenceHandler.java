@@ -11,14 +11,24 @@ import io.bdeploy.bhive.model.Tree.Key;
 public class DefaultReferenceHandler implements ReferenceHandler {
 
     private final ObjectManager om;
+    private final boolean link;
 
     public DefaultReferenceHandler(ObjectManager om) {
+        this(om, false);
+    }
+
+    /**
+     * @param link whether to hard-link BLOBs, see {@link ObjectManager#exportTree(io.bdeploy.bhive.model.ObjectId, Path,
+     *            ReferenceHandler, boolean)}.
+     */
+    public DefaultReferenceHandler(ObjectManager om, boolean link) {
         this.om = om;
+        this.link = link;
     }
 
     @Override
     public void onReference(Path location, Key key, Manifest referenced) {
-        om.exportTree(referenced.getRoot(), location.resolve(key.getName()), this);
+        om.exportTree(referenced.getRoot(), location.resolve(key.getName()), this, link);
     }
 
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package io.bdeploy.bhive.objects;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
@@ -10,11 +11,20 @@ import java.nio.file.Path;
 /**
  * Base class for a database which requires locked modifications for
  * parallel-safety (JVM overarching).
+ * <p>
+ * Each locked modification increments a generation counter stored in the lock file. This allows to detect modifications
+ * performed by other processes, see {@link #checkExternalModification()}.
  */
 public abstract class LockableDatabase {
 
     private final File lockFile;
 
+    /** Guards {@link #generation}, intentionally separate from the monitor held while waiting for the file lock. */
+    private final Object generationLock = new Object();
+
+    /** The last known modification generation, -1 if not tracked (yet). */
+    private long generation = -1;
+
     /**
      * @param root the root directory of the database. If the underlying filesystem
      *            does not support {@link Path#toFile()} (for instance ZIP file),
@@ -51,7 +61,21 @@ public abstract class LockableDatabase {
                 try (RandomAccessFile raf = new RandomAccessFile(lockFile, "rw");
                         FileChannel channel = raf.getChannel();
                         FileLock lock = channel.lock()) {
-                    toLock.run();
+                    long current = readGeneration(raf);
+                    synchronized (generationLock) {
+                        if (generation >= 0 && generation != current) {
+                            onExternalModification();
+                        }
+                    }
+                    try {
+                        toLock.run();
+                    } finally {
+                        synchronized (generationLock) {
+                            raf.seek(0);
+                            raf.writeLong(current + 1);
+                            generation = current + 1;
+                        }
+                    }
                     return;
                 } catch (IOException ioe) {
                     // this one is tricky. fcntl on linux will hold locks per-process (not thread), and has a deadlock detection.
@@ -74,6 +98,79 @@ public abstract class LockableDatabase {
         }
     }
 
+    /**
+     * Starts tracking modifications of other processes from the current state of the database on.
+     *
+     * @return the current modification generation, or -1 if modifications cannot be tracked (e.g. ZIP files).
+     */
+    protected long startModificationTracking() {
+        if (lockFile == null) {
+            return -1;
+        }
+        synchronized (generationLock) {
+            generation = readGeneration();
+            return generation;
+        }
+    }
+
+    /**
+     * @return the last known modification generation, -1 if not tracked.
+     */
+    protected long getModificationGeneration() {
+        synchronized (generationLock) {
+            return generation;
+        }
+    }
+
+    /**
+     * Checks whether another process modified the database since the last modification through or check of this instance.
+     * Always <code>false</code> if {@link #startModificationTracking()} was not called before.
+     * <p>
+     * In case a modification is detected, {@link #onExternalModification()} is called as well.
+     */
+    protected boolean checkExternalModification() {
+        if (lockFile == null) {
+            return false;
+        }
+        synchronized (generationLock) {
+            if (generation < 0) {
+                return false;
+            }
+            long current = readGeneration();
+            if (current == generation) {
+                return false;
+            }
+            generation = current;
+            onExternalModification();
+            return true;
+        }
+    }
+
+    /**
+     * Called whenever a modification by another process has been detected.
+     */
+    protected void onExternalModification() {
+        // nothing by default.
+    }
+
+    private long readGeneration() {
+        try (RandomAccessFile raf = new RandomAccessFile(lockFile, "r")) {
+            return readGeneration(raf);
+        } catch (FileNotFoundException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read database generation from " + lockFile, e);
+        }
+    }
+
+    private static long readGeneration(RandomAccessFile raf) throws IOException {
+        if (raf.length() < Long.BYTES) {
+            return 0;
+        }
+        raf.seek(0);
+        return raf.readLong();
+    }
+
     /**
      * Interface for operations that need to lock the database (basically every
      * writing operation).
@@ -12,7 +12,10 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -21,6 +24,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
@@ -41,6 +45,10 @@ import io.bdeploy.common.util.PathHelper;
  * Stores and manages {@link Manifest}s. Storage happens in files distributed in
  * a database based on name and tag of each {@link Manifest}. This allows
  * concurrent updates to the database even from different processes.
+ * <p>
+ * All keys are tracked in memory (see {@link ManifestIndex}), so listing manifests does not require file system access. The index
+ * is updated in place on each modification, and only rebuilt from the file system if a modification by another process is
+ * detected using the modification generation of the database.
  */
 public class ManifestDatabase extends LockableDatabase implements AutoCloseable {
 
@@ -62,8 +70,10 @@ public class ManifestDatabase extends LockableDatabase implements AutoCloseable
      * Assuming a max object size of ~4K (manifest includes cached references), this cache would grow to ~10MB.
      */
     private final Cache<Manifest.Key, Manifest> manifestCache = CacheBuilder.newBuilder().maximumSize(2_500).build();
-    private final Cache<Path, Set<Manifest.Key>> manifestListCache = CacheBuilder.newBuilder()
-            .expireAfterWrite(10, TimeUnit.MINUTES).build();
+
+    private final Object indexLock = new Object();
+    private volatile ManifestIndex index;
+    private volatile boolean indexInvalidated;
 
     /**
      * @param root the root path of the database, created empty if it does not yet
@@ -158,33 +168,48 @@ public class ManifestDatabase extends LockableDatabase implements AutoCloseable
      * @param manifest the manifest to store in the database.
      */
     public void addManifest(Manifest manifest) {
+        addManifests(Collections.singletonList(manifest));
+    }
+
+    /**
+     * Concurrent-save adds multiple {@link Manifest}s to the database, acquiring the lock only once for all of them.
+     *
+     * @param manifests the manifests to store in the database.
+     */
+    public void addManifests(Collection<Manifest> manifests) {
         locked(() -> {
-            if (hasManifest(manifest.getKey())) {
-                throw new IllegalArgumentException("Manifest " + manifest.getKey() + " already present.");
+            for (Manifest manifest : manifests) {
+                if (hasManifest(manifest.getKey())) {
+                    throw new IllegalArgumentException("Manifest " + manifest.getKey() + " already present.");
+                }
+                store(manifest);
             }
-            Path pathForKey = getPathForKey(manifest.getKey());
-            PathHelper.mkdirs(pathForKey.getParent());
+        });
+    }
 
-            // unfortunately there is no better way to detect a 'ZipPath' as the class is not accessible directly.
-            if (pathForKey.getClass().getSimpleName().contains("Zip")) {
-                // in case of ZIP files we cannot move afterwards, so we need to write directly
-                Files.write(pathForKey, StorageHelper.toRawBytes(manifest), StandardOpenOption.SYNC, StandardOpenOption.CREATE,
+    private void store(Manifest manifest) throws IOException {
+        Path pathForKey = getPathForKey(manifest.getKey());
+        PathHelper.mkdirs(pathForKey.getParent());
+
+        // unfortunately there is no better way to detect a 'ZipPath' as the class is not accessible directly.
+        if (pathForKey.getClass().getSimpleName().contains("Zip")) {
+            // in case of ZIP files we cannot move afterwards, so we need to write directly
+            Files.write(pathForKey, StorageHelper.toRawBytes(manifest), StandardOpenOption.SYNC, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } else {
+            Path tmpFile = Files.createTempFile(tmp, "mf-", ".tmp");
+            try {
+                Files.write(tmpFile, StorageHelper.toRawBytes(manifest), StandardOpenOption.SYNC, StandardOpenOption.CREATE,
                         StandardOpenOption.TRUNCATE_EXISTING);
-            } else {
-                Path tmpFile = Files.createTempFile(tmp, "mf-", ".tmp");
-                try {
-                    Files.write(tmpFile, StorageHelper.toRawBytes(manifest), StandardOpenOption.SYNC, StandardOpenOption.CREATE,
-                            StandardOpenOption.TRUNCATE_EXISTING);
-                    Files.move(tmpFile, pathForKey, StandardCopyOption.ATOMIC_MOVE);
-                } catch (Throwable t) {
-                    PathHelper.deleteRecursive(tmpFile);
-                    throw t;
-                }
+                Files.move(tmpFile, pathForKey, StandardCopyOption.ATOMIC_MOVE);
+            } catch (Throwable t) {
+                PathHelper.deleteRecursive(tmpFile);
+                throw t;
             }
-            manifestCache.put(manifest.getKey(), manifest);
-            manifestListCache.invalidateAll();
-            scheduleNotify(manifest.getKey());
-        });
+        }
+        manifestCache.put(manifest.getKey(), manifest);
+        updateIndex(manifest.getKey(), true);
+        scheduleNotify(manifest.getKey());
     }
 
     /**
@@ -198,27 +223,91 @@ public class ManifestDatabase extends LockableDatabase implements AutoCloseable
         locked(() -> {
             Files.deleteIfExists(getPathForKey(key));
             manifestCache.invalidate(key);
-            manifestListCache.invalidateAll();
+            updateIndex(key, false);
         });
     }
 
     /**
-     * @return all {@link Key}s found in the database's filesystem.
+     * @return all {@link Key}s found in the database.
      */
     public Set<Manifest.Key> getAllManifests() {
-        // structure is dir:root/dir:name/dir:name/file:tag
-        return collectManifestsCached(root);
+        return queryIndex("", ManifestIndex::getAllForName);
     }
 
-    private Set<Manifest.Key> collectManifestsCached(Path r) {
-        try {
-            return manifestListCache.get(r, () -> collectManifests(r));
-        } catch (ExecutionException e) {
-            log.warn("Cannot fetch manifest list cache", e);
-            return collectManifests(r); // fallback.
+    /**
+     * Answers a query for all keys below the given name from the in-memory index if possible.
+     *
+     * @param name any number of full name segments, or the empty string for all manifests.
+     * @param query the query to perform on the index.
+     */
+    private <T> T queryIndex(String name, BiFunction<ManifestIndex, String, T> query) {
+        // cheap compared to listing, and listings must reflect modifications of others immediately.
+        checkExternalModification();
+
+        ManifestIndex current = index;
+        if (current == null) {
+            current = loadIndex();
+        }
+        if (current == null) {
+            // modified by another process while indexing, do a plain scan instead.
+            return query.apply(new ManifestIndex(collectManifests(name.isEmpty() ? root : root.resolve(name))), name);
+        }
+        synchronized (indexLock) {
+            return query.apply(current, name);
+        }
+    }
+
+    /**
+     * Builds the index by scanning the file system.
+     *
+     * @return the index, or <code>null</code> if the database was modified by another process while indexing.
+     */
+    private ManifestIndex loadIndex() {
+        synchronized (indexLock) {
+            if (index != null) {
+                return index;
+            }
+
+            indexInvalidated = false;
+            startModificationTracking();
+            // structure is dir:root/dir:name/dir:name/file:tag
+            ManifestIndex result = new ManifestIndex(collectManifests(root));
+            if (indexInvalidated) {
+                return null;
+            }
+
+            index = result;
+            return result;
+        }
+    }
+
+    /**
+     * Updates the in-memory index after a modification of the database.
+     * <p>
+     * Modifications happen under the index lock after the file system has been updated, so that an index being built
+     * concurrently cannot miss them.
+     */
+    private void updateIndex(Manifest.Key key, boolean present) {
+        synchronized (indexLock) {
+            ManifestIndex current = index;
+            if (current == null) {
+                return;
+            }
+            if (present) {
+                current.add(key);
+            } else {
+                current.remove(key);
+            }
         }
     }
 
+    @Override
+    protected void onExternalModification() {
+        // no locking here, the index lock might be held while checking for modifications.
+        index = null;
+        indexInvalidated = true;
+    }
+
     private Set<Manifest.Key> collectManifests(Path scanRoot) {
         Set<Manifest.Key> result = new TreeSet<>();
         try {
@@ -277,8 +366,22 @@ public class ManifestDatabase extends LockableDatabase implements AutoCloseable
             }
             return result;
         }
-        Path namedRoot = root.resolve(name);
-        return collectManifestsCached(namedRoot);
+        return queryIndex(name, ManifestIndex::getAllForName);
+    }
+
+    /**
+     * @param name the name to find the highest numeric tag for. Matches the same manifests as {@link #getAllForName(String)}.
+     * @return the highest tag if all matching manifests use numeric tags, empty if none matches or any tag is not numeric.
+     */
+    public Optional<Long> getMaxId(String name) {
+        if (name.contains(":")) {
+            try {
+                return getAllForName(name).stream().map(Manifest.Key::getTag).map(Long::parseLong).max(Long::compare);
+            } catch (NumberFormatException e) {
+                return Optional.empty();
+            }
+        }
+        return queryIndex(name, ManifestIndex::getMaxId);
     }
 
     /**
@@ -307,7 +410,9 @@ public class ManifestDatabase extends LockableDatabase implements AutoCloseable
      */
     public void invalidateCaches() {
         this.manifestCache.invalidateAll();
-        this.manifestListCache.invalidateAll();
+        synchronized (indexLock) {
+            this.index = null;
+        }
     }
 
 }
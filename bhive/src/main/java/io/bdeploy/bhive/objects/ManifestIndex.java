@@ -0,0 +1,164 @@
+package io.bdeploy.bhive.objects;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import io.bdeploy.bhive.model.Manifest;
+
+/**
+ * In-memory index of all {@link Manifest.Key}s in a {@link ManifestDatabase}.
+ * <p>
+ * Names are stored in a trie of name segments (separated by '/'), each node holding the tags of the manifest name it represents.
+ * This allows to list all manifests below any number of full name segments without touching the file system.
+ * <p>
+ * Additionally, numeric tags are tracked in sorted order per name, so the highest ID of manifests which use a simple counter
+ * versioning scheme is available without looking at each tag.
+ * <p>
+ * The index is not thread safe, access must be synchronized externally.
+ */
+class ManifestIndex {
+
+    private final Node root = new Node();
+
+    /**
+     * @param keys the initial content of the index.
+     */
+    ManifestIndex(Collection<Manifest.Key> keys) {
+        keys.forEach(this::add);
+    }
+
+    /**
+     * Adds the given key to the index, no-op if already present.
+     */
+    void add(Manifest.Key key) {
+        Node node = root;
+        for (String segment : segments(key.getName())) {
+            node = node.children.computeIfAbsent(segment, s -> new Node());
+        }
+        if (node.tags.add(key.getTag())) {
+            Long id = parseId(key.getTag());
+            if (id == null) {
+                node.nonNumericTags++;
+            } else {
+                node.ids.merge(id, 1, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Removes the given key from the index, no-op if not present. Nodes which are no longer required are removed as well.
+     */
+    void remove(Manifest.Key key) {
+        remove(root, segments(key.getName()), 0, key.getTag());
+    }
+
+    private static boolean remove(Node node, String[] segments, int index, String tag) {
+        if (index == segments.length) {
+            if (node.tags.remove(tag)) {
+                Long id = parseId(tag);
+                if (id == null) {
+                    node.nonNumericTags--;
+                } else {
+                    node.ids.computeIfPresent(id, (k, v) -> v == 1 ? null : v - 1);
+                }
+            }
+        } else {
+            Node child = node.children.get(segments[index]);
+            if (child != null && remove(child, segments, index + 1, tag)) {
+                node.children.remove(segments[index]);
+            }
+        }
+        return node.isEmpty();
+    }
+
+    /**
+     * @param name any number of full name segments, or the empty string for all manifests.
+     * @return all keys whose name starts with the given segments.
+     */
+    SortedSet<Manifest.Key> getAllForName(String name) {
+        SortedSet<Manifest.Key> result = new TreeSet<>();
+        Node node = root;
+        String[] segments = segments(name);
+        for (String segment : segments) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return result;
+            }
+        }
+        collect(node, String.join("/", segments), result);
+        return result;
+    }
+
+    /**
+     * @param name any number of full name segments.
+     * @return the highest numeric tag of all keys whose name starts with the given segments. Empty if there is no such key or
+     *         any of their tags is not numeric.
+     */
+    Optional<Long> getMaxId(String name) {
+        Node node = root;
+        for (String segment : segments(name)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return Optional.empty();
+            }
+        }
+
+        // typically there are no nested names, so only a single node is inspected.
+        Deque<Node> queue = new ArrayDeque<>();
+        queue.add(node);
+        Long max = null;
+        while (!queue.isEmpty()) {
+            Node current = queue.poll();
+            if (current.nonNumericTags > 0) {
+                return Optional.empty();
+            }
+            if (!current.ids.isEmpty() && (max == null || current.ids.lastKey() > max)) {
+                max = current.ids.lastKey();
+            }
+            queue.addAll(current.children.values());
+        }
+        return Optional.ofNullable(max);
+    }
+
+    private static Long parseId(String tag) {
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void collect(Node node, String name, SortedSet<Manifest.Key> result) {
+        for (String tag : node.tags) {
+            result.add(new Manifest.Key(name, tag));
+        }
+        for (Map.Entry<String, Node> child : node.children.entrySet()) {
+            collect(child.getValue(), name.isEmpty() ? child.getKey() : name + "/" + child.getKey(), result);
+        }
+    }
+
+    private static String[] segments(String name) {
+        return name.chars().allMatch(c -> c == '/') ? new String[0] : name.replaceAll("^/+|/+$", "").split("/+");
+    }
+
+    private static final class Node {
+
+        private final Map<String, Node> children = new TreeMap<>();
+        private final SortedSet<String> tags = new TreeSet<>();
+
+        /** The numeric tags, counting the tags which denote the same number (e.g. '1' and '01') */
+        private final TreeMap<Long, Integer> ids = new TreeMap<>();
+        private int nonNumericTags;
+
+        private boolean isEmpty() {
+            return children.isEmpty() && tags.isEmpty();
+        }
+    }
+
+}
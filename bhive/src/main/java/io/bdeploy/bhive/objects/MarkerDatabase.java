@@ -17,11 +17,14 @@ import io.bdeploy.common.util.PathHelper;
  * An example are {@link BHiveTransactions}. They use a {@link MarkerDatabase} to "mark" each object written. As long as there is
  * not manifest inserted in the BHive, these objects would be dangling, and subject to removal by prune. The
  * {@link PruneOperation} takes into account any marked object by any transaction and does not touch them.
+ * <p>
+ * Marker presence is tracked by the same in-memory index as objects in the {@link ObjectDatabase}, so checking for an existing
+ * marker does not require file system access.
  */
 public class MarkerDatabase extends ObjectDatabase {
 
     public MarkerDatabase(Path root, ActivityReporter reporter) {
-        super(root, root.resolve("tmp"), reporter, null);
+        super(root, root.resolve("tmp"), reporter, null, false);
     }
 
     /**
@@ -35,16 +38,16 @@ public class MarkerDatabase extends ObjectDatabase {
         }
 
         locked(() -> {
-            if (hasObject(id)) {
-                return;
-            }
             Path markerFile = getObjectFile(id);
-            PathHelper.mkdirs(markerFile.getParent());
-            try {
-                Files.createFile(markerFile);
-            } catch (IOException e) {
-                throw new IllegalStateException("Cannot add marker for " + id, e);
+            if (!PathHelper.exists(markerFile)) {
+                PathHelper.mkdirs(markerFile.getParent());
+                try {
+                    Files.createFile(markerFile);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot add marker for " + id, e);
+                }
             }
+            updateIndex(id, true);
         });
     }
 
@@ -0,0 +1,244 @@
+package io.bdeploy.bhive.objects;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.bdeploy.bhive.model.ObjectId;
+
+/**
+ * Remembers whether BLOBs in an {@link ObjectDatabase} are executable, so their content does not need to be sniffed on every
+ * export.
+ * <p>
+ * Objects are immutable, so a classification is valid forever, even if the object is removed and added again later. New
+ * classifications are appended to a file next to the objects in batches, each entry consisting of the raw {@link ObjectId} and a
+ * flag byte. Appends hold a lock on the file, so batches of multiple processes do not interleave. The file is loaded again once
+ * an append finds that another process modified it, or once the database is modified by another process (see
+ * {@link #invalidate()}). Lost or damaged entries only cause the affected objects to be sniffed again.
+ * <p>
+ * The file only grows while objects are added. Classifications of objects which have been removed from the database are dropped
+ * by {@link #compact(Predicate)}.
+ */
+class ObjectClassificationIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ObjectClassificationIndex.class);
+
+    private static final int ENTRY_SIZE = ObjectId.RAW_LENGTH + 1;
+    private static final int FLUSH_THRESHOLD = 1024;
+    private static final byte NOT_EXECUTABLE = 0;
+    private static final byte EXECUTABLE = 1;
+
+    private final Path file;
+    private final Map<ObjectId, Boolean> pending = new ConcurrentHashMap<>();
+    private volatile Map<ObjectId, Boolean> entries;
+
+    /** The size of the file as last read or written by this instance, any other size means it was modified by someone else */
+    private volatile long knownSize = -1;
+
+    /**
+     * @param file the file to persist entries to, <code>null</code> to keep them in memory only.
+     */
+    ObjectClassificationIndex(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @return whether the object is executable, or <code>null</code> if it has not been classified yet.
+     */
+    Boolean isExecutable(ObjectId id) {
+        Boolean result = load().get(id);
+        if (result == null) {
+            result = pending.get(id);
+        }
+        return result;
+    }
+
+    void setExecutable(ObjectId id, boolean executable) {
+        if (load().containsKey(id) || pending.putIfAbsent(id, executable) != null) {
+            return;
+        }
+        if (pending.size() >= FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+
+    /**
+     * Persists all pending classifications.
+     */
+    synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<ObjectId, Boolean> current = load();
+        ByteBuffer buffer = ByteBuffer.allocate(pending.size() * ENTRY_SIZE);
+        for (ObjectId id : pending.keySet()) {
+            if (buffer.remaining() < ENTRY_SIZE) {
+                break; // added concurrently, written with the next flush.
+            }
+            Boolean executable = pending.remove(id);
+            if (executable == null || current.putIfAbsent(id, executable) != null) {
+                continue;
+            }
+            id.writeTo(buffer, buffer.position());
+            buffer.position(buffer.position() + ObjectId.RAW_LENGTH);
+            buffer.put(executable.booleanValue() ? EXECUTABLE : NOT_EXECUTABLE);
+        }
+
+        if (file == null || buffer.position() == 0) {
+            return;
+        }
+
+        buffer.flip();
+        try {
+            append(buffer);
+        } catch (IOException e) {
+            log.warn("Cannot persist object classifications to {}", file, e);
+        }
+    }
+
+    private void append(ByteBuffer buffer) throws IOException {
+        // file locks are held by the whole JVM, so other instances for the same file in this JVM need to wait here.
+        synchronized (ObjectClassificationIndex.class) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    FileLock lock = channel.lock()) {
+                // an interrupted append may have left a partial entry, which is overwritten to keep entries aligned.
+                long size = channel.size();
+                long position = size - size % ENTRY_SIZE;
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+
+                if (size != knownSize) {
+                    // appended or compacted by someone else, pick up their modifications.
+                    entries = null;
+                }
+                knownSize = position;
+            }
+        }
+    }
+
+    /**
+     * Drops all loaded classifications, so they are loaded from the file again on next use.
+     */
+    void invalidate() {
+        entries = null;
+    }
+
+    /**
+     * Rewrites the file, keeping only classifications of objects which are still present. Pending classifications are persisted
+     * first.
+     * <p>
+     * The file is rewritten in place while holding the lock, so concurrent appends wait for the compaction to finish. A compaction
+     * which is interrupted leaves only valid entries behind, some of them possibly twice.
+     *
+     * @param present decides whether an object is still present in the database.
+     * @return the number of classifications dropped.
+     */
+    synchronized long compact(Predicate<ObjectId> present) throws IOException {
+        flush();
+        if (file == null || !Files.exists(file)) {
+            return 0;
+        }
+
+        synchronized (ObjectClassificationIndex.class) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    FileLock lock = channel.lock()) {
+                // read through the locked channel, other handles might not be able to read while locked.
+                ByteBuffer content = ByteBuffer.allocate((int) channel.size());
+                while (content.hasRemaining()) {
+                    if (channel.read(content) < 0) {
+                        break;
+                    }
+                }
+                content.flip();
+
+                Map<ObjectId, Boolean> current = parse(content);
+                long dropped = 0;
+                ByteBuffer buffer = ByteBuffer.allocate(current.size() * ENTRY_SIZE);
+                for (Map.Entry<ObjectId, Boolean> entry : current.entrySet()) {
+                    if (!present.test(entry.getKey())) {
+                        current.remove(entry.getKey());
+                        dropped++;
+                        continue;
+                    }
+                    entry.getKey().writeTo(buffer, buffer.position());
+                    buffer.position(buffer.position() + ObjectId.RAW_LENGTH);
+                    buffer.put(entry.getValue().booleanValue() ? EXECUTABLE : NOT_EXECUTABLE);
+                }
+
+                buffer.flip();
+                long position = 0;
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                channel.truncate(position);
+
+                entries = current;
+                knownSize = position;
+                return dropped;
+            }
+        }
+    }
+
+    private Map<ObjectId, Boolean> load() {
+        Map<ObjectId, Boolean> result = entries;
+        if (result != null) {
+            return result;
+        }
+
+        synchronized (this) {
+            if (entries == null) {
+                entries = read();
+            }
+            return entries;
+        }
+    }
+
+    private Map<ObjectId, Boolean> read() {
+        if (file == null) {
+            return new ConcurrentHashMap<>();
+        }
+
+        try {
+            byte[] content = Files.readAllBytes(file);
+            knownSize = content.length;
+            return parse(ByteBuffer.wrap(content));
+        } catch (NoSuchFileException e) {
+            // nothing classified yet.
+            knownSize = 0;
+        } catch (IOException e) {
+            log.warn("Cannot read object classifications from {}", file, e);
+        }
+        return new ConcurrentHashMap<>();
+    }
+
+    private Map<ObjectId, Boolean> parse(ByteBuffer buffer) {
+        Map<ObjectId, Boolean> result = new ConcurrentHashMap<>();
+        int damaged = 0;
+        for (int i = 0; i + ENTRY_SIZE <= buffer.limit(); i += ENTRY_SIZE) {
+            byte flag = buffer.get(i + ObjectId.RAW_LENGTH);
+            if (flag != EXECUTABLE && flag != NOT_EXECUTABLE) {
+                damaged++;
+                continue;
+            }
+            result.put(ObjectId.readFrom(buffer, i), flag == EXECUTABLE);
+        }
+        if (damaged > 0) {
+            log.warn("Ignoring {} damaged object classifications in {}", damaged, file);
+        }
+        return result;
+    }
+
+}
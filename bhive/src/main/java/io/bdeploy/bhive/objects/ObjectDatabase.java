@@ -11,13 +11,22 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Objects;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import io.bdeploy.bhive.BHiveTransactions;
 import io.bdeploy.bhive.model.ObjectId;
 import io.bdeploy.common.ActivityReporter;
@@ -34,9 +43,20 @@ import io.bdeploy.common.util.PathHelper;
  * to determine the target directory. Two levels of directories are used. The first level is based on the first two characters and
  * the second level on the next two characters.
  * </p>
+ * <p>
+ * Optionally, objects can be moved into pack files using {@link #repack(boolean)}, see {@link PackDatabase}. Packed and loose
+ * objects can be used side by side, new objects are always added as loose objects.
+ * </p>
+ * <p>
+ * Presence of loose objects is tracked in memory (see {@link ObjectPresenceIndex}), so checking for existence does not require
+ * file system access. Modifications done by other processes are detected using the modification generation of the database.
+ * Once detected, the database falls back to checking the file system until the index is rebuilt by {@link #getAllObjects()}.
+ * </p>
  */
 public class ObjectDatabase extends LockableDatabase {
 
+    private static final Logger log = LoggerFactory.getLogger(ObjectDatabase.class);
+
     /**
      * The maximum size for any file to be fully loaded into memory. If this limit
      * is exceeded, the {@link ObjectDatabase} is required to stream the file
@@ -44,10 +64,37 @@ public class ObjectDatabase extends LockableDatabase {
      */
     static final long MAX_BUFFER_SIZE = 10l * 1024l * 1024l; // 10M
 
+    /**
+     * The name of the directory (inside the root) which holds pack files.
+     */
+    private static final String PACKS_DIR = "packs";
+
+    /**
+     * The name of the file (inside the root) which holds the snapshot of the presence index.
+     */
+    private static final String INDEX_SNAPSHOT = ".index";
+
+    /**
+     * The name of the file (inside the root) which holds the classification of objects, see {@link ObjectClassificationIndex}.
+     */
+    private static final String CLASSIFICATIONS = ".classes";
+
+    /**
+     * Minimum interval between two checks for modifications done by other processes.
+     */
+    private static final long EXTERNAL_CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
     private final Path root;
     private final Path tmp;
     private final ActivityReporter reporter;
     private final BHiveTransactions transactions;
+    private final PackDatabase packs;
+    private final ObjectClassificationIndex classifications;
+
+    private final Object indexLock = new Object();
+    private volatile ObjectPresenceIndex index;
+    private volatile boolean indexInvalidated;
+    private volatile long lastExternalCheck;
 
     /**
      * Create a new {@link ObjectDatabase} at the given root. The database is not
@@ -59,6 +106,13 @@ public class ObjectDatabase extends LockableDatabase {
      *            running operations.
      */
     public ObjectDatabase(Path root, Path tmp, ActivityReporter reporter, BHiveTransactions transactions) {
+        this(root, tmp, reporter, transactions, true);
+    }
+
+    /**
+     * @param packed whether the database supports packed objects in addition to loose objects.
+     */
+    protected ObjectDatabase(Path root, Path tmp, ActivityReporter reporter, BHiveTransactions transactions, boolean packed) {
         super(root);
         this.root = root;
         this.tmp = tmp;
@@ -72,6 +126,19 @@ public class ObjectDatabase extends LockableDatabase {
         if (!PathHelper.exists(tmp)) {
             PathHelper.mkdirs(tmp);
         }
+
+        this.packs = packed ? new PackDatabase(root.resolve(PACKS_DIR)) : null;
+        this.classifications = new ObjectClassificationIndex(isZip(root) ? null : root.resolve(CLASSIFICATIONS));
+    }
+
+    private static boolean isZip(Path root) {
+        try {
+            root.toFile();
+            return false;
+        } catch (UnsupportedOperationException e) {
+            // ZIP files are not shared between processes, no need to persist anything.
+            return true;
+        }
     }
 
     /**
@@ -86,7 +153,31 @@ public class ObjectDatabase extends LockableDatabase {
         if (!hasObject(id)) {
             throw new IllegalStateException("Missing object: " + id);
         }
-        return Files.newInputStream(getObjectFile(id));
+
+        InputStream packed = getPackedStream(id);
+        if (packed != null) {
+            return packed;
+        }
+
+        try {
+            return Files.newInputStream(getLooseObjectFile(id));
+        } catch (NoSuchFileException e) {
+            // the object might have been packed concurrently.
+            if (packs != null) {
+                packs.refreshIfModified();
+                packed = getPackedStream(id);
+                if (packed != null) {
+                    return packed;
+                }
+            }
+            // ... or removed by another process.
+            updateIndex(id, false);
+            throw e;
+        }
+    }
+
+    private InputStream getPackedStream(ObjectId id) throws IOException {
+        return packs == null ? null : packs.getStream(id);
     }
 
     /**
@@ -97,7 +188,41 @@ public class ObjectDatabase extends LockableDatabase {
      * @return <code>true</code> if it exists, <code>false</code> otherwise.
      */
     public boolean hasObject(ObjectId id) {
-        return PathHelper.exists(getObjectFile(id));
+        // first, as this picks up modifications by other processes - including objects removed from packs.
+        ObjectPresenceIndex current = getIndex();
+        if (packs != null && packs.hasObject(id)) {
+            return true;
+        }
+
+        if (current != null) {
+            return current.contains(id);
+        }
+
+        // index cannot be trusted, fall back to the file system.
+        return PathHelper.exists(getLooseObjectFile(id));
+    }
+
+    /**
+     * Checks whether another process modified the database right away, instead of at most once per second while looking up
+     * objects.
+     * <p>
+     * {@link #hasObject(ObjectId)} may still report objects which have been removed by another process very recently. Bulk
+     * operations which decide to skip writing objects because they exist already call this once up front, and then answer each
+     * object using {@link #hasObject(ObjectId)}.
+     *
+     * @return whether a modification by another process has been detected.
+     */
+    @Override
+    public boolean checkExternalModification() {
+        lastExternalCheck = System.currentTimeMillis();
+        return super.checkExternalModification();
+    }
+
+    /**
+     * Checks whether the object exists, always consulting the file system. Used inside the lock only.
+     */
+    private boolean hasObjectOnDisc(ObjectId id) {
+        return (packs != null && packs.hasObject(id)) || PathHelper.exists(getLooseObjectFile(id));
     }
 
     /**
@@ -164,7 +289,7 @@ public class ObjectDatabase extends LockableDatabase {
         Path tmpFile = Files.createTempFile(this.tmp, "obj", ".tmp");
         try {
             ObjectId id = writer.write(tmpFile);
-            Path target = getObjectFile(id);
+            Path target = getLooseObjectFile(id);
 
             // Done outside the lock and before the existence check. This is to make sure
             // that we touch an object even though another transaction might have inserted
@@ -175,12 +300,11 @@ public class ObjectDatabase extends LockableDatabase {
             }
 
             locked(() -> {
-                if (hasObject(id)) {
-                    return;
+                if (!hasObjectOnDisc(id)) {
+                    PathHelper.mkdirs(target.getParent());
+                    Files.move(tmpFile, target);
                 }
-
-                PathHelper.mkdirs(target.getParent());
-                Files.move(tmpFile, target);
+                updateIndex(id, PathHelper.exists(target));
             });
             return id;
         } finally {
@@ -205,20 +329,150 @@ public class ObjectDatabase extends LockableDatabase {
      * WARNING: use with care, this can cause corruption!
      */
     public void removeObject(ObjectId id) {
-        Path file = getObjectFile(id);
+        Path file = getLooseObjectFile(id);
         locked(() -> {
-            if (!hasObject(id)) {
-                return;
+            Files.deleteIfExists(file);
+            updateIndex(id, false);
+            if (packs != null) {
+                packs.removeObject(id);
             }
-            Files.delete(file);
         });
     }
 
     /**
      * Calculate the {@link Path} where a certain {@link ObjectId} can be found in
      * the database. Use with caution.
+     * <p>
+     * Packed objects do not have a file of their own, see {@link #hasObjectFile(ObjectId)}. Use {@link #getStream(ObjectId)} to
+     * read objects regardless of how they are stored.
+     *
+     * @throws IllegalStateException if the object is packed.
      */
     public Path getObjectFile(ObjectId id) {
+        Path file = getLooseObjectFile(id);
+        if (packs != null && !PathHelper.exists(file) && packs.hasObject(id)) {
+            throw new IllegalStateException("Object " + id + " is packed, it has no file of its own");
+        }
+        return file;
+    }
+
+    /**
+     * @param id the {@link ObjectId} to check
+     * @return whether the object exists and has a file of its own, i.e. it is not packed.
+     */
+    public boolean hasObjectFile(ObjectId id) {
+        return PathHelper.exists(getLooseObjectFile(id));
+    }
+
+    /**
+     * @return whether the given BLOB is known to be executable, or <code>null</code> if it has not been classified yet.
+     */
+    Boolean isExecutable(ObjectId id) {
+        return classifications.isExecutable(id);
+    }
+
+    /**
+     * Remembers whether the given BLOB is executable, as determined from its content.
+     */
+    void setExecutable(ObjectId id, boolean executable) {
+        classifications.setExecutable(id, executable);
+    }
+
+    /**
+     * Prepares the loose files backing the given objects to be hard-linked to an export. Linked files share their mode with the
+     * object file, so object files are write-protected, and made executable if their content requires it, before they are
+     * linked. This way, the mode never needs to be changed through a link. Object files are only modified if required, all at
+     * once inside the lock. Their content is verified before, damaged objects are not linked.
+     *
+     * @param ids the objects to link.
+     * @return the objects which can be linked, see {@link #getLinkableObjectFile(ObjectId)}. Empty if the file system does not
+     *         support POSIX permissions. Packed objects are never included.
+     */
+    Set<ObjectId> prepareLinkableObjects(Collection<ObjectId> ids) throws IOException {
+        if (PathHelper.getPosixView(root) == null) {
+            return Collections.emptySet();
+        }
+
+        Set<ObjectId> result = new HashSet<>();
+        Set<ObjectId> modify = new HashSet<>();
+        for (ObjectId id : ids) {
+            Boolean linkable = isLinkable(id);
+            if (linkable == null) {
+                continue; // not a loose object.
+            } else if (linkable.booleanValue()) {
+                result.add(id);
+            } else if (checkObject(id)) {
+                // verified once before it is linked the first time, write-protection keeps it intact afterwards.
+                modify.add(id);
+            }
+        }
+
+        if (!modify.isEmpty()) {
+            locked(() -> {
+                for (ObjectId id : modify) {
+                    Path file = getLooseObjectFile(id);
+                    try {
+                        Files.setPosixFilePermissions(file, getObjectFileMode(classify(id, file)));
+                        result.add(id);
+                    } catch (IOException e) {
+                        // e.g. removed or packed concurrently, will be copied.
+                        log.debug("Cannot prepare {} for linking", id, e);
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * @return the loose file backing the given object, which has been prepared by {@link #prepareLinkableObjects(Collection)}.
+     */
+    Path getLinkableObjectFile(ObjectId id) {
+        return getLooseObjectFile(id);
+    }
+
+    /**
+     * @return whether the loose file backing the given object has the mode required for linking already, <code>null</code> if
+     *         the object is not stored as loose file.
+     */
+    private Boolean isLinkable(ObjectId id) throws IOException {
+        Path file = getLooseObjectFile(id);
+        try {
+            return Files.getPosixFilePermissions(file).equals(getObjectFileMode(classify(id, file)));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the given object is executable, sniffing the given file holding its content if not known yet.
+     */
+    private boolean classify(ObjectId id, Path file) throws IOException {
+        Boolean executable = classifications.isExecutable(id);
+        if (executable == null) {
+            executable = PathHelper.isExecutable(PathHelper.getContentInfo(file, null));
+            classifications.setExecutable(id, executable);
+        }
+        return executable;
+    }
+
+    /**
+     * @return the mode of linked object files. Execute permissions match the ones set when exporting by copy.
+     */
+    private static Set<PosixFilePermission> getObjectFileMode(boolean executable) {
+        Set<PosixFilePermission> perms = EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.GROUP_READ,
+                PosixFilePermission.OTHERS_READ);
+        if (executable) {
+            perms.add(PosixFilePermission.OWNER_EXECUTE);
+            perms.add(PosixFilePermission.GROUP_EXECUTE);
+        }
+        return perms;
+    }
+
+    /**
+     * Calculate the {@link Path} where a certain {@link ObjectId} is stored if it is not packed.
+     */
+    private Path getLooseObjectFile(ObjectId id) {
         String rawId = id.getId();
         String l1 = rawId.substring(0, 2);
         String l2 = rawId.substring(2, 4);
@@ -229,40 +483,238 @@ public class ObjectDatabase extends LockableDatabase {
      * Retrieve the file size for the file backing {@link ObjectId}.
      */
     public long getObjectSize(ObjectId id) throws IOException {
-        return Files.size(getObjectFile(id));
+        if (packs != null) {
+            long size = packs.getObjectSize(id);
+            if (size >= 0) {
+                return size;
+            }
+        }
+        return Files.size(getLooseObjectFile(id));
     }
 
     /**
-     * Scan for and retrieve all objects in the database. This is potentially an
-     * expensive operation, as object presence is not cached.
+     * Retrieve all objects in the database. The result is served from memory, unless the database has been modified by another
+     * process, in which case the in-memory index is rebuilt from the file system first.
      *
      * @throws IOException in case of an error.
      * @throws InterruptedException when interrupted.
      */
     public SortedSet<ObjectId> getAllObjects() throws IOException, InterruptedException {
-        try (Activity scan = reporter.start("Listing Objects", 0)) {
-            long xctpCount = 0;
-            do {
-                try {
-                    try (Stream<Path> walk = Files.walk(root)) {
-                        return walk.filter(Files::isRegularFile).map(Path::getFileName).map(Object::toString).map(ObjectId::parse)
-                                .filter(Objects::nonNull).peek(e -> scan.workAndCancelIfRequested(1))
-                                .collect(Collectors.toCollection(TreeSet::new));
-                    } catch (UncheckedIOException e) {
-                        // something was removed in the middle of the walk... retry.
-                        if (!(e.getCause() instanceof NoSuchFileException) || xctpCount++ > 20) {
-                            throw e;
-                        }
+        checkExternalModification();
+
+        SortedSet<ObjectId> result = new TreeSet<>();
+        ObjectPresenceIndex current = loadIndex(true);
+        if (current != null) {
+            current.addAllTo(result);
+        } else {
+            // modified by another process while indexing, do a plain scan instead.
+            try (Activity scan = reporter.start("Listing Objects", 0)) {
+                result.addAll(getLooseObjects(scan));
+            }
+        }
+
+        if (packs != null) {
+            packs.refreshIfModified();
+            packs.addAllObjects(result);
+        }
+        return result;
+    }
+
+    /**
+     * Persists the in-memory presence index so it can be loaded quickly the next time the database is opened. The snapshot is
+     * only used if the database has not been modified in between. Pending object classifications are persisted as well.
+     */
+    public void close() {
+        classifications.flush();
+
+        synchronized (indexLock) {
+            ObjectPresenceIndex current = index;
+            if (current == null || checkExternalModification()) {
+                return;
+            }
+
+            long generation = getModificationGeneration();
+            if (generation < 0) {
+                return;
+            }
+
+            try {
+                current.writeSnapshot(root.resolve(INDEX_SNAPSHOT), generation);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot write object index snapshot", e);
+            }
+        }
+    }
+
+    /**
+     * Drops the in-memory index, it is rebuilt from the file system on next use.
+     */
+    public void invalidateCaches() {
+        synchronized (indexLock) {
+            index = null;
+            indexInvalidated = false;
+        }
+        classifications.invalidate();
+    }
+
+    /**
+     * Drops the classifications of all objects which no longer exist in the database, so the file holding them does not grow
+     * forever.
+     *
+     * @return the number of classifications dropped.
+     */
+    public long compactClassifications() {
+        long[] result = new long[1];
+        locked(() -> result[0] = classifications.compact(this::hasObjectOnDisc));
+        return result[0];
+    }
+
+    @Override
+    protected void onExternalModification() {
+        // no locking here, the index lock might be held while checking for modifications.
+        index = null;
+        indexInvalidated = true;
+        classifications.invalidate();
+        if (packs != null) {
+            packs.refreshIfModified();
+        }
+    }
+
+    /**
+     * @return the presence index of loose objects, or <code>null</code> if it cannot be trusted due to modifications done by
+     *         other processes.
+     */
+    private ObjectPresenceIndex getIndex() {
+        long now = System.currentTimeMillis();
+        if (now - lastExternalCheck > EXTERNAL_CHECK_INTERVAL) {
+            lastExternalCheck = now;
+            checkExternalModification();
+        }
+
+        ObjectPresenceIndex current = index;
+        if (current != null) {
+            return current;
+        }
+        return loadIndex(false);
+    }
+
+    /**
+     * Loads the presence index, either from a snapshot if still valid, or by scanning the file system.
+     *
+     * @param rebuild whether to rebuild an index which has been invalidated.
+     */
+    private ObjectPresenceIndex loadIndex(boolean rebuild) {
+        synchronized (indexLock) {
+            if (index != null) {
+                return index;
+            }
+            if (indexInvalidated && !rebuild) {
+                return null;
+            }
+
+            indexInvalidated = false;
+            long generation = startModificationTracking();
+            try {
+                ObjectPresenceIndex result = null;
+                if (generation >= 0) {
+                    result = ObjectPresenceIndex.readSnapshot(root.resolve(INDEX_SNAPSHOT), generation);
+                }
+                if (result == null) {
+                    try (Activity scan = reporter.start("Indexing Objects", 0)) {
+                        result = new ObjectPresenceIndex(getLooseObjects(scan));
                     }
-                } catch (NoSuchFileException e) {
-                    // this happens if the path does not exist at all anymore, so there are zero objects.
-                    return Collections.emptySortedSet();
                 }
 
-                // Delay the loop a little
-                Thread.sleep(50);
-            } while (true);
+                if (indexInvalidated) {
+                    // modified by another process in the meantime.
+                    return null;
+                }
+
+                index = result;
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while indexing objects", e);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot index objects in " + root, e);
+            }
         }
     }
 
+    /**
+     * Updates the in-memory index with the presence of the given loose object.
+     */
+    void updateIndex(ObjectId id, boolean present) {
+        synchronized (indexLock) {
+            ObjectPresenceIndex current = index;
+            if (current == null) {
+                return;
+            }
+
+            if (present) {
+                current.add(id);
+            } else {
+                current.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Moves all loose objects into a new pack file, see {@link PackDatabase}.
+     * <p>
+     * This can run at any time alongside other operations on the database, as packed objects remain accessible at all times.
+     *
+     * @param compact whether to also merge all existing packs into the new one. This drops any objects which have been removed
+     *            since they were packed, but requires rewriting all packed objects.
+     * @return the number of objects written to the new pack.
+     */
+    public long repack(boolean compact) {
+        if (packs == null) {
+            throw new UnsupportedOperationException("Packing not supported");
+        }
+
+        long[] result = new long[1];
+        locked(() -> {
+            SortedSet<ObjectId> loose;
+            try (Activity scan = reporter.start("Listing Loose Objects", 0)) {
+                loose = getLooseObjects(scan);
+            }
+
+            try (Activity packing = reporter.start("Packing Objects", 0)) {
+                result[0] = packs.repack(tmp, loose, id -> Files.newInputStream(getLooseObjectFile(id)), compact, packing);
+            }
+
+            // now all loose objects are reachable through the pack.
+            for (ObjectId id : loose) {
+                Files.deleteIfExists(getLooseObjectFile(id));
+                updateIndex(id, false);
+            }
+        });
+        return result[0];
+    }
+
+    private SortedSet<ObjectId> getLooseObjects(Activity scan) throws IOException, InterruptedException {
+        long xctpCount = 0;
+        do {
+            try {
+                try (Stream<Path> walk = Files.walk(root)) {
+                    return walk.filter(Files::isRegularFile).map(Path::getFileName).map(Object::toString).map(ObjectId::parse)
+                            .filter(Objects::nonNull).peek(e -> scan.workAndCancelIfRequested(1))
+                            .collect(Collectors.toCollection(TreeSet::new));
+                } catch (UncheckedIOException e) {
+                    // something was removed in the middle of the walk... retry.
+                    if (!(e.getCause() instanceof NoSuchFileException) || xctpCount++ > 20) {
+                        throw e;
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                // this happens if the path does not exist at all anymore, so there are zero objects.
+                return new TreeSet<>();
+            }
+
+            // Delay the loop a little
+            Thread.sleep(50);
+        } while (true);
+    }
+
 }
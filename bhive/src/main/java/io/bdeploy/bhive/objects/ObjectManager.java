@@ -10,8 +10,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.PosixFileAttributeView;
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.ArrayDeque;
@@ -19,14 +22,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -54,6 +62,7 @@ import io.bdeploy.bhive.objects.view.scanner.TreeVisitor;
 import io.bdeploy.bhive.util.StorageHelper;
 import io.bdeploy.common.ActivityReporter;
 import io.bdeploy.common.ActivityReporter.Activity;
+import io.bdeploy.common.util.FormatHelper;
 import io.bdeploy.common.util.FutureHelper;
 import io.bdeploy.common.util.PathHelper;
 
@@ -63,11 +72,12 @@ import io.bdeploy.common.util.PathHelper;
 public class ObjectManager {
 
     private static final Logger log = LoggerFactory.getLogger(ObjectManager.class);
+    private static final String THROUGHPUT_TEMPLATE = "Importing Files: %1$d files, %2$s, %3$s";
 
     private final ObjectDatabase db;
     private final ManifestDatabase mdb;
     private final ActivityReporter reporter;
-    private final ExecutorService fileOps;
+    private final ForkJoinPool fileOps;
 
     /**
      * A cache for Tree and ManifestRef objects which need to actually be loaded from disk for correct tree traversal.
@@ -90,7 +100,7 @@ public class ObjectManager {
      * @param reporter used to report long running operations
      * @param fileOps used to parallelize file operations.
      */
-    public ObjectManager(ObjectDatabase db, ManifestDatabase mdb, ActivityReporter reporter, ExecutorService fileOps) {
+    public ObjectManager(ObjectDatabase db, ManifestDatabase mdb, ActivityReporter reporter, ForkJoinPool fileOps) {
         this.db = db;
         this.mdb = mdb;
         this.reporter = reporter;
@@ -99,6 +109,9 @@ public class ObjectManager {
 
     /**
      * Import a {@link Path} recursively into the underlying {@link ObjectDatabase}.
+     * <p>
+     * Directories and files are imported as tasks on the file operations pool, allowing idle threads to steal work from any
+     * level of the tree. {@link Tree}s are built bottom-up once all their children have been imported.
      *
      * @param location the location to import recursively
      * @param skipEmpty whether to skip empty directories
@@ -107,7 +120,9 @@ public class ObjectManager {
     public ObjectId importTree(Path location, boolean skipEmpty) {
         Activity importing = reporter.start("Importing Files", 0);
         try {
-            ObjectId result = internalImportTree(location, importing, skipEmpty);
+            ImportContext context = new ImportContext(importing, skipEmpty);
+            ObjectId result = fileOps.invoke(new ImportTreeTask(location, context));
+            context.reportThroughput();
 
             // null in case the complete tree is empty (skipped).
             if (result == null) {
@@ -116,67 +131,151 @@ public class ObjectManager {
             }
 
             return result;
-        } catch (IOException e) {
-            throw new IllegalStateException("Cannot import " + location, e);
         } finally {
             importing.done();
         }
     }
 
     /**
-     * Recursively import a tree, parallelizing imports on the same path levels.
-     *
-     * @param skipEmpty
+     * State shared by all tasks of a single {@link #importTree(Path, boolean)} call.
      */
-    private ObjectId internalImportTree(Path location, Activity importing, boolean skipEmpty) throws IOException {
-        Tree.Builder tree = new Tree.Builder();
+    private static final class ImportContext {
 
-        List<Future<?>> filesOnLevel = new ArrayList<>();
-        try (DirectoryStream<Path> list = Files.newDirectoryStream(location)) {
-            for (Path path : list) {
-                if (Files.isDirectory(path)) {
-                    try {
-                        if (skipEmpty && PathHelper.isDirEmpty(path)) {
-                            continue;
+        private final long start = System.currentTimeMillis();
+        private final AtomicLong lastUpdate = new AtomicLong(start);
+        private final LongAdder files = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        private final Activity importing;
+        private final boolean skipEmpty;
+
+        ImportContext(Activity importing, boolean skipEmpty) {
+            this.importing = importing;
+            this.skipEmpty = skipEmpty;
+        }
+
+        void fileImported(long size) {
+            files.increment();
+            bytes.add(size);
+            importing.workAndCancelIfRequested(1);
+
+            // update the throughput at most twice per second, only one thread will win the update.
+            long now = System.currentTimeMillis();
+            long last = lastUpdate.get();
+            if (now - last >= 500 && lastUpdate.compareAndSet(last, now)) {
+                reportThroughput();
+            }
+        }
+
+        void reportThroughput() {
+            long elapsed = System.currentTimeMillis() - start;
+            importing.activity(String.format(THROUGHPUT_TEMPLATE, files.sum(), FormatHelper.formatFileSize(bytes.sum()),
+                    FormatHelper.formatTransferRate(bytes.sum(), elapsed)));
+        }
+    }
+
+    /**
+     * Imports a directory. Forks a task for each child and joins them to build the directory's {@link Tree}.
+     */
+    private final class ImportTreeTask extends RecursiveTask<ObjectId> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path location;
+        private final transient ImportContext context;
+
+        ImportTreeTask(Path location, ImportContext context) {
+            this.location = location;
+            this.context = context;
+        }
+
+        @Override
+        protected ObjectId compute() {
+            List<Tree.Key> keys = new ArrayList<>();
+            List<ForkJoinTask<ObjectId>> children = new ArrayList<>();
+            try (DirectoryStream<Path> list = Files.newDirectoryStream(location)) {
+                for (Path path : list) {
+                    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (attrs.isDirectory()) {
+                        try {
+                            if (context.skipEmpty && PathHelper.isDirEmpty(path)) {
+                                continue;
+                            }
+                        } catch (UnsupportedOperationException e) {
+                            log.warn("Cannot check if directory is empty: {}", path);
                         }
-                    } catch (UnsupportedOperationException e) {
-                        log.warn("Cannot check if directory is empty: {}", path);
-                    }
 
-                    // recursively calculate ObjectId from sub-tree.
-                    ObjectId imported = internalImportTree(path, importing, skipEmpty);
+                        keys.add(new Tree.Key(path.getFileName().toString(), Tree.EntryType.TREE));
+                        children.add(new ImportTreeTask(path, context).fork());
+                    } else {
+                        keys.add(new Tree.Key(path.getFileName().toString(), Tree.EntryType.BLOB));
+                        children.add(new ImportBlobTask(path, attrs.size(), context).fork());
+                    }
+                }
+            } catch (IOException e) {
+                cancelAll(children);
+                throw new IllegalStateException("Cannot import " + location, e);
+            }
 
+            // join in reverse order - the most recently forked task is likely still in the local queue and run directly.
+            Tree.Builder tree = new Tree.Builder();
+            try {
+                for (int i = children.size() - 1; i >= 0; --i) {
                     // can be null in case only empty directories are found recursively.
+                    ObjectId imported = children.get(i).join();
                     if (imported != null) {
-                        tree.add(new Tree.Key(path.getFileName().toString(), Tree.EntryType.TREE), imported);
+                        tree.add(keys.get(i), imported);
                     }
-                } else {
-                    // insert an actual file into the tree.
-                    filesOnLevel.add(fileOps.submit(() -> {
-                        try {
-                            // store in tree after importing.
-                            tree.add(new Tree.Key(path.getFileName().toString(), Tree.EntryType.BLOB), db.addObject(path));
-                        } catch (IOException e) {
-                            throw new IllegalStateException("cannot insert object from: " + path, e);
-                        }
-                        importing.workAndCancelIfRequested(1);
-                    }));
                 }
+            } catch (RuntimeException e) {
+                cancelAll(children);
+                throw e;
+            }
+
+            // insert the tree into the db and return its ObjectId.
+            context.importing.workAndCancelIfRequested(1);
+
+            // if nothing was imported, return null
+            if (tree.isEmpty() && context.skipEmpty) {
+                return null;
             }
+
+            return insertTree(tree.build());
         }
 
-        // wait for all files on this level.
-        FutureHelper.awaitAll(filesOnLevel);
+        private void cancelAll(List<ForkJoinTask<ObjectId>> tasks) {
+            // tasks which already started will finish, all others are dropped.
+            tasks.forEach(t -> t.cancel(false));
+        }
+    }
 
-        // insert the tree into the db and return its ObjectId.
-        importing.workAndCancelIfRequested(1);
+    /**
+     * Imports a single file into the {@link ObjectDatabase}.
+     */
+    private final class ImportBlobTask extends RecursiveTask<ObjectId> {
+
+        private static final long serialVersionUID = 1L;
 
-        // if nothing was imported, return null
-        if (tree.isEmpty() && skipEmpty) {
-            return null;
+        private final transient Path file;
+        private final long size;
+        private final transient ImportContext context;
+
+        ImportBlobTask(Path file, long size, ImportContext context) {
+            this.file = file;
+            this.size = size;
+            this.context = context;
         }
 
-        return insertTree(tree.build());
+        @Override
+        protected ObjectId compute() {
+            try {
+                ObjectId id = db.addObject(file);
+                context.fileImported(size);
+                return id;
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot insert object from: " + file, e);
+            }
+        }
     }
 
     /**
@@ -189,8 +288,29 @@ public class ObjectManager {
      *            export of manifest reference in place).
      */
     public void exportTree(ObjectId tree, Path location, ReferenceHandler handler) {
+        exportTree(tree, location, handler, false);
+    }
+
+    /**
+     * Exports a given tree (by {@link ObjectId}) to the given location, which must
+     * not exist yet.
+     * <p>
+     * When linking, BLOBs are hard-linked from the {@link ObjectDatabase} instead of being copied where possible. This avoids
+     * reading and writing the content, and does not use any additional disc space. Linked files share their inode with the
+     * object file, so object files are write-protected and given their final mode before they are linked for the first time,
+     * see {@link ObjectDatabase#prepareLinkableObjects(java.util.Collection)}. Their content is verified once at that point.
+     * Files are copied if the target is on a different file system, or if the object file cannot be linked, e.g. because the
+     * object is packed.
+     *
+     * @param tree the {@link ObjectId} of the {@link Tree} to write
+     * @param location the target {@link Path} to create
+     * @param handler a custom reference handler which takes care of references. If not set, the default will be used (inline
+     *            export of manifest reference in place).
+     * @param link whether to hard-link BLOBs instead of copying them.
+     */
+    public void exportTree(ObjectId tree, Path location, ReferenceHandler handler, boolean link) {
         if (handler == null) {
-            handler = new DefaultReferenceHandler(this);
+            handler = new DefaultReferenceHandler(this, link);
         }
         try {
             if (PathHelper.exists(location)) {
@@ -214,15 +334,19 @@ public class ObjectManager {
             }
 
             AtomicLong fileCount = new AtomicLong(0);
+            Set<ObjectId> blobs = new HashSet<>();
             TreeView view = scan(tree, Integer.MAX_VALUE, true);
             view.visit(new TreeVisitor.Builder().onTree(x -> {
                 fileCount.addAndGet(x.getChildren().size());
                 return true;
-            }).build());
+            }).onBlob(b -> blobs.add(b.getElementId())).build());
+
+            Set<ObjectId> linkable = link ? db.prepareLinkableObjects(blobs) : Collections.emptySet();
 
             Activity exporting = reporter.start("Exporting Files", fileCount.get());
             try {
-                internalExportTree(tree, tempLocation, tree, tempLocation, exporting, handler);
+                AtomicBoolean linking = new AtomicBoolean(!linkable.isEmpty());
+                internalExportTree(tree, tempLocation, tree, tempLocation, exporting, handler, linkable, linking);
                 internalMoveRetrying(location, tempLocation);
             } catch (Throwable t) {
                 try {
@@ -266,7 +390,7 @@ public class ObjectManager {
      * Recursively export tree to target location.
      */
     private void internalExportTree(ObjectId tree, Path topLevel, ObjectId topLevelTree, Path location, Activity exporting,
-            ReferenceHandler handler) throws IOException {
+            ReferenceHandler handler, Set<ObjectId> linkable, AtomicBoolean linking) throws IOException {
         PathHelper.mkdirs(location);
 
         Tree t;
@@ -286,7 +410,9 @@ public class ObjectManager {
                 case BLOB:
                     filesOnLevel.add(fileOps.submit(() -> {
                         try {
-                            internalExportBlobByCopy(obj, child);
+                            if (!linking.get() || !linkable.contains(obj) || !internalExportBlobByLink(obj, child, linking)) {
+                                internalExportBlobByCopy(obj, child);
+                            }
                         } catch (Exception e) {
                             throw new IllegalStateException("Cannot export BLOB to " + child, e);
                         } finally {
@@ -299,7 +425,7 @@ public class ObjectManager {
                     exporting.workAndCancelIfRequested(1);
                     break;
                 case TREE:
-                    internalExportTree(obj, topLevel, topLevelTree, child, exporting, handler);
+                    internalExportTree(obj, topLevel, topLevelTree, child, exporting, handler, linkable, linking);
                     exporting.workAndCancelIfRequested(1);
                     break;
                 default:
@@ -314,16 +440,40 @@ public class ObjectManager {
         exporting.workAndCancelIfRequested(1);
     }
 
+    /**
+     * Tries to hard-link the prepared object file to the target location.
+     *
+     * @param linking reset in case linking fails, so the remaining BLOBs are copied right away.
+     * @return whether the BLOB has been linked.
+     */
+    private boolean internalExportBlobByLink(ObjectId obj, Path child, AtomicBoolean linking) {
+        try {
+            Files.createLink(child, db.getLinkableObjectFile(obj));
+        } catch (NoSuchFileException e) {
+            return false; // packed or removed in the meantime.
+        } catch (IOException | UnsupportedOperationException | ProviderMismatchException e) {
+            // e.g. different file systems or ZIP.
+            if (linking.compareAndSet(true, false)) {
+                log.info("Cannot link objects to {}, copying instead: {}", child.getParent(), e.toString());
+            }
+            return false;
+        }
+
+        // the mode is shared with the object file, which is already final - never change it through the link.
+        return true;
+    }
+
     private void internalExportBlobByCopy(ObjectId obj, Path child) {
-        // fallback only: create copy of file. determine content type as we go.
-        try (ContentInfoInputStreamWrapper is = new ContentInfoInputStreamWrapper(db.getStream(obj),
-                PathHelper.getContentInfoUtil())) {
+        // fallback only: create copy of file. determine content type as we go unless already known.
+        boolean sniff = db.isExecutable(obj) == null;
+        try (InputStream raw = db.getStream(obj);
+                InputStream is = sniff ? new ContentInfoInputStreamWrapper(raw, PathHelper.getContentInfoUtil()) : raw) {
             ObjectId finalId = ObjectId.createByCopy(is, child);
             if (!finalId.equals(obj)) {
                 // not good - object in DB seems corrupt.
                 throw new IOException("BLOB corruption: " + obj + " (is " + finalId + "), run FSCK");
             }
-            setExecutable(child, is.findMatch());
+            setExecutable(child, obj, sniff ? ((ContentInfoInputStreamWrapper) is).findMatch() : null);
         } catch (IOException ioe) {
             throw new IllegalStateException("Cannot export " + obj + " to " + child, ioe);
         }
@@ -331,19 +481,23 @@ public class ObjectManager {
 
     /**
      * Sets attributes to make a file executable if required.
+     * <p>
+     * The content is sniffed only once per object, the result is remembered by the {@link ObjectDatabase}.
      *
      * @param child {@link Path} to the file to check
+     * @param obj the {@link ObjectId} of the file's content
      * @param hint a potential pre-calculated {@link ContentInfo}
      */
-    private void setExecutable(Path child, ContentInfo hint) throws IOException {
+    private void setExecutable(Path child, ObjectId obj, ContentInfo hint) throws IOException {
         PosixFileAttributeView view = PathHelper.getPosixView(child);
         if (view != null) {
-            hint = PathHelper.getContentInfo(child, hint);
-            if (hint == null) {
-                return;
+            Boolean executable = db.isExecutable(obj);
+            if (executable == null) {
+                executable = PathHelper.isExecutable(PathHelper.getContentInfo(child, hint));
+                db.setExecutable(obj, executable);
             }
 
-            if (PathHelper.isExecutable(hint)) {
+            if (executable.booleanValue()) {
                 Set<PosixFilePermission> perms = view.readAttributes().permissions();
                 perms.add(PosixFilePermission.OWNER_EXECUTE);
                 perms.add(PosixFilePermission.GROUP_EXECUTE);
@@ -581,6 +735,7 @@ public class ObjectManager {
      */
     public void invalidateCaches() {
         this.objectCache.invalidateAll();
+        this.db.invalidateCaches();
     }
 
     /**
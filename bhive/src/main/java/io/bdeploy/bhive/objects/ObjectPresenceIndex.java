@@ -0,0 +1,166 @@
+package io.bdeploy.bhive.objects;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.bdeploy.bhive.model.ObjectId;
+
+/**
+ * An in-memory index of the {@link ObjectId}s present in an {@link ObjectDatabase}.
+ * <p>
+ * The bulk of the index is kept as sorted buffer of raw ids, which is looked up using binary
+ * search. Additions and removals since the array was built are kept in small sets, which are merged into the array once they
+ * grow too large.
+ * <p>
+ * Lookups are lock-free, modifications must be synchronized by the caller.
+ */
+class ObjectPresenceIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x42485049; // 'BHPI'
+    private volatile ByteBuffer base;
+    private final Set<ObjectId> added = ConcurrentHashMap.newKeySet();
+    private final Set<ObjectId> removed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates an index from the given set of {@link ObjectId}s.
+     */
+    ObjectPresenceIndex(SortedSet<ObjectId> ids) {
+        this.base = toBuffer(ids);
+    }
+
+    private ObjectPresenceIndex(ByteBuffer base) {
+        this.base = base;
+    }
+
+    boolean contains(ObjectId id) {
+        if (added.contains(id)) {
+            return true;
+        }
+        if (removed.contains(id)) {
+            return false;
+        }
+        return indexOf(base, id) >= 0;
+    }
+
+    void add(ObjectId id) {
+        if (!removed.remove(id) && indexOf(base, id) < 0) {
+            added.add(id);
+            mergeIfRequired();
+        }
+    }
+
+    void remove(ObjectId id) {
+        if (!added.remove(id) && indexOf(base, id) >= 0) {
+            removed.add(id);
+            mergeIfRequired();
+        }
+    }
+
+    /**
+     * Adds all {@link ObjectId}s in the index to the given target.
+     */
+    void addAllTo(Collection<ObjectId> target) {
+        ByteBuffer current = base;
+        for (int i = 0; i < current.capacity(); i += ObjectId.RAW_LENGTH) {
+            ObjectId id = ObjectId.readFrom(current, i);
+            if (!removed.contains(id)) {
+                target.add(id);
+            }
+        }
+        target.addAll(added);
+    }
+
+    /**
+     * Writes the index to the given file, tagged with the given modification generation of the database.
+     */
+    void writeSnapshot(Path file, long generation) throws IOException {
+        merge();
+
+        ByteBuffer current = base;
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            os.writeInt(SNAPSHOT_MAGIC);
+            os.writeLong(generation);
+            os.writeInt(current.capacity() / ObjectId.RAW_LENGTH);
+            os.write(current.array());
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads a snapshot of the index, but only if it has been written at the given modification generation of the database.
+     *
+     * @return the index, or <code>null</code> if there is no snapshot for the given generation.
+     */
+    static ObjectPresenceIndex readSnapshot(Path file, long generation) throws IOException {
+        try (DataInputStream is = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (is.readInt() != SNAPSHOT_MAGIC || is.readLong() != generation) {
+                return null;
+            }
+            byte[] result = new byte[is.readInt() * ObjectId.RAW_LENGTH];
+            is.readFully(result);
+            return new ObjectPresenceIndex(ByteBuffer.wrap(result));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void mergeIfRequired() {
+        // keep the sets small compared to the base array, merging is O(n).
+        if (added.size() + removed.size() > 1024 + (base.capacity() / ObjectId.RAW_LENGTH) / 8) {
+            merge();
+        }
+    }
+
+    private void merge() {
+        SortedSet<ObjectId> all = new TreeSet<>();
+        addAllTo(all);
+
+        // publish the new buffer before clearing the sets, so concurrent lookups never miss an entry.
+        base = toBuffer(all);
+        added.clear();
+        removed.clear();
+    }
+
+    private static ByteBuffer toBuffer(SortedSet<ObjectId> ids) {
+        ByteBuffer result = ByteBuffer.allocate(ids.size() * ObjectId.RAW_LENGTH);
+        int offset = 0;
+        for (ObjectId id : ids) {
+            id.writeTo(result, offset);
+            offset += ObjectId.RAW_LENGTH;
+        }
+        return result;
+    }
+
+    private static int indexOf(ByteBuffer ids, ObjectId id) {
+        int low = 0;
+        int high = ids.capacity() / ObjectId.RAW_LENGTH - 1;
+        while (low <= high) {
+            int pivot = (low + high) >>> 1;
+            int cmp = id.compareTo(ids, pivot * ObjectId.RAW_LENGTH);
+
+            if (cmp > 0) {
+                low = pivot + 1;
+            } else if (cmp < 0) {
+                high = pivot - 1;
+            } else {
+                return pivot;
+            }
+        }
+        return -1;
+    }
+
+}
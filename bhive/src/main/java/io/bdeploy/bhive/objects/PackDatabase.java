@@ -0,0 +1,499 @@
+/*
+ * Copyright (c) SSI Schaefer IT Solutions GmbH
+ */
+package io.bdeploy.bhive.objects;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.ByteStreams;
+
+import io.bdeploy.bhive.model.ObjectId;
+import io.bdeploy.common.ActivityReporter.Activity;
+import io.bdeploy.common.util.PathHelper;
+import io.bdeploy.common.util.UuidHelper;
+
+/**
+ * Stores objects in append-only pack files instead of one file per object.
+ * <p>
+ * Each pack consists of files sharing the same base name:
+ * <ul>
+ * <li><code>*.pack</code> contains the raw content of all objects in the pack, one after another.
+ * <li><code>*.idx</code> contains the sorted list of {@link ObjectId}s in the pack, along with offset and length of the
+ * content in the pack. The index is memory-mapped (where supported) and looked up using binary search.
+ * <li><code>*.del</code> (optional) is an append-only list of {@link ObjectId}s which have been removed from the pack.
+ * </ul>
+ * Packs are never modified once written, and only become visible once their index is in place. Removed objects are physically
+ * dropped when the database is compacted.
+ * <p>
+ * The {@link PackDatabase} is not used on its own, but by the {@link ObjectDatabase} alongside the loose object layout. All
+ * modifications are expected to happen inside the {@link ObjectDatabase}'s lock.
+ */
+class PackDatabase {
+
+    private static final Logger log = LoggerFactory.getLogger(PackDatabase.class);
+
+    private static final String PACK_SUFFIX = ".pack";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String DELETED_SUFFIX = ".del";
+
+    private static final int INDEX_MAGIC = 0x42484958; // 'BHIX'
+    private static final int INDEX_VERSION = 1;
+    private static final int HEADER_SIZE = 12; // magic, version, count
+    private static final int ID_SIZE = ObjectId.RAW_LENGTH;
+    private static final int ENTRY_SIZE = ID_SIZE + 8 + 8; // id, offset, length
+
+    /** How often opening a packed object is attempted in case its pack is removed by a concurrent compaction */
+    private static final int MAX_OPEN_ATTEMPTS = 3;
+
+    private final Path root;
+
+    private volatile List<Pack> packs = Collections.emptyList();
+    private FileTime lastModified;
+
+    /**
+     * @param root the directory holding the packs. Does not need to exist yet.
+     */
+    PackDatabase(Path root) {
+        this.root = root;
+        refreshIfModified();
+    }
+
+    /**
+     * @return whether the given {@link ObjectId} is contained in any pack.
+     */
+    boolean hasObject(ObjectId id) {
+        return find(id) != null;
+    }
+
+    /**
+     * @return an {@link InputStream} to the packed content of the given {@link ObjectId}, or <code>null</code> if the object
+     *         is not packed.
+     */
+    InputStream getStream(ObjectId id) throws IOException {
+        for (int attempt = 0;; ++attempt) {
+            Location loc = find(id);
+            if (loc == null) {
+                return null;
+            }
+            try {
+                return loc.pack.open(loc.offset, loc.length);
+            } catch (NoSuchFileException e) {
+                // the pack has been compacted concurrently, the object is in another pack now (or has been removed).
+                refreshIfModified();
+                if (attempt >= MAX_OPEN_ATTEMPTS - 1 || packs.contains(loc.pack)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the size of the given object, or <code>-1</code> if the object is not packed.
+     */
+    long getObjectSize(ObjectId id) {
+        Location loc = find(id);
+        if (loc == null) {
+            return -1;
+        }
+        return loc.length;
+    }
+
+    /**
+     * Adds all {@link ObjectId}s contained in any pack to the given target.
+     */
+    void addAllObjects(Collection<ObjectId> target) {
+        for (Pack pack : packs) {
+            for (int i = 0; i < pack.count; ++i) {
+                ObjectId id = pack.idAt(i);
+                if (!pack.deleted.contains(id)) {
+                    target.add(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the removal of the given object in all packs containing it.
+     */
+    void removeObject(ObjectId id) throws IOException {
+        for (Pack pack : packs) {
+            if (pack.indexOf(id) >= 0 && !pack.deleted.contains(id)) {
+                pack.markDeleted(id);
+            }
+        }
+    }
+
+    /**
+     * Re-reads the list of existing packs in case the pack directory has been modified since it was last read, e.g. by another
+     * process. Objects removed from existing packs by another process are picked up as well.
+     *
+     * @return whether the list of packs changed.
+     */
+    synchronized boolean refreshIfModified() {
+        try {
+            FileTime current = Files.getLastModifiedTime(root);
+            if (current.equals(lastModified)) {
+                // appending to a deletion list does not modify the directory.
+                for (Pack pack : packs) {
+                    pack.loadDeleted();
+                }
+                return false;
+            }
+
+            SortedMap<String, Pack> existing = new TreeMap<>();
+            packs.forEach(p -> existing.put(p.name, p));
+
+            List<Pack> result = new ArrayList<>();
+            try (DirectoryStream<Path> idxs = Files.newDirectoryStream(root, "*" + INDEX_SUFFIX)) {
+                for (Path idx : idxs) {
+                    String name = baseName(idx);
+                    Pack known = existing.get(name);
+                    if (known != null) {
+                        known.loadDeleted();
+                        result.add(known);
+                    } else {
+                        result.add(Pack.open(root, name));
+                    }
+                }
+            }
+
+            lastModified = current;
+            packs = Collections.unmodifiableList(result);
+            return true;
+        } catch (NoSuchFileException e) {
+            // no packs (yet).
+            return false;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read packs from " + root, e);
+        }
+    }
+
+    /**
+     * Writes a new pack containing the given loose objects.
+     * <p>
+     * If compacting, all existing packs are merged into the new pack as well, dropping any removed objects on the way.
+     * Otherwise existing packs are kept as they are.
+     * <p>
+     * The new pack is flushed to disc before any existing pack is removed. The caller is responsible for removing the given
+     * loose objects once they have been packed.
+     *
+     * @param tmp directory to write temporary files to.
+     * @param loose the loose objects to pack.
+     * @param looseOpener opens loose objects for reading.
+     * @param compact whether to merge all existing packs into the new one.
+     * @param activity the {@link Activity} to report progress to.
+     * @return the number of objects written to the new pack.
+     */
+    synchronized long repack(Path tmp, SortedSet<ObjectId> loose, LooseObjectOpener looseOpener, boolean compact,
+            Activity activity) throws IOException {
+        refreshIfModified();
+
+        List<Pack> old = compact ? packs : Collections.emptyList();
+        SortedMap<ObjectId, Location> packed = new TreeMap<>();
+        for (Pack pack : old) {
+            for (int i = 0; i < pack.count; ++i) {
+                ObjectId id = pack.idAt(i);
+                if (!pack.deleted.contains(id)) {
+                    packed.putIfAbsent(id, new Location(pack, pack.offsetAt(i), pack.lengthAt(i)));
+                }
+            }
+        }
+
+        SortedSet<ObjectId> all = new TreeSet<>(packed.keySet());
+        all.addAll(loose);
+
+        List<Pack> result = new ArrayList<>(compact ? Collections.emptyList() : packs);
+        if (!all.isEmpty()) {
+            result.add(writePack(tmp, all, packed, looseOpener, activity));
+        }
+        packs = Collections.unmodifiableList(result);
+
+        for (Pack pack : old) {
+            pack.delete();
+        }
+
+        lastModified = Files.getLastModifiedTime(root);
+        return all.size();
+    }
+
+    private Pack writePack(Path tmp, SortedSet<ObjectId> all, SortedMap<ObjectId, Location> packed,
+            LooseObjectOpener looseOpener, Activity activity) throws IOException {
+        PathHelper.mkdirs(root);
+        PathHelper.mkdirs(tmp);
+
+        String name = "pack-" + UuidHelper.randomId();
+        Path tmpPack = tmp.resolve(name + PACK_SUFFIX);
+        Path tmpIndex = tmp.resolve(name + INDEX_SUFFIX);
+
+        try {
+            ByteBuffer entries = ByteBuffer.allocate(all.size() * ENTRY_SIZE);
+            try (FileChannel channel = FileChannel.open(tmpPack, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                OutputStream os = new BufferedOutputStream(Channels.newOutputStream(channel));
+                long offset = 0;
+                for (ObjectId id : all) {
+                    Location loc = packed.get(id);
+                    long length;
+                    try (InputStream is = loc != null ? loc.pack.open(loc.offset, loc.length) : looseOpener.open(id)) {
+                        length = is.transferTo(os);
+                    }
+                    int entry = entries.position();
+                    id.writeTo(entries, entry);
+                    entries.position(entry + ID_SIZE).putLong(offset).putLong(length);
+                    offset += length;
+                    activity.workAndCancelIfRequested(1);
+                }
+                os.flush();
+                channel.force(true);
+            }
+
+            try (FileChannel channel = FileChannel.open(tmpIndex, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                os.writeInt(INDEX_MAGIC);
+                os.writeInt(INDEX_VERSION);
+                os.writeInt(all.size());
+                os.write(entries.array());
+                os.flush();
+                channel.force(true);
+            }
+
+            // the index is moved last - a pack without index is not visible.
+            Files.move(tmpPack, root.resolve(name + PACK_SUFFIX));
+            Files.move(tmpIndex, root.resolve(name + INDEX_SUFFIX));
+
+            // the sources of the pack (loose objects, old packs) are removed once this returns.
+            syncDirectory(root);
+        } finally {
+            Files.deleteIfExists(tmpPack);
+            Files.deleteIfExists(tmpIndex);
+        }
+
+        return Pack.open(root, name);
+    }
+
+    /**
+     * Flushes the given directory's entries to disc, so that files moved into it survive a crash.
+     */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on all platforms (e.g. Windows), which flush directory entries on their own.
+            log.debug("Cannot sync directory {}", dir, e);
+        }
+    }
+
+    private Location find(ObjectId id) {
+        List<Pack> current = packs;
+        if (current.isEmpty()) {
+            return null;
+        }
+
+        for (Pack pack : current) {
+            int index = pack.indexOf(id);
+            if (index >= 0 && !pack.deleted.contains(id)) {
+                return new Location(pack, pack.offsetAt(index), pack.lengthAt(index));
+            }
+        }
+        return null;
+    }
+
+    private static String baseName(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.lastIndexOf('.'));
+    }
+
+    /**
+     * Opens a loose object for reading.
+     */
+    @FunctionalInterface
+    interface LooseObjectOpener {
+
+        public InputStream open(ObjectId id) throws IOException;
+    }
+
+    /**
+     * The location of an object's content in a certain pack.
+     */
+    private static final class Location {
+
+        private final Pack pack;
+        private final long offset;
+        private final long length;
+
+        private Location(Pack pack, long offset, long length) {
+            this.pack = pack;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A single pack along with its (memory-mapped) index.
+     */
+    private static final class Pack {
+
+        private final String name;
+        private final Path packFile;
+        private final Path indexFile;
+        private final Path deletedFile;
+        private final ByteBuffer index;
+        private final int count;
+        private final Set<ObjectId> deleted = ConcurrentHashMap.newKeySet();
+
+        /** The amount of bytes of the deletion list which have been loaded into {@link #deleted} */
+        private long deletedLoaded;
+
+        private Pack(Path root, String name, ByteBuffer index) {
+            this.name = name;
+            this.packFile = root.resolve(name + PACK_SUFFIX);
+            this.indexFile = root.resolve(name + INDEX_SUFFIX);
+            this.deletedFile = root.resolve(name + DELETED_SUFFIX);
+            this.index = index;
+
+            if (index.getInt(0) != INDEX_MAGIC || index.getInt(4) != INDEX_VERSION) {
+                throw new IllegalStateException("Unsupported pack index: " + indexFile);
+            }
+            this.count = index.getInt(8);
+            if (index.capacity() < HEADER_SIZE + (long) count * ENTRY_SIZE) {
+                throw new IllegalStateException("Truncated pack index: " + indexFile);
+            }
+        }
+
+        static Pack open(Path root, String name) throws IOException {
+            Path indexFile = root.resolve(name + INDEX_SUFFIX);
+            ByteBuffer buffer;
+            try (FileChannel fc = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+                buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            } catch (UnsupportedOperationException e) {
+                // e.g. ZIP file system, which cannot map files.
+                buffer = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+            }
+
+            Pack pack = new Pack(root, name, buffer);
+            pack.loadDeleted();
+            return pack;
+        }
+
+        /**
+         * Loads entries appended to the deletion list since it was last loaded, e.g. by another process.
+         */
+        void loadDeleted() throws IOException {
+            long size;
+            try {
+                size = Files.size(deletedFile);
+            } catch (NoSuchFileException e) {
+                return;
+            }
+            if (size <= deletedLoaded) {
+                return;
+            }
+
+            ByteBuffer raw = ByteBuffer.wrap(Files.readAllBytes(deletedFile));
+            int i = (int) deletedLoaded;
+            for (; i + ID_SIZE <= raw.capacity(); i += ID_SIZE) {
+                deleted.add(ObjectId.readFrom(raw, i));
+            }
+            deletedLoaded = i;
+        }
+
+        /**
+         * @return the index of the given id in the pack index, or a negative value if not contained.
+         */
+        int indexOf(ObjectId id) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = id.compareTo(index, HEADER_SIZE + mid * ENTRY_SIZE);
+                if (cmp > 0) {
+                    low = mid + 1;
+                } else if (cmp < 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        ObjectId idAt(int entry) {
+            return ObjectId.readFrom(index, HEADER_SIZE + entry * ENTRY_SIZE);
+        }
+
+        long offsetAt(int entry) {
+            return index.getLong(HEADER_SIZE + entry * ENTRY_SIZE + ID_SIZE);
+        }
+
+        long lengthAt(int entry) {
+            return index.getLong(HEADER_SIZE + entry * ENTRY_SIZE + ID_SIZE + 8);
+        }
+
+        InputStream open(long offset, long length) throws IOException {
+            SeekableByteChannel channel = Files.newByteChannel(packFile, StandardOpenOption.READ);
+            try {
+                channel.position(offset);
+            } catch (UnsupportedOperationException e) {
+                // not all file systems support positioning.
+                channel.close();
+                InputStream is = Files.newInputStream(packFile);
+                try {
+                    ByteStreams.skipFully(is, offset);
+                } catch (Throwable t) {
+                    is.close();
+                    throw t;
+                }
+                return ByteStreams.limit(is, length);
+            } catch (Throwable t) {
+                channel.close();
+                throw t;
+            }
+            return ByteStreams.limit(Channels.newInputStream(channel), length);
+        }
+
+        void markDeleted(ObjectId id) throws IOException {
+            ByteBuffer raw = ByteBuffer.allocate(ID_SIZE);
+            id.writeTo(raw, 0);
+            Files.write(deletedFile, raw.array(), StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+            deleted.add(id);
+        }
+
+        void delete() {
+            try {
+                // index first - as long as the index exists, the pack and its deletion list must be kept.
+                Files.deleteIfExists(indexFile);
+                Files.deleteIfExists(packFile);
+                Files.deleteIfExists(deletedFile);
+            } catch (IOException e) {
+                log.warn("Cannot remove compacted pack {}", name, e);
+            }
+        }
+    }
+
+}
@@ -20,6 +20,7 @@ public class ExportOperation extends BHive.Operation<Manifest.Key> {
     private Manifest.Key manifest;
     private Path target;
     private ReferenceHandler refHandler;
+    private boolean link;
 
     @Override
     public Manifest.Key call() throws Exception {
@@ -32,7 +33,7 @@ public class ExportOperation extends BHive.Operation<Manifest.Key> {
         }
 
         Manifest mf = getManifestDatabase().getManifest(manifest);
-        getObjectManager().exportTree(mf.getRoot(), target, refHandler);
+        getObjectManager().exportTree(mf.getRoot(), target, refHandler, link);
 
         return manifest;
     }
@@ -61,4 +62,13 @@ public class ExportOperation extends BHive.Operation<Manifest.Key> {
         return this;
     }
 
+    /**
+     * Set whether files should be hard-linked from the {@link BHive} instead of copied where possible. Linked files share their
+     * content with the {@link BHive}, so this may only be used for targets which are never modified.
+     */
+    public ExportOperation setLinkObjects(boolean link) {
+        this.link = link;
+        return this;
+    }
+
 }
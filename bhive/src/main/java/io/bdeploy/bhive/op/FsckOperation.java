@@ -9,6 +9,7 @@ import io.bdeploy.bhive.BHive;
 import io.bdeploy.bhive.audit.AuditParameterExtractor.AuditStrategy;
 import io.bdeploy.bhive.audit.AuditParameterExtractor.AuditWith;
 import io.bdeploy.bhive.model.Manifest;
+import io.bdeploy.bhive.objects.ObjectDatabase;
 import io.bdeploy.bhive.objects.view.ElementView;
 import io.bdeploy.common.ActivityReporter.Activity;
 
@@ -55,6 +56,11 @@ public class FsckOperation extends BHive.Operation<Set<ElementView>> {
             // scan and re-hash all objects...
             problematic.addAll(execute(objCheck));
 
+            if (repair) {
+                // broken objects have been removed, so are their classifications.
+                getObjectManager().db(ObjectDatabase::compactClassifications);
+            }
+
             return problematic;
         } finally {
             getObjectManager().invalidateCaches();
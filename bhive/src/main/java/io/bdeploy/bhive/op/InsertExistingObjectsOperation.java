@@ -41,6 +41,9 @@ public class InsertExistingObjectsOperation extends BHive.TransactedOperation<Lo
 
         Activity inserting = getActivityReporter().start("Inserting Objects", objects.size());
 
+        // once for all objects, each object is answered from memory. adding an object checks the disc anyway.
+        getObjectManager().db(x -> x.checkExternalModification());
+
         try {
             List<Future<?>> inserts = new ArrayList<>();
             for (ObjectId obj : objects) {
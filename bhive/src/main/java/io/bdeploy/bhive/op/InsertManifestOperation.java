@@ -2,6 +2,8 @@ package io.bdeploy.bhive.op;
 
 import static io.bdeploy.common.util.RuntimeAssert.assertFalse;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -32,12 +34,18 @@ public class InsertManifestOperation extends BHive.Operation<Long> {
         assertFalse(manifests.isEmpty(), "Nothing to insert");
 
         try (Activity activity = getActivityReporter().start("Inserting Manifests", -1)) {
+            List<Manifest> missing = new ArrayList<>();
             for (Map.Entry<Manifest.Key, Manifest> entry : manifests.entrySet()) {
                 if (getManifestDatabase().hasManifest(entry.getValue().getKey())) {
                     continue;
                 }
-                getManifestDatabase().addManifest(entry.getValue());
-                activity.workAndCancelIfRequested(1);
+                missing.add(entry.getValue());
+            }
+
+            // all at once to lock the database only once.
+            if (!missing.isEmpty()) {
+                getManifestDatabase().addManifests(missing);
+                activity.workAndCancelIfRequested(missing.size());
             }
         }
 
@@ -24,6 +24,10 @@ public class ObjectExistsOperation extends BHive.Operation<Result> {
     @Override
     public Result call() throws Exception {
         Result result = new Result();
+
+        // once for all objects, each object is answered from memory.
+        getObjectManager().db(x -> x.checkExternalModification());
+
         try (Activity activity = getActivityReporter().start("Looking up Objects", objects.size())) {
             for (ObjectId o : objects) {
                 if (Boolean.TRUE.equals(getObjectManager().db(x -> x.hasObject(o)))) {
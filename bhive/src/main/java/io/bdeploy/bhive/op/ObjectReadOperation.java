@@ -3,6 +3,8 @@ package io.bdeploy.bhive.op;
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Set;
@@ -19,6 +21,7 @@ import io.bdeploy.bhive.model.ObjectId;
 import io.bdeploy.bhive.model.SortManifestsByReferences;
 import io.bdeploy.bhive.objects.view.ElementView;
 import io.bdeploy.bhive.op.remote.TransferStatistics;
+import io.bdeploy.bhive.util.BlockInputStream;
 import io.bdeploy.bhive.util.StorageHelper;
 import io.bdeploy.common.ActivityReporter.Activity;
 import io.bdeploy.common.util.FixedLengthStream;
@@ -38,15 +41,19 @@ public class ObjectReadOperation extends BHive.TransactedOperation<TransferStati
     public TransferStatistics callTransacted() throws Exception {
         TransferStatistics result = new TransferStatistics();
         Instant start = Instant.now();
+        long cpuStart = getCpuTime();
         RuntimeAssert.assertNotNull(input);
         try (CountingInputStream countingIn = new CountingInputStream(input);
                 BufferedInputStream buffIn = new BufferedInputStream(countingIn, ObjectWriteOperation.BUFFER_SIZE * 2);
-                GZIPInputStream zipIn = new GZIPInputStream(buffIn, ObjectWriteOperation.BUFFER_SIZE);
-                DataInputStream dataIn = new DataInputStream(zipIn)) {
+                InputStream zipIn = BlockInputStream.isBlockStream(buffIn) ? new BlockInputStream(buffIn)
+                        : new GZIPInputStream(buffIn, ObjectWriteOperation.BUFFER_SIZE);
+                CountingInputStream rawIn = new CountingInputStream(zipIn);
+                DataInputStream dataIn = new DataInputStream(rawIn)) {
             long totalSize = dataIn.readLong();
 
             String baseActivity = "Receiving";
             ManifestConsistencyCheckOperation checkOp = new ManifestConsistencyCheckOperation();
+            long manifestCount;
             try (Activity activity = getActivityReporter().start(baseActivity, totalSize);
                     ReportingInputStream reportingIn = new ReportingInputStream(dataIn, totalSize, activity, baseActivity)) {
                 SortedSet<ObjectId> objects = new TreeSet<>();
@@ -54,6 +61,7 @@ public class ObjectReadOperation extends BHive.TransactedOperation<TransferStati
 
                 // Read all manifests from the stream
                 long counter = dataIn.readLong();
+                manifestCount = counter;
                 for (int i = 0; i < counter; i++) {
                     long size = dataIn.readLong();
                     Manifest mf = StorageHelper.fromStream(new FixedLengthStream(reportingIn, size), Manifest.class);
@@ -80,13 +88,17 @@ public class ObjectReadOperation extends BHive.TransactedOperation<TransferStati
 
                 result.duration = Duration.between(start, Instant.now()).toMillis();
             }
-            // Check manifests for consistency and remove invalid ones
-            Set<ElementView> damaged = execute(checkOp.setDryRun(false));
-            if (!damaged.isEmpty()) {
-                throw new IllegalStateException(
-                        "Failed to stream all required objects. Removed " + damaged.size() + " missing/damaged elements.");
+            // Check manifests for consistency and remove invalid ones. Streams may also carry objects only.
+            if (manifestCount > 0) {
+                Set<ElementView> damaged = execute(checkOp.setDryRun(false));
+                if (!damaged.isEmpty()) {
+                    throw new IllegalStateException(
+                            "Failed to stream all required objects. Removed " + damaged.size() + " missing/damaged elements.");
+                }
             }
             result.transferSize = countingIn.getCount();
+            result.rawSize = rawIn.getCount();
+            result.cpuTime = (getCpuTime() - cpuStart) / 1_000_000;
         } finally {
             if (result.duration == 0) {
                 // fallback only if no duration has been calculated (aborted, failure, etc.).
@@ -97,6 +109,14 @@ public class ObjectReadOperation extends BHive.TransactedOperation<TransferStati
         return result;
     }
 
+    /**
+     * @return the CPU time used by the current thread in nanoseconds, or 0 if not supported by the JVM.
+     */
+    private static long getCpuTime() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : 0;
+    }
+
     /**
      * The stream to read the objects from. The stream is closed at the end of the operation
      */
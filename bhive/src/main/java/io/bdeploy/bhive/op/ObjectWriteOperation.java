@@ -1,5 +1,6 @@
 package io.bdeploy.bhive.op;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.InputStream;
@@ -21,7 +22,9 @@ import io.bdeploy.bhive.audit.AuditParameterExtractor.AuditWith;
 import io.bdeploy.bhive.model.Manifest;
 import io.bdeploy.bhive.model.Manifest.Key;
 import io.bdeploy.bhive.model.ObjectId;
+import io.bdeploy.bhive.util.BlockOutputStream;
 import io.bdeploy.bhive.util.StorageHelper;
+import io.bdeploy.bhive.util.TransferCodec;
 import io.bdeploy.common.ActivityReporter.Activity;
 import io.bdeploy.common.util.RuntimeAssert;
 import io.bdeploy.common.util.StreamHelper;
@@ -41,6 +44,8 @@ public class ObjectWriteOperation extends BHive.Operation<Long> {
 
     private OutputStream output;
 
+    private TransferCodec codec;
+
     @Override
     public Long call() throws Exception {
         RuntimeAssert.assertNotNull(output);
@@ -62,7 +67,8 @@ public class ObjectWriteOperation extends BHive.Operation<Long> {
 
         try (Activity activity = getActivityReporter().start("Sending", totalSize);
                 CountingOutputStream countingOut = new CountingOutputStream(output);
-                GZIPOutputStream zipOut = new GZIPOutputStream(countingOut, BUFFER_SIZE);
+                OutputStream zipOut = codec == null ? new GZIPOutputStream(countingOut, BUFFER_SIZE)
+                        : new BlockOutputStream(countingOut, codec);
                 BufferedOutputStream buffOut = new BufferedOutputStream(zipOut, BUFFER_SIZE * 2);
                 DataOutputStream dataOut = new DataOutputStream(zipOut)) {
 
@@ -85,7 +91,10 @@ public class ObjectWriteOperation extends BHive.Operation<Long> {
                 long size = entry.getValue();
                 getObjectManager().db(db -> {
                     dataOut.writeLong(size);
-                    try (InputStream input = db.getStream(objectId)) {
+                    try (InputStream input = new BufferedInputStream(db.getStream(objectId), BUFFER_SIZE)) {
+                        if (zipOut instanceof BlockOutputStream) {
+                            ((BlockOutputStream) zipOut).setCompressible(!BlockOutputStream.isCompressedFormat(input));
+                        }
                         StreamHelper.copy(input, dataOut);
                     }
                     return null;
@@ -106,6 +115,15 @@ public class ObjectWriteOperation extends BHive.Operation<Long> {
         return this;
     }
 
+    /**
+     * The codec to compress the stream with. If not set, the whole stream is compressed using GZIP, which is understood by all
+     * readers. Otherwise a {@link BlockOutputStream} is used, which requires the reader to support it.
+     */
+    public ObjectWriteOperation codec(TransferCodec codec) {
+        this.codec = codec;
+        return this;
+    }
+
     /**
      * The {@link ObjectId object} to fetch
      */
@@ -110,6 +110,9 @@ public class PruneOperation extends BHive.Operation<SortedMap<ObjectId, Long>> {
                     current.increment();
                 }
 
+                // classifications of removed objects are no longer needed, drop them within the lock as well.
+                getObjectManager().db(ObjectDatabase::compactClassifications);
+
                 getAuditor().audit(AuditRecord.Builder.fromSystem().setSeverity(Severity.NORMAL)
                         .setWhat(PruneOperation.class.getName()).setMessage("Removed " + result.size() + " Objects ")
                         .addParameter("removed", auditList.toString()).build());
@@ -0,0 +1,33 @@
+package io.bdeploy.bhive.op;
+
+import io.bdeploy.bhive.BHive;
+import io.bdeploy.bhive.objects.ObjectDatabase;
+
+/**
+ * Moves all loose objects in the {@link ObjectDatabase} into a pack file. Optionally compacts all existing packs into a single
+ * new one, dropping objects which have been removed (e.g. by {@link PruneOperation}) in the meantime.
+ * <p>
+ * Returns the number of objects written to the new pack.
+ */
+public class RepackOperation extends BHive.Operation<Long> {
+
+    private boolean compact;
+
+    @Override
+    public Long call() throws Exception {
+        try {
+            return getObjectManager().db(db -> db.repack(compact));
+        } finally {
+            getObjectManager().invalidateCaches();
+        }
+    }
+
+    /**
+     * Whether to merge all existing packs into the new one.
+     */
+    public RepackOperation setCompact(boolean compact) {
+        this.compact = compact;
+        return this;
+    }
+
+}
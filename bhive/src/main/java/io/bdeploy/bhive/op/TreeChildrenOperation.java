@@ -0,0 +1,92 @@
+package io.bdeploy.bhive.op;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import io.bdeploy.bhive.BHive;
+import io.bdeploy.bhive.ReadOnlyOperation;
+import io.bdeploy.bhive.audit.AuditParameterExtractor.AuditStrategy;
+import io.bdeploy.bhive.audit.AuditParameterExtractor.AuditWith;
+import io.bdeploy.bhive.model.Manifest;
+import io.bdeploy.bhive.model.ObjectId;
+import io.bdeploy.bhive.model.Tree;
+import io.bdeploy.bhive.op.TreeChildrenOperation.Result;
+import io.bdeploy.common.ActivityReporter.Activity;
+
+/**
+ * Lists the direct children of the given {@link Tree}s.
+ * <p>
+ * In contrast to {@link ObjectListOperation}, this does not recurse, so it can be used to walk arbitrarily large trees level by
+ * level. Manifest references are resolved to the root {@link Tree} of the referenced {@link Manifest}, which is reported as child
+ * {@link Tree}.
+ */
+@ReadOnlyOperation
+public class TreeChildrenOperation extends BHive.Operation<Result> {
+
+    @AuditWith(AuditStrategy.COLLECTION_SIZE)
+    private final Set<ObjectId> trees = new LinkedHashSet<>();
+
+    @Override
+    public Result call() throws Exception {
+        Result result = new Result();
+        try (Activity activity = getActivityReporter().start("Listing Trees", trees.size())) {
+            for (ObjectId tree : trees) {
+                Tree loaded = execute(new TreeLoadOperation().setTree(tree));
+                for (Map.Entry<Tree.Key, ObjectId> entry : loaded.getChildren().entrySet()) {
+                    switch (entry.getKey().getType()) {
+                        case TREE:
+                            result.trees.add(entry.getValue());
+                            break;
+                        case MANIFEST:
+                            result.objects.add(entry.getValue());
+                            Manifest.Key ref = execute(new ManifestRefLoadOperation().addManifestRef(entry.getValue()))
+                                    .get(entry.getValue());
+                            result.trees.add(execute(new ManifestLoadOperation().setManifest(ref)).getRoot());
+                            break;
+                        default:
+                            result.objects.add(entry.getValue());
+                            break;
+                    }
+                }
+                activity.workAndCancelIfRequested(1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Add a {@link Tree} to list the children of.
+     */
+    public TreeChildrenOperation addTree(ObjectId tree) {
+        trees.add(tree);
+        return this;
+    }
+
+    /**
+     * Add all {@link Tree}s to list the children of.
+     */
+    public TreeChildrenOperation addTrees(Collection<ObjectId> trees) {
+        this.trees.addAll(trees);
+        return this;
+    }
+
+    /**
+     * The direct children of the requested {@link Tree}s.
+     */
+    public static class Result {
+
+        /**
+         * Child {@link Tree}s, including the root {@link Tree}s of referenced {@link Manifest}s.
+         */
+        public Set<ObjectId> trees = new LinkedHashSet<>();
+
+        /**
+         * All other child objects, which are BLOBs and manifest references.
+         */
+        public Set<ObjectId> objects = new LinkedHashSet<>();
+
+    }
+
+}
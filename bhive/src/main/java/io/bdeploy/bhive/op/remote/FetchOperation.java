@@ -8,23 +8,33 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Future;
+
+import com.google.common.collect.Iterables;
 
 import io.bdeploy.bhive.BHive;
 import io.bdeploy.bhive.model.Manifest;
 import io.bdeploy.bhive.model.Manifest.Key;
 import io.bdeploy.bhive.model.ObjectId;
+import io.bdeploy.bhive.model.Tree;
 import io.bdeploy.bhive.op.CopyOperation;
 import io.bdeploy.bhive.op.ObjectExistsOperation;
 import io.bdeploy.bhive.op.ObjectExistsOperation.Result;
 import io.bdeploy.bhive.op.ObjectReadOperation;
+import io.bdeploy.bhive.op.TreeChildrenOperation;
 import io.bdeploy.bhive.remote.RemoteBHive;
 import io.bdeploy.common.ActivityReporter.Activity;
+import io.bdeploy.common.util.FutureHelper;
 import jakarta.ws.rs.core.UriBuilder;
 
 /**
@@ -33,6 +43,9 @@ import jakarta.ws.rs.core.UriBuilder;
  */
 public class FetchOperation extends TransactedRemoteOperation<TransferStatistics, FetchOperation> {
 
+    /** The number of {@link Tree}s to request the children of in a single call */
+    private static final int TREE_BATCH_SIZE = 1000;
+
     private final SortedSet<Manifest.Key> manifests = new TreeSet<>();
     private String hiveName;
 
@@ -68,32 +81,9 @@ public class FetchOperation extends TransactedRemoteOperation<TransferStatistics
                     return stats;
                 }
 
-                // STEP 1: Figure out required trees for the roots to fetch
-                Set<ObjectId> requiredTrees = new LinkedHashSet<>();
-                toFetchRootTrees.forEach(t -> requiredTrees.addAll(rh.getRequiredTrees(t)));
-
-                // STEP 2: Figure out which trees we already have locally.
-                Result treeResult = execute(new ObjectExistsOperation().addAll(requiredTrees));
-
-                // STEP 3: Find objects for all missing objects, filtering trees we have.
-                Set<ObjectId> requiredObjects = new LinkedHashSet<>();
-                if (!treeResult.missing.isEmpty()) {
-                    requiredObjects = rh.getRequiredObjects(treeResult.missing, treeResult.existing);
+                if (!fetchPipelined(rh, toFetchRootTrees, requiredManifests, stats)) {
+                    fetchInventoryFirst(rh, toFetchRootTrees, requiredManifests, stats);
                 }
-
-                // STEP 4: Check which of the required objects we already have
-                Result objectResult = execute(new ObjectExistsOperation().addAll(requiredObjects));
-
-                // STEP 5: Fetch from the remote all required objects and manifests.
-                TransferStatistics fetchStats = fetch(rh, objectResult.missing, requiredManifests);
-
-                // Update statistics with some new knowledge. the fetch call can only know a few numbers,
-                // as for instance the number of trees is irrelevant during actual operation.
-                stats.transferSize = fetchStats.transferSize;
-                stats.sumManifests = fetchStats.sumManifests;
-                stats.sumMissingObjects = fetchStats.sumMissingObjects;
-                stats.sumTrees = requiredTrees.size();
-                stats.sumMissingTrees = treeResult.missing.size();
             }
         } finally {
             stats.duration = Duration.between(start, Instant.now()).toMillis();
@@ -120,6 +110,135 @@ public class FetchOperation extends TransactedRemoteOperation<TransferStatistics
         return manifests;
     }
 
+    /**
+     * Walks the remote trees level by level, requesting the direct children of a batch of missing {@link Tree}s at a time. Objects
+     * which are missing locally are streamed while the next batch is negotiated, split across
+     * {@linkplain #setParallelStreams(int) parallel streams}. Existing {@link Tree}s are considered complete and
+     * are not walked. The missing {@link Tree}s themselves are fetched last, deepest level first, so that a {@link Tree} is never
+     * present locally without its children. Manifests are inserted once everything else is present.
+     * <p>
+     * Apart from the IDs of the missing {@link Tree}s, only a single batch of IDs is held in memory on either side. Existing
+     * {@link Tree}s referenced from multiple places are checked once per batch referencing them.
+     *
+     * @return <code>false</code> in case the remote does not support listing {@link Tree} children.
+     */
+    private boolean fetchPipelined(RemoteBHive rh, Set<ObjectId> rootTrees, Set<Key> requiredManifests, TransferStatistics stats)
+            throws IOException {
+        List<Set<ObjectId>> missingTreesByLevel = new ArrayList<>();
+        Set<ObjectId> level = execute(new ObjectExistsOperation().addAll(rootTrees)).missing;
+
+        // trees referenced multiple times are walked once. existing trees are not remembered, checking them again is cheap.
+        Set<ObjectId> missingTrees = new HashSet<>(level);
+        long examinedTrees = rootTrees.size();
+
+        Future<?> inFlight = null;
+        Set<ObjectId> inFlightObjects = Collections.emptySet();
+        try {
+            while (!level.isEmpty()) {
+                missingTreesByLevel.add(level);
+                Set<ObjectId> nextLevel = new LinkedHashSet<>();
+                for (List<ObjectId> batch : Iterables.partition(level, TREE_BATCH_SIZE)) {
+                    TreeChildrenOperation.Result children;
+                    try {
+                        children = rh.getTreeChildren(new LinkedHashSet<>(batch));
+                    } catch (UnsupportedOperationException e) {
+                        if (missingTreesByLevel.size() == 1) {
+                            return false; // nothing has been transferred yet.
+                        }
+                        throw e;
+                    }
+
+                    Set<ObjectId> newTrees = new LinkedHashSet<>();
+                    for (ObjectId tree : children.trees) {
+                        if (!missingTrees.contains(tree)) {
+                            newTrees.add(tree);
+                        }
+                    }
+                    examinedTrees += newTrees.size();
+                    for (ObjectId tree : execute(new ObjectExistsOperation().addAll(newTrees)).missing) {
+                        missingTrees.add(tree);
+                        nextLevel.add(tree);
+                    }
+
+                    // objects of the previous batch may not have been written yet, but they are on their way.
+                    Set<ObjectId> missingObjects = execute(new ObjectExistsOperation().addAll(children.objects)).missing;
+                    missingObjects.removeAll(inFlightObjects);
+
+                    await(inFlight);
+                    inFlight = null;
+                    inFlightObjects = missingObjects;
+                    if (!missingObjects.isEmpty()) {
+                        inFlight = submitFileOperation(() -> {
+                            try {
+                                ShardedTransfer.add(stats, ShardedTransfer.transfer(missingObjects, getParallelStreams(),
+                                        this::getMissing, shard -> fetch(rh, shard, Collections.emptySet())));
+                            } catch (IOException e) {
+                                throw new IllegalStateException("Cannot fetch objects", e);
+                            }
+                        });
+                    }
+                }
+                level = nextLevel;
+            }
+            await(inFlight);
+            inFlight = null;
+        } finally {
+            if (inFlight != null) {
+                inFlight.cancel(true);
+            }
+        }
+
+        for (int i = missingTreesByLevel.size() - 1; i >= 0; --i) {
+            Set<ObjectId> trees = missingTreesByLevel.get(i);
+            ShardedTransfer.add(stats, ShardedTransfer.transfer(trees, getParallelStreams(), this::getMissing,
+                    shard -> fetch(rh, shard, Collections.emptySet())));
+            stats.sumMissingTrees += trees.size();
+        }
+        ShardedTransfer.add(stats, fetch(rh, Collections.emptySet(), requiredManifests));
+        stats.sumTrees = examinedTrees;
+        return true;
+    }
+
+    /**
+     * Fetches by first computing the full inventory of required objects, for remotes which do not support listing {@link Tree}
+     * children.
+     */
+    private void fetchInventoryFirst(RemoteBHive rh, Set<ObjectId> rootTrees, Set<Key> requiredManifests,
+            TransferStatistics stats) throws IOException {
+        // STEP 1: Figure out required trees for the roots to fetch
+        Set<ObjectId> requiredTrees = new LinkedHashSet<>();
+        rootTrees.forEach(t -> requiredTrees.addAll(rh.getRequiredTrees(t)));
+
+        // STEP 2: Figure out which trees we already have locally.
+        Result treeResult = execute(new ObjectExistsOperation().addAll(requiredTrees));
+
+        // STEP 3: Find objects for all missing objects, filtering trees we have.
+        Set<ObjectId> requiredObjects = new LinkedHashSet<>();
+        if (!treeResult.missing.isEmpty()) {
+            requiredObjects = rh.getRequiredObjects(treeResult.missing, treeResult.existing);
+        }
+
+        // STEP 4: Check which of the required objects we already have
+        Result objectResult = execute(new ObjectExistsOperation().addAll(requiredObjects));
+
+        // STEP 5: Fetch from the remote all required objects and manifests.
+        ShardedTransfer.add(stats, fetch(rh, objectResult.missing, requiredManifests));
+
+        // the fetch call can only know a few numbers, as for instance the number of trees is irrelevant during actual operation.
+        stats.sumTrees = requiredTrees.size();
+        stats.sumMissingTrees = treeResult.missing.size();
+    }
+
+    private Set<ObjectId> getMissing(Set<ObjectId> objects) {
+        return execute(new ObjectExistsOperation().addAll(objects)).missing;
+    }
+
+    private static void await(Future<?> future) {
+        if (future != null) {
+            FutureHelper.awaitAll(Collections.singletonList(future));
+        }
+    }
+
     private TransferStatistics fetch(RemoteBHive rh, Set<ObjectId> objects, Set<Key> manifests) throws IOException {
         try {
             return fetchAsStream(rh, objects, manifests);
@@ -140,7 +259,7 @@ public class FetchOperation extends TransactedRemoteOperation<TransferStatistics
     }
 
     private TransferStatistics fetchAsStream(RemoteBHive rh, Set<ObjectId> objects, Set<Key> manifests) {
-        InputStream stream = rh.fetchAsStream(objects, manifests);
+        InputStream stream = rh.fetchAsStream(objects, manifests, getCodec());
         return execute(new ObjectReadOperation().stream(stream));
     }
 
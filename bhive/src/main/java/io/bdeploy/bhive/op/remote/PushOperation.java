@@ -3,6 +3,7 @@ package io.bdeploy.bhive.op.remote;
 import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
@@ -10,6 +11,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -17,11 +19,15 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import io.bdeploy.bhive.BHive;
 import io.bdeploy.bhive.ReadOnlyOperation;
 import io.bdeploy.bhive.model.Manifest;
@@ -38,6 +44,7 @@ import io.bdeploy.bhive.op.ManifestRefScanOperation;
 import io.bdeploy.bhive.op.ObjectWriteOperation;
 import io.bdeploy.bhive.op.ScanOperation;
 import io.bdeploy.bhive.remote.RemoteBHive;
+import io.bdeploy.bhive.util.TransferCodec;
 import io.bdeploy.common.ActivityReporter.Activity;
 import jakarta.ws.rs.core.UriBuilder;
 
@@ -50,6 +57,13 @@ public class PushOperation extends RemoteOperation<TransferStatistics, PushOpera
 
     private static final Logger log = LoggerFactory.getLogger(PushOperation.class);
 
+    /** How often the stream carrying the manifests is attempted */
+    private static final int MAX_MANIFEST_ATTEMPTS = 3;
+
+    /** Caches whether a remote supports parallel and block compressed streams, see {@link #isCurrentStreamSupported} */
+    private static final Cache<URI, Boolean> streamSupport = CacheBuilder.newBuilder().maximumSize(100)
+            .expireAfterWrite(5, TimeUnit.MINUTES).build();
+
     private final Set<Manifest.Key> manifests = new LinkedHashSet<>();
     private String hiveName;
 
@@ -101,13 +115,16 @@ public class PushOperation extends RemoteOperation<TransferStatistics, PushOpera
                 Set<ObjectId> missingObjects = rh.getMissingObjects(requiredObjects);
 
                 // STEP 6: copy objects and manifests
-                TransferStatistics pushStats = push(rh, missingObjects, allManifests);
+                List<ObjectId> treeOrder = missingTreeViews.stream().map(TreeView::getElementId).collect(Collectors.toList());
+                TransferStatistics pushStats = push(rh, missingObjects, treeOrder, allManifests);
 
                 // Update statistics with some new knowledge.
                 stats.sumTrees = allTrees.size();
                 stats.sumManifests = allManifests.size();
                 stats.sumMissingTrees = missingTrees.size();
                 stats.transferSize = pushStats.transferSize;
+                stats.rawSize = pushStats.rawSize;
+                stats.cpuTime = pushStats.cpuTime;
                 stats.sumMissingObjects = missingObjects.size();
             }
         } finally {
@@ -168,9 +185,77 @@ public class PushOperation extends RemoteOperation<TransferStatistics, PushOpera
         return this;
     }
 
-    private TransferStatistics push(RemoteBHive rh, Set<ObjectId> objects, Set<Key> manifests) throws IOException {
+    /**
+     * Pushes the given objects using parallel streams and the configured codec if the remote supports it. All content objects are
+     * pushed first. Broken streams are resumed with the objects the remote did not receive yet.
+     * <p>
+     * The remote commits each stream in a transaction of its own, so objects of finished streams are not protected from a
+     * concurrent prune on the remote until the manifests referencing them arrive. Thus the manifests are pushed in a single
+     * stream along with the trees and all objects which the remote is missing at that point. The remote checks the manifests
+     * for consistency in the same transaction, so the push is retried in the unlikely case that objects have been pruned while
+     * the last stream was transferred.
+     *
+     * @param trees the missing trees, leaves first followed by their parents.
+     */
+    private TransferStatistics push(RemoteBHive rh, Set<ObjectId> objects, List<ObjectId> trees, Set<Key> manifests)
+            throws IOException {
+        Set<ObjectId> content = new LinkedHashSet<>(objects);
+        content.removeAll(new HashSet<>(trees));
+
+        // trees are pushed after their content, leaves first, and in a single stream to keep their order.
+        Set<ObjectId> ordered = new LinkedHashSet<>(content);
+        trees.stream().filter(objects::contains).forEach(ordered::add);
+
+        if (!isCurrentStreamSupported(rh)) {
+            return push(rh, ordered, manifests, null);
+        }
+
+        TransferStatistics result = new TransferStatistics();
+        ShardedTransfer.add(result, ShardedTransfer.transfer(content, getParallelStreams(), rh::getMissingObjects,
+                shard -> pushAsStream(rh, shard, Collections.emptySet(), getCodec())));
+        for (int attempt = 1;; ++attempt) {
+            Set<ObjectId> missing = rh.getMissingObjects(ordered);
+            Set<ObjectId> last = ordered.stream().filter(missing::contains).collect(Collectors.toCollection(LinkedHashSet::new));
+            try {
+                ShardedTransfer.add(result, pushAsStream(rh, last, manifests, getCodec()));
+                return result;
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_MANIFEST_ATTEMPTS || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                log.warn("Pushing {} manifests failed, retrying with all objects still missing on the remote: {}",
+                        manifests.size(), e.toString());
+            }
+        }
+    }
+
+    /**
+     * Remotes which support listing tree children also accept streams which contain no manifests, as well as block compressed
+     * streams. The result is cached per remote, as it only changes when the remote is updated.
+     */
+    private boolean isCurrentStreamSupported(RemoteBHive rh) {
+        URI uri = getRemote().getUri();
+        Boolean cached = streamSupport.getIfPresent(uri);
+        if (cached != null) {
+            return cached;
+        }
+
+        boolean supported;
+        try {
+            rh.getTreeChildren(Collections.emptySet());
+            supported = true;
+        } catch (UnsupportedOperationException e) {
+            log.debug("Parallel and block compressed streams not supported by target server", e);
+            supported = false;
+        }
+        streamSupport.put(uri, supported);
+        return supported;
+    }
+
+    private TransferStatistics push(RemoteBHive rh, Set<ObjectId> objects, Set<Key> manifests, TransferCodec codec)
+            throws IOException {
         try {
-            return pushAsStream(rh, objects, manifests);
+            return pushAsStream(rh, objects, manifests, codec);
         } catch (UnsupportedOperationException ex) {
             log.debug("Stream pushing not supported by target server", ex);
             return pushAsZip(rh, objects, manifests);
@@ -199,14 +284,14 @@ public class PushOperation extends RemoteOperation<TransferStatistics, PushOpera
         }
     }
 
-    private TransferStatistics pushAsStream(RemoteBHive rh, Set<ObjectId> objects, Set<Key> manifests) {
+    private TransferStatistics pushAsStream(RemoteBHive rh, Set<ObjectId> objects, Set<Key> manifests, TransferCodec codec) {
         PipedInputStream input = new PipedInputStream();
         CompletableFuture<Void> barrier = new CompletableFuture<>();
 
         Thread thread = new Thread(() -> {
             try (PipedOutputStream output = new PipedOutputStream(input)) {
                 barrier.complete(null);
-                execute(new ObjectWriteOperation().stream(output).manifests(manifests).objects(objects));
+                execute(new ObjectWriteOperation().stream(output).manifests(manifests).objects(objects).codec(codec));
             } catch (Exception e) {
                 log.warn("Cannot fully push content via stream", e);
             }
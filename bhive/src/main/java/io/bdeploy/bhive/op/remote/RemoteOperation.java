@@ -1,12 +1,15 @@
 package io.bdeploy.bhive.op.remote;
 
 import io.bdeploy.bhive.BHive;
+import io.bdeploy.bhive.util.TransferCodec;
 import io.bdeploy.common.security.RemoteService;
 
 @SuppressWarnings("unchecked")
 public abstract class RemoteOperation<T, X extends RemoteOperation<T, X>> extends BHive.Operation<T> {
 
     private RemoteService remote;
+    private int parallelStreams = ShardedTransfer.DEFAULT_STREAMS;
+    private TransferCodec codec = TransferCodec.FAST;
 
     public X setRemote(RemoteService def) {
         this.remote = def;
@@ -17,4 +20,28 @@ public abstract class RemoteOperation<T, X extends RemoteOperation<T, X>> extend
         return remote;
     }
 
+    /**
+     * Sets the maximum number of parallel streams used to transfer objects from or to the remote.
+     */
+    public X setParallelStreams(int streams) {
+        this.parallelStreams = streams;
+        return (X) this;
+    }
+
+    protected int getParallelStreams() {
+        return parallelStreams;
+    }
+
+    /**
+     * Sets the codec used to compress streamed objects. Remotes which do not support the codec fall back to GZIP.
+     */
+    public X setCodec(TransferCodec codec) {
+        this.codec = codec;
+        return (X) this;
+    }
+
+    protected TransferCodec getCodec() {
+        return codec;
+    }
+
 }
@@ -0,0 +1,179 @@
+package io.bdeploy.bhive.op.remote;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
+
+import io.bdeploy.bhive.model.ObjectId;
+import io.bdeploy.common.ActivityReporter.ActivityCancelledException;
+import io.bdeploy.common.util.FutureHelper;
+import io.bdeploy.common.util.NamedDaemonThreadFactory;
+
+/**
+ * Splits a set of objects into shards which are transferred using parallel streams. Each stream is compressed, decompressed and
+ * inserted independently, so a transfer is neither limited to a single connection nor to a single CPU on either side.
+ * <p>
+ * The receiver commits each object as soon as it has been received completely. If a stream breaks, the receiver is asked which
+ * objects of the shard it is still missing, and the shard is resumed with only those objects.
+ */
+class ShardedTransfer {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedTransfer.class);
+
+    /** The default number of parallel streams per remote */
+    static final int DEFAULT_STREAMS = 4;
+
+    /** Don't open additional streams for less objects than this */
+    private static final int MIN_OBJECTS_PER_STREAM = 64;
+
+    /** How often a shard is attempted if the receiver does not commit any further objects */
+    private static final int MAX_ATTEMPTS_WITHOUT_PROGRESS = 3;
+
+    private static final AtomicInteger streamNum = new AtomicInteger(0);
+
+    /**
+     * Transfers a single shard of objects.
+     */
+    @FunctionalInterface
+    interface Shard {
+
+        TransferStatistics transfer(Set<ObjectId> objects) throws IOException;
+    }
+
+    /**
+     * Acknowledges received objects by telling which objects the receiver has not committed yet.
+     */
+    @FunctionalInterface
+    interface Acknowledgement {
+
+        Set<ObjectId> getMissing(Set<ObjectId> objects);
+    }
+
+    private ShardedTransfer() {
+    }
+
+    /**
+     * Transfers the given objects using up to the given amount of parallel streams. Each stream receives a contiguous part of the
+     * objects, keeping their relative order.
+     * <p>
+     * Streams are run on new threads created by the calling thread, so they inherit its transaction.
+     */
+    static TransferStatistics transfer(Set<ObjectId> objects, int streams, Acknowledgement ack, Shard shard)
+            throws IOException {
+        TransferStatistics result = new TransferStatistics();
+        int actualStreams = Math.max(1, Math.min(streams, objects.size() / MIN_OBJECTS_PER_STREAM));
+        if (actualStreams == 1) {
+            if (!objects.isEmpty()) {
+                add(result, transferResumable(objects, ack, shard));
+            }
+            return result;
+        }
+
+        int shardSize = (objects.size() + actualStreams - 1) / actualStreams;
+        ExecutorService executor = Executors.newFixedThreadPool(actualStreams,
+                new NamedDaemonThreadFactory(() -> "Transfer-Stream-" + streamNum.incrementAndGet()));
+        try {
+            List<Future<?>> transfers = new ArrayList<>();
+            for (List<ObjectId> part : Iterables.partition(objects, shardSize)) {
+                Set<ObjectId> shardObjects = new LinkedHashSet<>(part);
+                transfers.add(executor.submit(() -> {
+                    try {
+                        TransferStatistics s = transferResumable(shardObjects, ack, shard);
+                        synchronized (result) {
+                            add(result, s);
+                        }
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Cannot transfer objects", e);
+                    }
+                }));
+            }
+            FutureHelper.awaitAll(transfers);
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * Transfers the given objects, resuming with the objects not yet committed by the receiver in case the transfer fails. Gives
+     * up once a number of attempts in a row failed without any progress.
+     * <p>
+     * The returned statistics cover all attempts. Objects committed by failed attempts are counted as well, but the size of a
+     * broken stream is not known, as only the receiver reports it once a stream is complete.
+     */
+    static TransferStatistics transferResumable(Set<ObjectId> objects, Acknowledgement ack, Shard shard) throws IOException {
+        TransferStatistics result = new TransferStatistics();
+        Set<ObjectId> remaining = objects;
+        int failures = 0;
+        while (true) {
+            try {
+                add(result, shard.transfer(remaining));
+                return result;
+            } catch (IOException | RuntimeException e) {
+                if (Thread.currentThread().isInterrupted()
+                        || Throwables.getCausalChain(e).stream().anyMatch(ActivityCancelledException.class::isInstance)) {
+                    throw e;
+                }
+
+                Set<ObjectId> missing;
+                try {
+                    missing = ack.getMissing(remaining);
+                } catch (RuntimeException ackFailure) {
+                    e.addSuppressed(ackFailure);
+                    throw e;
+                }
+
+                // keep the original order, the acknowledgement might not preserve it.
+                Set<ObjectId> next = new LinkedHashSet<>();
+                for (ObjectId id : remaining) {
+                    if (missing.contains(id)) {
+                        next.add(id);
+                    }
+                }
+
+                if (next.size() < remaining.size()) {
+                    failures = 0;
+                    result.sumMissingObjects += remaining.size() - next.size();
+                }
+                if (++failures >= MAX_ATTEMPTS_WITHOUT_PROGRESS) {
+                    throw e;
+                }
+                if (next.isEmpty()) {
+                    // everything has been committed, only the end of the transfer failed.
+                    return result;
+                }
+
+                log.warn("Transfer of {} objects failed, resuming with {} objects not yet received: {}", remaining.size(),
+                        next.size(), e.toString());
+                if (log.isDebugEnabled()) {
+                    log.debug("Exception", e);
+                }
+                remaining = next;
+            }
+        }
+    }
+
+    /**
+     * Adds the transfer related numbers of a (partial) transfer to the given statistics.
+     */
+    static void add(TransferStatistics stats, TransferStatistics transferred) {
+        stats.transferSize += transferred.transferSize;
+        stats.rawSize += transferred.rawSize;
+        stats.cpuTime += transferred.cpuTime;
+        stats.sumManifests += transferred.sumManifests;
+        stats.sumMissingObjects += transferred.sumMissingObjects;
+    }
+
+}
@@ -19,6 +19,16 @@ public class TransferStatistics {
      */
     public long transferSize;
 
+    /**
+     * Number of bytes that have been transfered before compression
+     */
+    public long rawSize;
+
+    /**
+     * CPU time in milliseconds spent by the receiver to decompress and insert objects
+     */
+    public long cpuTime;
+
     /**
      * Total duration in milliseconds
      */
@@ -32,6 +42,8 @@ public class TransferStatistics {
         result.addField("Number of reused Trees", sumTrees - sumMissingTrees);
         result.addField("Number of Objects", sumMissingObjects);
         result.addField("Transfer size (compr.)", FormatHelper.formatFileSize(transferSize));
+        result.addField("Transfer size (raw)", FormatHelper.formatFileSize(rawSize));
+        result.addField("Receiver CPU time", FormatHelper.formatDuration(cpuTime));
         result.addField("Duration", FormatHelper.formatDuration(duration));
         result.addField("Transfer speed", FormatHelper.formatTransferRate(transferSize, duration));
         return result;
@@ -34,7 +34,9 @@ import io.bdeploy.bhive.op.ObjectReadOperation;
 import io.bdeploy.bhive.op.ObjectWriteOperation;
 import io.bdeploy.bhive.op.PruneOperation;
 import io.bdeploy.bhive.op.ScanOperation;
+import io.bdeploy.bhive.op.TreeChildrenOperation;
 import io.bdeploy.bhive.op.remote.TransferStatistics;
+import io.bdeploy.bhive.util.TransferCodec;
 import io.bdeploy.common.ActivityReporter;
 import io.bdeploy.common.ActivityReporter.Activity;
 import io.bdeploy.common.util.PathHelper;
@@ -81,6 +83,11 @@ public class LocalBHiveAdapter implements RemoteBHive {
         return treeIds;
     }
 
+    @Override
+    public TreeChildrenOperation.Result getTreeChildren(Set<ObjectId> trees) {
+        return hive.execute(new TreeChildrenOperation().addTrees(trees));
+    }
+
     @Override
     public SortedMap<Manifest.Key, ObjectId> getManifestInventory(String... names) {
         SortedSet<Manifest.Key> mfs = new TreeSet<>();
@@ -153,14 +160,14 @@ public class LocalBHiveAdapter implements RemoteBHive {
     }
 
     @Override
-    public InputStream fetchAsStream(Set<ObjectId> objects, Set<Manifest.Key> manifests) {
+    public InputStream fetchAsStream(Set<ObjectId> objects, Set<Manifest.Key> manifests, TransferCodec codec) {
         PipedInputStream input = new PipedInputStream();
         CompletableFuture<Void> barrier = new CompletableFuture<>();
 
         Thread thread = new Thread(() -> {
             try (PipedOutputStream output = new PipedOutputStream(input)) {
                 barrier.complete(null);
-                hive.execute(new ObjectWriteOperation().stream(output).manifests(manifests).objects(objects));
+                hive.execute(new ObjectWriteOperation().stream(output).manifests(manifests).objects(objects).codec(codec));
             } catch (IOException e) {
                 log.warn("Cannot fully send content to fetching client via stream", e);
             }
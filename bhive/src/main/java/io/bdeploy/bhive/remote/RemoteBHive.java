@@ -10,8 +10,11 @@ import io.bdeploy.bhive.model.Manifest;
 import io.bdeploy.bhive.model.Manifest.Key;
 import io.bdeploy.bhive.model.ObjectId;
 import io.bdeploy.bhive.model.Tree;
+import io.bdeploy.bhive.op.ObjectReadOperation;
+import io.bdeploy.bhive.op.TreeChildrenOperation;
 import io.bdeploy.bhive.op.remote.TransferStatistics;
 import io.bdeploy.bhive.remote.jersey.JerseyRemoteBHive;
+import io.bdeploy.bhive.util.TransferCodec;
 import io.bdeploy.common.ActivityReporter;
 import io.bdeploy.common.security.RemoteService;
 
@@ -28,6 +31,9 @@ public interface RemoteBHive extends AutoCloseable {
     /**
      * From the given set, filter all remotely known {@link ObjectId}s and return only {@link ObjectId} which are not yet present
      * on the remote.
+     * <p>
+     * This also acknowledges the objects received by a broken {@link #pushAsStream(InputStream)}, so that the push can be resumed
+     * with the missing objects only.
      */
     public Set<ObjectId> getMissingObjects(Set<ObjectId> all);
 
@@ -61,6 +67,14 @@ public interface RemoteBHive extends AutoCloseable {
      */
     public Set<ObjectId> getRequiredTrees(ObjectId tree);
 
+    /**
+     * Retrieve the direct children of the given {@link Tree}s, split into child {@link Tree}s and other objects.
+     *
+     * @throws UnsupportedOperationException in case the remote does not support listing tree children.
+     * @see TreeChildrenOperation
+     */
+    public TreeChildrenOperation.Result getTreeChildren(Set<ObjectId> trees);
+
     /**
      * Transfer the ZIPed {@link BHive} to the remote and apply all top-level
      * {@link Manifest}s referenced within.
@@ -68,7 +82,8 @@ public interface RemoteBHive extends AutoCloseable {
     public void push(Path zipedHive);
 
     /**
-     * Streams objects directly into the given remote hive.
+     * Streams objects directly into the given remote hive. Each object is committed as soon as it has been received completely,
+     * even if the stream breaks later on.
      */
     public TransferStatistics pushAsStream(InputStream in);
 
@@ -79,8 +94,11 @@ public interface RemoteBHive extends AutoCloseable {
 
     /**
      * Streams the given objects one after each other to the given output stream.
+     *
+     * @param codec the codec to compress the stream with. Remotes which do not support it compress the whole stream using GZIP,
+     *            which is detected by {@link ObjectReadOperation}.
      */
-    public InputStream fetchAsStream(Set<ObjectId> objects, Set<Key> manifests);
+    public InputStream fetchAsStream(Set<ObjectId> objects, Set<Key> manifests, TransferCodec codec);
 
     /**
      * Figures out the type of {@link RemoteBHive} required for the given
@@ -16,7 +16,9 @@ import io.bdeploy.bhive.model.Manifest;
 import io.bdeploy.bhive.model.Manifest.Key;
 import io.bdeploy.bhive.model.ObjectId;
 import io.bdeploy.bhive.model.Tree;
+import io.bdeploy.bhive.op.TreeChildrenOperation;
 import io.bdeploy.bhive.op.remote.TransferStatistics;
+import io.bdeploy.bhive.util.TransferCodec;
 import io.bdeploy.common.security.RequiredPermission;
 import io.bdeploy.common.security.ScopedPermission.Permission;
 import io.bdeploy.jersey.JerseyAuthenticationProvider.WeakTokenAllowed;
@@ -80,6 +82,14 @@ public interface BHiveResource {
     @Path("/tree_trees")
     public Set<ObjectId> getRequiredTrees(ObjectId tree);
 
+    /**
+     * Retrieve the direct children of the given {@link Tree}s.
+     */
+    @POST
+    @WeakTokenAllowed
+    @Path("/tree_children")
+    public TreeChildrenOperation.Result getTreeChildren(Set<ObjectId> trees);
+
     /**
      * Transfer the ZIPed {@link BHive} to the remote and apply all top-level
      * {@link Manifest}s referenced within.
@@ -125,6 +135,9 @@ public interface BHiveResource {
 
         Set<ObjectId> requiredObjects;
         Set<Manifest.Key> manifestsToFetch;
+
+        /** The codec for {@link BHiveResource#fetchAsStream(FetchSpec)}, <code>null</code> for GZIP */
+        TransferCodec codec;
     }
 
     public static class ObjectListSpec {
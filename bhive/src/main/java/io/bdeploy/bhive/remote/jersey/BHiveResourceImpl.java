@@ -12,6 +12,7 @@ import org.slf4j.LoggerFactory;
 import io.bdeploy.bhive.BHive;
 import io.bdeploy.bhive.model.Manifest.Key;
 import io.bdeploy.bhive.model.ObjectId;
+import io.bdeploy.bhive.op.TreeChildrenOperation;
 import io.bdeploy.bhive.op.remote.TransferStatistics;
 import io.bdeploy.bhive.remote.LocalBHiveAdapter;
 import io.bdeploy.common.ActivityReporter;
@@ -57,6 +58,11 @@ public class BHiveResourceImpl implements BHiveResource {
         return wrapper.getRequiredTrees(tree);
     }
 
+    @Override
+    public TreeChildrenOperation.Result getTreeChildren(Set<ObjectId> trees) {
+        return wrapper.getTreeChildren(trees);
+    }
+
     @Override
     public void push(java.nio.file.Path zipedHive) {
         try {
@@ -86,7 +92,7 @@ public class BHiveResourceImpl implements BHiveResource {
 
     @Override
     public InputStream fetchAsStream(FetchSpec spec) {
-        return wrapper.fetchAsStream(spec.requiredObjects, spec.manifestsToFetch);
+        return wrapper.fetchAsStream(spec.requiredObjects, spec.manifestsToFetch, spec.codec);
     }
 
 }
@@ -10,10 +10,12 @@ import jakarta.ws.rs.client.ResponseProcessingException;
 
 import io.bdeploy.bhive.model.Manifest.Key;
 import io.bdeploy.bhive.model.ObjectId;
+import io.bdeploy.bhive.op.TreeChildrenOperation;
 import io.bdeploy.bhive.op.remote.TransferStatistics;
 import io.bdeploy.bhive.remote.RemoteBHive;
 import io.bdeploy.bhive.remote.jersey.BHiveResource.FetchSpec;
 import io.bdeploy.bhive.remote.jersey.BHiveResource.ObjectListSpec;
+import io.bdeploy.bhive.util.TransferCodec;
 import io.bdeploy.common.ActivityReporter;
 import io.bdeploy.common.security.RemoteService;
 import io.bdeploy.jersey.JerseyClientFactory;
@@ -70,6 +72,15 @@ public class JerseyRemoteBHive implements RemoteBHive {
         return client.getRequiredTrees(tree);
     }
 
+    @Override
+    public TreeChildrenOperation.Result getTreeChildren(Set<ObjectId> trees) {
+        try {
+            return client.getTreeChildren(trees);
+        } catch (NotFoundException nfe) {
+            throw new UnsupportedOperationException("Listing tree children not supported", nfe);
+        }
+    }
+
     @Override
     public void push(Path zipedHive) {
         client.push(zipedHive);
@@ -93,11 +104,12 @@ public class JerseyRemoteBHive implements RemoteBHive {
     }
 
     @Override
-    public InputStream fetchAsStream(Set<ObjectId> objects, Set<Key> manifests) {
+    public InputStream fetchAsStream(Set<ObjectId> objects, Set<Key> manifests, TransferCodec codec) {
         try {
             FetchSpec spec = new FetchSpec();
             spec.requiredObjects = objects;
             spec.manifestsToFetch = manifests;
+            spec.codec = codec;
             return client.fetchAsStream(spec);
         } catch (NotFoundException nfe) {
             throw new UnsupportedOperationException("Fetching as stream not supported", nfe);
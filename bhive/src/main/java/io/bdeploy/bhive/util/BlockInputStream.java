@@ -0,0 +1,152 @@
+package io.bdeploy.bhive.util;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads data written by a {@link BlockOutputStream}.
+ */
+public class BlockInputStream extends InputStream {
+
+    private final DataInputStream in;
+    private final TransferCodec codec;
+    private final Inflater inflater = new Inflater();
+    private final byte[] block = new byte[BlockOutputStream.BLOCK_SIZE];
+    private final byte[] compressed = new byte[BlockOutputStream.BLOCK_SIZE];
+
+    private int position;
+    private int count;
+    private boolean eof;
+
+    /**
+     * @param in the stream to read from, positioned at the stream header. Closed when this stream is closed.
+     */
+    public BlockInputStream(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+
+        if (this.in.readInt() != BlockOutputStream.MAGIC) {
+            throw new IOException("Not a block stream");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != BlockOutputStream.VERSION) {
+            throw new IOException("Unsupported block stream version: " + version);
+        }
+        this.codec = TransferCodec.fromId(this.in.readUnsignedByte());
+    }
+
+    /**
+     * Checks whether the given stream starts with the header of a block stream, without consuming any data.
+     *
+     * @param in a stream which supports {@link InputStream#mark(int) marking}.
+     */
+    public static boolean isBlockStream(InputStream in) throws IOException {
+        in.mark(4);
+        try {
+            return new DataInputStream(in).readInt() == BlockOutputStream.MAGIC;
+        } catch (EOFException e) {
+            return false;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * @return the codec the stream has been written with.
+     */
+    public TransferCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == count && !readBlock()) {
+            return -1;
+        }
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == count && !readBlock()) {
+            return -1;
+        }
+        int chunk = Math.min(len, count - position);
+        System.arraycopy(block, position, b, off, chunk);
+        position += chunk;
+        return chunk;
+    }
+
+    @Override
+    public int available() {
+        return count - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    private boolean readBlock() throws IOException {
+        while (!eof) {
+            int type = in.readUnsignedByte();
+            if (type == BlockOutputStream.END) {
+                eof = true;
+                break;
+            }
+
+            int length = in.readInt();
+            if (length < 0 || length > block.length) {
+                throw new IOException("Invalid block length: " + length);
+            }
+            if (type == BlockOutputStream.STORED) {
+                in.readFully(block, 0, length);
+            } else if (type == BlockOutputStream.COMPRESSED) {
+                inflate(length);
+            } else {
+                throw new IOException("Invalid block type: " + type);
+            }
+
+            position = 0;
+            count = length;
+            if (length > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void inflate(int length) throws IOException {
+        int compressedLength = in.readInt();
+        if (compressedLength < 0 || compressedLength > compressed.length) {
+            throw new IOException("Invalid compressed block length: " + compressedLength);
+        }
+        in.readFully(compressed, 0, compressedLength);
+
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int n = inflater.inflate(block, inflated, length - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != length) {
+                throw new IOException("Damaged block, expected " + length + " bytes, got " + inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Damaged block", e);
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+package io.bdeploy.bhive.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses data in independent blocks using a {@link TransferCodec}.
+ * <p>
+ * The stream starts with a header naming the version of the format and the codec. Each block is compressed separately, and
+ * stored as is if compressing it is pointless - either because the writer hinted that the data is already compressed, a quick
+ * entropy check of the block says so, or compression did not save anything.
+ *
+ * @see BlockInputStream
+ */
+public class BlockOutputStream extends OutputStream {
+
+    /** Identifies a block stream, deliberately different from the GZIP magic */
+    static final int MAGIC = 0x42485354; // 'BHST'
+    static final int VERSION = 1;
+
+    static final int BLOCK_SIZE = 64 * 1024;
+    static final int STORED = 0;
+    static final int COMPRESSED = 1;
+    static final int END = 2;
+
+    /** Blocks with more bits of entropy per byte are not worth compressing */
+    private static final double MAX_ENTROPY = 7.5;
+    private static final int ENTROPY_SAMPLE_SIZE = 4096;
+
+    private final DataOutputStream out;
+    private final TransferCodec codec;
+    private final Deflater deflater;
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private final byte[] compressed;
+
+    private int count;
+    private boolean compressible = true;
+    private boolean closed;
+
+    /**
+     * @param out the stream to write to. Closed when this stream is closed.
+     * @param codec the codec to compress blocks with.
+     */
+    public BlockOutputStream(OutputStream out, TransferCodec codec) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.codec = codec;
+        this.deflater = codec == TransferCodec.NONE ? null : new Deflater(codec.getLevel());
+        this.compressed = deflater == null ? null : new byte[BLOCK_SIZE];
+
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+        this.out.writeByte(codec.getId());
+    }
+
+    /**
+     * Checks whether the given stream starts with the signature of a common compressed format, without consuming any data.
+     *
+     * @param in a stream which supports {@link InputStream#mark(int) marking}.
+     */
+    public static boolean isCompressedFormat(InputStream in) throws IOException {
+        byte[] signature = new byte[4];
+        in.mark(signature.length);
+        try {
+            int read = in.readNBytes(signature, 0, signature.length);
+            if (read < signature.length) {
+                return false;
+            }
+        } finally {
+            in.reset();
+        }
+
+        int magic = ((signature[0] & 0xFF) << 24) | ((signature[1] & 0xFF) << 16) | ((signature[2] & 0xFF) << 8)
+                | (signature[3] & 0xFF);
+        switch (magic) {
+            case 0x504B0304: // ZIP, JAR, ...
+            case 0x89504E47: // PNG
+            case 0x377ABCAF: // 7z
+            case 0xFD377A58: // XZ
+            case 0x28B52FFD: // Zstandard
+                return true;
+            default:
+                return (magic >>> 16) == 0x1F8B // GZIP
+                        || (magic >>> 8) == 0xFFD8FF // JPEG
+                        || (magic >>> 8) == 0x425A68; // BZip2
+        }
+    }
+
+    /**
+     * Hints whether the data written next is worth compressing. Data which is known to be compressed already (archives, images,
+     * ...) is stored as is.
+     */
+    public void setCompressible(boolean compressible) throws IOException {
+        if (this.compressible != compressible) {
+            writeBlock();
+            this.compressible = compressible;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == BLOCK_SIZE) {
+            writeBlock();
+        }
+        block[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == BLOCK_SIZE) {
+                writeBlock();
+            }
+            int chunk = Math.min(len, BLOCK_SIZE - count);
+            System.arraycopy(b, off, block, count, chunk);
+            count += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeBlock();
+            out.writeByte(END);
+            out.close();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (count == 0) {
+            return;
+        }
+
+        int compressedLength = compressible && codec != TransferCodec.NONE && !isHighEntropy() ? compress() : -1;
+        if (compressedLength < 0) {
+            out.writeByte(STORED);
+            out.writeInt(count);
+            out.write(block, 0, count);
+        } else {
+            out.writeByte(COMPRESSED);
+            out.writeInt(count);
+            out.writeInt(compressedLength);
+            out.write(compressed, 0, compressedLength);
+        }
+        count = 0;
+    }
+
+    /**
+     * @return the length of the compressed block, or -1 if compressing did not make it smaller.
+     */
+    private int compress() {
+        deflater.reset();
+        deflater.setInput(block, 0, count);
+        deflater.finish();
+
+        int length = 0;
+        int limit = count - 1;
+        while (!deflater.finished() && length < limit) {
+            length += deflater.deflate(compressed, length, limit - length);
+        }
+        return deflater.finished() ? length : -1;
+    }
+
+    /**
+     * Estimates the Shannon entropy of the block from a sample at its start.
+     */
+    private boolean isHighEntropy() {
+        int sample = Math.min(count, ENTROPY_SAMPLE_SIZE);
+        if (sample < 256) {
+            return false;
+        }
+
+        int[] histogram = new int[256];
+        for (int i = 0; i < sample; ++i) {
+            histogram[block[i] & 0xFF]++;
+        }
+
+        double entropy = 0;
+        for (int n : histogram) {
+            if (n > 0) {
+                double p = (double) n / sample;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2) > MAX_ENTROPY;
+    }
+
+}
@@ -0,0 +1,62 @@
+package io.bdeploy.bhive.util;
+
+import java.util.zip.Deflater;
+
+/**
+ * Compression codecs available for streaming objects between {@link io.bdeploy.bhive.BHive}s.
+ *
+ * @see BlockOutputStream
+ */
+public enum TransferCodec {
+
+    /**
+     * No compression at all, for fast links where compression only costs time.
+     */
+    NONE(0, Deflater.NO_COMPRESSION),
+
+    /**
+     * The deflate algorithm with the default level also used by GZIP.
+     */
+    GZIP(1, Deflater.DEFAULT_COMPRESSION),
+
+    /**
+     * The deflate algorithm with the fastest level, which trades compression ratio for CPU time.
+     */
+    FAST(2, Deflater.BEST_SPEED);
+
+    private final int id;
+    private final int level;
+
+    private TransferCodec(int id, int level) {
+        this.id = id;
+        this.level = level;
+    }
+
+    /**
+     * @return the ID of the codec in the stream header.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the {@link Deflater} compression level to use.
+     */
+    int getLevel() {
+        return level;
+    }
+
+    /**
+     * @param id the ID of a codec as written to the stream header.
+     * @return the codec with the given ID.
+     */
+    public static TransferCodec fromId(int id) {
+        for (TransferCodec codec : values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        throw new IllegalStateException("Unsupported transfer codec: " + id);
+    }
+
+}
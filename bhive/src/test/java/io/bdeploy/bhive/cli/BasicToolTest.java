@@ -112,10 +112,11 @@ class BasicToolTest {
         tools.execute(PruneTool.class, hiveArg);
 
         // remaining objects of the simple manifest. 3 files, 3 trees, 1 manifest
-        // plus remaining hive management objects: 1 database lock, 1 manifest lock
+        // plus remaining hive management objects: 1 database lock, 1 manifest lock, 1 object index snapshot,
+        // 1 object classification index
         SkipSubTreeVisitor visitor = new SkipSubTreeVisitor(hiveDir.resolve("logs"));
         Files.walkFileTree(hiveDir, visitor);
-        assertThat(visitor.getFileCount(), is(9L));
+        assertThat(visitor.getFileCount(), is(11L));
     }
 
     @Test
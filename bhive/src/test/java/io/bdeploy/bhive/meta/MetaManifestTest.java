@@ -8,6 +8,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.TreeSet;
 
 import org.junit.jupiter.api.Test;
@@ -22,7 +23,9 @@ import io.bdeploy.bhive.model.Manifest.Key;
 import io.bdeploy.bhive.op.ImportOperation;
 import io.bdeploy.bhive.op.ManifestDeleteOperation;
 import io.bdeploy.bhive.op.ManifestExistsOperation;
+import io.bdeploy.bhive.op.ManifestListOperation;
 import io.bdeploy.common.ContentHelper;
+import io.bdeploy.common.util.Threads;
 
 @ExtendWith(TestHive.class)
 class MetaManifestTest {
@@ -105,4 +108,44 @@ class MetaManifestTest {
 
     }
 
+    @Test
+    void deferredMeta(BHive hive) {
+        Manifest.Key testMf = new Manifest.Key("my/test", "v1");
+        MetaManifest<MyMeta> mm1 = new MetaManifest<>(testMf, true, MyMeta.class);
+        MetaManifest<MyMeta> mm2 = new MetaManifest<>(testMf, false, MyMeta.class);
+
+        for (int i = 0; i < 10; ++i) {
+            MyMeta meta = new MyMeta();
+            meta.value = "value" + i;
+            mm1.writeDeferred(hive, meta);
+            mm2.writeDeferred(hive, meta);
+
+            // pending updates are visible immediately.
+            assertEquals("value" + i, mm1.read(hive).value);
+        }
+        assertEquals("value9", mm2.read(hive).value);
+
+        // updates are coalesced.
+        MetaManifest.flush(hive);
+        assertEquals(Collections.singleton(new Manifest.Key(mm1.getMetaName(), "1")),
+                hive.execute(new ManifestListOperation().setManifestName(mm1.getMetaName())));
+        assertEquals("value9", mm1.read(hive).value);
+        assertEquals("value9", mm2.read(hive).value);
+
+        // a direct write replaces a pending update.
+        MyMeta direct = new MyMeta();
+        direct.value = "direct";
+        mm1.writeDeferred(hive, null);
+        assertNull(mm1.read(hive));
+        mm1.write(hive, direct);
+        MetaManifest.flush(hive);
+        assertEquals("direct", mm1.read(hive).value);
+
+        // written in the background as well.
+        mm2.writeDeferred(hive, null);
+        Threads.sleep(1000);
+        assertEquals(2, hive.execute(new ManifestListOperation().setManifestName(mm2.getMetaName())).size());
+        assertNull(mm2.read(hive));
+    }
+
 }
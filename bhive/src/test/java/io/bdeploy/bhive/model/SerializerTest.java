@@ -5,10 +5,12 @@ package io.bdeploy.bhive.model;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 
 import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 
 import org.junit.jupiter.api.Test;
 
@@ -25,6 +27,36 @@ class SerializerTest extends DbTestBase {
         assertThat(OID1.compareTo(roundtrip(OID1)), is(0));
     }
 
+    @Test
+    void oidFormat() {
+        String hex = "00ff7a1b2c3d4e5f60718293a4b5c6d7e8f90123";
+        ObjectId id = ObjectId.parse(hex);
+        assertThat(id.getId(), is(hex));
+        assertThat(id, is(ObjectId.parse(hex)));
+
+        // the serialized form is compatible with existing hives.
+        assertThat(new String(StorageHelper.toRawBytes(id), StandardCharsets.UTF_8), is("{\n  \"id\" : \"" + hex + "\"\n}"));
+
+        assertThat(ObjectId.parse(null), is(nullValue()));
+        assertThat(ObjectId.parse(hex.substring(1)), is(nullValue()));
+        assertThat(ObjectId.parse(hex.toUpperCase()), is(nullValue()));
+        assertThat(ObjectId.parse(hex.replace('a', 'g')), is(nullValue()));
+        assertThat(ObjectId.parse("ffffffffffffffffffffffffffffffffffffffff").getId(), is("ffffffffffffffffffffffffffffffffffffffff"));
+    }
+
+    @Test
+    void oidOrder() {
+        // ordering must be the same as the one of the hex representation, e.g. trees are sorted by it.
+        for (int i = 0; i < 100; ++i) {
+            ObjectId a = randomId();
+            ObjectId b = randomId();
+            assertThat(Integer.signum(a.compareTo(b)), is(Integer.signum(a.getId().compareTo(b.getId()))));
+        }
+        ObjectId low = ObjectId.parse("7fffffffffffffffffffffffffffffffffffffff");
+        ObjectId high = ObjectId.parse("8000000000000000000000000000000000000000");
+        assertThat(low.compareTo(high) < 0, is(true));
+    }
+
     @Test
     void serializeTree() {
         ObjectId id1 = OID1;
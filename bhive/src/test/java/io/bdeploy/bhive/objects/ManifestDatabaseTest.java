@@ -4,6 +4,7 @@
 package io.bdeploy.bhive.objects;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -12,11 +13,17 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import io.bdeploy.bhive.model.Manifest;
+import io.bdeploy.common.SlowTest;
 
 class ManifestDatabaseTest extends DbTestBase {
 
@@ -51,4 +58,95 @@ class ManifestDatabaseTest extends DbTestBase {
         }
     }
 
+    @Test
+    void listFromIndex(@TempDir Path tmp) throws IOException {
+        Path dbDir = tmp.resolve("manifests");
+
+        Manifest.Key app1 = new Manifest.Key("test/app1", "1");
+        Manifest.Key app2 = new Manifest.Key("test/app1/sub", "1");
+        Manifest.Key app3 = new Manifest.Key("test/app12", "1");
+        try (ManifestDatabase db = new ManifestDatabase(dbDir); ManifestDatabase other = new ManifestDatabase(dbDir)) {
+            db.addManifest(new Manifest.Builder(app1).setRoot(randomId()).build(null));
+            db.addManifest(new Manifest.Builder(app2).setRoot(randomId()).build(null));
+            db.addManifest(new Manifest.Builder(app3).setRoot(randomId()).build(null));
+
+            // only full segments match.
+            assertThat(db.getAllForName("test/app1"), is(new TreeSet<>(Arrays.asList(app1, app2))));
+            assertThat(db.getAllForName("test/app1/sub"), is(Collections.singleton(app2)));
+            assertThat(db.getAllForName("test/app"), is(empty()));
+            assertThat(db.getAllForName("test"), is(db.getAllManifests()));
+            assertThat(db.getAllManifests().size(), is(3));
+
+            // the second instance acts like another process working on the same database.
+            assertThat(other.getAllManifests().size(), is(3));
+            other.removeManifest(app2);
+            Manifest.Key app4 = new Manifest.Key("test/app1", "2");
+            other.addManifest(new Manifest.Builder(app4).setRoot(randomId()).build(null));
+
+            // always detects modifications by others.
+            assertThat(db.getAllForName("test/app1"), is(new TreeSet<>(Arrays.asList(app1, app4))));
+
+            db.removeManifest(app1);
+            db.removeManifest(app4);
+            assertThat(db.getAllForName("test/app1"), is(empty()));
+            assertThat(other.getAllManifests(), is(Collections.singleton(app3)));
+        }
+    }
+
+    @Test
+    void maxId(@TempDir Path tmp) throws IOException {
+        try (ManifestDatabase db = new ManifestDatabase(tmp.resolve("manifests"))) {
+            assertThat(db.getMaxId("test/app"), is(Optional.empty()));
+
+            db.addManifest(new Manifest.Builder(new Manifest.Key("test/app", "9")).setRoot(randomId()).build(null));
+            db.addManifest(new Manifest.Builder(new Manifest.Key("test/app", "10")).setRoot(randomId()).build(null));
+            db.addManifest(new Manifest.Builder(new Manifest.Key("test/app", "010")).setRoot(randomId()).build(null));
+            assertThat(db.getMaxId("test/app"), is(Optional.of(10l)));
+            assertThat(db.getMaxId("test/app:9"), is(Optional.of(9l)));
+
+            // the same number with a different tag is still present.
+            db.removeManifest(new Manifest.Key("test/app", "10"));
+            assertThat(db.getMaxId("test/app"), is(Optional.of(10l)));
+            db.removeManifest(new Manifest.Key("test/app", "010"));
+            assertThat(db.getMaxId("test/app"), is(Optional.of(9l)));
+
+            // nested names count as well, any non-numeric tag disables counting.
+            Manifest.Key nested = new Manifest.Key("test/app/nested", "v1");
+            db.addManifest(new Manifest.Builder(nested).setRoot(randomId()).build(null));
+            assertThat(db.getMaxId("test/app"), is(Optional.empty()));
+            db.removeManifest(nested);
+            assertThat(db.getMaxId("test/app"), is(Optional.of(9l)));
+        }
+    }
+
+    @SlowTest
+    @Test
+    void maxIdManyTags(@TempDir Path tmp) throws IOException {
+        int numTags = 5_000;
+        int numLookups = 1_000;
+        try (ManifestDatabase db = new ManifestDatabase(tmp.resolve("manifests"))) {
+            for (int i = 1; i <= numTags; ++i) {
+                db.addManifest(new Manifest.Builder(new Manifest.Key("test/app", Integer.toString(i))).setRoot(randomId())
+                        .build(null));
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < numLookups; ++i) {
+                assertThat(db.getAllForName("test/app").stream().map(Manifest.Key::getTag).map(Long::parseLong)
+                        .max(Long::compare), is(Optional.of((long) numTags)));
+            }
+            long listing = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < numLookups; ++i) {
+                assertThat(db.getMaxId("test/app"), is(Optional.of((long) numTags)));
+            }
+            long maxId = System.nanoTime() - start;
+
+            System.err.println("Max ID of " + numTags + " tags, " + numLookups + " lookups: listing took "
+                    + TimeUnit.NANOSECONDS.toMillis(listing) + "ms, max ID lookup took " + TimeUnit.NANOSECONDS.toMillis(maxId)
+                    + "ms.");
+        }
+    }
+
 }
@@ -13,8 +13,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -51,7 +50,7 @@ class NestedManifestTest extends DbTestBase {
         Path tmp = ContentHelper.genSimpleTestTree(rootd, "source");
         Path mdbDir = rootd.resolve("mf");
 
-        ExecutorService s = Executors.newSingleThreadExecutor();
+        ForkJoinPool s = new ForkJoinPool(1);
         try {
             ManifestDatabase mdb = new ManifestDatabase(mdbDir);
             ObjectManager om = new ObjectManager(getObjectDatabase(), mdb, reporter, s);
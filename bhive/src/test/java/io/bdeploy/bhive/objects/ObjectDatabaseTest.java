@@ -5,15 +5,20 @@ package io.bdeploy.bhive.objects;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.TreeSet;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -69,6 +74,107 @@ class ObjectDatabaseTest extends DbTestBase {
         assertThat(reread.get(0), is(content));
     }
 
+    @Test
+    void testPresenceIndex(@TempDir Path tmp, ActivityReporter r) throws Exception {
+        ObjectDatabase db = getObjectDatabase();
+        ObjectId first = db.addObject("first".getBytes());
+        assertTrue(db.hasObject(first));
+
+        // a second instance acts like another process working on the same database.
+        ObjectDatabase other = new ObjectDatabase(getObjectDatabasePath(), tmp.resolve("other"), r, null);
+        assertTrue(other.hasObject(first));
+
+        ObjectId second = other.addObject("second".getBytes());
+        other.removeObject(first);
+
+        // bulk operations check for modifications up front when deciding whether to skip writing objects.
+        assertTrue(db.checkExternalModification());
+        assertFalse(db.hasObject(first));
+
+        // always detects modifications by others.
+        assertThat(db.getAllObjects(), is(new TreeSet<>(Collections.singleton(second))));
+        assertTrue(db.hasObject(second));
+        assertFalse(db.hasObject(first));
+
+        // snapshot is used if there is no modification in between, and ignored otherwise.
+        db.close();
+        assertThat(new ObjectDatabase(getObjectDatabasePath(), tmp, r, null).getAllObjects().size(), is(1));
+
+        ObjectId third = other.addObject("third".getBytes());
+        ObjectDatabase reopened = new ObjectDatabase(getObjectDatabasePath(), tmp, r, null);
+        assertTrue(reopened.hasObject(third));
+        assertThat(reopened.getAllObjects().size(), is(2));
+    }
+
+    @Test
+    void testClassificationIndexRecovers(@TempDir Path tmp) throws IOException {
+        Path file = tmp.resolve("classes");
+        ObjectId a = ObjectId.create("a".getBytes(StandardCharsets.UTF_8), 0, 1);
+        ObjectId b = ObjectId.create("b".getBytes(StandardCharsets.UTF_8), 0, 1);
+        ObjectId c = ObjectId.create("c".getBytes(StandardCharsets.UTF_8), 0, 1);
+
+        ObjectClassificationIndex index = new ObjectClassificationIndex(file);
+        index.setExecutable(a, true);
+        index.flush();
+        index.setExecutable(b, false);
+        index.flush();
+
+        // an interrupted append leaves a partial entry, which must not misalign subsequent entries.
+        Files.write(file, new byte[] { 1, 2, 3, 4, 5 }, StandardOpenOption.APPEND);
+        index = new ObjectClassificationIndex(file);
+        index.setExecutable(c, true);
+        index.flush();
+
+        index = new ObjectClassificationIndex(file);
+        assertThat(index.isExecutable(a), is(Boolean.TRUE));
+        assertThat(index.isExecutable(b), is(Boolean.FALSE));
+        assertThat(index.isExecutable(c), is(Boolean.TRUE));
+
+        // a damaged entry is skipped, the following ones are still used.
+        byte[] content = Files.readAllBytes(file);
+        content[ObjectId.RAW_LENGTH] = 42;
+        Files.write(file, content);
+        index = new ObjectClassificationIndex(file);
+        assertNull(index.isExecutable(a));
+        assertThat(index.isExecutable(b), is(Boolean.FALSE));
+        assertThat(index.isExecutable(c), is(Boolean.TRUE));
+    }
+
+    @Test
+    void testClassificationIndexCompacts(@TempDir Path tmp) throws IOException {
+        Path file = tmp.resolve("classes");
+        ObjectId a = ObjectId.create("a".getBytes(StandardCharsets.UTF_8), 0, 1);
+        ObjectId b = ObjectId.create("b".getBytes(StandardCharsets.UTF_8), 0, 1);
+        ObjectId c = ObjectId.create("c".getBytes(StandardCharsets.UTF_8), 0, 1);
+
+        ObjectClassificationIndex index = new ObjectClassificationIndex(file);
+        index.setExecutable(a, true);
+        index.setExecutable(b, false);
+        index.flush();
+
+        // appended by another instance (process), picked up once this instance appends again.
+        ObjectClassificationIndex other = new ObjectClassificationIndex(file);
+        other.setExecutable(c, true);
+        other.flush();
+        assertNull(index.isExecutable(c));
+        index.setExecutable(a, true);
+        index.setExecutable(ObjectId.create("d".getBytes(StandardCharsets.UTF_8), 0, 1), false);
+        index.flush();
+        assertThat(index.isExecutable(c), is(Boolean.TRUE));
+
+        // only classifications of present objects are kept.
+        assertThat(index.compact(id -> id.equals(a) || id.equals(c)), is(2L));
+        assertThat(Files.size(file), is(2L * (ObjectId.RAW_LENGTH + 1)));
+        assertThat(index.isExecutable(a), is(Boolean.TRUE));
+        assertNull(index.isExecutable(b));
+
+        // the other instance reloads once told that the database was modified.
+        assertThat(other.isExecutable(b), is(Boolean.FALSE));
+        other.invalidate();
+        assertNull(other.isExecutable(b));
+        assertThat(other.isExecutable(c), is(Boolean.TRUE));
+    }
+
     @SlowTest
     @ParameterizedTest
     @ValueSource(ints = { 512, 1024, 4096, 1024 * 1024 })
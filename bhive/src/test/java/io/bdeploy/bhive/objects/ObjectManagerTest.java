@@ -6,6 +6,7 @@ package io.bdeploy.bhive.objects;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -15,12 +16,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
 import java.util.Arrays;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -50,7 +53,7 @@ class ObjectManagerTest extends DbTestBase {
         Path mySource = ContentHelper.genSimpleTestTree(tmp, "source");
         Path myTarget = tmp.resolve("target");
 
-        ExecutorService s = Executors.newFixedThreadPool(1);
+        ForkJoinPool s = new ForkJoinPool(1);
         try {
             ObjectManager mgr = new ObjectManager(getObjectDatabase(), null, r, s);
             ObjectId tree = mgr.importTree(mySource, false);
@@ -85,12 +88,94 @@ class ObjectManagerTest extends DbTestBase {
 
     }
 
+    @Test
+    void testLinkedExport(@TempDir Path tmp, ActivityReporter r) throws IOException {
+        Path mySource = ContentHelper.genSimpleTestTree(tmp, "source");
+        Path myTarget = tmp.resolve("target");
+        byte[] scriptContent = "#!/bin/sh\necho hello\n".getBytes(StandardCharsets.UTF_8);
+        Files.write(mySource.resolve("run.sh"), scriptContent);
+
+        ForkJoinPool s = new ForkJoinPool(1);
+        try {
+            ObjectManager mgr = new ObjectManager(getObjectDatabase(), null, r, s);
+            ObjectId tree = mgr.importTree(mySource, false);
+
+            // objects are left untouched unless they are linked.
+            Path objectFile = getObjectDatabase().getObjectFile(ObjectId.parse(ContentHelper.TEST_TXT_OID));
+            PosixFileAttributeView view = PathHelper.getPosixView(objectFile);
+            if (view != null) {
+                assertTrue(view.readAttributes().permissions().contains(PosixFilePermission.OWNER_WRITE));
+            }
+
+            mgr.exportTree(tree, myTarget, null, true);
+
+            ContentHelper.checkDirsEqual(mySource, myTarget);
+
+            Path exported = myTarget.resolve("test.txt");
+            if (view == null) {
+                // objects cannot be write-protected, they are copied.
+                assertFalse(Files.isSameFile(objectFile, exported));
+                return;
+            }
+
+            // the exported file is the write-protected object file, no copy has been created.
+            assertTrue(Files.isSameFile(objectFile, exported));
+            assertFalse(view.readAttributes().permissions().contains(PosixFilePermission.OWNER_WRITE));
+
+            // executables are linked as well, their object file is executable already.
+            Path script = getObjectDatabase().getObjectFile(ObjectId.create(scriptContent, 0, scriptContent.length));
+            assertTrue(Files.isSameFile(script, myTarget.resolve("run.sh")));
+            assertTrue(PathHelper.getPosixView(script).readAttributes().permissions().contains(PosixFilePermission.OWNER_EXECUTE));
+        } finally {
+            s.shutdownNow();
+        }
+    }
+
+    @Test
+    void testExecutableClassification(@TempDir Path tmp, ActivityReporter r) throws IOException {
+        Path mySource = tmp.resolve("source");
+        PathHelper.mkdirs(mySource);
+        byte[] scriptContent = "#!/bin/sh\necho hello\n".getBytes(StandardCharsets.UTF_8);
+        byte[] dataContent = ContentHelper.TEST1.getBytes(StandardCharsets.UTF_8);
+        Files.write(mySource.resolve("run.sh"), scriptContent);
+        Files.write(mySource.resolve("data.txt"), dataContent);
+
+        ForkJoinPool s = new ForkJoinPool(1);
+        try {
+            ObjectManager mgr = new ObjectManager(getObjectDatabase(), null, r, s);
+            ObjectId tree = mgr.importTree(mySource, false);
+            mgr.exportTree(tree, tmp.resolve("first"), null);
+
+            if (PathHelper.getPosixView(mySource) == null) {
+                return; // no classification without executable bits.
+            }
+
+            ObjectId script = ObjectId.create(scriptContent, 0, scriptContent.length);
+            ObjectId data = ObjectId.create(dataContent, 0, dataContent.length);
+
+            assertTrue(Files.isExecutable(tmp.resolve("first").resolve("run.sh")));
+            assertThat(getObjectDatabase().isExecutable(script), is(Boolean.TRUE));
+            assertThat(getObjectDatabase().isExecutable(data), is(Boolean.FALSE));
+
+            // classifications are persisted, and used instead of sniffing the content again.
+            getObjectDatabase().close();
+            ObjectDatabase reopened = new ObjectDatabase(getObjectDatabasePath(), tmp.resolve("tmp2"), r, null);
+            assertThat(reopened.isExecutable(script), is(Boolean.TRUE));
+            assertThat(reopened.isExecutable(data), is(Boolean.FALSE));
+
+            new ObjectManager(reopened, null, r, s).exportTree(tree, tmp.resolve("second"), null);
+            assertTrue(Files.isExecutable(tmp.resolve("second").resolve("run.sh")));
+        } finally {
+            s.shutdownNow();
+        }
+    }
+
     @SlowTest
     @Test
     void importLarge(@TempDir Path tmp, ActivityReporter r) throws IOException {
         Path mySource = tmp.resolve("src");
 
-        ExecutorService s = Executors.newFixedThreadPool(4);
+        ForkJoinPool s = new ForkJoinPool(4);
         try {
             int num1K = 4000;
             int num4K = 2000;
@@ -113,12 +198,55 @@ class ObjectManagerTest extends DbTestBase {
         }
     }
 
+    @Test
+    void testParallelImport(@TempDir Path tmp, ActivityReporter r) throws IOException {
+        Path mySource = tmp.resolve("src");
+        ContentHelper.genDeepTestTree(mySource, 4, 3, 2, 128);
+
+        ObjectId serial = importWith(tmp.resolve("serial"), mySource, 1, r);
+        ObjectId parallel = importWith(tmp.resolve("parallel"), mySource, 4, r);
+
+        // the result must not depend on the order in which files are imported.
+        assertEquals(serial, parallel);
+    }
+
+    /**
+     * Compares serial and parallel import of a deep tree with few files per directory.
+     */
+    @SlowTest
+    @Test
+    void importDeep(@TempDir Path tmp, ActivityReporter r) throws IOException {
+        Path mySource = tmp.resolve("src");
+
+        Activity genActivity = r.start("Generating test files...");
+        ContentHelper.genDeepTestTree(mySource, 6, 4, 3, 4 * 1024);
+        genActivity.done();
+
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        for (int jobs : new int[] { 1, parallelism }) {
+            Activity importActivity = r.start("Importing test files with " + jobs + " thread(s)...");
+            importWith(tmp.resolve("db-" + jobs), mySource, jobs, r);
+            importActivity.done();
+            System.err.println("Importing with " + jobs + " thread(s) took " + importActivity.duration() + "ms.");
+        }
+    }
+
+    private static ObjectId importWith(Path dbRoot, Path source, int jobs, ActivityReporter r) throws IOException {
+        ForkJoinPool s = new ForkJoinPool(jobs);
+        try {
+            ObjectDatabase db = new ObjectDatabase(dbRoot, dbRoot.resolve("tmp"), r, null);
+            return new ObjectManager(db, null, r, s).importTree(source, false);
+        } finally {
+            s.shutdownNow();
+        }
+    }
+
     @Test
     void testTreeSnapshot(@TempDir Path tmp, ActivityReporter r) throws IOException {
         Path mySource = ContentHelper.genSimpleTestTree(tmp, "source");
         ManifestDatabase mdb = new ManifestDatabase(tmp.resolve("mdb"));
 
-        ExecutorService s = Executors.newFixedThreadPool(1);
+        ForkJoinPool s = new ForkJoinPool(1);
         try {
             ObjectManager mgr = new ObjectManager(getObjectDatabase(), mdb, r, s);
             ObjectId tree = mgr.importTree(mySource, false);
@@ -156,7 +284,7 @@ class ObjectManagerTest extends DbTestBase {
         PathHelper.mkdirs(emptyDir);
 
         ManifestDatabase mdb = new ManifestDatabase(tmp.resolve("mdb"));
-        ExecutorService s = Executors.newFixedThreadPool(1);
+        ForkJoinPool s = new ForkJoinPool(1);
         try {
             ObjectManager mgr = new ObjectManager(getObjectDatabase(), mdb, r, s);
             ObjectId treeWithEmpty = mgr.importTree(mySource, false);
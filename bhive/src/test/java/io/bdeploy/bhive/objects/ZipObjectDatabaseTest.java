@@ -9,6 +9,8 @@ import java.nio.file.Path;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -42,6 +44,13 @@ class ZipObjectDatabaseTest extends ObjectDatabaseTest {
         zfs = null;
     }
 
+    @Override
+    @Test
+    @Disabled("ZIP databases are not shared between processes, modifications are not tracked")
+    void testPresenceIndex(Path tmp, ActivityReporter r) {
+        // nothing.
+    }
+
     @Override
     public ObjectDatabase getObjectDatabase() {
         return zipDb;
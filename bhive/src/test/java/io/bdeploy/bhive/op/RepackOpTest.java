@@ -0,0 +1,147 @@
+package io.bdeploy.bhive.op;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.bdeploy.bhive.BHive;
+import io.bdeploy.bhive.BHiveTransactions.Transaction;
+import io.bdeploy.bhive.TestHive;
+import io.bdeploy.bhive.model.Manifest;
+import io.bdeploy.bhive.model.ObjectId;
+import io.bdeploy.bhive.objects.view.ElementView;
+import io.bdeploy.common.ActivityReporter;
+import io.bdeploy.common.ContentHelper;
+
+@ExtendWith(TestHive.class)
+class RepackOpTest {
+
+    @Test
+    void testRepack(BHive hive, @TempDir Path tmp) throws IOException {
+        Path src = ContentHelper.genSimpleTestTree(tmp, "src");
+        Manifest.Key key1 = new Manifest.Key("test", "v1");
+        Manifest.Key key2 = new Manifest.Key("other", "v1");
+
+        try (Transaction t = hive.getTransactions().begin()) {
+            hive.execute(new ImportOperation().setManifest(key1).setSourcePath(src));
+        }
+
+        SortedSet<ObjectId> before = hive.execute(new AllObjectsOperation());
+        assertThat(hive.execute(new RepackOperation()), is((long) before.size()));
+
+        // all objects are still there, but no longer as loose files.
+        assertThat(hive.execute(new AllObjectsOperation()), is(before));
+        assertThat(countLooseObjects(hive), is(0L));
+
+        Set<ElementView> broken = hive.execute(new FsckOperation());
+        assertTrue(broken.isEmpty());
+
+        hive.execute(new ExportOperation().setManifest(key1).setTarget(tmp.resolve("exp1")));
+        ContentHelper.checkDirsEqual(src, tmp.resolve("exp1"));
+
+        // add some more (loose) objects alongside the pack.
+        Files.write(src.resolve("additional.txt"), "additional content".getBytes());
+        try (Transaction t = hive.getTransactions().begin()) {
+            hive.execute(new ImportOperation().setManifest(key2).setSourcePath(src));
+        }
+        assertTrue(countLooseObjects(hive) > 0);
+
+        // removing objects from a pack records them as removed, the pack itself is unchanged.
+        hive.execute(new ManifestDeleteOperation().setToDelete(key1));
+        assertFalse(hive.execute(new PruneOperation()).isEmpty());
+
+        SortedSet<ObjectId> remaining = hive.execute(new AllObjectsOperation());
+        assertThat(hive.execute(new RepackOperation().setCompact(true)), is((long) remaining.size()));
+        assertThat(hive.execute(new AllObjectsOperation()), is(remaining));
+        assertThat(countLooseObjects(hive), is(0L));
+
+        hive.execute(new ExportOperation().setManifest(key2).setTarget(tmp.resolve("exp2")));
+        ContentHelper.checkDirsEqual(src, tmp.resolve("exp2"));
+    }
+
+    @Test
+    void testRemovedByOtherProcess(BHive hive, @TempDir Path tmp) throws Exception {
+        Path src = ContentHelper.genSimpleTestTree(tmp, "src");
+        Manifest.Key key = new Manifest.Key("test", "v1");
+
+        try (Transaction t = hive.getTransactions().begin()) {
+            hive.execute(new ImportOperation().setManifest(key).setSourcePath(src));
+        }
+        SortedSet<ObjectId> objects = hive.execute(new AllObjectsOperation());
+        hive.execute(new RepackOperation());
+
+        // a second instance on the same directory behaves like another process.
+        try (BHive other = new BHive(hive.getUri(), null, new ActivityReporter.Null())) {
+            assertTrue(other.execute(new ObjectExistsOperation().addAll(objects)).missing.isEmpty());
+
+            hive.execute(new ManifestDeleteOperation().setToDelete(key));
+            hive.execute(new PruneOperation());
+
+            // modifications by other processes are checked for at most once per second.
+            Thread.sleep(1100);
+            assertThat(other.execute(new ObjectExistsOperation().addAll(objects)).existing, is(Set.of()));
+        }
+    }
+
+    @Test
+    void testCompactedByOtherProcess(BHive hive, @TempDir Path tmp) throws Exception {
+        Path src = ContentHelper.genSimpleTestTree(tmp, "src");
+        Manifest.Key key1 = new Manifest.Key("test", "v1");
+        Manifest.Key key2 = new Manifest.Key("other", "v1");
+
+        try (Transaction t = hive.getTransactions().begin()) {
+            hive.execute(new ImportOperation().setManifest(key1).setSourcePath(src));
+        }
+        hive.execute(new RepackOperation());
+
+        // a second instance on the same directory behaves like another process.
+        try (BHive other = new BHive(hive.getUri(), null, new ActivityReporter.Null())) {
+            other.execute(new ExportOperation().setManifest(key1).setTarget(tmp.resolve("exp1")));
+
+            // compacting replaces the pack the other instance knows about.
+            Files.write(src.resolve("additional.txt"), "additional content".getBytes());
+            try (Transaction t = hive.getTransactions().begin()) {
+                hive.execute(new ImportOperation().setManifest(key2).setSourcePath(src));
+            }
+            hive.execute(new RepackOperation().setCompact(true));
+
+            other.execute(new ExportOperation().setManifest(key1).setTarget(tmp.resolve("exp2")));
+            ContentHelper.checkDirsEqual(tmp.resolve("exp1"), tmp.resolve("exp2"));
+        }
+    }
+
+    private static long countLooseObjects(BHive hive) throws IOException {
+        Path objects = Path.of(hive.getUri()).resolve("objects");
+        try (Stream<Path> walk = Files.walk(objects)) {
+            return walk.filter(Files::isRegularFile).filter(p -> ObjectId.parse(p.getFileName().toString()) != null).count();
+        }
+    }
+
+    private static final class AllObjectsOperation extends BHive.Operation<SortedSet<ObjectId>> {
+
+        @Override
+        public SortedSet<ObjectId> call() throws Exception {
+            return getObjectManager().db(db -> {
+                try {
+                    return db.getAllObjects();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package io.bdeploy.bhive.op.remote;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import io.bdeploy.bhive.model.ObjectId;
+import io.bdeploy.common.ActivityReporter.ActivityCancelledException;
+
+class ShardedTransferTest {
+
+    @Test
+    void resumeBrokenTransfer() throws IOException {
+        Set<ObjectId> objects = objects(1000);
+        Set<ObjectId> received = Collections.synchronizedSet(new HashSet<>());
+        List<Integer> attempts = new ArrayList<>();
+
+        // 4 shards of 250 objects, every stream breaks after 100 objects.
+        TransferStatistics stats = ShardedTransfer.transfer(objects, 4, o -> missing(o, received), shard -> {
+            synchronized (attempts) {
+                attempts.add(shard.size());
+            }
+            int count = 0;
+            for (ObjectId id : shard) {
+                if (++count > 100) {
+                    throw new IOException("Connection reset");
+                }
+                received.add(id);
+            }
+            TransferStatistics s = new TransferStatistics();
+            s.sumMissingObjects = shard.size();
+            return s;
+        });
+
+        assertEquals(objects, received);
+        assertEquals(objects.size(), stats.sumMissingObjects); // failed attempts count the objects committed by the receiver.
+        assertEquals(4 * 3, attempts.size()); // 250, resumed with 150, resumed with 50.
+    }
+
+    @Test
+    void resumeKeepsOrder() throws IOException {
+        Set<ObjectId> objects = objects(10);
+        List<ObjectId> received = new ArrayList<>();
+
+        ShardedTransfer.transferResumable(objects, o -> missing(o, new LinkedHashSet<>(received)), shard -> {
+            for (ObjectId id : shard) {
+                if (received.size() == 5 && !received.contains(id)) {
+                    received.add(id);
+                    throw new IOException("Connection reset");
+                }
+                received.add(id);
+            }
+            return new TransferStatistics();
+        });
+
+        assertEquals(new ArrayList<>(objects), received);
+    }
+
+    @Test
+    void failWithoutProgress() {
+        Set<ObjectId> objects = objects(10);
+        List<Integer> attempts = new ArrayList<>();
+
+        assertThrows(IOException.class, () -> ShardedTransfer.transferResumable(objects, o -> o, shard -> {
+            attempts.add(shard.size());
+            throw new IOException("Broken");
+        }));
+        assertEquals(3, attempts.size());
+    }
+
+    @Test
+    void noResumeWhenCancelled() {
+        Set<ObjectId> objects = objects(10);
+        List<Integer> attempts = new ArrayList<>();
+
+        assertThrows(ActivityCancelledException.class, () -> ShardedTransfer.transferResumable(objects, o -> o, shard -> {
+            attempts.add(shard.size());
+            throw new ActivityCancelledException();
+        }));
+        assertEquals(1, attempts.size());
+    }
+
+    private static Set<ObjectId> missing(Set<ObjectId> objects, Set<ObjectId> received) {
+        synchronized (received) {
+            return objects.stream().filter(o -> !received.contains(o)).collect(Collectors.toSet());
+        }
+    }
+
+    private static Set<ObjectId> objects(int count) {
+        Set<ObjectId> result = new LinkedHashSet<>();
+        for (int i = 0; i < count; ++i) {
+            result.add(ObjectId.create(Integer.toString(i).getBytes(), 0, Integer.toString(i).length()));
+        }
+        return result;
+    }
+
+}
@@ -1,6 +1,7 @@
 package io.bdeploy.bhive.remote;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -19,6 +20,7 @@ import io.bdeploy.bhive.model.Manifest.Key;
 import io.bdeploy.bhive.model.ObjectId;
 import io.bdeploy.bhive.model.Tree;
 import io.bdeploy.bhive.model.Tree.EntryType;
+import io.bdeploy.bhive.op.ExportOperation;
 import io.bdeploy.bhive.op.ImportOperation;
 import io.bdeploy.bhive.op.InsertArtificialTreeOperation;
 import io.bdeploy.bhive.op.InsertManifestOperation;
@@ -28,6 +30,7 @@ import io.bdeploy.bhive.op.ManifestListOperation;
 import io.bdeploy.bhive.op.remote.FetchOperation;
 import io.bdeploy.bhive.op.remote.PushOperation;
 import io.bdeploy.bhive.op.remote.TransferStatistics;
+import io.bdeploy.bhive.util.TransferCodec;
 import io.bdeploy.common.ActivityReporter;
 import io.bdeploy.common.ContentHelper;
 import io.bdeploy.common.TestActivityReporter;
@@ -97,7 +100,7 @@ class FetchPushTest extends RemoteHiveTestBase {
             try (Transaction t = fetchHive.getTransactions().begin()) {
                 TransferStatistics s = fetchHive.execute(new FetchOperation().setRemote(svc).addManifest(key));
                 assertEquals(1, s.sumManifests);
-                assertEquals(3, s.sumTrees);
+                assertEquals(1, s.sumTrees); // existing trees are not walked.
                 assertEquals(0, s.sumMissingTrees);
                 assertEquals(0, s.sumMissingObjects);
             }
@@ -176,7 +179,7 @@ class FetchPushTest extends RemoteHiveTestBase {
             try (Transaction t = fetchHive.getTransactions().begin()) {
                 TransferStatistics s = fetchHive.execute(new FetchOperation().setRemote(svc).addManifest(key));
                 assertEquals(1, s.sumManifests);
-                assertEquals(3, s.sumTrees);
+                assertEquals(2, s.sumTrees); // the existing leaf tree is not walked.
                 assertEquals(1, s.sumMissingTrees);
             }
         }
@@ -308,4 +311,93 @@ class FetchPushTest extends RemoteHiveTestBase {
         }
     }
 
+    @Test
+    void fetchDeepTree(@TempDir Path tmp, RemoteService svc, ActivityReporter r) throws IOException {
+        try (BHive local = new BHive(tmp.resolve("h1").toUri(), null, r);
+                BHive fetchHive = new BHive(tmp.resolve("h2").toUri(), null, r)) {
+            // 1365 trees, the deepest level has more trees than requested in a single batch.
+            Path src = tmp.resolve("deep");
+            ContentHelper.genDeepTestTree(src, 5, 4, 1, 16);
+            Manifest.Key key = new Manifest.Key("deep", "v1");
+            try (Transaction t = local.getTransactions().begin()) {
+                local.execute(new ImportOperation().setManifest(key).setSourcePath(src));
+            }
+            local.execute(new PushOperation().setRemote(svc).addManifest(key));
+
+            try (Transaction t = fetchHive.getTransactions().begin()) {
+                TransferStatistics s = fetchHive.execute(new FetchOperation().setRemote(svc).addManifest(key));
+                assertEquals(1, s.sumManifests);
+                assertEquals(1365, s.sumTrees);
+                assertEquals(1365, s.sumMissingTrees);
+                assertEquals(2 * 1365, s.sumMissingObjects);
+            }
+
+            Path exp = tmp.resolve("exp");
+            fetchHive.execute(new ExportOperation().setManifest(key).setTarget(exp));
+            ContentHelper.checkDirsEqual(src, exp);
+        }
+    }
+
+    @Test
+    void pushFetchParallelStreams(@TempDir Path tmp, RemoteService svc, ActivityReporter r) throws IOException {
+        try (BHive local = new BHive(tmp.resolve("h1").toUri(), null, r);
+                BHive fetchHive = new BHive(tmp.resolve("h2").toUri(), null, r)) {
+            // 21 trees with 20 files each, enough to use all streams.
+            Path src = tmp.resolve("wide");
+            ContentHelper.genDeepTestTree(src, 2, 4, 20, 64);
+            Manifest.Key key = new Manifest.Key("wide", "v1");
+            try (Transaction t = local.getTransactions().begin()) {
+                local.execute(new ImportOperation().setManifest(key).setSourcePath(src));
+            }
+
+            TransferStatistics ps = local.execute(new PushOperation().setRemote(svc).addManifest(key).setParallelStreams(4));
+            assertEquals(1, ps.sumManifests);
+            assertEquals(21, ps.sumMissingTrees);
+            assertEquals(441, ps.sumMissingObjects);
+
+            try (Transaction t = fetchHive.getTransactions().begin()) {
+                TransferStatistics fs = fetchHive
+                        .execute(new FetchOperation().setRemote(svc).addManifest(key).setParallelStreams(4));
+                assertEquals(1, fs.sumManifests);
+                assertEquals(21, fs.sumMissingTrees);
+                assertEquals(441, fs.sumMissingObjects);
+            }
+
+            Path exp = tmp.resolve("exp");
+            fetchHive.execute(new ExportOperation().setManifest(key).setTarget(exp));
+            ContentHelper.checkDirsEqual(src, exp);
+        }
+    }
+
+    @Test
+    void fetchWithCodecs(@TempDir Path tmp, RemoteService svc, ActivityReporter r) throws IOException {
+        try (BHive local = new BHive(tmp.resolve("h1").toUri(), null, r)) {
+            Path src = ContentHelper.genSimpleTestTree(tmp, "app");
+            ContentHelper.genTestFile(src, 1024 * 1024);
+            Manifest.Key key = new Manifest.Key("app", "v1");
+            try (Transaction t = local.getTransactions().begin()) {
+                local.execute(new ImportOperation().setManifest(key).setSourcePath(src));
+            }
+            local.execute(new PushOperation().setRemote(svc).addManifest(key).setCodec(TransferCodec.NONE));
+
+            // null requests the GZIP stream understood by all versions.
+            for (TransferCodec codec : new TransferCodec[] { null, TransferCodec.NONE, TransferCodec.GZIP, TransferCodec.FAST }) {
+                try (BHive fetchHive = new BHive(tmp.resolve("fetch-" + codec).toUri(), null, r);
+                        Transaction t = fetchHive.getTransactions().begin()) {
+                    TransferStatistics s = fetchHive.execute(new FetchOperation().setRemote(svc).addManifest(key).setCodec(codec));
+                    assertEquals(1, s.sumManifests);
+                    if (codec == TransferCodec.NONE) {
+                        assertTrue(s.transferSize > s.rawSize);
+                    } else {
+                        assertTrue(s.transferSize < s.rawSize);
+                    }
+
+                    Path exp = tmp.resolve("exp-" + codec);
+                    fetchHive.execute(new ExportOperation().setManifest(key).setTarget(exp));
+                    ContentHelper.checkDirsEqual(src, exp);
+                }
+            }
+        }
+    }
+
 }
@@ -0,0 +1,102 @@
+package io.bdeploy.bhive.remote;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import io.bdeploy.bhive.util.BlockInputStream;
+import io.bdeploy.bhive.util.BlockOutputStream;
+import io.bdeploy.bhive.util.TransferCodec;
+
+class TransferCodecTest {
+
+    private static final int SIZE = 256 * 1024;
+
+    @Test
+    void roundTrip() throws IOException {
+        byte[] text = text();
+        byte[] random = random();
+
+        for (TransferCodec codec : TransferCodec.values()) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (BlockOutputStream out = new BlockOutputStream(baos, codec)) {
+                out.write(text);
+                out.write(random);
+                out.setCompressible(false);
+                out.write(text);
+                out.setCompressible(true);
+                out.write(42);
+            }
+
+            byte[] encoded = baos.toByteArray();
+            if (codec == TransferCodec.NONE) {
+                assertThat(encoded.length, greaterThan(3 * SIZE));
+            } else {
+                // the text is only compressed once, the random data is stored as is.
+                assertThat(encoded.length, lessThan(3 * SIZE - SIZE / 2));
+            }
+
+            try (InputStream in = new BufferedInputStream(new ByteArrayInputStream(encoded))) {
+                assertTrue(BlockInputStream.isBlockStream(in));
+                try (BlockInputStream bis = new BlockInputStream(in)) {
+                    assertEquals(codec, bis.getCodec());
+                    assertArrayEquals(text, bis.readNBytes(SIZE));
+                    assertArrayEquals(random, bis.readNBytes(SIZE));
+                    assertArrayEquals(text, bis.readNBytes(SIZE));
+                    assertEquals(42, bis.read());
+                    assertEquals(-1, bis.read());
+                }
+            }
+        }
+    }
+
+    @Test
+    void compressedFormats() throws IOException {
+        assertTrue(BlockOutputStream.isCompressedFormat(stream(0x50, 0x4B, 0x03, 0x04, 0x14)));
+        assertTrue(BlockOutputStream.isCompressedFormat(stream(0x1F, 0x8B, 0x08, 0x00)));
+        assertTrue(BlockOutputStream.isCompressedFormat(stream(0xFF, 0xD8, 0xFF, 0xE0)));
+        assertFalse(BlockOutputStream.isCompressedFormat(stream(0x50, 0x4B)));
+        assertFalse(BlockOutputStream.isCompressedFormat(stream('t', 'e', 'x', 't')));
+
+        InputStream in = stream(0x50, 0x4B, 0x03, 0x04);
+        BlockOutputStream.isCompressedFormat(in);
+        assertEquals(0x50, in.read()); // nothing consumed
+    }
+
+    private static InputStream stream(int... bytes) {
+        byte[] data = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; ++i) {
+            data[i] = (byte) bytes[i];
+        }
+        return new BufferedInputStream(new ByteArrayInputStream(data));
+    }
+
+    private static byte[] text() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < SIZE; ++i) {
+            builder.append("Line number ").append(i).append(" of some compressible text.\n");
+        }
+        return builder.substring(0, SIZE).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] random() {
+        byte[] result = new byte[SIZE];
+        new Random(42).nextBytes(result);
+        return result;
+    }
+
+}
@@ -65,6 +65,25 @@ public class ContentHelper {
         genFiles(root, num128M, 128 * 1024 * 1024);
     }
 
+    /**
+     * Generate a deep tree with few files per directory, e.g. resembling a JDK or node_modules.
+     *
+     * @param depth the amount of directory levels below root.
+     * @param width the amount of sub-directories per directory.
+     * @param files the amount of files per directory.
+     * @param bytes the size of each file.
+     */
+    public static void genDeepTestTree(Path root, int depth, int width, int files, int bytes) throws IOException {
+        for (int i = 0; i < files; ++i) {
+            genTestFile(root, bytes);
+        }
+        if (depth > 0) {
+            for (int i = 0; i < width; ++i) {
+                genDeepTestTree(root.resolve("dir" + i), depth - 1, width, files, bytes);
+            }
+        }
+    }
+
     private static void genFiles(Path root, int num, int bytes) throws IOException {
         List<Path> paths = new ArrayList<>();
         for (int i = 0; i < num; ++i) {
@@ -80,6 +80,7 @@ public class InstanceNodeController {
     private final CompositeResolver resolvers = new CompositeResolver();
     private final Path root;
     private final DeploymentPathProvider paths;
+    private boolean linkPooledApplications;
 
     /**
      * @param hive the hive to export artifacts from
@@ -116,6 +117,14 @@ public class InstanceNodeController {
         resolvers.add(external);
     }
 
+    /**
+     * @param link whether to hard-link the files of pooled applications from the hive instead of copying them. Applications
+     *            which are not pooled are always copied, as they might modify their own files.
+     */
+    public void setLinkPooledApplications(boolean link) {
+        this.linkPooledApplications = link;
+    }
+
     /**
      * Install this manifest. It will create (or assume) the following structure in
      * the given root:
@@ -305,7 +314,9 @@ public class InstanceNodeController {
                 result.put(key, target);
 
                 if (!Files.isDirectory(target)) {
-                    syncOps.perform(target, () -> hive.execute(new ExportOperation().setTarget(target).setManifest(key)));
+                    boolean link = linkPooledApplications && !entry.getKey().equals(noPoolRoot);
+                    syncOps.perform(target, () -> hive
+                            .execute(new ExportOperation().setTarget(target).setManifest(key).setLinkObjects(link)));
                 }
             }
         }
@@ -381,7 +392,11 @@ public class InstanceNodeController {
                 p -> !p.getFileName().toString().equals(SpecialDirectory.MANIFEST_POOL.getDirName()))) {
             // name of each directory is an instance UUID.
             for (Path dir : stream) {
-                cleanupBinDir(toRemove, toKeep, dir);
+                List<CleanupAction> staleHistory = new ArrayList<>();
+                boolean keepHistory = cleanupHistoryDir(staleHistory, inHive, dir);
+                if (!cleanupBinDir(toRemove, toKeep, dir, keepHistory)) {
+                    toRemove.addAll(staleHistory);
+                }
             }
         } catch (IOException e) {
             throw new IllegalStateException("Cannot scan deployment directories", e);
@@ -445,16 +460,57 @@ public class InstanceNodeController {
         }
     }
 
-    private static void cleanupBinDir(List<CleanupAction> toRemove, List<InstanceNodeController> toKeep, Path dir)
+    /**
+     * Removes the runtime history of all versions which are no longer available in the {@link BHive}. The runtime history of
+     * available versions is kept, regardless of whether they are installed or not.
+     *
+     * @return whether the runtime history of at least one version is kept.
+     */
+    private static boolean cleanupHistoryDir(List<CleanupAction> toRemove, SortedSet<Manifest.Key> inHive, Path dir)
             throws IOException {
+        Path historyDir = dir.resolve(InstanceNodeManifest.HISTORY_DIR);
+        if (!Files.isDirectory(historyDir)) {
+            return false;
+        }
+
+        boolean hasChild = false;
+        try (DirectoryStream<Path> historyStream = Files.newDirectoryStream(historyDir)) {
+            // each directory is a tag.
+            for (Path tagPath : historyStream) {
+                Optional<String> anyMatch = findTag(inHive.stream(), dir, tagPath);
+                if (anyMatch.isPresent()) {
+                    hasChild = true;
+                } else {
+                    toRemove.add(new CleanupAction(CleanupType.DELETE_FOLDER, tagPath.toAbsolutePath().toString(),
+                            "Delete stale runtime history"));
+                }
+            }
+        }
+
+        if (!hasChild) {
+            toRemove.add(new CleanupAction(CleanupType.DELETE_FOLDER, historyDir.toAbsolutePath().toString(),
+                    "Delete runtime history (no more instance versions available)"));
+        }
+        return hasChild;
+    }
+
+    /**
+     * @return whether the whole deployment directory is removed.
+     */
+    private static boolean cleanupBinDir(List<CleanupAction> toRemove, List<InstanceNodeController> toKeep, Path dir,
+            boolean keepHistory) throws IOException {
         Path binDir = dir.resolve(SpecialDirectory.BIN.getDirName());
 
         // if there is no bin-dir in there, remove it all together as spurious
-        // directory.
+        // directory - unless it still holds the runtime history of available versions.
         if (!Files.isDirectory(binDir)) {
+            if (keepHistory) {
+                cleanupInstanceDir(toRemove, dir);
+                return false;
+            }
             toRemove.add(new CleanupAction(CleanupType.DELETE_FOLDER, dir.toAbsolutePath().toString(),
                     "Remove spurious directory (no binary directory found)"));
-            return;
+            return true;
         }
 
         boolean hasChild = false;
@@ -472,16 +528,39 @@ public class InstanceNodeController {
             }
         }
 
-        if (!hasChild) {
+        if (!hasChild && keepHistory) {
+            // no active version anymore, but the runtime history of available versions is kept.
+            cleanupInstanceDir(toRemove, dir);
+        } else if (!hasChild) {
             // remove the whole deployment, no active version anymore. ATTENTION: deletes
             // logs, etc.
             toRemove.add(new CleanupAction(CleanupType.DELETE_FOLDER, dir.toAbsolutePath().toString(),
                     "Delete instance data (no more instance versions available)"));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes everything from the deployment directory except the runtime history. Stale binary folders are removed separately.
+     */
+    private static void cleanupInstanceDir(List<CleanupAction> toRemove, Path dir) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir,
+                p -> !p.getFileName().toString().equals(InstanceNodeManifest.HISTORY_DIR)
+                        && !p.getFileName().toString().equals(SpecialDirectory.BIN.getDirName()))) {
+            for (Path child : stream) {
+                toRemove.add(new CleanupAction(CleanupType.DELETE_FOLDER, child.toAbsolutePath().toString(),
+                        "Delete instance data (no more instance versions installed)"));
+            }
         }
     }
 
     private static Optional<String> findAliveTag(List<InstanceNodeController> toKeep, Path uuidPath, Path tagPath) {
-        return toKeep.stream().map(inc -> inc.getManifest().getKey())
+        return findTag(toKeep.stream().map(inc -> inc.getManifest().getKey()), uuidPath, tagPath);
+    }
+
+    private static Optional<String> findTag(Stream<Manifest.Key> keys, Path uuidPath, Path tagPath) {
+        return keys
                 // filter for matching instance UUID.
                 .filter(k -> k.getName().startsWith(uuidPath.getFileName().toString() + "/"))
                 // map to the tags which are still present in the hive.
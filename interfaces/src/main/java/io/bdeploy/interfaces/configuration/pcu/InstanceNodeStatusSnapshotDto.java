@@ -0,0 +1,25 @@
+package io.bdeploy.interfaces.configuration.pcu;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The status of the instances on a node as of a certain version.
+ * <p>
+ * Versions are only comparable within the same epoch. A node starts a new epoch whenever it restarts.
+ */
+public class InstanceNodeStatusSnapshotDto {
+
+    /** Identifies the lifetime of the process controller of the node which created the snapshot */
+    public String epoch;
+
+    /** The version of the status contained in this snapshot */
+    public long version;
+
+    /** Whether the snapshot contains all instances, or only those changed since the requested version */
+    public boolean full;
+
+    /** The status of the contained instances. Key = ID of instance */
+    public final Map<String, InstanceNodeStatusDto> instances = new TreeMap<>();
+
+}
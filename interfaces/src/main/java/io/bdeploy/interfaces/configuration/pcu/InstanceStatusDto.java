@@ -22,6 +22,9 @@ public class InstanceStatusDto {
     /** Node status informations. Key = NAME of the node */
     public final Map<String, InstanceNodeStatusDto> node2Applications = new HashMap<>();
 
+    /** Nodes which could not provide their status in time. Key = NAME of the node, Value = reason */
+    public final Map<String, String> node2Error = new HashMap<>();
+
     /**
      * Creates a new status DTO for the given instance.
      *
@@ -54,6 +57,9 @@ public class InstanceStatusDto {
             logs.add("\t" + entry.getKey());
             entry.getValue().log().forEach(l -> logs.add("\t\t" + l));
         }
+        for (Map.Entry<String, String> entry : node2Error.entrySet()) {
+            logs.add("\t" + entry.getKey() + ": " + entry.getValue());
+        }
         return logs;
     }
 
@@ -69,6 +75,18 @@ public class InstanceStatusDto {
         node2Applications.put(minion, nodeStatus);
     }
 
+    /**
+     * Records that the given node did not provide its status.
+     *
+     * @param minion
+     *            the name of the minion
+     * @param error
+     *            the reason why the status is missing
+     */
+    public void addError(String minion, String error) {
+        node2Error.put(minion, error);
+    }
+
     /**
      * Returns whether or not an application with the given UID is running on any node.
      *
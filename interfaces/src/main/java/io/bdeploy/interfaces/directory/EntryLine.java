@@ -0,0 +1,23 @@
+package io.bdeploy.interfaces.directory;
+
+/**
+ * A single line of a file.
+ */
+public class EntryLine {
+
+    /**
+     * The number of the line, starting at 0.
+     */
+    public long number;
+
+    /**
+     * byte offset into the file this line starts at.
+     */
+    public long offset;
+
+    /**
+     * The content of the line without line terminator. Very long lines are truncated.
+     */
+    public String content;
+
+}
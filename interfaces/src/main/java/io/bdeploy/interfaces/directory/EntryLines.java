@@ -0,0 +1,36 @@
+package io.bdeploy.interfaces.directory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A range of lines of a file.
+ */
+public class EntryLines {
+
+    /**
+     * The number of the first line in this range, starting at 0.
+     */
+    public long firstLine;
+
+    /**
+     * The total amount of lines in the file at the time of reading.
+     */
+    public long totalLines;
+
+    /**
+     * The lines in this range.
+     */
+    public List<EntryLine> lines = new ArrayList<>();
+
+    /**
+     * byte offset into the file this range starts at
+     */
+    public long startPointer;
+
+    /**
+     * byte offset into the file this range stops at.
+     */
+    public long endPointer;
+
+}
@@ -0,0 +1,51 @@
+package io.bdeploy.interfaces.directory;
+
+/**
+ * Describes a search for lines in a file.
+ */
+public class EntrySearchRequest {
+
+    /**
+     * The entry to search.
+     */
+    public RemoteDirectoryEntry entry;
+
+    /**
+     * The text to search for.
+     */
+    public String query;
+
+    /**
+     * Whether the {@link #query} is a regular expression. Otherwise it is a plain substring.
+     */
+    public boolean regex;
+
+    /**
+     * Whether to ignore case when searching.
+     */
+    public boolean ignoreCase;
+
+    /**
+     * Only lines logged at or after this time (in milliseconds since the epoch) match, 0 if not limited.
+     * <p>
+     * The time of a line is determined by a timestamp (e.g. <code>2023-01-31 12:34:56.789</code>) at its start. Lines without
+     * timestamp inherit the time of the preceding line.
+     */
+    public long from;
+
+    /**
+     * Only lines logged at or before this time (in milliseconds since the epoch) match, 0 if not limited.
+     */
+    public long to;
+
+    /**
+     * The number of the line to start searching at, e.g. to continue a previous search.
+     */
+    public long startLine;
+
+    /**
+     * The maximum amount of matches to return, 0 for the default of 1000.
+     */
+    public int maxMatches;
+
+}
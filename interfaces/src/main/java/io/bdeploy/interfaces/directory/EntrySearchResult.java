@@ -0,0 +1,27 @@
+package io.bdeploy.interfaces.directory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of an {@link EntrySearchRequest}.
+ */
+public class EntrySearchResult {
+
+    /**
+     * All matching lines.
+     */
+    public List<EntryLine> matches = new ArrayList<>();
+
+    /**
+     * The total amount of lines in the file at the time of searching.
+     */
+    public long totalLines;
+
+    /**
+     * The number of the line to continue the search at if the maximum amount of matches has been reached, -1 if the search is
+     * complete.
+     */
+    public long nextLine = -1;
+
+}
@@ -67,12 +67,34 @@ public class CommonEndpointHelper {
     public static WebTarget initClient(HttpEndpoint endpoint, String subPath) throws GeneralSecurityException {
         ClientBuilder client = ClientBuilder.newBuilder();
 
+        SSLContext sslContext = initSslContext(endpoint);
+        if (sslContext != null) {
+            client.sslContext(sslContext);
+            if (endpoint.trustAll) {
+                client.hostnameVerifier((s1, s2) -> true);
+            }
+        }
+
+        if (endpoint.authType == HttpAuthenticationType.BASIC) {
+            client.register(HttpAuthenticationFeature.basic(endpoint.authUser, endpoint.authPass));
+        } else if (endpoint.authType == HttpAuthenticationType.DIGEST) {
+            client.register(HttpAuthenticationFeature.digest(endpoint.authUser, endpoint.authPass));
+        }
+
+        // client is always used locally, so we use localhost as hostname to avoid contacting somebody else unintentionally.
+        return client.build().target(initUri(endpoint, "localhost", subPath));
+    }
+
+    /**
+     * @param endpoint the endpoint to connect to.
+     * @return the {@link SSLContext} to use when connecting to the given endpoint, <code>null</code> to use the default.
+     */
+    public static SSLContext initSslContext(HttpEndpoint endpoint) throws GeneralSecurityException {
         if (endpoint.secure && endpoint.trustAll) {
             SSLContext sslcontext = SSLContext.getInstance("TLS");
 
             sslcontext.init(null, new TrustManager[] { new TrustAllServersTrustManager() }, new java.security.SecureRandom());
-
-            client.sslContext(sslcontext).hostnameVerifier((s1, s2) -> true);
+            return sslcontext;
         } else if (endpoint.secure && endpoint.trustStore != null && !endpoint.trustStore.isEmpty()) {
             Path ksPath = Paths.get(endpoint.trustStore);
 
@@ -89,20 +111,12 @@ public class CommonEndpointHelper {
 
                 SSLContext sslContext = SSLContext.getInstance("TLS");
                 sslContext.init(null, tmf.getTrustManagers(), null);
-                client.sslContext(sslContext);
+                return sslContext;
             } catch (GeneralSecurityException | IOException e) {
                 log.error("Cannot load configures trust store from {}", ksPath, e);
             }
         }
-
-        if (endpoint.authType == HttpAuthenticationType.BASIC) {
-            client.register(HttpAuthenticationFeature.basic(endpoint.authUser, endpoint.authPass));
-        } else if (endpoint.authType == HttpAuthenticationType.DIGEST) {
-            client.register(HttpAuthenticationFeature.digest(endpoint.authUser, endpoint.authPass));
-        }
-
-        // client is always used locally, so we use localhost as hostname to avoid contacting somebody else unintentionally.
-        return client.build().target(initUri(endpoint, "localhost", subPath));
+        return null;
     }
 
     public static HttpEndpoint processEndpoint(VariableResolver resolver, HttpEndpoint rawEndpoint) {
@@ -266,7 +266,7 @@ public class InstanceManifest {
                 }
             }
         } else {
-            idKeys.addAll(allKeys);
+            allKeys.stream().filter(k -> names.contains(k.getName())).forEach(idKeys::add);
         }
 
         for (Manifest.Key key : idKeys) {
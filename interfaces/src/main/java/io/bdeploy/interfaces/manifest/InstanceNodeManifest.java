@@ -31,6 +31,8 @@ import io.bdeploy.common.util.RuntimeAssert;
 import io.bdeploy.interfaces.configuration.instance.InstanceNodeConfiguration;
 import io.bdeploy.interfaces.manifest.history.runtime.MinionRuntimeHistoryManager;
 import io.bdeploy.interfaces.manifest.state.InstanceState;
+import io.bdeploy.interfaces.variables.DeploymentPathProvider;
+import io.bdeploy.interfaces.variables.DeploymentPathProvider.SpecialDirectory;
 
 public class InstanceNodeManifest {
 
@@ -38,6 +40,11 @@ public class InstanceNodeManifest {
     public static final String ROOT_CONFIG_NAME = "root";
 
     private static final String CONFIG_TREE_NAME = "config";
+    /**
+     * Name of the directory in the deployment directory of an instance which holds the runtime history of each version. It is
+     * kept when versions are uninstalled, and removed along with the {@link InstanceNodeManifest} only.
+     */
+    public static final String HISTORY_DIR = "history";
 
     private InstanceNodeConfiguration config;
     private Manifest.Key key;
@@ -88,8 +95,15 @@ public class InstanceNodeManifest {
         return new InstanceState(getKey(), hive);
     }
 
-    public MinionRuntimeHistoryManager getRuntimeHistory(BHiveExecution hive) {
-        return new MinionRuntimeHistoryManager(getKey(), hive);
+    /**
+     * @param hive the {@link BHiveExecution} to operate on.
+     * @param paths the {@link DeploymentPathProvider} for this {@link InstanceNodeManifest}. The journal of the runtime history
+     *            is kept in {@link #HISTORY_DIR} in its deployment directory, outside of the installation.
+     * @return the {@link MinionRuntimeHistoryManager} for this {@link InstanceNodeManifest}.
+     */
+    public MinionRuntimeHistoryManager getRuntimeHistory(BHiveExecution hive, DeploymentPathProvider paths) {
+        return new MinionRuntimeHistoryManager(getKey(), hive,
+                paths.get(SpecialDirectory.ROOT).resolve(HISTORY_DIR).resolve(getKey().getTag()));
     }
 
     /**
@@ -0,0 +1,249 @@
+package io.bdeploy.interfaces.manifest.history.runtime;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.CacheBuilder;
+
+import io.bdeploy.bhive.util.StorageHelper;
+import io.bdeploy.common.util.JacksonHelper;
+import io.bdeploy.common.util.PathHelper;
+
+/**
+ * Append-only storage for the {@link MinionRuntimeHistory} of a single instance node version.
+ * <p>
+ * Each event is appended as a single line to the current segment file, so recording an event does not depend on the size of the
+ * history. Once a segment contains {@link #SEGMENT_RECORDS} events, the next segment is started. Once {@link #COMPACT_SEGMENTS}
+ * full segments exist, they are compacted into a snapshot of the history, which is replaced atomically.
+ * <p>
+ * There is a single instance per directory (see {@link #forDirectory(Path)}), which serializes access to that directory only.
+ */
+class MinionRuntimeHistoryJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(MinionRuntimeHistoryJournal.class);
+
+    private static final String SNAPSHOT_FILE = "snapshot.json";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    /** The amount of events recorded into a single segment */
+    static final int SEGMENT_RECORDS = 1_000;
+
+    /** The amount of full segments which triggers compaction */
+    static final int COMPACT_SEGMENTS = 4;
+
+    private static final ConcurrentMap<Path, MinionRuntimeHistoryJournal> journals = CacheBuilder.newBuilder().weakValues()
+            .<Path, MinionRuntimeHistoryJournal> build().asMap();
+
+    private static final ObjectMapper MAPPER = JacksonHelper.createDefaultObjectMapper();
+    private static final ObjectWriter LINE_WRITER = MAPPER.writer().without(SerializationFeature.INDENT_OUTPUT);
+
+    private final Path dir;
+
+    /** The number of the segment currently appended to, -1 if not yet determined */
+    private long segment = -1;
+    private int segmentRecords;
+
+    private MinionRuntimeHistoryJournal(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @param dir the directory holding the journal.
+     * @return the journal for the given directory, shared with all other users of the same directory.
+     */
+    static MinionRuntimeHistoryJournal forDirectory(Path dir) {
+        return journals.computeIfAbsent(dir.toAbsolutePath().normalize(), MinionRuntimeHistoryJournal::new);
+    }
+
+    /**
+     * Appends a single event to the journal.
+     *
+     * @param applicationId the application the event belongs to.
+     * @param rec the event to record.
+     * @param base provides the history recorded before the journal has been started, required for compaction.
+     */
+    synchronized void append(String applicationId, MinionRuntimeHistoryRecord rec, Supplier<MinionRuntimeHistory> base) {
+        try {
+            if (segment < 0) {
+                PathHelper.mkdirs(dir);
+                initSegment();
+            }
+
+            if (segmentRecords >= SEGMENT_RECORDS) {
+                segment++;
+                segmentRecords = 0;
+                compactIfRequired(base);
+            }
+
+            JournalEntry entry = new JournalEntry();
+            entry.app = applicationId;
+            entry.record = rec;
+            byte[] line = (LINE_WRITER.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+            Files.write(getSegmentPath(segment), line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            segmentRecords++;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot record runtime event in " + dir, e);
+        }
+    }
+
+    /**
+     * @param base provides the history recorded before the journal has been started.
+     * @return the full history, consisting of the last snapshot and all events recorded since.
+     */
+    synchronized MinionRuntimeHistory read(Supplier<MinionRuntimeHistory> base) {
+        try {
+            JournalSnapshot snapshot = readSnapshot();
+            MinionRuntimeHistory history = snapshot != null ? snapshot.history : base.get();
+            long compacted = snapshot != null ? snapshot.segment : -1;
+            for (Path segmentPath : getSegments().tailMap(compacted, false).values()) {
+                replay(segmentPath, history);
+            }
+            return history;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read runtime history from " + dir, e);
+        }
+    }
+
+    /**
+     * Determines the segment to append to and the amount of events already recorded in it.
+     */
+    private void initSegment() throws IOException {
+        TreeMap<Long, Path> segments = getSegments();
+        if (segments.isEmpty()) {
+            JournalSnapshot snapshot = readSnapshot();
+            segment = snapshot != null ? snapshot.segment + 1 : 0;
+            segmentRecords = 0;
+        } else {
+            segment = segments.lastKey();
+            try (Stream<String> lines = Files.lines(segments.lastEntry().getValue(), StandardCharsets.UTF_8)) {
+                segmentRecords = (int) lines.count();
+            }
+        }
+    }
+
+    /**
+     * Folds all full segments into the snapshot once there are enough of them.
+     */
+    private void compactIfRequired(Supplier<MinionRuntimeHistory> base) throws IOException {
+        TreeMap<Long, Path> full = new TreeMap<>(getSegments().headMap(segment, false));
+        JournalSnapshot snapshot = readSnapshot();
+        if (snapshot != null) {
+            // left over from an interrupted compaction, already contained in the snapshot.
+            for (Path compacted : full.headMap(snapshot.segment, true).values()) {
+                Files.deleteIfExists(compacted);
+            }
+            full.headMap(snapshot.segment, true).clear();
+        }
+
+        if (full.size() < COMPACT_SEGMENTS) {
+            return;
+        }
+
+        JournalSnapshot updated = new JournalSnapshot();
+        updated.history = snapshot != null ? snapshot.history : base.get();
+        for (Path segmentPath : full.values()) {
+            replay(segmentPath, updated.history);
+        }
+        updated.segment = full.lastKey();
+
+        Path tmp = dir.resolve(SNAPSHOT_FILE + ".tmp");
+        Files.write(tmp, StorageHelper.toRawBytes(updated), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.SYNC);
+        Files.move(tmp, dir.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (Path compacted : full.values()) {
+            Files.deleteIfExists(compacted);
+        }
+    }
+
+    private JournalSnapshot readSnapshot() {
+        Path snapshot = dir.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) {
+            return null;
+        }
+        return StorageHelper.fromPath(snapshot, JournalSnapshot.class);
+    }
+
+    /**
+     * @return all segments of the journal, ordered by their number.
+     */
+    private TreeMap<Long, Path> getSegments() throws IOException {
+        TreeMap<Long, Path> result = new TreeMap<>();
+        if (!Files.isDirectory(dir)) {
+            return result;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(f -> {
+                String name = f.getFileName().toString();
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        result.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), f);
+                    } catch (NumberFormatException e) {
+                        log.warn("Ignoring unexpected file in runtime history: {}", f);
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    private Path getSegmentPath(long number) {
+        return dir.resolve(String.format("%010d", number) + SEGMENT_SUFFIX);
+    }
+
+    private static void replay(Path segmentPath, MinionRuntimeHistory history) throws IOException {
+        int broken = 0;
+        try (BufferedReader reader = Files.newBufferedReader(segmentPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JournalEntry entry = MAPPER.readValue(line, JournalEntry.class);
+                    history.recordEvent(entry.record, entry.app);
+                } catch (IOException e) {
+                    // an incomplete line in case the process died while writing it.
+                    broken++;
+                }
+            }
+        }
+        if (broken > 0) {
+            log.warn("Ignoring {} damaged entries in {}", broken, segmentPath);
+        }
+    }
+
+    /**
+     * A single line in a segment of the journal.
+     */
+    private static class JournalEntry {
+
+        private String app;
+        private MinionRuntimeHistoryRecord record;
+    }
+
+    /**
+     * The compacted history up to and including the given segment.
+     */
+    private static class JournalSnapshot {
+
+        private long segment;
+        private MinionRuntimeHistory history;
+    }
+
+}
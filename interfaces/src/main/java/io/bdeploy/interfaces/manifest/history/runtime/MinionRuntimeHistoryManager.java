@@ -1,46 +1,56 @@
 package io.bdeploy.interfaces.manifest.history.runtime;
 
+import java.nio.file.Path;
+
 import io.bdeploy.bhive.BHiveExecution;
 import io.bdeploy.bhive.meta.MetaManifest;
 import io.bdeploy.bhive.model.Manifest;
 import io.bdeploy.interfaces.configuration.pcu.ProcessState;
 
+/**
+ * Records and reads the {@link MinionRuntimeHistory} of a single instance node version.
+ * <p>
+ * Events are stored in an append-only journal (see {@link MinionRuntimeHistoryJournal}). History recorded by previous versions
+ * into a {@link MetaManifest} is still read and becomes part of the journal once it is compacted.
+ */
 public class MinionRuntimeHistoryManager {
 
     private final MetaManifest<MinionRuntimeHistory> meta;
     private final BHiveExecution hive;
+    private final MinionRuntimeHistoryJournal journal;
 
-    public MinionRuntimeHistoryManager(Manifest.Key manifest, BHiveExecution hive) {
+    /**
+     * @param manifest the instance node manifest to record history for.
+     * @param hive the hive holding history recorded by previous versions.
+     * @param journalDir the directory holding the journal.
+     */
+    public MinionRuntimeHistoryManager(Manifest.Key manifest, BHiveExecution hive, Path journalDir) {
         this.meta = new MetaManifest<>(manifest, true, MinionRuntimeHistory.class);
         this.hive = hive;
+        this.journal = MinionRuntimeHistoryJournal.forDirectory(journalDir);
     }
 
     public MinionRuntimeHistory getFullHistory() {
-        return readOrCreate();
+        return journal.read(this::readLegacy);
     }
 
     /**
      * Records a single state change event.
      * <p>
-     * The method is synchronized, since the same instance of the {@link MinionRuntimeHistoryManager} is used for process
-     * controllers. In case a process crashes and is immediately restarted (for instance) events may occur so fast on different
-     * threads for the same application, that a key conflict can occur during recording.
+     * The event is appended to the journal, which is shared by all {@link MinionRuntimeHistoryManager}s for the same instance
+     * node version, so events occurring concurrently on different threads are all recorded.
      * </p>
      */
-    public synchronized void recordEvent(long processId, int exitCode, ProcessState action, String applicationId, String user) {
-        store(readOrCreate().recordEvent(new MinionRuntimeHistoryRecord(processId, exitCode, action, user, System.currentTimeMillis()),
-                applicationId));
+    public void recordEvent(long processId, int exitCode, ProcessState action, String applicationId, String user) {
+        journal.append(applicationId,
+                new MinionRuntimeHistoryRecord(processId, exitCode, action, user, System.currentTimeMillis()), this::readLegacy);
     }
 
-    private MinionRuntimeHistory readOrCreate() {
+    private MinionRuntimeHistory readLegacy() {
         MinionRuntimeHistory stored = meta.read(hive);
         if (stored == null) {
             return new MinionRuntimeHistory();
         }
         return stored;
     }
-
-    private void store(MinionRuntimeHistory history) {
-        meta.write(hive, history);
-    }
 }
@@ -23,7 +23,9 @@ public class ControllingMaster {
     public void associate(String master) {
         ControllingMasterConfiguration value = new ControllingMasterConfiguration();
         value.setName(master);
-        meta.write(hive, value);
+
+        // associated for many instances at once when synchronizing.
+        meta.writeDeferred(hive, value);
     }
 
     /**
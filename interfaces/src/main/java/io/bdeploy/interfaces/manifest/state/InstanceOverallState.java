@@ -1,7 +1,9 @@
 
 package io.bdeploy.interfaces.manifest.state;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
 
 import io.bdeploy.bhive.BHiveExecution;
 import io.bdeploy.bhive.meta.MetaManifest;
@@ -26,6 +28,22 @@ public class InstanceOverallState {
         store(rec);
     }
 
+    /**
+     * Updates the state unless the persisted state is equal and younger than the given age.
+     *
+     * @param maxAge the maximum age of an equal persisted state to keep it as is.
+     * @return whether the state has been updated.
+     */
+    public boolean updateIfChanged(OverallStatus status, List<String> messages, Duration maxAge) {
+        InstanceOverallStateRecord current = meta.read(hive);
+        if (current != null && current.status == status && Objects.equals(current.messages, messages)
+                && System.currentTimeMillis() - current.timestamp < maxAge.toMillis()) {
+            return false;
+        }
+        update(status, messages);
+        return true;
+    }
+
     /**
      * @return the currently persisted state of the instance version.
      */
@@ -42,7 +60,8 @@ public class InstanceOverallState {
     }
 
     private void store(InstanceOverallStateRecord rec) {
-        meta.write(hive, rec);
+        // updated frequently for many instances at once.
+        meta.writeDeferred(hive, rec);
     }
 
 }
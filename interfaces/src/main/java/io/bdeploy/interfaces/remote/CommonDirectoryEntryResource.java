@@ -4,6 +4,9 @@ import java.io.InputStream;
 import java.util.List;
 
 import io.bdeploy.interfaces.directory.EntryChunk;
+import io.bdeploy.interfaces.directory.EntryLines;
+import io.bdeploy.interfaces.directory.EntrySearchRequest;
+import io.bdeploy.interfaces.directory.EntrySearchResult;
 import io.bdeploy.interfaces.directory.RemoteDirectoryEntry;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.POST;
@@ -21,13 +24,55 @@ public interface CommonDirectoryEntryResource {
     /**
      * @param entry the {@link RemoteDirectoryEntry} to fetch content from.
      * @param offset the offset into the underlying file.
-     * @param limit maximum bytes to read. 0 means no limit.
-     * @return a chunk of the given entry, starting at offset until the <b>current</b> end of the file.
+     * @param limit maximum bytes to read. 0 means a default of 16MB.
+     * @return a chunk of the given entry, starting at offset until the <b>current</b> end of the file or the limit. Clients
+     *         continue reading at the chunk's end pointer.
      */
     @POST
     @Path("/content")
     public EntryChunk getEntryContent(RemoteDirectoryEntry entry, @QueryParam("o") long offset, @QueryParam("l") long limit);
 
+    /**
+     * Follows the given entry. All content starting at the given offset is streamed, as well as all content appended to the file
+     * while following it.
+     * <p>
+     * The stream ends once the given time has passed or the file has been reset. Clients continue to follow the entry by
+     * requesting it again, using the given offset plus the amount of bytes received.
+     *
+     * @param entry the {@link RemoteDirectoryEntry} to follow.
+     * @param offset the offset into the underlying file.
+     * @param timeout the time in milliseconds to follow the entry. 0 (or anything larger) means the maximum of one minute.
+     * @return a stream of the content of the file. Status 205 (reset content) if the file is smaller than the given offset, in
+     *         which case the client should start over at offset 0. Status 503 (service unavailable) if too many entries are
+     *         followed already, in which case the client should fall back to reading chunks.
+     * @since 4.6.0
+     */
+    @POST
+    @Path("/followContent")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response followEntryContent(RemoteDirectoryEntry entry, @QueryParam("o") long offset, @QueryParam("t") long timeout);
+
+    /**
+     * @param entry the {@link RemoteDirectoryEntry} to fetch lines from.
+     * @param firstLine the number of the first line to fetch, starting at 0. Negative numbers count from the end of the file,
+     *            e.g. -1000 to fetch the last 1000 lines.
+     * @param count the maximum amount of lines to fetch, 0 for the default of 1000.
+     * @return the requested lines, as far as they exist.
+     * @since 4.6.0
+     */
+    @POST
+    @Path("/lines")
+    public EntryLines getEntryLines(RemoteDirectoryEntry entry, @QueryParam("f") long firstLine, @QueryParam("c") int count);
+
+    /**
+     * @param request describes the entry to search and what to search for.
+     * @return all lines matching the request, up to the requested maximum amount of matches.
+     * @since 4.6.0
+     */
+    @POST
+    @Path("/search")
+    public EntrySearchResult searchEntry(EntrySearchRequest request);
+
     /**
      * @param entry the entry to stream. The stream will include the complete content of the file.
      * @return an {@link InputStream} that can be used to stream the file.
@@ -12,6 +12,9 @@ import io.bdeploy.interfaces.configuration.instance.InstanceUpdateDto;
 import io.bdeploy.interfaces.configuration.pcu.InstanceStatusDto;
 import io.bdeploy.interfaces.configuration.pcu.ProcessDetailDto;
 import io.bdeploy.interfaces.directory.EntryChunk;
+import io.bdeploy.interfaces.directory.EntryLines;
+import io.bdeploy.interfaces.directory.EntrySearchRequest;
+import io.bdeploy.interfaces.directory.EntrySearchResult;
 import io.bdeploy.interfaces.directory.RemoteDirectory;
 import io.bdeploy.interfaces.directory.RemoteDirectoryEntry;
 import io.bdeploy.interfaces.manifest.attributes.CustomAttributesRecord;
@@ -121,6 +124,36 @@ public interface MasterNamedResource {
     public EntryChunk getEntryContent(@QueryParam("m") String minion, RemoteDirectoryEntry entry, @QueryParam("o") long offset,
             @QueryParam("l") long limit);
 
+    /**
+     * Delegates to the specified minion to fetch lines of a file.
+     *
+     * @see CommonDirectoryEntryResource#getEntryLines(RemoteDirectoryEntry, long, int)
+     */
+    @POST
+    @Path("/dataDir/entryLines")
+    public EntryLines getEntryLines(@QueryParam("m") String minion, RemoteDirectoryEntry entry, @QueryParam("f") long firstLine,
+            @QueryParam("c") int count);
+
+    /**
+     * Delegates to the specified minion to search a file.
+     *
+     * @see CommonDirectoryEntryResource#searchEntry(EntrySearchRequest)
+     */
+    @POST
+    @Path("/dataDir/searchEntry")
+    public EntrySearchResult searchEntry(@QueryParam("m") String minion, EntrySearchRequest request);
+
+    /**
+     * Delegates to the specified minion to follow a file.
+     *
+     * @see CommonDirectoryEntryResource#followEntryContent(RemoteDirectoryEntry, long, long)
+     */
+    @POST
+    @Path("/dataDir/followEntry")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response followEntryContent(@QueryParam("m") String minion, RemoteDirectoryEntry entry, @QueryParam("o") long offset,
+            @QueryParam("t") long timeout);
+
     /**
      * @param minion the minion the entry refers to.
      * @param entry the entry to stream. The stream will include the complete
@@ -268,7 +301,8 @@ public interface MasterNamedResource {
      *            entry for.
      * @return an {@link RemoteDirectory} specifying the minion the entry resides
      *         on. The {@link RemoteDirectoryEntry} list might be empty in case no
-     *         output file exists.
+     *         output file exists. Otherwise the first entry is the current output
+     *         file, followed by rotated output segments, the newest one first.
      */
     @GET
     @Path("/output")
@@ -296,6 +330,20 @@ public interface MasterNamedResource {
     @Path("/process-details")
     public ProcessDetailDto getProcessDetails(@QueryParam("u") String instanceId, @QueryParam("a") String appUid);
 
+    /**
+     * Returns the most recent output of a single application, which is kept in memory by the node.
+     *
+     * @param instanceId the unique id of the instance.
+     * @param appUid the application UID to query
+     * @param maxLines the maximum number of lines to return
+     * @return the most recent lines of output, the oldest one first.
+     * @since 4.6.0
+     */
+    @GET
+    @Path("/process-output")
+    public List<String> getRecentOutput(@QueryParam("u") String instanceId, @QueryParam("a") String appUid,
+            @QueryParam("l") int maxLines);
+
     /**
      * @param principal the principal name to issue the token to.
      * @return a "weak" token only suitable for fetching by launcher-like
@@ -1,8 +1,10 @@
 package io.bdeploy.interfaces.remote;
 
 import java.util.List;
+import java.util.Map;
 
 import io.bdeploy.interfaces.configuration.pcu.InstanceNodeStatusDto;
+import io.bdeploy.interfaces.configuration.pcu.InstanceNodeStatusSnapshotDto;
 import io.bdeploy.interfaces.configuration.pcu.ProcessDetailDto;
 import io.bdeploy.interfaces.directory.RemoteDirectoryEntry;
 import io.bdeploy.interfaces.manifest.history.runtime.MinionRuntimeHistoryDto;
@@ -104,6 +106,33 @@ public interface NodeProcessResource {
     @Path("/process-status")
     public InstanceNodeStatusDto getStatus(@QueryParam("u") String instanceId);
 
+    /**
+     * Returns status information about multiple instances at once.
+     *
+     * @param instanceIds
+     *            the unique ids of the instances.
+     * @return the status information of all given instances known to this node. Key = ID of the instance
+     * @since 4.6.0
+     */
+    @POST
+    @Path("/process-status-bulk")
+    public Map<String, InstanceNodeStatusDto> getStatus(List<String> instanceIds);
+
+    /**
+     * Returns the status of all instances on this node which changed since the given version.
+     *
+     * @param epoch
+     *            the epoch of the last known snapshot, <code>null</code> if there is none.
+     * @param since
+     *            the version of the last known snapshot.
+     * @return the status of all instances which changed since the given version, or the status of all instances if the given
+     *         epoch is not the current one.
+     * @since 4.6.0
+     */
+    @GET
+    @Path("/process-status-snapshot")
+    public InstanceNodeStatusSnapshotDto getStatusSnapshot(@QueryParam("e") String epoch, @QueryParam("s") long since);
+
     /**
      * Returns the full status of a single application.
      *
@@ -127,6 +156,32 @@ public interface NodeProcessResource {
     public RemoteDirectoryEntry getOutputEntry(@QueryParam("u") String instanceId, @QueryParam("t") String tag,
             @QueryParam("a") String applicationId);
 
+    /**
+     * @param instanceId the instance UUID
+     * @param tag the tag for which to retrieve the output file entries.
+     * @param applicationId the application ID for which to retrieve the output file entries.
+     * @return the entry of the current output file, followed by the entries of rotated output segments, the newest one first.
+     *         Can be used with {@link CommonDirectoryEntryResource}.
+     * @since 4.6.0
+     */
+    @GET
+    @Path("/output-entries")
+    public List<RemoteDirectoryEntry> getOutputEntries(@QueryParam("u") String instanceId, @QueryParam("t") String tag,
+            @QueryParam("a") String applicationId);
+
+    /**
+     * @param instanceId the instance UUID
+     * @param applicationId the application ID for which to retrieve the output.
+     * @param maxLines the maximum number of lines to retrieve.
+     * @return the most recent lines of output of the application, the oldest one first. The output is kept in memory, thus this
+     *         does not read the output file.
+     * @since 4.6.0
+     */
+    @GET
+    @Path("/output-recent")
+    public List<String> getRecentOutput(@QueryParam("u") String instanceId, @QueryParam("a") String applicationId,
+            @QueryParam("l") int maxLines);
+
     /**
      * Writes data to the stdin stream of an application.
      *
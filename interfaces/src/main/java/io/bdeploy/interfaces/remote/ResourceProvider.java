@@ -1,12 +1,14 @@
 package io.bdeploy.interfaces.remote;
 
+import java.time.Duration;
+
 import jakarta.ws.rs.core.SecurityContext;
 
 import io.bdeploy.bhive.remote.jersey.JerseyRemoteBHive;
 import io.bdeploy.common.security.RemoteService;
 import io.bdeploy.interfaces.remote.versioning.VersionMismatchFilter;
 import io.bdeploy.jersey.JerseyClientFactory;
-import io.bdeploy.jersey.JerseyOnBehalfOfFilter;
+import io.bdeploy.jersey.JerseyReadTimeoutFilter;
 
 /**
  * Provides a {@link JerseyClientFactory} with all required configurations applied.
@@ -34,7 +36,7 @@ public class ResourceProvider {
      */
     public static <T> T getResource(RemoteService service, Class<T> clazz, SecurityContext caller) {
         JerseyClientFactory factory = of(service);
-        return factory.getProxyClient(clazz, new JerseyOnBehalfOfFilter(caller));
+        return factory.getProxyClient(clazz, caller);
     }
 
     /**
@@ -47,7 +49,23 @@ public class ResourceProvider {
      */
     public static <T> T getVersionedResource(RemoteService service, Class<T> clazz, SecurityContext caller) {
         JerseyClientFactory factory = of(service);
-        return factory.getProxyClient(clazz, new JerseyOnBehalfOfFilter(caller), new VersionMismatchFilter(factory));
+        return factory.getProxyClient(clazz, caller, new VersionMismatchFilter(factory));
+    }
+
+    /**
+     * Returns a proxy for the given service, see {@link #getVersionedResource(RemoteService, Class, SecurityContext)}. Each call
+     * fails if the remote does not send any data within the given timeout.
+     *
+     * @param service the remote to connect to
+     * @param clazz the type of interface to connect to
+     * @param caller the caller on whos behalf to act on. if <code>null</code>, the user of the token in the remote is used.
+     * @param readTimeout the maximum time to wait for data from the remote.
+     */
+    public static <T> T getVersionedResource(RemoteService service, Class<T> clazz, SecurityContext caller,
+            Duration readTimeout) {
+        JerseyClientFactory factory = of(service);
+        return factory.getProxyClient(clazz, caller, new VersionMismatchFilter(factory),
+                new JerseyReadTimeoutFilter(readTimeout));
     }
 
 }
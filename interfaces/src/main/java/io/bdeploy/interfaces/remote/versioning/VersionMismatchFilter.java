@@ -55,4 +55,32 @@ public class VersionMismatchFilter implements ClientResponseFilter {
         }
     }
 
+    /**
+     * @param e an exception thrown by a call to a remote resource.
+     * @return whether the exception indicates that the remote does not provide the called endpoint (yet), e.g. because it
+     *         runs an older version. Callers can then fall back to an older endpoint.
+     */
+    public static boolean isNotSupported(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof WebApplicationException) {
+                int status = ((WebApplicationException) t).getResponse().getStatus();
+                if (status == 404 || status == CODE_VERSION_MISMATCH) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(factory);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        // all filters of a factory are interchangeable, which allows the factory to share a single client runtime for them.
+        return obj instanceof VersionMismatchFilter && ((VersionMismatchFilter) obj).factory == factory;
+    }
+
 }
@@ -2,7 +2,10 @@ package io.bdeploy.jersey;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -38,15 +41,25 @@ import io.bdeploy.jersey.ws.change.client.ObjectChangeClientListener;
 import io.bdeploy.jersey.ws.change.client.ObjectChangeClientWebSocket;
 import io.bdeploy.jersey.ws.change.msg.ObjectChangeDto;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.ClientBuilder;
 import jakarta.ws.rs.client.ClientRequestContext;
 import jakarta.ws.rs.client.ClientRequestFilter;
 import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.Form;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.SecurityContext;
 import jakarta.ws.rs.ext.ContextResolver;
 import jakarta.ws.rs.ext.Provider;
 
 /**
  * A factory for Jersey based JAX-RS clients.
+ * <p>
+ * Each factory holds a single long-lived {@link Client} for its {@link RemoteService}. Reusing the client (and thus its
+ * connector and {@link SSLContext}) allows the underlying connections to be kept alive and reused in between requests. State
+ * which differs per call (e.g. the user to act on behalf of) is passed along with the request instead of being registered on a
+ * new client.
  */
 public class JerseyClientFactory {
 
@@ -63,7 +76,10 @@ public class JerseyClientFactory {
     private final RemoteService svc;
     private ActivityReporter reporter = defaultReporter;
     private final Set<com.fasterxml.jackson.databind.Module> additionalModules = new HashSet<>();
+    private Client cachedClient;
     private WebTarget cachedTarget;
+    private final Cache<List<Object>, WebTarget> derivedTargets = CacheBuilder.newBuilder().maximumSize(50)
+            .expireAfterAccess(5, TimeUnit.MINUTES).build();
 
     private static final ThreadLocal<String> proxyUuid = new ThreadLocal<>();
     private static final Cache<RemoteService, JerseyClientFactory> factoryCache = CacheBuilder.newBuilder().maximumSize(100)
@@ -105,7 +121,9 @@ public class JerseyClientFactory {
             return;
         }
 
+        cachedClient = null;
         cachedTarget = null;
+        derivedTargets.invalidateAll();
         additionalModules.add(o);
     }
 
@@ -137,6 +155,15 @@ public class JerseyClientFactory {
      * @return A dynamic proxy based client for the given remote service.
      */
     public <T> T getProxyClient(Class<T> clazz, Object... additionalRegistrations) {
+        return getProxyClient(clazz, null, additionalRegistrations);
+    }
+
+    /**
+     * @param clazz the type of resource (service interface).
+     * @param onBehalfOf the caller on whos behalf to act on. if <code>null</code>, the user of the token in the remote is used.
+     * @return A dynamic proxy based client for the given remote service.
+     */
+    public <T> T getProxyClient(Class<T> clazz, SecurityContext onBehalfOf, Object... additionalRegistrations) {
         Path path = clazz.getAnnotation(Path.class);
         // Sub-Resources that are provided by another resource have - by convention - no path declared
         // Trying to directly resolve them could lead to troubles that are hard to discover and debug
@@ -144,19 +171,53 @@ public class JerseyClientFactory {
             log.error("Resource '{}' does not have a @Path annotation."
                     + "Seems to be a sub-resource that needs to be queried via a parent resource.", clazz);
         }
-        return WebResourceFactory.newResource(clazz, getBaseTarget(additionalRegistrations));
+
+        // headers are sent with each request of the proxy (and its sub-resources), the underlying client is shared.
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        String user = JerseyOnBehalfOfFilter.getOnBehalfOf(onBehalfOf);
+        if (user != null) {
+            headers.add(JerseyOnBehalfOfFilter.ON_BEHALF_OF_HEADER, user);
+        }
+        return WebResourceFactory.newResource(clazz, getBaseTarget(additionalRegistrations), false, headers,
+                Collections.emptyList(), new Form());
     }
 
     /**
+     * @param additionalRegistrations additional features, filters or providers. Registrations are part of the client
+     *            configuration, so every distinct set of registrations requires its own client runtime. Targets are cached per
+     *            set of registrations, so registrations should implement {@link Object#equals(Object)} based on their state to be
+     *            able to share the runtime (and the connections).
      * @return a {@link WebTarget} with all required feature, filter and provider
      *         registrations for the {@link RemoteService} associated with this
      *         factory.
      */
     public synchronized WebTarget getBaseTarget(Object... additionalRegistrations) {
-        if (additionalRegistrations.length == 0 && cachedTarget != null) {
+        if (cachedClient == null) {
+            cachedClient = createClient();
+            cachedTarget = cachedClient.target(svc.getUri());
+        }
+
+        if (additionalRegistrations.length == 0) {
             return cachedTarget;
         }
 
+        List<Object> key = Arrays.asList(additionalRegistrations);
+        WebTarget target = derivedTargets.getIfPresent(key);
+        if (target == null) {
+            target = cachedClient.target(svc.getUri());
+            for (Object reg : additionalRegistrations) {
+                if (reg instanceof Class<?>) {
+                    target.register((Class<?>) reg);
+                } else {
+                    target.register(reg);
+                }
+            }
+            derivedTargets.put(key, target);
+        }
+        return target;
+    }
+
+    private Client createClient() {
         ClientBuilder builder = ClientBuilder.newBuilder();
 
         // for HttpUrlConnection to allow restricted headers, see https://eclipse-ee4j.github.io/jersey.github.io/documentation/latest/client.html#d0e4971
@@ -183,22 +244,7 @@ public class JerseyClientFactory {
         builder.register(new JerseyClientReporterResolver());
         builder.register(new JerseyRemoteActivityScopeClientFilter(proxyUuid::get));
 
-        for (Object reg : additionalRegistrations) {
-            if (reg instanceof Class<?>) {
-                builder.register((Class<?>) reg);
-            } else {
-                builder.register(reg);
-            }
-        }
-
-        WebTarget target = builder.build().target(svc.getUri());
-
-        if (additionalRegistrations.length == 0) {
-            // cache the target
-            cachedTarget = target;
-        }
-
-        return target;
+        return builder.build();
     }
 
     public static void setProxyUuid(String uuid) {
@@ -226,12 +272,20 @@ public class JerseyClientFactory {
      * Create a {@link ObjectChangeClientWebSocket} which allows to subscribe to object changes, and notifies about them.
      */
     public ObjectChangeClientWebSocket getObjectChangeWebSocket(Consumer<ObjectChangeDto> onChanges) {
+        return getObjectChangeWebSocket(onChanges, null);
+    }
+
+    /**
+     * Create a {@link ObjectChangeClientWebSocket} which allows to subscribe to object changes, and notifies about them as well
+     * as about the connection being closed, either locally or by the remote.
+     */
+    public ObjectChangeClientWebSocket getObjectChangeWebSocket(Consumer<ObjectChangeDto> onChanges, Runnable onClose) {
         AsyncHttpClient client = getWebSocketClient();
         ListenableFuture<WebSocket> ws = client
                 .prepareGet(
                         svc.getWebSocketUri(ObjectChangeWebSocket.OCWS_PATH).toString())
                 .execute(new WebSocketUpgradeHandler.Builder().addWebSocketListener(new ObjectChangeClientListener(
-                        SecurityHelper.getInstance().getTokenFromPack(svc.getAuthPack()), onChanges)).build());
+                        SecurityHelper.getInstance().getTokenFromPack(svc.getAuthPack()), onChanges, onClose)).build());
 
         try {
             return new ObjectChangeClientWebSocket(client, ws.get());
@@ -1,6 +1,7 @@
 package io.bdeploy.jersey;
 
 import java.io.IOException;
+import java.util.Objects;
 
 import jakarta.ws.rs.client.ClientRequestContext;
 import jakarta.ws.rs.client.ClientRequestFilter;
@@ -13,7 +14,15 @@ public class JerseyOnBehalfOfFilter implements ClientRequestFilter {
     private final String onBehalf;
 
     public JerseyOnBehalfOfFilter(SecurityContext context) {
-        this.onBehalf = (context == null || context.getUserPrincipal() == null) ? null : context.getUserPrincipal().getName();
+        this.onBehalf = getOnBehalfOf(context);
+    }
+
+    /**
+     * @param context the caller's context, may be <code>null</code>.
+     * @return the name of the user to act on behalf of, <code>null</code> if there is none.
+     */
+    public static String getOnBehalfOf(SecurityContext context) {
+        return (context == null || context.getUserPrincipal() == null) ? null : context.getUserPrincipal().getName();
     }
 
     @Override
@@ -23,4 +32,15 @@ public class JerseyOnBehalfOfFilter implements ClientRequestFilter {
         }
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(onBehalf);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        // filters for the same user are interchangeable, which allows JerseyClientFactory to share their client runtime.
+        return obj instanceof JerseyOnBehalfOfFilter && Objects.equals(onBehalf, ((JerseyOnBehalfOfFilter) obj).onBehalf);
+    }
+
 }
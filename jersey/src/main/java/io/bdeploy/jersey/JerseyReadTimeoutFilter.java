@@ -0,0 +1,44 @@
+package io.bdeploy.jersey;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+
+import org.glassfish.jersey.client.ClientProperties;
+
+/**
+ * Client filter applying a read timeout to each request sent through the target it is registered on.
+ * <p>
+ * The shared client of the {@link JerseyClientFactory} has no read timeout. This filter is meant for calls which are abandoned
+ * by the caller after a deadline anyway, so they do not keep their thread once the remote stops responding.
+ */
+public final class JerseyReadTimeoutFilter implements ClientRequestFilter {
+
+    private final int timeoutMillis;
+
+    /**
+     * @param timeout the maximum time to wait for data from the remote.
+     */
+    public JerseyReadTimeoutFilter(Duration timeout) {
+        this.timeoutMillis = (int) Math.min(Integer.MAX_VALUE, Math.max(1, timeout.toMillis()));
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext) throws IOException {
+        requestContext.setProperty(ClientProperties.READ_TIMEOUT, timeoutMillis);
+    }
+
+    @Override
+    public int hashCode() {
+        return timeoutMillis;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        // filters with the same timeout are interchangeable, which allows the factory to share a single client runtime for them.
+        return obj instanceof JerseyReadTimeoutFilter && ((JerseyReadTimeoutFilter) obj).timeoutMillis == timeoutMillis;
+    }
+
+}
@@ -1,17 +1,45 @@
 package io.bdeploy.jersey;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.glassfish.jersey.server.ChunkedOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import io.bdeploy.common.ActivityReporter;
 import io.bdeploy.common.ActivityReporter.Activity;
+import io.bdeploy.common.util.NamedDaemonThreadFactory;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.StreamingOutput;
 
 /**
- * Handles reading/writing of large data streams while tracking progress.
+ * Handles reading/writing of large data streams while tracking progress, as well as continuous streams.
  */
 public class JerseyStreamingHelper {
 
+    private static final Logger log = LoggerFactory.getLogger(JerseyStreamingHelper.class);
+
+    /** The maximum number of continuous responses written at the same time, each one occupies a thread while written */
+    private static final int MAX_CONTINUOUS_WRITERS = 64;
+
+    private static final AtomicInteger writerNum = new AtomicInteger(0);
+    private static final ExecutorService continuousWriters = new ThreadPoolExecutor(0, MAX_CONTINUOUS_WRITERS, 60L,
+            TimeUnit.SECONDS, new SynchronousQueue<>(),
+            new NamedDaemonThreadFactory(() -> "Continuous Output " + writerNum.incrementAndGet()));
+
     public enum StreamDirection {
         READ,
         WRITE
@@ -42,4 +70,102 @@ public class JerseyStreamingHelper {
         }
     }
 
+    /**
+     * @param output writes the continuous stream (e.g. a followed file) to respond with. Data is sent whenever the output is
+     *            flushed.
+     * @return a response which passes on the given output as it is written. The output is written asynchronously, as responses
+     *         are buffered until fully written otherwise. Compression is disabled for the response, as it would hold back data
+     *         until the compressor's buffer is full.
+     * @throws WebApplicationException with status 503 (service unavailable) if too many continuous responses are written
+     *             already.
+     */
+    public static Response createContinuousResponse(StreamingOutput output) {
+        ChunkedOutput<byte[]> chunked = new ChunkedOutput<>(byte[].class);
+        try {
+            continuousWriters.execute(() -> {
+                try (OutputStream os = new ChunkedOutputStream(chunked)) {
+                    output.write(os);
+                } catch (IOException e) {
+                    // most likely the client went away.
+                    if (log.isDebugEnabled()) {
+                        log.debug("Could not fully write continuous output", e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new WebApplicationException("Too many continuous responses, try again later", e, Status.SERVICE_UNAVAILABLE);
+        }
+        return Response.ok(chunked, MediaType.APPLICATION_OCTET_STREAM).header(HttpHeaders.CONTENT_ENCODING, "identity").build();
+    }
+
+    /**
+     * @param response a response created using {@link #createContinuousResponse(StreamingOutput)} by a remote server.
+     * @return a response which passes on the given response as data arrives, flushing whenever no more data is available right
+     *         away. Responses other than 200 (OK) are returned as is.
+     */
+    public static Response passThroughContinuousResponse(Response response) {
+        if (response.getStatus() != Status.OK.getStatusCode()) {
+            return response;
+        }
+
+        InputStream in = response.readEntity(InputStream.class);
+        try {
+            return createContinuousResponse(output -> {
+                try (InputStream is = in) {
+                    final byte[] buffer = new byte[1024 * 8];
+                    int l;
+                    while ((l = is.read(buffer)) != -1) {
+                        output.write(buffer, 0, l);
+                        if (is.available() <= 0) {
+                            output.flush();
+                        }
+                    }
+                }
+            });
+        } catch (WebApplicationException e) {
+            response.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Collects all data written in between two flushes into a single chunk.
+     */
+    private static final class ChunkedOutputStream extends OutputStream {
+
+        private final ChunkedOutput<byte[]> chunked;
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+        private ChunkedOutputStream(ChunkedOutput<byte[]> chunked) {
+            this.chunked = chunked;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            pending.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            pending.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (pending.size() > 0) {
+                chunked.write(pending.toByteArray());
+                pending.reset();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                chunked.close();
+            }
+        }
+    }
+
 }
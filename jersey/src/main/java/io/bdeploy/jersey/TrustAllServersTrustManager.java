@@ -1,11 +1,17 @@
 package io.bdeploy.jersey;
 
+import java.net.Socket;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 
-import javax.net.ssl.X509TrustManager;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedTrustManager;
 
-public final class TrustAllServersTrustManager implements X509TrustManager {
+/**
+ * Accepts all certificates. Extends {@link X509ExtendedTrustManager} so that no host name verification is performed either, even
+ * if the connection requests one.
+ */
+public final class TrustAllServersTrustManager extends X509ExtendedTrustManager {
 
     @Override
     public void checkClientTrusted(X509Certificate[] arg0, String arg1) throws CertificateException {
@@ -17,6 +23,26 @@ public final class TrustAllServersTrustManager implements X509TrustManager {
         // we must accept all certificates
     }
 
+    @Override
+    public void checkClientTrusted(X509Certificate[] arg0, String arg1, Socket arg2) throws CertificateException {
+        // we must accept all certificates
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] arg0, String arg1, Socket arg2) throws CertificateException {
+        // we must accept all certificates
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] arg0, String arg1, SSLEngine arg2) throws CertificateException {
+        // we must accept all certificates
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] arg0, String arg1, SSLEngine arg2) throws CertificateException {
+        // we must accept all certificates
+    }
+
     @Override
     public X509Certificate[] getAcceptedIssuers() {
         return new X509Certificate[0];
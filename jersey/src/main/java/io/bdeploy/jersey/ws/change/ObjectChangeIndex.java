@@ -0,0 +1,130 @@
+package io.bdeploy.jersey.ws.change;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ObjIntConsumer;
+
+import io.bdeploy.jersey.ws.change.msg.ObjectScope;
+
+/**
+ * Indexes the registrations of subscribers by object change type and {@link ObjectScope}.
+ * <p>
+ * A registered scope matches all changes whose scope starts with the registered scope (see {@link ObjectScope#matches}). The
+ * index keeps a trie of scope parts per type, so finding the subscribers interested in a change only walks the parts of the
+ * changes' scope, regardless of how many subscribers there are.
+ *
+ * @param <T> the type of subscriber.
+ */
+public class ObjectChangeIndex<T> {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
+
+    private final Map<String, Node<T>> roots = new HashMap<>();
+
+    /**
+     * Registers the given subscriber for changes of the given type and scope. Registering the same scope multiple times requires
+     * to remove it as many times.
+     */
+    public void add(T subscriber, String type, ObjectScope scope) {
+        try {
+            writeLock.lock();
+            Node<T> node = roots.computeIfAbsent(type, t -> new Node<>());
+            for (int i = 0; i < scope.length(); ++i) {
+                node = node.children.computeIfAbsent(scope.get(i), p -> new Node<>());
+            }
+            node.subscribers.merge(subscriber, 1, Integer::sum);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a registration of the given subscriber for changes of the given type and scope.
+     */
+    public void remove(T subscriber, String type, ObjectScope scope) {
+        try {
+            writeLock.lock();
+            Node<T> root = roots.get(type);
+            if (root == null) {
+                return;
+            }
+
+            List<Node<T>> path = new ArrayList<>();
+            Node<T> node = root;
+            path.add(node);
+            for (int i = 0; i < scope.length() && node != null; ++i) {
+                node = node.children.get(scope.get(i));
+                path.add(node);
+            }
+            if (node == null) {
+                return;
+            }
+            node.subscribers.computeIfPresent(subscriber, (s, count) -> count > 1 ? count - 1 : null);
+
+            // prune nodes which are no longer required.
+            for (int i = path.size() - 1; i > 0 && path.get(i).isEmpty(); --i) {
+                path.get(i - 1).children.remove(scope.get(i - 1));
+            }
+            if (root.isEmpty()) {
+                roots.remove(type);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return all subscribers having at least one registration which matches the given type and scope.
+     */
+    public Set<T> getSubscribers(String type, ObjectScope scope) {
+        Set<T> result = new HashSet<>();
+        forEachMatch(type, scope, (s, l) -> result.add(s));
+        return result;
+    }
+
+    /**
+     * Calls the given consumer once for each subscriber having at least one registration which matches the given type and scope.
+     * The consumer receives the length of the shortest matching registered scope along with the subscriber.
+     */
+    public void forEachMatch(String type, ObjectScope scope, ObjIntConsumer<T> consumer) {
+        try {
+            readLock.lock();
+            Node<T> node = roots.get(type);
+            Set<T> seen = new HashSet<>();
+            for (int depth = 0; node != null; ++depth) {
+                // walking down from the root finds the shortest registration of each subscriber first.
+                for (T subscriber : node.subscribers.keySet()) {
+                    if (seen.add(subscriber)) {
+                        consumer.accept(subscriber, depth);
+                    }
+                }
+                node = depth < scope.length() ? node.children.get(scope.get(depth)) : null;
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private static final class Node<T> {
+
+        /** The nodes of the next scope parts */
+        private final Map<String, Node<T>> children = new HashMap<>();
+
+        /** The subscribers registered for the scope up to this node, along with the number of identical registrations */
+        private final Map<T, Integer> subscribers = new HashMap<>();
+
+        private boolean isEmpty() {
+            return children.isEmpty() && subscribers.isEmpty();
+        }
+    }
+
+}
@@ -6,6 +6,8 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
+import org.glassfish.grizzly.websockets.WebSocket;
+
 import io.bdeploy.jersey.ws.change.msg.ObjectScope;
 
 /**
@@ -16,11 +18,38 @@ public class ObjectChangeRegistration {
     private final Map<String, List<ObjectScope>> registrations = new ConcurrentHashMap<>();
     private final List<Consumer<ObjectChangeRegistration>> listeners = new ArrayList<>();
 
+    private final WebSocket socket;
+    private final ObjectChangeIndex<WebSocket> index;
+    private boolean disposed;
+
+    /**
+     * Creates a registration which is not indexed.
+     */
+    public ObjectChangeRegistration() {
+        this(null, null);
+    }
+
+    /**
+     * Creates a registration for the given {@link WebSocket}, which keeps the given index up to date.
+     */
+    public ObjectChangeRegistration(WebSocket socket, ObjectChangeIndex<WebSocket> index) {
+        this.socket = socket;
+        this.index = index;
+    }
+
     /**
      * Add a matching scope for the given type.
      */
     public void add(String type, ObjectScope scope) {
-        registrations.computeIfAbsent(type, t -> new ArrayList<>()).add(scope);
+        synchronized (this) {
+            if (disposed) {
+                return;
+            }
+            registrations.computeIfAbsent(type, t -> new ArrayList<>()).add(scope);
+            if (index != null) {
+                index.add(socket, type, scope);
+            }
+        }
         notifyListeners();
     }
 
@@ -28,13 +57,30 @@ public class ObjectChangeRegistration {
      * Remove a matching scope for the given type.
      */
     public void remove(String type, ObjectScope scope) {
-        List<ObjectScope> reg = registrations.get(type);
-        if (reg != null) {
-            reg.remove(scope);
+        synchronized (this) {
+            List<ObjectScope> reg = registrations.get(type);
+            if (reg != null && reg.remove(scope) && index != null) {
+                index.remove(socket, type, scope);
+            }
         }
         notifyListeners();
     }
 
+    /**
+     * Removes all registrations from the index, and ignores any registration added later on.
+     */
+    public synchronized void dispose() {
+        disposed = true;
+        if (index != null) {
+            for (Map.Entry<String, List<ObjectScope>> entry : registrations.entrySet()) {
+                for (ObjectScope scope : entry.getValue()) {
+                    index.remove(socket, entry.getKey(), scope);
+                }
+            }
+        }
+        registrations.clear();
+    }
+
     /**
      * Determines whether the given {@link ObjectScope} is matched by any of the registered {@link ObjectScope}s.
      */
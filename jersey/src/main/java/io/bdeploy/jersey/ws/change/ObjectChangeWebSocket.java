@@ -5,8 +5,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
@@ -14,7 +14,6 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 import org.glassfish.grizzly.websockets.Broadcaster;
 import org.glassfish.grizzly.websockets.OptimizedBroadcaster;
@@ -29,7 +28,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.bdeploy.common.util.JacksonHelper;
 import io.bdeploy.common.util.JacksonHelper.MapperType;
 import io.bdeploy.jersey.ws.change.msg.ObjectChangeDto;
-import io.bdeploy.jersey.ws.change.msg.ObjectScope;
 import jakarta.ws.rs.core.Response.Status;
 
 public class ObjectChangeWebSocket extends WebSocketApplication implements ObjectChangeBroadcaster {
@@ -50,6 +48,9 @@ public class ObjectChangeWebSocket extends WebSocketApplication implements Objec
     /** Keeps track of registrations per {@link WebSocket} */
     private final ConcurrentMap<WebSocket, ObjectChangeRegistration> webSockets = new ConcurrentHashMap<>();
 
+    /** Indexes the registrations of all {@link WebSocket}s, to find the ones interested in a change */
+    private final ObjectChangeIndex<WebSocket> index = new ObjectChangeIndex<>();
+
     /** Listeners hooked to each {@link ObjectChangeRegistration} as it is created, mainly for testing */
     private final List<Consumer<ObjectChangeRegistration>> listeners = new ArrayList<>();
 
@@ -63,8 +64,11 @@ public class ObjectChangeWebSocket extends WebSocketApplication implements Objec
 
     @Override
     public void send(ObjectChangeDto change) {
+        Set<WebSocket> targets = index.getSubscribers(change.type, change.scope);
+        if (targets.isEmpty()) {
+            return;
+        }
         try {
-            Set<WebSocket> targets = getWebSockets(change);
             this.broadcaster.broadcast(targets, serializer.writeValueAsString(change));
         } catch (JsonProcessingException e) {
             throw new IllegalStateException("Cannot write JSON to WebSocket", e);
@@ -73,35 +77,29 @@ public class ObjectChangeWebSocket extends WebSocketApplication implements Objec
 
     @Override
     public void sendBestMatching(List<ObjectChangeDto> changes) {
-        try {
-            Map<ObjectChangeDto, List<WebSocket>> targets = new HashMap<>();
-            for (Map.Entry<WebSocket, ObjectChangeRegistration> entry : webSockets.entrySet()) {
-                ObjectChangeDto best = null;
-                int bestScore = 0;
-
-                for (ObjectChangeDto change : changes) {
-                    // for each websocket, find the change DTO which has the highest score.
-                    ObjectScope match = entry.getValue().getBestScoring(change.type, change.scope);
-                    if (match != null) {
-                        int score = match.score(change.scope);
-
-                        if (score > bestScore
-                                || (score == bestScore && (best == null || (best.scope.length() > match.length())))) {
-                            // this websocket has a match, choose the best score.
-                            bestScore = score;
-                            best = change;
-                        }
-                    }
+        // for each websocket, find the index of the change DTO which matches best.
+        Map<WebSocket, Integer> best = new HashMap<>();
+        for (int i = 0; i < changes.size(); ++i) {
+            ObjectChangeDto change = changes.get(i);
+            int current = i;
+            index.forEachMatch(change.type, change.scope, (socket, matchLength) -> {
+                // all matches score the same (see ObjectScope#score), so only replace a change whose scope is longer.
+                Integer previous = best.get(socket);
+                if (previous == null || changes.get(previous).scope.length() > matchLength) {
+                    best.put(socket, current);
                 }
+            });
+        }
 
-                // if we found a match, record it.
-                if (best != null) {
-                    targets.computeIfAbsent(best, k -> new ArrayList<>()).add(entry.getKey());
-                }
-            }
+        Map<Integer, List<WebSocket>> targets = new TreeMap<>();
+        for (Map.Entry<WebSocket, Integer> entry : best.entrySet()) {
+            targets.computeIfAbsent(entry.getValue(), k -> new ArrayList<>()).add(entry.getKey());
+        }
 
-            for (Map.Entry<ObjectChangeDto, List<WebSocket>> target : targets.entrySet()) {
-                this.broadcaster.broadcast(target.getValue(), serializer.writeValueAsString(target.getKey()));
+        try {
+            // each change is serialized once for all websockets it is sent to.
+            for (Map.Entry<Integer, List<WebSocket>> target : targets.entrySet()) {
+                this.broadcaster.broadcast(target.getValue(), serializer.writeValueAsString(changes.get(target.getKey())));
             }
         } catch (JsonProcessingException e) {
             throw new IllegalStateException("Cannot write JSON to WebSocket", e);
@@ -121,7 +119,7 @@ public class ObjectChangeWebSocket extends WebSocketApplication implements Objec
     @Override
     protected boolean add(WebSocket socket) {
         // start listening to registrations and registration changes.
-        ObjectChangeRegistration reg = new ObjectChangeRegistration();
+        ObjectChangeRegistration reg = new ObjectChangeRegistration(socket, index);
         listeners.forEach(reg::addListener);
         socket.add(new ObjectChangeRegistrationListener(reg));
 
@@ -130,7 +128,12 @@ public class ObjectChangeWebSocket extends WebSocketApplication implements Objec
 
     @Override
     public boolean remove(WebSocket socket) {
-        return webSockets.remove(socket) != null;
+        ObjectChangeRegistration reg = webSockets.remove(socket);
+        if (reg == null) {
+            return false;
+        }
+        reg.dispose();
+        return true;
     }
 
     @Override
@@ -138,12 +141,6 @@ public class ObjectChangeWebSocket extends WebSocketApplication implements Objec
         throw new UnsupportedOperationException();
     }
 
-    /** Get all websockets which are interested in the given change */
-    private Set<WebSocket> getWebSockets(ObjectChangeDto change) {
-        return webSockets.entrySet().stream().filter(e -> e.getValue().matches(change.type, change.scope)).map(Entry::getKey)
-                .collect(Collectors.toSet());
-    }
-
     public void addListener(Consumer<ObjectChangeRegistration> listener) {
         listeners.add(listener);
         for (ObjectChangeRegistration existing : webSockets.values()) {
@@ -26,11 +26,22 @@ public class ObjectChangeClientListener extends DefaultWebSocketListener {
     private static final Logger log = LoggerFactory.getLogger(ObjectChangeClientListener.class);
     private final String token;
     private final Consumer<ObjectChangeDto> onChanges;
+    private final Runnable onClose;
     private final ObjectMapper serializer = JacksonHelper.createObjectMapper(MapperType.JSON);
 
     public ObjectChangeClientListener(String token, Consumer<ObjectChangeDto> onChanges) {
+        this(token, onChanges, null);
+    }
+
+    /**
+     * @param token the token to authenticate with.
+     * @param onChanges called for each received change.
+     * @param onClose called once the connection has been closed, may be <code>null</code>.
+     */
+    public ObjectChangeClientListener(String token, Consumer<ObjectChangeDto> onChanges, Runnable onClose) {
         this.token = token;
         this.onChanges = onChanges;
+        this.onClose = onClose;
     }
 
     @Override
@@ -48,6 +59,14 @@ public class ObjectChangeClientListener extends DefaultWebSocketListener {
         super.onOpen(websocket);
     }
 
+    @Override
+    public void onClose(WebSocket websocket) {
+        super.onClose(websocket);
+        if (onClose != null) {
+            onClose.run();
+        }
+    }
+
     @Override
     public void onError(Throwable t) {
         log.error("Error on object change web socket client", t);
@@ -76,6 +76,13 @@ public class ObjectScope implements Comparable<ObjectScope> {
         return scope.size();
     }
 
+    /**
+     * @return the scope part at the given index.
+     */
+    public String get(int index) {
+        return scope.get(index);
+    }
+
     @Override
     public String toString() {
         return scope.toString();
@@ -0,0 +1,124 @@
+package io.bdeploy.jersey.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.security.Principal;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import io.bdeploy.common.SlowTest;
+import io.bdeploy.jersey.JerseyClientFactory;
+import io.bdeploy.jersey.JerseyOnBehalfOfFilter;
+import io.bdeploy.jersey.TestServer;
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+import jakarta.ws.rs.core.SecurityContext;
+
+class ClientReuseTest {
+
+    @RegisterExtension
+    TestServer ext = new TestServer(SecurityTestResourceImpl.class);
+
+    @Test
+    void onBehalfOf(JerseyClientFactory factory) {
+        assertEquals(System.getProperty("user.name"), factory.getProxyClient(SecurityTestResource.class).getUser());
+        assertEquals("[first]", factory.getProxyClient(SecurityTestResource.class, caller("first")).getUser());
+        assertEquals("[second]", factory.getProxyClient(SecurityTestResource.class, caller("second")).getUser());
+
+        // the filter based variant must still work.
+        assertEquals("[third]",
+                factory.getProxyClient(SecurityTestResource.class, new JerseyOnBehalfOfFilter(caller("third"))).getUser());
+    }
+
+    @Test
+    void targetsAreShared(JerseyClientFactory factory) {
+        assertSame(factory.getBaseTarget(), factory.getBaseTarget());
+
+        assertSame(factory.getBaseTarget(new JerseyOnBehalfOfFilter(caller("first"))),
+                factory.getBaseTarget(new JerseyOnBehalfOfFilter(caller("first"))));
+        assertNotSame(factory.getBaseTarget(new JerseyOnBehalfOfFilter(caller("first"))),
+                factory.getBaseTarget(new JerseyOnBehalfOfFilter(caller("second"))));
+        assertNotSame(factory.getBaseTarget(), factory.getBaseTarget(new JerseyOnBehalfOfFilter(caller("first"))));
+    }
+
+    @SlowTest
+    @Test
+    void manyRequests(JerseyClientFactory factory) {
+        int numRequests = 500;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        // warm up both variants.
+        for (int i = 0; i < 50; ++i) {
+            factory.getProxyClient(SecurityTestResource.class, new UniqueFilter()).testSecured();
+            factory.getProxyClient(SecurityTestResource.class, caller("user")).testSecured();
+        }
+
+        // the way requests have been performed before: a new client runtime per proxy due to a filter with per-call state.
+        long allocStart = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < numRequests; ++i) {
+            assertEquals("secured", factory.getProxyClient(SecurityTestResource.class, new UniqueFilter()).testSecured());
+        }
+        long perClient = System.nanoTime() - start;
+        long perClientAlloc = threads.getThreadAllocatedBytes(thread) - allocStart;
+
+        allocStart = threads.getThreadAllocatedBytes(thread);
+        start = System.nanoTime();
+        for (int i = 0; i < numRequests; ++i) {
+            assertEquals("secured", factory.getProxyClient(SecurityTestResource.class, caller("user")).testSecured());
+        }
+        long shared = System.nanoTime() - start;
+        long sharedAlloc = threads.getThreadAllocatedBytes(thread) - allocStart;
+
+        System.err.println(numRequests + " requests: new client runtime per proxy took "
+                + TimeUnit.NANOSECONDS.toMillis(perClient) + "ms (" + (perClientAlloc / numRequests / 1024)
+                + "KB allocated per request), shared client took " + TimeUnit.NANOSECONDS.toMillis(shared) + "ms ("
+                + (sharedAlloc / numRequests / 1024) + "KB allocated per request).");
+        assertTrue(shared < perClient, "Shared client slower than a new client per proxy");
+    }
+
+    private static SecurityContext caller(String name) {
+        Principal principal = () -> name;
+        return new SecurityContext() {
+
+            @Override
+            public Principal getUserPrincipal() {
+                return principal;
+            }
+
+            @Override
+            public boolean isUserInRole(String role) {
+                return false;
+            }
+
+            @Override
+            public boolean isSecure() {
+                return true;
+            }
+
+            @Override
+            public String getAuthenticationScheme() {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * A filter which carries per-call state, like filters passed per call used to.
+     */
+    private static class UniqueFilter implements ClientRequestFilter {
+
+        @Override
+        public void filter(ClientRequestContext requestContext) {
+            // nothing to do, only the registration matters.
+        }
+    }
+
+}
@@ -22,4 +22,8 @@ public interface SecurityTestResource {
     @Path("/secured")
     public String testSecured();
 
+    @GET
+    @Path("/user")
+    public String getUser();
+
 }
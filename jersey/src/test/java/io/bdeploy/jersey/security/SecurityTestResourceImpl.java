@@ -1,7 +1,13 @@
 package io.bdeploy.jersey.security;
 
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.SecurityContext;
+
 public class SecurityTestResourceImpl implements SecurityTestResource {
 
+    @Context
+    private SecurityContext context;
+
     @Override
     public String testUnsecured() {
         return "unsecured";
@@ -12,4 +18,9 @@ public class SecurityTestResourceImpl implements SecurityTestResource {
         return "secured";
     }
 
+    @Override
+    public String getUser() {
+        return context.getUserPrincipal().getName();
+    }
+
 }
@@ -0,0 +1,224 @@
+package io.bdeploy.jersey.ws;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.bdeploy.common.SlowTest;
+import io.bdeploy.jersey.ws.change.ObjectChangeIndex;
+import io.bdeploy.jersey.ws.change.ObjectChangeRegistration;
+import io.bdeploy.jersey.ws.change.msg.ObjectChangeDto;
+import io.bdeploy.jersey.ws.change.msg.ObjectEvent;
+import io.bdeploy.jersey.ws.change.msg.ObjectScope;
+
+class ObjectChangeIndexTest {
+
+    @Test
+    void matching() {
+        ObjectChangeIndex<String> index = new ObjectChangeIndex<>();
+        index.add("all", "X", ObjectScope.EMPTY);
+        index.add("group", "X", new ObjectScope("G"));
+        index.add("instance", "X", new ObjectScope("G", "I"));
+        index.add("other", "Y", new ObjectScope("G"));
+
+        assertEquals(Set.of("all"), index.getSubscribers("X", ObjectScope.EMPTY));
+        assertEquals(Set.of("all", "group"), index.getSubscribers("X", new ObjectScope("G")));
+        assertEquals(Set.of("all", "group", "instance"), index.getSubscribers("X", new ObjectScope("G", "I", "P")));
+        assertEquals(Set.of("all"), index.getSubscribers("X", new ObjectScope("H", "I")));
+        assertEquals(Set.of("other"), index.getSubscribers("Y", new ObjectScope("G", "I")));
+        assertEquals(Set.of(), index.getSubscribers("Z", ObjectScope.EMPTY));
+
+        // the length of the shortest matching registration is reported once per subscriber.
+        index.add("group", "X", new ObjectScope("G", "I"));
+        Map<String, Integer> lengths = new HashMap<>();
+        index.forEachMatch("X", new ObjectScope("G", "I"), (s, l) -> assertEquals(null, lengths.put(s, l)));
+        assertEquals(Map.of("all", 0, "group", 1, "instance", 2), lengths);
+    }
+
+    @Test
+    void removal() {
+        ObjectChangeIndex<String> index = new ObjectChangeIndex<>();
+        index.add("a", "X", new ObjectScope("G", "I"));
+        index.add("a", "X", new ObjectScope("G", "I"));
+        index.add("b", "X", new ObjectScope("G"));
+
+        // registered twice, so needs to be removed twice.
+        index.remove("a", "X", new ObjectScope("G", "I"));
+        assertEquals(Set.of("a", "b"), index.getSubscribers("X", new ObjectScope("G", "I")));
+        index.remove("a", "X", new ObjectScope("G", "I"));
+        assertEquals(Set.of("b"), index.getSubscribers("X", new ObjectScope("G", "I")));
+
+        // removing unknown registrations does nothing.
+        index.remove("a", "X", new ObjectScope("G", "I"));
+        index.remove("b", "X", new ObjectScope("G", "I", "P"));
+        index.remove("b", "Y", new ObjectScope("G"));
+        assertEquals(Set.of("b"), index.getSubscribers("X", new ObjectScope("G")));
+
+        index.remove("b", "X", new ObjectScope("G"));
+        assertEquals(Set.of(), index.getSubscribers("X", new ObjectScope("G", "I")));
+
+        // still works after pruning.
+        index.add("c", "X", new ObjectScope("G", "I"));
+        assertEquals(Set.of("c"), index.getSubscribers("X", new ObjectScope("G", "I")));
+    }
+
+    @Test
+    void sameAsRegistration() {
+        Random random = new Random(42);
+        List<ObjectChangeRegistration> registrations = new ArrayList<>();
+        ObjectChangeIndex<Integer> index = new ObjectChangeIndex<>();
+        subscribe(registrations, index, 200, random);
+
+        for (int i = 0; i < 100; ++i) {
+            List<ObjectChangeDto> changes = createChanges(random, 10);
+            assertEquals(bestMatchingLinear(registrations, changes), bestMatchingIndexed(index, changes));
+
+            ObjectChangeDto change = changes.get(0);
+            Set<Integer> expected = new HashSet<>();
+            for (int j = 0; j < registrations.size(); ++j) {
+                if (registrations.get(j).matches(change.type, change.scope)) {
+                    expected.add(j);
+                }
+            }
+            assertEquals(expected, index.getSubscribers(change.type, change.scope));
+        }
+    }
+
+    @SlowTest
+    @Test
+    void manySockets() {
+        int numSockets = 1_000;
+        int numRounds = 2_000;
+        Random random = new Random(42);
+        List<ObjectChangeRegistration> registrations = new ArrayList<>();
+        ObjectChangeIndex<Integer> index = new ObjectChangeIndex<>();
+        subscribe(registrations, index, numSockets, random);
+
+        List<List<ObjectChangeDto>> rounds = new ArrayList<>();
+        for (int i = 0; i < numRounds; ++i) {
+            rounds.add(createChanges(random, 10));
+        }
+
+        // warm up both variants.
+        for (int i = 0; i < 100; ++i) {
+            bestMatchingLinear(registrations, rounds.get(i));
+            bestMatchingIndexed(index, rounds.get(i));
+        }
+
+        // the way changes have been routed before: every websocket against every change.
+        long start = System.nanoTime();
+        long linearTargets = 0;
+        for (List<ObjectChangeDto> changes : rounds) {
+            linearTargets += bestMatchingLinear(registrations, changes).size();
+        }
+        long linear = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long indexedTargets = 0;
+        for (List<ObjectChangeDto> changes : rounds) {
+            indexedTargets += bestMatchingIndexed(index, changes).size();
+        }
+        long indexed = System.nanoTime() - start;
+
+        System.err.println(numSockets + " sockets, " + numRounds + " rounds of 10 changes: linear matching took "
+                + TimeUnit.NANOSECONDS.toMillis(linear) + "ms, indexed matching took " + TimeUnit.NANOSECONDS.toMillis(indexed)
+                + "ms (" + indexedTargets + " messages).");
+        assertEquals(linearTargets, indexedTargets);
+        assertTrue(indexed < linear, "Indexed matching slower than linear matching");
+    }
+
+    /**
+     * Each subscriber follows activities of a group and the state of an instance, like a browser showing an instance.
+     */
+    private static void subscribe(List<ObjectChangeRegistration> registrations, ObjectChangeIndex<Integer> index, int count,
+            Random random) {
+        for (int i = 0; i < count; ++i) {
+            ObjectChangeRegistration reg = new ObjectChangeRegistration();
+            String group = "G" + random.nextInt(10);
+            String instance = "I" + random.nextInt(20);
+            reg.add("ACTIVITIES", new ObjectScope(group));
+            reg.add("STATE", new ObjectScope(group, instance));
+            index.add(i, "ACTIVITIES", new ObjectScope(group));
+            index.add(i, "STATE", new ObjectScope(group, instance));
+
+            // some are interested in all activities, e.g. administrators.
+            if (random.nextInt(10) == 0) {
+                reg.add("ACTIVITIES", ObjectScope.EMPTY);
+                index.add(i, "ACTIVITIES", ObjectScope.EMPTY);
+            }
+            registrations.add(reg);
+        }
+    }
+
+    private static List<ObjectChangeDto> createChanges(Random random, int count) {
+        List<ObjectChangeDto> changes = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            String type = random.nextBoolean() ? "ACTIVITIES" : "STATE";
+            List<String> scope = new ArrayList<>();
+            int length = random.nextInt(4);
+            for (int j = 0; j < length; ++j) {
+                scope.add((j == 0 ? "G" : "I") + random.nextInt(j == 0 ? 10 : 20));
+            }
+            changes.add(new ObjectChangeDto(type, new ObjectScope(scope), ObjectEvent.CHANGED, null));
+        }
+        return changes;
+    }
+
+    /**
+     * The best matching change per subscriber, determined the way ObjectChangeWebSocket used to.
+     */
+    private static Map<Integer, Integer> bestMatchingLinear(List<ObjectChangeRegistration> registrations,
+            List<ObjectChangeDto> changes) {
+        Map<Integer, Integer> result = new HashMap<>();
+        for (int i = 0; i < registrations.size(); ++i) {
+            ObjectChangeDto best = null;
+            int bestIndex = -1;
+            int bestScore = 0;
+            for (int j = 0; j < changes.size(); ++j) {
+                ObjectChangeDto change = changes.get(j);
+                ObjectScope match = registrations.get(i).getBestScoring(change.type, change.scope);
+                if (match != null) {
+                    int score = match.score(change.scope);
+                    if (score > bestScore || (score == bestScore && (best == null || (best.scope.length() > match.length())))) {
+                        bestScore = score;
+                        best = change;
+                        bestIndex = j;
+                    }
+                }
+            }
+            if (best != null) {
+                result.put(i, bestIndex);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The best matching change per subscriber, determined the way ObjectChangeWebSocket does.
+     */
+    private static Map<Integer, Integer> bestMatchingIndexed(ObjectChangeIndex<Integer> index, List<ObjectChangeDto> changes) {
+        Map<Integer, Integer> result = new HashMap<>();
+        for (int i = 0; i < changes.size(); ++i) {
+            ObjectChangeDto change = changes.get(i);
+            int current = i;
+            index.forEachMatch(change.type, change.scope, (subscriber, matchLength) -> {
+                Integer previous = result.get(subscriber);
+                if (previous == null || changes.get(previous).scope.length() > matchLength) {
+                    result.put(subscriber, current);
+                }
+            });
+        }
+        return result;
+    }
+
+}
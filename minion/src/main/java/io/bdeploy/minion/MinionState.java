@@ -80,4 +80,9 @@ public class MinionState {
      * The last known {@link ObjectId} of the built-in logging configuration.
      */
     public ObjectId logConfigId;
+
+    /**
+     * Whether to hard-link pooled applications from the hive instead of copying them when installing.
+     */
+    public boolean linkPooledApplications;
 }
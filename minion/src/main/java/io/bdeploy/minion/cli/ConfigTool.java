@@ -44,6 +44,10 @@ public class ConfigTool extends ConfiguredCliTool<ConfigToolConfig> {
 
         @Help("The target mode of the minion.")
         MinionMode mode();
+
+        @Help("Whether to hard-link pooled applications from the hive instead of copying them. "
+                + "Use --linkPool=false to disable again.")
+        boolean linkPool() default false;
     }
 
     public ConfigTool() {
@@ -94,6 +98,9 @@ public class ConfigTool extends ConfiguredCliTool<ConfigToolConfig> {
 
                 r.modifyState(s -> s.mode = config.mode());
             }
+            if (getRawConfiguration().getAllRawObjects().containsKey("linkPool")) {
+                r.modifyState(s -> s.linkPooledApplications = config.linkPool());
+            }
         }
         return createSuccess();
     }
@@ -46,6 +46,7 @@ import io.bdeploy.minion.MinionState;
 import io.bdeploy.minion.api.v1.PublicRootResourceImpl;
 import io.bdeploy.minion.cli.StartTool.MasterConfig;
 import io.bdeploy.minion.cli.shutdown.RemoteShutdownImpl;
+import io.bdeploy.minion.nodes.NodeStatusPublisher;
 import io.bdeploy.minion.plugin.VersionSorterServiceImpl;
 import io.bdeploy.minion.remote.jersey.CentralUpdateResourceImpl;
 import io.bdeploy.minion.remote.jersey.CommonDirectoryEntryResourceImpl;
@@ -243,7 +244,10 @@ public class StartTool extends ConfiguredCliTool<MasterConfig> {
         ObjectChangeWebSocket ocws = new ObjectChangeWebSocket(srv.getKeyStore());
         srv.registerWebsocketApplication(ObjectChangeWebSocket.OCWS_PATH, ocws);
 
-        srv.register(new MinionCommonBinder(root, ocws));
+        NodeStatusPublisher statusPublisher = new NodeStatusPublisher(ocws);
+        srv.registerResource(statusPublisher);
+
+        srv.register(new MinionCommonBinder(root, ocws, statusPublisher));
         srv.registerResource(r);
 
         return r;
@@ -253,10 +257,12 @@ public class StartTool extends ConfiguredCliTool<MasterConfig> {
 
         private final MinionRoot root;
         private final ObjectChangeWebSocket ocws;
+        private final NodeStatusPublisher statusPublisher;
 
-        public MinionCommonBinder(MinionRoot root, ObjectChangeWebSocket ocws) {
+        public MinionCommonBinder(MinionRoot root, ObjectChangeWebSocket ocws, NodeStatusPublisher statusPublisher) {
             this.root = root;
             this.ocws = ocws;
+            this.statusPublisher = statusPublisher;
         }
 
         @Override
@@ -266,6 +272,7 @@ public class StartTool extends ConfiguredCliTool<MasterConfig> {
             bind(root.getUsers()).to(AuthService.class);
             bind(root.getState().storageMinFree).named(JerseyServer.FILE_SYSTEM_MIN_SPACE).to(Long.class);
             bind(ocws).to(ObjectChangeBroadcaster.class);
+            bind(statusPublisher).to(NodeStatusPublisher.class);
             bind(new TaskSynchronizer()).to(TaskSynchronizer.class);
         }
     }
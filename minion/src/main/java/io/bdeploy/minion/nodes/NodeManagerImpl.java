@@ -1,17 +1,26 @@
 package io.bdeploy.minion.nodes;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.jvnet.hk2.annotations.Service;
 import org.slf4j.Logger;
@@ -20,14 +29,17 @@ import org.slf4j.LoggerFactory;
 import io.bdeploy.common.security.RemoteService;
 import io.bdeploy.common.util.NamedDaemonThreadFactory;
 import io.bdeploy.common.util.VersionHelper;
+import io.bdeploy.interfaces.configuration.pcu.InstanceNodeStatusDto;
 import io.bdeploy.interfaces.manifest.MinionManifest;
 import io.bdeploy.interfaces.minion.MinionConfiguration;
 import io.bdeploy.interfaces.minion.MinionDto;
 import io.bdeploy.interfaces.minion.MinionStatusDto;
 import io.bdeploy.interfaces.remote.MinionStatusResource;
+import io.bdeploy.interfaces.remote.NodeProcessResource;
 import io.bdeploy.interfaces.remote.ResourceProvider;
 import io.bdeploy.minion.MinionRoot;
 import io.bdeploy.ui.api.MinionMode;
+import io.bdeploy.ui.api.MultiNodeResult;
 import io.bdeploy.ui.api.NodeManager;
 import io.bdeploy.ui.api.impl.ChangeEventManager;
 import io.bdeploy.ui.dto.ObjectChangeDetails;
@@ -42,6 +54,21 @@ public class NodeManagerImpl implements NodeManager, AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(NodeManagerImpl.class);
 
+    /**
+     * The maximum number of requests sent to a single node in parallel, see {@link #requestFromNodes}. Requests to a node which
+     * does not respond keep their slot until they time out, so this bounds the requests a hanging node can hold up.
+     */
+    private static final int MAX_PARALLEL_REQUESTS_PER_NODE = 4;
+
+    /** The interval in which the state of all nodes is checked */
+    private static final long CHECK_INTERVAL_MS = 1_000;
+
+    /** The interval in which nodes are polled if they do not publish their status */
+    private static final long POLL_INTERVAL_MS = 10_000;
+
+    /** Nodes publishing their status are considered offline if no heartbeat is received within this time */
+    private static final long HEARTBEAT_TIMEOUT_MS = 3 * NodeStatusPublisher.HEARTBEAT_INTERVAL_MS;
+
     private MinionRoot root;
     private String self;
     private MinionConfiguration config;
@@ -56,7 +83,25 @@ public class NodeManagerImpl implements NodeManager, AutoCloseable {
     private final AtomicLong contactNumber = new AtomicLong(0);
     private final ExecutorService contact = Executors
             .newCachedThreadPool(new NamedDaemonThreadFactory(() -> "Node Contact " + contactNumber.incrementAndGet()));
-    private final Map<String, Future<?>> requests = new TreeMap<>();
+    private final Map<String, Future<?>> requests = new ConcurrentHashMap<>();
+
+    /** Persistent connections to nodes which publish their status, see {@link NodeStatusPublisher} */
+    private final Map<String, NodeStatusChannel> channels = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastContact = new ConcurrentHashMap<>();
+
+    /**
+     * Runs requests to nodes, see {@link #requestFromNodes}. A thread is only taken once a request holds one of its node's
+     * {@link #requestSlots}, so the pool is bounded by the number of nodes times {@link #MAX_PARALLEL_REQUESTS_PER_NODE}, plus
+     * requests which have been abandoned but not yet reached their read timeout. A fixed bound would let requests to hanging
+     * nodes starve requests to healthy ones.
+     */
+    private final AtomicLong requestNumber = new AtomicLong(0);
+    private final ExecutorService requestPool = Executors
+            .newCachedThreadPool(new NamedDaemonThreadFactory(() -> "Node Request " + requestNumber.incrementAndGet()));
+    private final Map<String, Semaphore> requestSlots = new ConcurrentHashMap<>();
+
+    /** The last known process status of all instances on each node */
+    private final NodeProcessStatusCache processStatus = new NodeProcessStatusCache();
 
     private ScheduledFuture<?> saveJob;
 
@@ -77,7 +122,7 @@ public class NodeManagerImpl implements NodeManager, AutoCloseable {
 
         // initially, all nodes are marked as "warn on contact failure".
         this.config.entrySet().forEach(e -> this.contactWarning.put(e.getKey(), Boolean.TRUE));
-        this.schedule.scheduleAtFixedRate(this::fetchNodeStates, 0, 10, TimeUnit.SECONDS);
+        this.schedule.scheduleAtFixedRate(this::checkNodeStates, 0, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
 
         if (initialFetch) {
             log.info("Synchronous initial state fetching in Node Manager...");
@@ -92,6 +137,9 @@ public class NodeManagerImpl implements NodeManager, AutoCloseable {
     public void close() {
         schedule.shutdownNow();
         contact.shutdownNow();
+        requestPool.shutdownNow();
+        channels.values().forEach(NodeStatusChannel::close);
+        channels.clear();
     }
 
     private void initialFetchNodeStates() {
@@ -119,20 +167,99 @@ public class NodeManagerImpl implements NodeManager, AutoCloseable {
         }
 
         for (String minion : config.values().keySet()) {
-            // fetch an existing request.
-            var existing = requests.get(minion);
+            requestNodeState(minion);
+        }
+    }
 
-            if (existing != null && !existing.isDone()) {
-                // something is already running - we don't start another one.
-                // best case: it finishes "soon" - worst case it is "stuck"
-                if (log.isDebugEnabled()) {
-                    log.debug("Status request to {} still running", minion);
-                }
+    /**
+     * Polls the status of all nodes which do not publish their status, and detects nodes which stopped to publish their status.
+     */
+    private void checkNodeStates() {
+        long now = System.currentTimeMillis();
+        for (String minion : config.values().keySet()) {
+            NodeStatusChannel channel = channels.get(minion);
+            if (channel != null && channel.isAlive(HEARTBEAT_TIMEOUT_MS)) {
+                continue; // the node tells us once its status changes.
+            }
+
+            if (channel != null && channel.hasHeartbeat()) {
+                // the node published its status before, but no longer does so.
+                closeChannel(minion);
+                nodeUnreachable(minion, config.getMinion(minion), "No heartbeat received");
+                requestNodeState(minion);
                 continue;
             }
 
-            // start async request to a single minion.
-            requests.put(minion, contact.submit(() -> fetchNodeState(minion)));
+            Long last = lastContact.get(minion);
+            if (last == null || now - last >= POLL_INTERVAL_MS) {
+                requestNodeState(minion);
+            }
+        }
+    }
+
+    /**
+     * Starts an asynchronous request of the status of the given node, unless one is already running.
+     */
+    private synchronized void requestNodeState(String minion) {
+        // fetch an existing request.
+        var existing = requests.get(minion);
+
+        if (existing != null && !existing.isDone()) {
+            // something is already running - we don't start another one.
+            // best case: it finishes "soon" - worst case it is "stuck"
+            if (log.isDebugEnabled()) {
+                log.debug("Status request to {} still running", minion);
+            }
+            return;
+        }
+
+        // start async request to a single minion.
+        lastContact.put(minion, System.currentTimeMillis());
+        requests.put(minion, contact.submit(() -> fetchNodeState(minion)));
+    }
+
+    /**
+     * Opens a {@link NodeStatusChannel} to the given node, in case there is none yet.
+     */
+    private void openChannel(String node, MinionDto mdto) {
+        if (root.getMode() == MinionMode.CENTRAL || channels.containsKey(node)) {
+            // central only contacts its own backend once, it does not track the state of nodes.
+            return;
+        }
+
+        try {
+            NodeStatusChannel channel = new NodeStatusChannel(node, mdto.remote, c -> requestNodeState(c.getNode()),
+                    this::onChannelClosed);
+            if (channels.putIfAbsent(node, channel) != null) {
+                channel.close(); // concurrently opened.
+            }
+        } catch (Exception e) {
+            // will be retried with the next successful contact.
+            if (log.isDebugEnabled()) {
+                log.debug("Cannot open status channel to {}", node, e);
+            }
+        }
+    }
+
+    /**
+     * @return whether the given node currently publishes its status, so that it does not need to be polled.
+     */
+    boolean isStatusPublished(String node) {
+        NodeStatusChannel channel = channels.get(node);
+        return channel != null && channel.isAlive(HEARTBEAT_TIMEOUT_MS);
+    }
+
+    private void onChannelClosed(NodeStatusChannel channel) {
+        if (channels.remove(channel.getNode(), channel)) {
+            // find out immediately whether the node went away or only the connection was lost.
+            requestNodeState(channel.getNode());
+        }
+    }
+
+    private void closeChannel(String node) {
+        NodeStatusChannel channel = channels.remove(node);
+        if (channel != null) {
+            channel.close();
         }
     }
 
@@ -173,22 +300,31 @@ public class NodeManagerImpl implements NodeManager, AutoCloseable {
                     mdto.version = msd.config.version;
                     scheduleSave(); // schedule immediate when configuration changes.
                 }
+
+                openChannel(node, mdto);
             }
         } catch (Exception e) {
             if (log.isDebugEnabled()) {
                 log.debug("Failed to contact {}", node, e);
             }
 
-            status.put(node, MinionStatusDto.createOffline(mdto, e.toString()));
+            nodeUnreachable(node, mdto, e.toString());
+        }
+    }
 
-            // log it, we don't want to hold status in the futures.
-            if (Boolean.TRUE.equals(contactWarning.get(node))) {
-                contactWarning.put(node, Boolean.FALSE); // no warning, contact failed.
-                log.warn("Failed to fetch node {} status: {}", node, e.toString());
-                if (changes != null) {
-                    changes.change(ObjectChangeType.NODES,
-                            Map.of(ObjectChangeDetails.NODE, node, ObjectChangeDetails.CHANGE_HINT, ObjectChangeHint.STATE));
-                }
+    /**
+     * Records that the given node is not reachable for the given reason.
+     */
+    private void nodeUnreachable(String node, MinionDto mdto, String reason) {
+        status.put(node, MinionStatusDto.createOffline(mdto, reason));
+
+        // log it, we don't want to hold status in the futures.
+        if (Boolean.TRUE.equals(contactWarning.get(node))) {
+            contactWarning.put(node, Boolean.FALSE); // no warning, contact failed.
+            log.warn("Failed to fetch node {} status: {}", node, reason);
+            if (changes != null) {
+                changes.change(ObjectChangeType.NODES,
+                        Map.of(ObjectChangeDetails.NODE, node, ObjectChangeDetails.CHANGE_HINT, ObjectChangeHint.STATE));
             }
         }
     }
@@ -222,33 +358,8 @@ public class NodeManagerImpl implements NodeManager, AutoCloseable {
     public MinionDto getNodeConfigIfOnline(String name) {
         var state = status.get(name);
         if (state == null || state.offline) {
-            if (requests.containsKey(name)) {
-                // a background connection request is running.
-                // we do not want to block for an extended time here, however this might come
-                // with extremely unpleasant timing, so we wait a small amount of time in case
-                // the minion is responsive.
-                var rq = requests.get(name);
-                try {
-                    rq.get(100, TimeUnit.MILLISECONDS);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    log.warn("Waiting for node {} failed: {}", name, ie.toString());
-                    return null;
-                } catch (Exception e) {
-                    log.warn("Waiting for node {} failed: {}", name, e.toString());
-                    return null;
-                }
-
-                // refresh state if we successfully awaited the request.
-                state = status.get(name);
-                if (state == null || state.offline) {
-                    // still offline after we tried to contact it.
-                    return null;
-                }
-            } else {
-                // no request running, this is simply offline for *some* reason.
-                return null;
-            }
+            // don't wait for a potentially running request, it updates the state once done.
+            return null;
         }
         return state.config;
     }
@@ -262,6 +373,143 @@ public class NodeManagerImpl implements NodeManager, AutoCloseable {
         return ResourceProvider.getVersionedResource(node.remote, clazz, context);
     }
 
+    @Override
+    public <T, R> MultiNodeResult<R> requestFromNodes(Collection<String> nodes, Class<T> clazz, SecurityContext context,
+            Function<T, R> request, Duration timeout) {
+        return requestFromNodes(nodes, clazz, context, (name, resource) -> request.apply(resource), timeout);
+    }
+
+    @Override
+    public <T, R> MultiNodeResult<R> requestFromNodes(Collection<String> nodes, Class<T> clazz, SecurityContext context,
+            BiFunction<String, T, R> request, Duration timeout) {
+        MultiNodeResult<R> result = new MultiNodeResult<>();
+        Map<String, Future<R>> pending = new TreeMap<>();
+        Map<String, MinionDto> busy = new TreeMap<>();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (String name : nodes) {
+            MinionDto node = getNodeConfigIfOnline(name);
+            if (node == null) {
+                result.addFailure(name, "Node not available");
+                continue;
+            }
+
+            // nodes which are busy with previous requests are waited for once all other requests are running.
+            Semaphore slots = getRequestSlots(name);
+            if (!slots.tryAcquire()) {
+                busy.put(name, node);
+                continue;
+            }
+            Future<R> future = submitRequest(name, node, slots, clazz, context, request, timeout, result);
+            if (future != null) {
+                pending.put(name, future);
+            }
+        }
+
+        // requests to all other nodes are running already, wait for busy nodes to finish a previous request.
+        for (Map.Entry<String, MinionDto> entry : busy.entrySet()) {
+            String name = entry.getKey();
+            Semaphore slots = getRequestSlots(name);
+            try {
+                if (!slots.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    result.addFailure(name, "Too many pending requests within " + timeout.toMillis() + "ms");
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                result.addFailure(name, "Interrupted");
+                Thread.currentThread().interrupt();
+                continue;
+            }
+            Future<R> future = submitRequest(name, entry.getValue(), slots, clazz, context, request, timeout, result);
+            if (future != null) {
+                pending.put(name, future);
+            }
+        }
+
+        for (Map.Entry<String, Future<R>> entry : pending.entrySet()) {
+            String name = entry.getKey();
+            Future<R> future = entry.getValue();
+            try {
+                result.addResult(name, future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                result.addFailure(name, "No response within " + timeout.toMillis() + "ms");
+            } catch (InterruptedException e) {
+                // all remaining futures fail the same way, as the interrupted flag is restored.
+                future.cancel(true);
+                result.addFailure(name, "Interrupted");
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                addFailure(result, name, e.getCause() != null ? e.getCause() : e);
+            }
+        }
+        return result;
+    }
+
+    private Semaphore getRequestSlots(String name) {
+        return requestSlots.computeIfAbsent(name, n -> new Semaphore(MAX_PARALLEL_REQUESTS_PER_NODE));
+    }
+
+    /**
+     * Submits a request to the given node, releasing the acquired slot once the request is done or cancelled.
+     *
+     * @return the pending request, <code>null</code> if it could not be submitted. The failure is recorded in the result.
+     */
+    private <T, R> Future<R> submitRequest(String name, MinionDto node, Semaphore slots, Class<T> clazz, SecurityContext context,
+            BiFunction<String, T, R> request, Duration timeout, MultiNodeResult<R> result) {
+        T resource;
+        try {
+            // create the resource on the calling thread, it captures the caller from the context.
+            resource = ResourceProvider.getVersionedResource(node.remote, clazz, context, timeout);
+        } catch (RuntimeException e) {
+            slots.release();
+            addFailure(result, name, e);
+            return null;
+        }
+
+        RequestTask<R> task = new RequestTask<>(() -> request.apply(name, resource), slots);
+        try {
+            requestPool.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.cancel(false);
+            addFailure(result, name, e);
+            return null;
+        }
+        return task;
+    }
+
+    private static void addFailure(MultiNodeResult<?> result, String name, Throwable cause) {
+        result.addFailure(name, cause.getMessage() != null ? cause.getMessage() : cause.toString());
+        if (log.isDebugEnabled()) {
+            log.debug("Request to {} failed", name, cause);
+        }
+    }
+
+    /**
+     * A request to a node which releases its slot once it is done. This includes cancellation, even if the request never
+     * started running.
+     */
+    private static final class RequestTask<R> extends FutureTask<R> {
+
+        private final Semaphore slots;
+
+        RequestTask(Callable<R> request, Semaphore slots) {
+            super(request);
+            this.slots = slots;
+        }
+
+        @Override
+        protected void done() {
+            slots.release();
+        }
+    }
+
+    @Override
+    public MultiNodeResult<Map<String, InstanceNodeStatusDto>> getProcessStatus(Collection<String> nodes,
+            Collection<String> instanceIds, SecurityContext context, Duration timeout) {
+        return requestFromNodes(nodes, NodeProcessResource.class, context,
+                (name, npr) -> processStatus.fetch(name, npr, instanceIds), timeout);
+    }
+
     @Override
     public MinionDto getSelf() {
         return config.getMinion(self);
@@ -305,6 +553,7 @@ public class NodeManagerImpl implements NodeManager, AutoCloseable {
         MinionDto m = config.getMinion(name);
         m.remote = node;
         scheduleSave();
+        closeChannel(name); // reconnects using the updated remote.
 
         log.info("Updating state for edited node {}", name);
         fetchNodeState(name);
@@ -317,6 +566,10 @@ public class NodeManagerImpl implements NodeManager, AutoCloseable {
         config.removeMinion(name);
         status.remove(name);
         contactWarning.remove(name);
+        lastContact.remove(name);
+        processStatus.remove(name);
+        requestSlots.remove(name);
+        closeChannel(name);
         scheduleSave();
     }
 
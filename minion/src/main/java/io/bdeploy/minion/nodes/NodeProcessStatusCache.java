@@ -0,0 +1,115 @@
+package io.bdeploy.minion.nodes;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.bdeploy.interfaces.configuration.pcu.InstanceNodeStatusDto;
+import io.bdeploy.interfaces.configuration.pcu.InstanceNodeStatusSnapshotDto;
+import io.bdeploy.interfaces.remote.NodeProcessResource;
+import io.bdeploy.interfaces.remote.versioning.VersionMismatchFilter;
+
+/**
+ * Keeps the last known process status of all instances on each node.
+ * <p>
+ * Nodes are only asked for the status of instances which changed since the last known snapshot of the node, see
+ * {@link NodeProcessResource#getStatusSnapshot(String, long)}. Older nodes which cannot provide snapshots are asked for the
+ * status of the requested instances each time.
+ */
+class NodeProcessStatusCache {
+
+    private final Map<String, NodeSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * @param node the name of the node.
+     * @param npr the resource to contact the node.
+     * @param instanceIds the instances to return the status for.
+     * @return the current status of all given instances known to the node. Key = ID of the instance.
+     */
+    Map<String, InstanceNodeStatusDto> fetch(String node, NodeProcessResource npr, Collection<String> instanceIds) {
+        NodeSnapshot snapshot = snapshots.computeIfAbsent(node, n -> new NodeSnapshot());
+
+        InstanceNodeStatusSnapshotDto update;
+        try {
+            update = npr.getStatusSnapshot(snapshot.getEpoch(), snapshot.getVersion());
+        } catch (RuntimeException e) {
+            if (!VersionMismatchFilter.isNotSupported(e)) {
+                throw e;
+            }
+            return fetchDirect(npr, instanceIds);
+        }
+
+        return snapshot.update(update, instanceIds);
+    }
+
+    /**
+     * Forgets everything known about the given node.
+     */
+    void remove(String node) {
+        snapshots.remove(node);
+    }
+
+    private static Map<String, InstanceNodeStatusDto> fetchDirect(NodeProcessResource npr, Collection<String> instanceIds) {
+        try {
+            return npr.getStatus(instanceIds.stream().toList());
+        } catch (RuntimeException e) {
+            if (!VersionMismatchFilter.isNotSupported(e)) {
+                throw e;
+            }
+
+            // the node is older and cannot provide the status of multiple instances at once.
+            Map<String, InstanceNodeStatusDto> result = new TreeMap<>();
+            for (String instanceId : instanceIds) {
+                result.put(instanceId, npr.getStatus(instanceId));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The merged snapshots received from a single node.
+     */
+    private static final class NodeSnapshot {
+
+        private String epoch;
+        private long version;
+        private Map<String, InstanceNodeStatusDto> instances = new TreeMap<>();
+
+        private synchronized String getEpoch() {
+            return epoch;
+        }
+
+        private synchronized long getVersion() {
+            return version;
+        }
+
+        /**
+         * Merges the given update and returns the status of the given instances.
+         */
+        private synchronized Map<String, InstanceNodeStatusDto> update(InstanceNodeStatusSnapshotDto update,
+                Collection<String> instanceIds) {
+            if (!update.epoch.equals(epoch)) {
+                instances = new TreeMap<>(update.instances);
+                epoch = update.epoch;
+                version = update.version;
+            } else if (update.version >= version) {
+                if (update.full) {
+                    instances.clear();
+                }
+                instances.putAll(update.instances);
+                version = update.version;
+            } // else: a concurrent request already merged a newer update.
+
+            Map<String, InstanceNodeStatusDto> result = new TreeMap<>();
+            for (String instanceId : instanceIds) {
+                InstanceNodeStatusDto status = instances.get(instanceId);
+                if (status != null) {
+                    result.put(instanceId, status);
+                }
+            }
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package io.bdeploy.minion.nodes;
+
+import java.util.function.Consumer;
+
+import io.bdeploy.common.security.RemoteService;
+import io.bdeploy.jersey.JerseyClientFactory;
+import io.bdeploy.jersey.ws.change.client.ObjectChangeClientWebSocket;
+import io.bdeploy.jersey.ws.change.msg.ObjectChangeDto;
+import io.bdeploy.jersey.ws.change.msg.ObjectScope;
+
+/**
+ * A persistent connection to a node, over which the node publishes the version of its status (see {@link NodeStatusPublisher}).
+ * <p>
+ * Nodes which do not publish their status (older versions) never send a heartbeat, see {@link #hasHeartbeat()}.
+ */
+class NodeStatusChannel implements AutoCloseable {
+
+    private final String node;
+    private final ObjectChangeClientWebSocket ws;
+
+    private volatile long lastHeartbeat;
+    private volatile String version;
+    private volatile boolean closed;
+
+    /**
+     * Opens the connection to the given node, blocks until the connection is established.
+     *
+     * @param node the name of the node.
+     * @param remote the remote of the node.
+     * @param onChange called when the node published a new version of its status.
+     * @param onClose called when the connection is closed by the node or due to a failure, but not when closed using
+     *            {@link #close()}.
+     */
+    NodeStatusChannel(String node, RemoteService remote, Consumer<NodeStatusChannel> onChange,
+            Consumer<NodeStatusChannel> onClose) {
+        this.node = node;
+        this.ws = JerseyClientFactory.get(remote).getObjectChangeWebSocket(c -> onMessage(c, onChange), () -> {
+            if (!closed) {
+                closed = true;
+                onClose.accept(this);
+            }
+        });
+        try {
+            this.ws.subscribe(NodeStatusPublisher.OCT_NODE_STATUS, ObjectScope.EMPTY);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void onMessage(ObjectChangeDto change, Consumer<NodeStatusChannel> onChange) {
+        if (!NodeStatusPublisher.OCT_NODE_STATUS.equals(change.type)) {
+            return;
+        }
+
+        lastHeartbeat = System.currentTimeMillis();
+        String published = change.details.get(NodeStatusPublisher.VERSION);
+        if (version != null && !version.equals(published)) {
+            onChange.accept(this);
+        }
+        version = published;
+    }
+
+    /**
+     * @return the name of the node this channel is connected to.
+     */
+    String getNode() {
+        return node;
+    }
+
+    /**
+     * @return whether the node sent at least one heartbeat since the connection has been established.
+     */
+    boolean hasHeartbeat() {
+        return lastHeartbeat != 0;
+    }
+
+    /**
+     * @param timeout the maximum time since the last heartbeat in milliseconds.
+     * @return whether the node sent a heartbeat within the given time.
+     */
+    boolean isAlive(long timeout) {
+        return !closed && hasHeartbeat() && System.currentTimeMillis() - lastHeartbeat <= timeout;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ws.close();
+    }
+
+}
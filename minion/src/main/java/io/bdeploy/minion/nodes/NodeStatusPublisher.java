@@ -0,0 +1,76 @@
+package io.bdeploy.minion.nodes;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.bdeploy.common.util.NamedDaemonThreadFactory;
+import io.bdeploy.jersey.ws.change.ObjectChangeBroadcaster;
+import io.bdeploy.jersey.ws.change.msg.ObjectChangeDto;
+import io.bdeploy.jersey.ws.change.msg.ObjectEvent;
+import io.bdeploy.jersey.ws.change.msg.ObjectScope;
+
+/**
+ * Publishes the status of the own node to anybody interested, typically the master.
+ * <p>
+ * The status itself is not published, as it contains sensitive information. Instead, a version of the status is published in
+ * regular intervals, which serves as heartbeat, and once the status changed. Interested parties fetch the status once they
+ * notice a new version.
+ */
+public class NodeStatusPublisher implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeStatusPublisher.class);
+
+    /** The type of object change used to publish the status */
+    public static final String OCT_NODE_STATUS = "NODE_STATUS";
+
+    /** The key of the current status version in the details of the object change */
+    public static final String VERSION = "version";
+
+    /** The interval in which the current status version is published even if it did not change */
+    public static final long HEARTBEAT_INTERVAL_MS = 5_000;
+
+    private final ObjectChangeBroadcaster broadcaster;
+
+    /** Starts with the current time, so a restarted node never continues with a previously published version */
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    private final ScheduledExecutorService heartbeat = Executors
+            .newSingleThreadScheduledExecutor(new NamedDaemonThreadFactory("Node Status Heartbeat"));
+
+    public NodeStatusPublisher(ObjectChangeBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+        this.heartbeat.scheduleAtFixedRate(this::publish, HEARTBEAT_INTERVAL_MS, HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Notifies all interested parties that the status of this node changed.
+     */
+    public void statusChanged() {
+        version.incrementAndGet();
+        heartbeat.execute(this::publish);
+    }
+
+    private void publish() {
+        try {
+            broadcaster.send(new ObjectChangeDto(OCT_NODE_STATUS, ObjectScope.EMPTY, ObjectEvent.CHANGED,
+                    Map.of(VERSION, Long.toString(version.get()))));
+        } catch (Exception e) {
+            log.warn("Cannot publish node status: {}", e.toString());
+            if (log.isDebugEnabled()) {
+                log.debug("Exception", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        heartbeat.shutdownNow();
+    }
+
+}
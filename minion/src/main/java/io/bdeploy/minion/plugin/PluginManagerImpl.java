@@ -6,6 +6,7 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -32,6 +33,8 @@ import io.bdeploy.bhive.ReadOnlyOperation;
 import io.bdeploy.bhive.model.Manifest;
 import io.bdeploy.bhive.model.Manifest.Key;
 import io.bdeploy.bhive.model.ObjectId;
+import io.bdeploy.bhive.op.ObjectLoadOperation;
+import io.bdeploy.common.util.PathHelper;
 import io.bdeploy.interfaces.plugin.PluginHeader;
 import io.bdeploy.interfaces.plugin.PluginInfoDto;
 import io.bdeploy.interfaces.plugin.PluginManager;
@@ -49,6 +52,9 @@ public class PluginManagerImpl implements PluginManager {
     private final Set<ObjectId> unloadableLocal = new TreeSet<>();
     private final Set<ObjectId> unloadableGlobal = new TreeSet<>();
     private final Map<ObjectId, PluginInternalHandle> loaded = new TreeMap<>();
+
+    /** Plugin JARs extracted from packed objects, which have no file of their own. Deleted when the plugin is unloaded. */
+    private final Map<ObjectId, Path> extracted = new TreeMap<>();
     private final JerseyServer server;
 
     public PluginManagerImpl(BHive globalHive, JerseyServer server) {
@@ -79,7 +85,7 @@ public class PluginManagerImpl implements PluginManager {
         }
 
         try {
-            PluginInternalHandle handle = loadFile(globalHive.execute(new FindFileOperation().setObject(id)));
+            PluginInternalHandle handle = loadFile(findFile(globalHive, id));
             handle.id = id;
             handle.global = true;
 
@@ -89,6 +95,7 @@ public class PluginManagerImpl implements PluginManager {
         } catch (Throwable e) {
             log.warn("Cannot load global plugin from {}", id, e);
             this.unloadableGlobal.add(id);
+            deleteExtracted(id);
         }
         return null;
     }
@@ -116,8 +123,7 @@ public class PluginManagerImpl implements PluginManager {
         try {
             PluginInternalHandle handle = loaded.get(id);
             if (handle == null) {
-                Path pluginPath = source.execute(new FindFileOperation().setObject(id));
-                handle = loadFile(pluginPath);
+                handle = loadFile(findFile(source, id));
                 handle.id = id;
 
                 register(id, handle);
@@ -127,6 +133,7 @@ public class PluginManagerImpl implements PluginManager {
         } catch (Throwable e) {
             log.error("Cannot load local plugin from {}", id, e);
             unloadableLocal.add(id);
+            deleteExtracted(id);
         }
         return null;
     }
@@ -140,11 +147,11 @@ public class PluginManagerImpl implements PluginManager {
             return loaded.get(id).header;
         }
         try {
-            Path pluginPath = source.execute(new FindFileOperation().setObject(id));
-            try (InputStream is = Files.newInputStream(pluginPath)) {
+            // the header is read from the object directly, a file is only required once the plugin is loaded.
+            try (InputStream is = source.execute(new ObjectLoadOperation().setObject(id))) {
                 return PluginHeader.read(is);
             } catch (IOException e) {
-                throw new IllegalStateException("Cannot load plugin from " + pluginPath, e);
+                throw new IllegalStateException("Cannot load plugin from " + id, e);
             }
         } catch (Throwable e) {
             unloadableLocal.add(id);
@@ -344,8 +351,52 @@ public class PluginManagerImpl implements PluginManager {
         if (handle.pluginLoader != null) {
             handle.pluginLoader.close();
         }
+        deleteExtracted(handle.id);
+    }
+
+    /**
+     * Finds the JAR file of the given plugin. Packed objects have no file of their own, but the class loader requires one, so
+     * they are extracted once and the file is kept until the plugin is unloaded.
+     */
+    private Path findFile(BHive source, ObjectId id) throws IOException {
+        Path file = extracted.get(id);
+        if (file != null && PathHelper.exists(file)) {
+            return file;
+        }
+
+        file = source.execute(new FindFileOperation().setObject(id));
+        if (file != null) {
+            return file;
+        }
+
+        file = Files.createTempFile("plugin-", ".jar");
+        file.toFile().deleteOnExit(); // in case the plugin is never unloaded.
+        try (InputStream is = source.execute(new ObjectLoadOperation().setObject(id))) {
+            Files.copy(is, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (Throwable t) {
+            Files.deleteIfExists(file);
+            throw t;
+        }
+        extracted.put(id, file);
+        return file;
     }
 
+    private void deleteExtracted(ObjectId id) {
+        Path file = extracted.remove(id);
+        if (file == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Cannot delete extracted plugin {}", file, e);
+        }
+    }
+
+    /**
+     * Finds the file of an object, <code>null</code> if the object is packed and has no file of its own.
+     */
     @ReadOnlyOperation
     private static class FindFileOperation extends BHive.Operation<Path> {
 
@@ -353,7 +404,12 @@ public class PluginManagerImpl implements PluginManager {
 
         @Override
         public Path call() throws Exception {
-            return getObjectManager().db(db -> db.getObjectFile(object));
+            return getObjectManager().db(db -> {
+                if (!db.hasObjectFile(object)) {
+                    return null;
+                }
+                return db.getObjectFile(object);
+            });
         }
 
         public FindFileOperation setObject(ObjectId id) {
@@ -1,14 +1,22 @@
 package io.bdeploy.minion.remote.jersey;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -21,10 +29,16 @@ import com.j256.simplemagic.ContentInfoUtil;
 
 import io.bdeploy.common.util.PathHelper;
 import io.bdeploy.interfaces.directory.EntryChunk;
+import io.bdeploy.interfaces.directory.EntryLine;
+import io.bdeploy.interfaces.directory.EntryLines;
+import io.bdeploy.interfaces.directory.EntrySearchRequest;
+import io.bdeploy.interfaces.directory.EntrySearchResult;
 import io.bdeploy.interfaces.directory.RemoteDirectoryEntry;
 import io.bdeploy.interfaces.remote.CommonDirectoryEntryResource;
 import io.bdeploy.interfaces.variables.DeploymentPathProvider;
+import io.bdeploy.jersey.JerseyStreamingHelper;
 import io.bdeploy.minion.MinionRoot;
+import io.bdeploy.minion.remote.jersey.EntryLineIndex.LineReader;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.MediaType;
@@ -37,6 +51,28 @@ public class CommonDirectoryEntryResourceImpl implements CommonDirectoryEntryRes
 
     private static final Logger log = LoggerFactory.getLogger(CommonDirectoryEntryResourceImpl.class);
 
+    /** The maximum amount of bytes read from a file at once */
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+    /** The amount of bytes returned in a single chunk if no limit is given, which is also the maximum for a given limit */
+    private static final long DEFAULT_CHUNK_SIZE = 16L * 1024 * 1024;
+
+    /** The default amount of lines or search matches returned */
+    private static final int DEFAULT_LINES = 1_000;
+
+    /** The maximum amount of lines or search matches returned */
+    private static final int MAX_LINES = 10_000;
+
+    /** A timestamp at the start of a log line, e.g. "2023-01-31 12:34:56.789" or "[2023-01-31T12:34:56,789]" */
+    private static final Pattern TIMESTAMP_PATTERN = Pattern
+            .compile("\\[?(\\d{4}-\\d{2}-\\d{2})[ T](\\d{2}:\\d{2}:\\d{2})(?:[.,](\\d{1,9}))?");
+
+    /** The maximum time a single request follows an entry */
+    private static final long MAX_FOLLOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /** The interval in which a followed entry is checked for new content */
+    private static final long FOLLOW_POLL_MILLIS = 100;
+
     @Inject
     private MinionRoot root;
 
@@ -45,37 +81,199 @@ public class CommonDirectoryEntryResourceImpl implements CommonDirectoryEntryRes
         // determine file first...
         Path actual = getEntryPath(root, entry);
 
-        if (limit == 0) {
-            limit = Long.MAX_VALUE;
+        try (FileChannel channel = FileChannel.open(actual, StandardOpenOption.READ)) {
+            long currentSize = channel.size();
+            if (currentSize < offset) {
+                // file has been reset.
+                return EntryChunk.ROLLOVER_CHUNK;
+            } else if (currentSize == offset) {
+                return null;
+            }
+
+            // read up to the current end of the file, the client continues at the returned end pointer.
+            long max = limit <= 0 ? DEFAULT_CHUNK_SIZE : Math.min(limit, DEFAULT_CHUNK_SIZE);
+            byte[] content = new byte[(int) Math.min(max, currentSize - offset)];
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.position() < content.length) {
+                // bounded reads, as a read into a heap buffer requires a temporary direct buffer of the same size.
+                buffer.limit(Math.min(content.length, buffer.position() + READ_CHUNK_SIZE));
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    break; // truncated in the meantime.
+                }
+            }
+
+            int read = buffer.position();
+            return new EntryChunk(read == content.length ? content : Arrays.copyOf(content, read), offset, offset + read);
+        } catch (IOException e) {
+            throw new WebApplicationException("Cannot read chunk of " + actual, e);
         }
+    }
 
-        File file = actual.toFile();
-        long currentSize = file.length();
-        if (currentSize < offset) {
-            // file has been reset.
-            return EntryChunk.ROLLOVER_CHUNK;
-        } else if (currentSize > offset) {
-            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
-                raf.seek(offset);
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                    int b;
-                    long c = 0;
-                    while ((b = raf.read()) != -1) {
-                        if (c++ >= limit) {
-                            break;
-                        }
+    @Override
+    public EntryLines getEntryLines(RemoteDirectoryEntry entry, long firstLine, int count) {
+        Path actual = getEntryPath(root, entry);
+        int maxLines = count <= 0 ? DEFAULT_LINES : Math.min(count, MAX_LINES);
+
+        try (FileChannel channel = FileChannel.open(actual, StandardOpenOption.READ)) {
+            EntryLineIndex index = EntryLineIndex.forFile(actual);
+            long end = index.update(channel);
+
+            EntryLines result = new EntryLines();
+            result.totalLines = index.getLineCount();
+            result.firstLine = firstLine < 0 ? Math.max(0, result.totalLines + firstLine) : Math.min(firstLine, result.totalLines);
+
+            LineReader reader = new LineReader(channel, index.seek(channel, result.firstLine), end);
+            result.startPointer = reader.getPosition();
+            String line;
+            while (result.lines.size() < maxLines && (line = reader.next()) != null) {
+                result.lines.add(createLine(result.firstLine + result.lines.size(), reader.getLineOffset(), line));
+            }
+            result.endPointer = reader.getPosition();
+            return result;
+        } catch (IOException e) {
+            throw new WebApplicationException("Cannot read lines of " + actual, e);
+        }
+    }
+
+    @Override
+    public EntrySearchResult searchEntry(EntrySearchRequest request) {
+        if (request.query == null || request.query.isEmpty()) {
+            throw new WebApplicationException("No search query given", Status.BAD_REQUEST);
+        }
+
+        Pattern pattern;
+        try {
+            int flags = request.ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+            pattern = Pattern.compile(request.regex ? request.query : Pattern.quote(request.query), flags);
+        } catch (PatternSyntaxException e) {
+            throw new WebApplicationException("Invalid search query: " + e.getMessage(), e, Status.BAD_REQUEST);
+        }
+
+        Path actual = getEntryPath(root, request.entry);
+        int maxMatches = request.maxMatches <= 0 ? DEFAULT_LINES : Math.min(request.maxMatches, MAX_LINES);
+        boolean timed = request.from > 0 || request.to > 0;
+
+        try (FileChannel channel = FileChannel.open(actual, StandardOpenOption.READ)) {
+            EntryLineIndex index = EntryLineIndex.forFile(actual);
+            long end = index.update(channel);
+
+            EntrySearchResult result = new EntrySearchResult();
+            result.totalLines = index.getLineCount();
 
-                        baos.write(b);
+            long number = Math.max(0, request.startLine);
+            LineReader reader = new LineReader(channel, index.seek(channel, number), end);
+            long time = 0;
+            String line;
+            for (; (line = reader.next()) != null; number++) {
+                if (timed) {
+                    long lineTime = getTimestamp(line);
+                    time = lineTime > 0 ? lineTime : time;
+                    if (time == 0 || (request.from > 0 && time < request.from) || (request.to > 0 && time > request.to)) {
+                        continue;
                     }
+                }
 
-                    return new EntryChunk(baos.toByteArray(), offset, raf.getFilePointer());
+                if (pattern.matcher(line).find()) {
+                    if (result.matches.size() >= maxMatches) {
+                        result.nextLine = number;
+                        break;
+                    }
+                    result.matches.add(createLine(number, reader.getLineOffset(), line));
                 }
-            } catch (IOException e) {
-                throw new WebApplicationException("Cannot read chunk of " + actual, e);
             }
+            return result;
+        } catch (IOException e) {
+            throw new WebApplicationException("Cannot search " + actual, e);
+        }
+    }
+
+    private static EntryLine createLine(long number, long offset, String content) {
+        EntryLine line = new EntryLine();
+        line.number = number;
+        line.offset = offset;
+        line.content = content;
+        return line;
+    }
+
+    /**
+     * @return the time of the timestamp at the start of the given line in the local time zone, 0 if there is none.
+     */
+    private static long getTimestamp(String line) {
+        Matcher matcher = TIMESTAMP_PATTERN.matcher(line);
+        if (!matcher.lookingAt()) {
+            return 0;
+        }
+        try {
+            LocalDateTime time = LocalDateTime.parse(matcher.group(1) + "T" + matcher.group(2));
+            String fraction = matcher.group(3);
+            if (fraction != null) {
+                time = time.withNano(Integer.parseInt((fraction + "00000000").substring(0, 9)));
+            }
+            return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public Response followEntryContent(RemoteDirectoryEntry entry, long offset, long timeout) {
+        Path actual = getEntryPath(root, entry);
+        long millis = timeout <= 0 ? MAX_FOLLOW_MILLIS : Math.min(timeout, MAX_FOLLOW_MILLIS);
+
+        try {
+            if (Files.size(actual) < offset) {
+                // file has been reset.
+                return Response.status(Status.RESET_CONTENT).build();
+            }
+        } catch (IOException e) {
+            throw new WebApplicationException("Cannot determine size of " + actual, e);
         }
 
-        return null; // offset == size...
+        return JerseyStreamingHelper.createContinuousResponse(output -> follow(actual, offset, millis, output));
+    }
+
+    /**
+     * Writes all content of the given file starting at the given offset, and any content appended while following.
+     */
+    private static void follow(Path file, long offset, long millis, OutputStream output) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        byte[] buffer = new byte[READ_CHUNK_SIZE];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = offset;
+            while (true) {
+                long size = channel.size();
+                if (size < position) {
+                    return; // file has been reset, the client will notice when continuing.
+                }
+
+                boolean caughtUp = true;
+                if (size > position) {
+                    // the response is collected in chunks on the heap anyway, so this is a plain copy.
+                    int read = channel.read(ByteBuffer.wrap(buffer, 0, (int) Math.min(size - position, buffer.length)), position);
+                    if (read > 0) {
+                        output.write(buffer, 0, read);
+                        output.flush();
+                        position += read;
+                        caughtUp = position >= size;
+                    }
+                }
+
+                // checked on each iteration, a quickly growing file must not keep the request alive forever.
+                if (System.nanoTime() >= deadline) {
+                    return;
+                }
+                if (caughtUp) {
+                    Thread.sleep(FOLLOW_POLL_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ioe) {
+            // most likely the client stopped following.
+            if (log.isDebugEnabled()) {
+                log.debug("Stopped following {}", file, ioe);
+            }
+        }
     }
 
     static Path getEntryPath(MinionRoot root, RemoteDirectoryEntry entry) {
@@ -0,0 +1,222 @@
+package io.bdeploy.minion.remote.jersey;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A sparse index of the line offsets of a file, which allows to seek to any line without reading the file up to that line.
+ * <p>
+ * The offset of every {@link #STRIDE}th line is recorded, so seeking to a line reads at most {@link #STRIDE} lines. The index is
+ * built on first use and extended incrementally with content appended to the file later on. If the file shrinks or is replaced,
+ * it is indexed from scratch.
+ * <p>
+ * There is a single instance per file (see {@link #forFile(Path)}), which is discarded once not used for a while.
+ */
+final class EntryLineIndex {
+
+    /** Every n-th line is recorded in the index */
+    static final int STRIDE = 64;
+
+    /** The maximum amount of bytes read from a file at once */
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+    private static final ConcurrentMap<Path, EntryLineIndex> indices = CacheBuilder.newBuilder().maximumSize(200)
+            .expireAfterAccess(10, TimeUnit.MINUTES).<Path, EntryLineIndex> build().asMap();
+
+    private final Path file;
+
+    /** The offset of every {@link #STRIDE}th line */
+    private long[] offsets = new long[16];
+    private long lineCount;
+    private long indexedSize;
+    private boolean atLineStart = true;
+    private Object fileKey;
+
+    private EntryLineIndex(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @param file the file to index.
+     * @return the index of the given file, shared with all other users of the same file.
+     */
+    static EntryLineIndex forFile(Path file) {
+        return indices.computeIfAbsent(file.toAbsolutePath().normalize(), EntryLineIndex::new);
+    }
+
+    /**
+     * Indexes all content which has been appended to the file since the last update.
+     *
+     * @param channel a channel reading the indexed file.
+     * @return the size of the file covered by the index.
+     */
+    synchronized long update(FileChannel channel) throws IOException {
+        long size = channel.size();
+        Object key = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        if (size < indexedSize || !Objects.equals(key, fileKey)) {
+            // truncated or replaced.
+            lineCount = 0;
+            indexedSize = 0;
+            atLineStart = true;
+            fileKey = key;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK_SIZE);
+        byte[] bytes = buffer.array();
+        while (indexedSize < size) {
+            buffer.clear();
+            buffer.limit((int) Math.min(READ_CHUNK_SIZE, size - indexedSize));
+            int read = channel.read(buffer, indexedSize);
+            if (read <= 0) {
+                break; // truncated in the meantime, caught up with on the next update.
+            }
+            for (int i = 0; i < read; ++i) {
+                if (atLineStart) {
+                    addLine(indexedSize + i);
+                    atLineStart = false;
+                }
+                if (bytes[i] == '\n') {
+                    atLineStart = true;
+                }
+            }
+            indexedSize += read;
+        }
+        return indexedSize;
+    }
+
+    private void addLine(long offset) {
+        if (lineCount % STRIDE == 0) {
+            int slot = (int) (lineCount / STRIDE);
+            if (slot == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[slot] = offset;
+        }
+        lineCount++;
+    }
+
+    /**
+     * @return the amount of lines in the file as of the last update. A last line without line terminator is counted as well.
+     */
+    synchronized long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @param channel a channel reading the indexed file.
+     * @param line the number of the line to seek to, starting at 0.
+     * @return the offset of the given line, or the size covered by the index if the line does not exist (yet).
+     */
+    long seek(FileChannel channel, long line) throws IOException {
+        long offset;
+        long end;
+        synchronized (this) {
+            if (line >= lineCount) {
+                return indexedSize;
+            }
+            offset = offsets[(int) (line / STRIDE)];
+            end = indexedSize;
+        }
+
+        LineReader reader = new LineReader(channel, offset, end);
+        for (long skip = line % STRIDE; skip > 0; --skip) {
+            reader.next();
+        }
+        return reader.getPosition();
+    }
+
+    /**
+     * Reads lines of a file starting at a given offset up to a given end.
+     */
+    static final class LineReader {
+
+        /** The maximum amount of bytes per line kept, the rest is skipped */
+        static final int MAX_LINE_LENGTH = 16 * 1024;
+
+        private final FileChannel channel;
+        private final long end;
+        private final ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK_SIZE);
+
+        private long bufferOffset;
+        private byte[] line = new byte[256];
+        private long lineOffset;
+
+        LineReader(FileChannel channel, long offset, long end) {
+            this.channel = channel;
+            this.end = end;
+            this.bufferOffset = offset;
+            buffer.flip();
+        }
+
+        /**
+         * @return the next line without line terminator, <code>null</code> if the end has been reached.
+         */
+        String next() throws IOException {
+            lineOffset = getPosition();
+            int length = 0;
+            boolean any = false;
+            while (true) {
+                if (!buffer.hasRemaining() && !fill()) {
+                    break;
+                }
+                any = true;
+                byte b = buffer.get();
+                if (b == '\n') {
+                    break;
+                }
+                if (length < MAX_LINE_LENGTH) {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, Math.min(line.length * 2, MAX_LINE_LENGTH));
+                    }
+                    line[length++] = b;
+                }
+            }
+
+            if (!any) {
+                return null;
+            }
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private boolean fill() throws IOException {
+            bufferOffset += buffer.limit();
+            buffer.clear();
+            buffer.limit((int) Math.min(READ_CHUNK_SIZE, end - bufferOffset));
+            if (!buffer.hasRemaining() || channel.read(buffer, bufferOffset) <= 0) {
+                buffer.limit(0);
+                return false;
+            }
+            buffer.flip();
+            return true;
+        }
+
+        /**
+         * @return the offset of the line last returned by {@link #next()}.
+         */
+        long getLineOffset() {
+            return lineOffset;
+        }
+
+        /**
+         * @return the offset of the next line to read.
+         */
+        long getPosition() {
+            return bufferOffset + buffer.position();
+        }
+    }
+
+}
@@ -8,8 +8,10 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -18,6 +20,8 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import org.apache.commons.codec.binary.Base64;
@@ -25,6 +29,9 @@ import org.glassfish.jersey.media.multipart.ContentDisposition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import io.bdeploy.api.product.v1.impl.LocalDependencyFetcher;
 import io.bdeploy.api.product.v1.impl.ScopedManifestKey;
 import io.bdeploy.bhive.BHive;
@@ -60,9 +67,10 @@ import io.bdeploy.interfaces.configuration.pcu.InstanceNodeStatusDto;
 import io.bdeploy.interfaces.configuration.pcu.InstanceStatusDto;
 import io.bdeploy.interfaces.configuration.pcu.ProcessControlGroupConfiguration;
 import io.bdeploy.interfaces.configuration.pcu.ProcessDetailDto;
-import io.bdeploy.interfaces.configuration.pcu.ProcessStatusDto;
-import io.bdeploy.interfaces.descriptor.application.ProcessControlDescriptor.ApplicationStartType;
 import io.bdeploy.interfaces.directory.EntryChunk;
+import io.bdeploy.interfaces.directory.EntryLines;
+import io.bdeploy.interfaces.directory.EntrySearchRequest;
+import io.bdeploy.interfaces.directory.EntrySearchResult;
 import io.bdeploy.interfaces.directory.RemoteDirectory;
 import io.bdeploy.interfaces.directory.RemoteDirectoryEntry;
 import io.bdeploy.interfaces.manifest.ApplicationManifest;
@@ -73,23 +81,24 @@ import io.bdeploy.interfaces.manifest.attributes.CustomAttributesRecord;
 import io.bdeploy.interfaces.manifest.banner.InstanceBannerRecord;
 import io.bdeploy.interfaces.manifest.history.InstanceManifestHistory.Action;
 import io.bdeploy.interfaces.manifest.history.runtime.MasterRuntimeHistoryDto;
-import io.bdeploy.interfaces.manifest.state.InstanceOverallStateRecord;
-import io.bdeploy.interfaces.manifest.state.InstanceOverallStateRecord.OverallStatus;
+import io.bdeploy.interfaces.manifest.history.runtime.MinionRuntimeHistoryDto;
 import io.bdeploy.interfaces.manifest.state.InstanceState;
 import io.bdeploy.interfaces.manifest.state.InstanceStateRecord;
 import io.bdeploy.interfaces.manifest.statistics.ClientUsage;
 import io.bdeploy.interfaces.manifest.statistics.ClientUsageData;
 import io.bdeploy.interfaces.minion.MinionDto;
-import io.bdeploy.interfaces.minion.MinionStatusDto;
 import io.bdeploy.interfaces.remote.CommonDirectoryEntryResource;
 import io.bdeploy.interfaces.remote.MasterNamedResource;
 import io.bdeploy.interfaces.remote.NodeDeploymentResource;
 import io.bdeploy.interfaces.remote.NodeProcessResource;
 import io.bdeploy.interfaces.remote.ResourceProvider;
+import io.bdeploy.interfaces.remote.versioning.VersionMismatchFilter;
 import io.bdeploy.jersey.JerseyPathWriter.DeleteAfterWrite;
+import io.bdeploy.jersey.JerseyStreamingHelper;
 import io.bdeploy.jersey.JerseyWriteLockService.LockingResource;
 import io.bdeploy.jersey.JerseyWriteLockService.WriteLock;
 import io.bdeploy.minion.MinionRoot;
+import io.bdeploy.ui.api.MultiNodeResult;
 import io.bdeploy.ui.api.NodeManager;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.WebApplicationException;
@@ -104,6 +113,16 @@ public class MasterNamedResourceImpl implements MasterNamedResource {
 
     private static final Logger log = LoggerFactory.getLogger(MasterNamedResourceImpl.class);
 
+    /** The maximum time to wait for nodes to report the status of an instance */
+    private static final Duration NODE_STATUS_TIMEOUT = Duration.ofSeconds(5);
+
+    /** The maximum time to wait for nodes to report the runtime history of an instance */
+    private static final Duration NODE_HISTORY_TIMEOUT = Duration.ofSeconds(15);
+
+    /** The nodes each instance version is deployed to, which never changes for an existing version */
+    private static final Cache<Manifest.Key, Set<String>> versionNodes = CacheBuilder.newBuilder().maximumSize(1000)
+            .expireAfterAccess(10, TimeUnit.MINUTES).build();
+
     private final BHive hive;
     private final ActivityReporter reporter;
     private final MinionRoot root;
@@ -667,6 +686,24 @@ public class MasterNamedResourceImpl implements MasterNamedResource {
                 offset, limit);
     }
 
+    @Override
+    public EntryLines getEntryLines(String nodeName, RemoteDirectoryEntry entry, long firstLine, int count) {
+        return nodes.getNodeResourceIfOnlineOrThrow(nodeName, CommonDirectoryEntryResource.class, context).getEntryLines(entry,
+                firstLine, count);
+    }
+
+    @Override
+    public EntrySearchResult searchEntry(String nodeName, EntrySearchRequest request) {
+        return nodes.getNodeResourceIfOnlineOrThrow(nodeName, CommonDirectoryEntryResource.class, context).searchEntry(request);
+    }
+
+    @Override
+    public Response followEntryContent(String nodeName, RemoteDirectoryEntry entry, long offset, long timeout) {
+        return JerseyStreamingHelper.passThroughContinuousResponse(nodes
+                .getNodeResourceIfOnlineOrThrow(nodeName, CommonDirectoryEntryResource.class, context)
+                .followEntryContent(entry, offset, timeout));
+    }
+
     @Override
     public Response getEntryStream(String nodeName, RemoteDirectoryEntry entry) {
         return nodes.getNodeResourceIfOnlineOrThrow(nodeName, CommonDirectoryEntryResource.class, context).getEntryStream(entry);
@@ -876,12 +913,9 @@ public class MasterNamedResourceImpl implements MasterNamedResource {
                 id.uuid = instanceId;
 
                 try {
-                    RemoteDirectoryEntry oe = nodes.getNodeResourceIfOnlineOrThrow(nodeName, NodeProcessResource.class, context)
-                            .getOutputEntry(instanceId, tag, applicationId);
-
-                    if (oe != null) {
-                        id.entries.add(oe);
-                    }
+                    id.entries.addAll(getOutputEntries(
+                            nodes.getNodeResourceIfOnlineOrThrow(nodeName, NodeProcessResource.class, context), instanceId, tag,
+                            applicationId));
                 } catch (Exception e) {
                     log.warn("Problem fetching output entry from {} for {}, {}, {}", nodeName, instanceId, tag, applicationId, e);
                     id.problem = e.toString();
@@ -895,37 +929,78 @@ public class MasterNamedResourceImpl implements MasterNamedResource {
                 Status.NOT_FOUND);
     }
 
+    private static List<RemoteDirectoryEntry> getOutputEntries(NodeProcessResource npr, String instanceId, String tag,
+            String applicationId) {
+        try {
+            return npr.getOutputEntries(instanceId, tag, applicationId);
+        } catch (RuntimeException e) {
+            if (!VersionMismatchFilter.isNotSupported(e)) {
+                throw e;
+            }
+
+            // the node is older and does not know about rotated output yet.
+            RemoteDirectoryEntry oe = npr.getOutputEntry(instanceId, tag, applicationId);
+            return oe != null ? Collections.singletonList(oe) : Collections.emptyList();
+        }
+    }
+
     @Override
     public InstanceStatusDto getStatus(String instanceId) {
-        // we don't use the instance manifest to figure out nodes, since node assignment can change over versions. we simply query all nodes for now.
-        // TODO: this might be quite inefficient if we have many nodes, and always only deploy to a small subset.
         InstanceStatusDto instanceStatus = new InstanceStatusDto(instanceId);
+        Collection<String> nodeNames = getDeployedNodes(instanceId);
 
-        // all node names regardless of their status.
-        Collection<String> nodeNames = nodes.getAllNodeNames();
+        MultiNodeResult<Map<String, InstanceNodeStatusDto>> result;
+        Activity reading = reporter.start("Read Node Processes");
+        try {
+            result = nodes.getProcessStatus(nodeNames, List.of(instanceId), context, NODE_STATUS_TIMEOUT);
+        } finally {
+            reading.done();
+        }
 
-        try (Activity activity = reporter.start("Read Node Processes", nodeNames.size())) {
-            for (String nodeName : nodeNames) {
-                MinionDto node = nodes.getNodeConfigIfOnline(nodeName);
+        result.getResults().forEach(
+                (nodeName, status) -> instanceStatus.add(nodeName, status.getOrDefault(instanceId, new InstanceNodeStatusDto())));
+        result.getFailures().forEach((nodeName, error) -> {
+            // offline nodes are not logged to avoid flooding - node manager will log once.
+            if (nodes.getNodeConfigIfOnline(nodeName) != null) {
+                log.error("Cannot fetch process status of {}: {}", nodeName, error);
+            }
+            instanceStatus.addError(nodeName, error);
+        });
+        return instanceStatus;
+    }
 
-                if (node == null) {
-                    continue; // don't log to avoid flooding - node manager will log once.
-                }
+    /**
+     * Determines the nodes which need to be contacted to find processes of an instance.
+     * <p>
+     * Node assignment can change over versions, so the nodes of all installed versions are taken into account. The nodes of
+     * each version are cached, as loading all installed versions on each status request is expensive.
+     *
+     * @return the names of all nodes at least one installed version of the instance is deployed to.
+     */
+    private Collection<String> getDeployedNodes(String instanceId) {
+        InstanceManifest im;
+        try {
+            im = InstanceManifest.load(hive, instanceId, null);
+        } catch (WebApplicationException e) {
+            // the instance has been deleted, but there may still be something left on the nodes.
+            return nodes.getAllNodeNames();
+        }
 
-                NodeProcessResource spc = ResourceProvider.getVersionedResource(node.remote, NodeProcessResource.class, context);
-                try {
-                    InstanceNodeStatusDto nodeStatus = spc.getStatus(instanceId);
-                    instanceStatus.add(nodeName, nodeStatus);
-                } catch (Exception e) {
-                    log.error("Cannot fetch process status of {}", nodeName);
-                    if (log.isDebugEnabled()) {
-                        log.debug("Exception:", e);
-                    }
+        SortedSet<String> result = new TreeSet<>();
+        for (String tag : getState(im, hive).read().installedTags) {
+            Manifest.Key key = new Manifest.Key(im.getManifest().getName(), tag);
+            Set<String> versionNodeNames = versionNodes.getIfPresent(key);
+            if (versionNodeNames == null) {
+                if (!Boolean.TRUE.equals(hive.execute(new ManifestExistsOperation().setManifest(key)))) {
+                    continue;
                 }
-                activity.worked(1);
+                versionNodeNames = Set.copyOf(InstanceManifest.of(hive, key).getInstanceNodeManifests().keySet());
+                versionNodes.put(key, versionNodeNames);
             }
+            result.addAll(versionNodeNames);
         }
-        return instanceStatus;
+        result.remove(InstanceManifest.CLIENT_NODE_NAME);
+        return result;
     }
 
     @Override
@@ -954,6 +1029,31 @@ public class MasterNamedResourceImpl implements MasterNamedResource {
         }
     }
 
+    @Override
+    public List<String> getRecentOutput(String instanceId, String appUid, int maxLines) {
+        // Check if the application is running on a node
+        InstanceStatusDto status = getStatus(instanceId);
+        String nodeName = status.getNodeWhereAppIsRunning(appUid);
+
+        // Check if the application is deployed on a node
+        if (nodeName == null) {
+            nodeName = status.getNodeWhereAppIsDeployed(appUid);
+        }
+
+        // Application is nowhere deployed and nowhere running
+        if (nodeName == null) {
+            return Collections.emptyList();
+        }
+
+        try {
+            return nodes.getNodeResourceIfOnlineOrThrow(nodeName, NodeProcessResource.class, context).getRecentOutput(instanceId,
+                    appUid, maxLines);
+        } catch (Exception e) {
+            throw new WebApplicationException(
+                    "Cannot fetch process output from " + nodeName + " for " + instanceId + ", " + appUid, e);
+        }
+    }
+
     @Override
     public String generateWeakToken(String principal) {
         return root.createWeakToken(principal);
@@ -978,22 +1078,14 @@ public class MasterNamedResourceImpl implements MasterNamedResource {
 
     @Override
     public MasterRuntimeHistoryDto getRuntimeHistory(String instanceId) {
-        // we don't use the instance manifest to figure out nodes, since node assignment can change over versions. we simply query all nodes for now.
-        // TODO: this might be quite inefficient if we have many nodes, and always only deploy to a small subset.
-
         MasterRuntimeHistoryDto history = new MasterRuntimeHistoryDto();
 
-        // all node names regardless of their status.
-        Collection<String> nodeNames = nodes.getAllNodeNames();
+        MultiNodeResult<MinionRuntimeHistoryDto> result = nodes.requestFromNodes(getDeployedNodes(instanceId),
+                NodeProcessResource.class, context, spc -> spc.getRuntimeHistory(instanceId), NODE_HISTORY_TIMEOUT);
 
-        for (String nodeName : nodeNames) {
-            try {
-                history.add(nodeName, nodes.getNodeResourceIfOnlineOrThrow(nodeName, NodeProcessResource.class, context)
-                        .getRuntimeHistory(instanceId));
-            } catch (Exception e) {
-                history.addError(nodeName, "Cannot load runtime history (" + e.getMessage() + ")");
-            }
-        }
+        result.getResults().forEach(history::add);
+        result.getFailures()
+                .forEach((nodeName, error) -> history.addError(nodeName, "Cannot load runtime history (" + error + ")"));
         return history;
     }
 
@@ -1026,84 +1118,7 @@ public class MasterNamedResourceImpl implements MasterNamedResource {
 
     @Override
     public void updateOverallStatus() {
-        SortedSet<Key> imKeys = InstanceManifest.scan(hive, true);
-        Map<String, MinionStatusDto> nodeStatus = nodes.getAllNodeStatus();
-
-        try (Activity all = reporter.start("Fetch Instance Status", imKeys.size())) {
-            for (Key imKey : imKeys) {
-                InstanceManifest im = InstanceManifest.of(hive, imKey);
-
-                if (im.getState(hive).read().activeTag == null) {
-                    continue; // no active tag means there cannot be any status.
-                }
-
-                InstanceConfiguration config = im.getConfiguration();
-
-                // get all node status of the responsible master.
-                InstanceStatusDto processStatus = getStatus(config.uuid);
-                List<InstanceNodeConfigurationDto> nodeConfigs = readExistingNodeConfigs(im);
-
-                List<String> stoppedApps = new ArrayList<>();
-                List<String> runningApps = new ArrayList<>();
-
-                OverallStatus overallStatus = OverallStatus.RUNNING;
-                List<String> overallStatusMessages = new ArrayList<>();
-
-                for (var nodeCfg : nodeConfigs) {
-                    if (InstanceManifest.CLIENT_NODE_NAME.equals(nodeCfg.nodeName)) {
-                        continue; // don't check client.
-                    }
-
-                    MinionStatusDto state = nodeStatus.get(nodeCfg.nodeName);
-
-                    if (state == null || state.offline) {
-                        overallStatus = InstanceOverallStateRecord.OverallStatus.WARNING;
-                        overallStatusMessages.add("Node " + nodeCfg.nodeName + " is not available");
-                        continue;
-                    }
-
-                    InstanceNodeStatusDto statusOnNode = processStatus.node2Applications.get(nodeCfg.nodeName);
-
-                    for (var app : nodeCfg.nodeConfiguration.applications) {
-                        if (app.processControl.startType != ApplicationStartType.INSTANCE) {
-                            continue;
-                        }
-
-                        if (!statusOnNode.isAppDeployed(app.uid)) {
-                            log.warn("Expected application is not currently deployed: {}", app.uid);
-                            continue;
-                        }
-
-                        // instance application, check status
-                        ProcessStatusDto status = statusOnNode.getStatus(app.uid);
-                        if (status.processState.isStopped()) {
-                            stoppedApps.add(app.name);
-                        } else {
-                            runningApps.add(app.name);
-                        }
-                    }
-                }
-
-                if (stoppedApps.isEmpty() && runningApps.isEmpty()) {
-                    // this means that ther are no instance type applications on the instance.
-                    if (overallStatus != OverallStatus.WARNING) {
-                        overallStatus = OverallStatus.STOPPED;
-                    }
-                } else if (stoppedApps.isEmpty() || runningApps.isEmpty()) {
-                    // valid - either all stopped or all running.
-                    if (overallStatus != OverallStatus.WARNING) {
-                        overallStatus = runningApps.isEmpty() ? OverallStatus.STOPPED : OverallStatus.RUNNING;
-                    }
-                } else {
-                    // not ok, some apps started, some stopped - that will be a warning.
-                    overallStatus = OverallStatus.WARNING;
-                    overallStatusMessages.add(stoppedApps.size() + " instance type applications are not running.");
-                }
-
-                im.getOverallState(hive).update(overallStatus, overallStatusMessages);
-                all.workAndCancelIfRequested(1);
-            }
-        }
+        new OverallStatusAggregator(hive, nodes, context, reporter).update();
     }
 
     @Override
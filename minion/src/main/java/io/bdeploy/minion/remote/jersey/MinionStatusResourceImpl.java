@@ -33,6 +33,7 @@ import io.bdeploy.interfaces.remote.MinionStatusResource;
 import io.bdeploy.jersey.JerseyServer;
 import io.bdeploy.logging.audit.RollingFileAuditor;
 import io.bdeploy.minion.MinionRoot;
+import io.bdeploy.minion.nodes.NodeStatusPublisher;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.inject.Singleton;
@@ -50,6 +51,9 @@ public class MinionStatusResourceImpl implements MinionStatusResource {
     @Inject
     private BHiveRegistry registry;
 
+    @Inject
+    private NodeStatusPublisher statusPublisher;
+
     private final MinionMonitoringDto rollingMonitoring = new MinionMonitoringDto();
 
     private static final ScheduledExecutorService monitorUpdate = Executors.newSingleThreadScheduledExecutor();
@@ -161,6 +165,11 @@ public class MinionStatusResourceImpl implements MinionStatusResource {
         while (rollingMonitoring.cpuUsage.size() > 15) {
             rollingMonitoring.cpuUsage.remove(rollingMonitoring.cpuUsage.size() - 1);
         }
+
+        // not yet injected on the very first update.
+        if (statusPublisher != null) {
+            statusPublisher.statusChanged();
+        }
     }
 
 }
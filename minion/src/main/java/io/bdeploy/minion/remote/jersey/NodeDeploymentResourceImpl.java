@@ -86,6 +86,7 @@ public class NodeDeploymentResourceImpl implements NodeDeploymentResource {
         try (Activity deploying = reporter.start("Deploying Ver. " + key.getTag() + " of " + inm.getConfiguration().name)) {
             InstanceNodeController inc = new InstanceNodeController(hive, root.getDeploymentDir(), inm, ts);
             inc.addAdditionalVariableResolver(new MinionConfigVariableResolver(root));
+            inc.setLinkPooledApplications(root.getState().linkPooledApplications);
             inc.install();
             getState(inm, hive).install(key.getTag());
 
@@ -93,7 +94,7 @@ public class NodeDeploymentResourceImpl implements NodeDeploymentResource {
             MinionProcessController processController = root.getProcessController();
             InstanceProcessController controller = processController.getOrCreate(hive, inm);
             controller.createProcessControllers(inc.getDeploymentPathProvider(), inc.getResolver(), inm, inm.getKey().getTag(),
-                    inc.getProcessGroupConfiguration(), inm.getRuntimeHistory(hive));
+                    inc.getProcessGroupConfiguration(), inm.getRuntimeHistory(hive, inc.getDeploymentPathProvider()));
         }
     }
 
@@ -1,14 +1,19 @@
 package io.bdeploy.minion.remote.jersey;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import io.bdeploy.bhive.BHive;
 import io.bdeploy.bhive.model.Manifest.Key;
 import io.bdeploy.bhive.op.ManifestListOperation;
 import io.bdeploy.common.util.PathHelper;
 import io.bdeploy.interfaces.configuration.pcu.InstanceNodeStatusDto;
+import io.bdeploy.interfaces.configuration.pcu.InstanceNodeStatusSnapshotDto;
 import io.bdeploy.interfaces.configuration.pcu.ProcessDetailDto;
 import io.bdeploy.interfaces.directory.RemoteDirectoryEntry;
 import io.bdeploy.interfaces.manifest.InstanceNodeManifest;
@@ -21,6 +26,7 @@ import io.bdeploy.minion.MinionRoot;
 import io.bdeploy.pcu.InstanceProcessController;
 import io.bdeploy.pcu.MinionProcessController;
 import io.bdeploy.pcu.ProcessController;
+import io.bdeploy.pcu.ProcessOutputCapture;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Context;
@@ -104,6 +110,24 @@ public class NodeProcessResourceImpl implements NodeProcessResource {
         return instanceController.getStatus();
     }
 
+    @Override
+    public Map<String, InstanceNodeStatusDto> getStatus(List<String> instanceIds) {
+        MinionProcessController processController = root.getProcessController();
+        Map<String, InstanceNodeStatusDto> result = new TreeMap<>();
+        for (String instanceId : instanceIds) {
+            InstanceProcessController instanceController = processController.get(instanceId);
+            if (instanceController != null) {
+                result.put(instanceId, instanceController.getStatus());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public InstanceNodeStatusSnapshotDto getStatusSnapshot(String epoch, long since) {
+        return root.getProcessController().getStatusSnapshot(epoch, since);
+    }
+
     @Override
     public ProcessDetailDto getProcessDetails(String instanceId, String appUid) {
         MinionProcessController processController = root.getProcessController();
@@ -115,6 +139,34 @@ public class NodeProcessResourceImpl implements NodeProcessResource {
         DeploymentPathProvider dpp = new DeploymentPathProvider(root.getDeploymentDir().resolve(instanceId), tag);
         Path runtime = dpp.get(SpecialDirectory.RUNTIME);
         Path out = runtime.resolve(applicationId).resolve(ProcessController.OUT_TXT);
+        return createOutputEntry(instanceId, tag, runtime, out);
+    }
+
+    @Override
+    public List<RemoteDirectoryEntry> getOutputEntries(String instanceId, String tag, String applicationId) {
+        DeploymentPathProvider dpp = new DeploymentPathProvider(root.getDeploymentDir().resolve(instanceId), tag);
+        Path runtime = dpp.get(SpecialDirectory.RUNTIME);
+        Path out = runtime.resolve(applicationId).resolve(ProcessController.OUT_TXT);
+
+        List<RemoteDirectoryEntry> result = new ArrayList<>();
+        RemoteDirectoryEntry current = createOutputEntry(instanceId, tag, runtime, out);
+        if (current != null) {
+            result.add(current);
+        }
+        try {
+            for (Path segment : ProcessOutputCapture.getSegments(out)) {
+                RemoteDirectoryEntry entry = createOutputEntry(instanceId, tag, runtime, segment);
+                if (entry != null) {
+                    result.add(entry);
+                }
+            }
+        } catch (IOException e) {
+            throw new WebApplicationException("Cannot list output segments of " + applicationId, e);
+        }
+        return result;
+    }
+
+    private static RemoteDirectoryEntry createOutputEntry(String instanceId, String tag, Path runtime, Path out) {
         File file = out.toFile();
 
         if (file.exists()) {
@@ -132,6 +184,16 @@ public class NodeProcessResourceImpl implements NodeProcessResource {
         return null;
     }
 
+    @Override
+    public List<String> getRecentOutput(String instanceId, String applicationId, int maxLines) {
+        MinionProcessController processController = root.getProcessController();
+        InstanceProcessController instanceController = processController.get(instanceId);
+        if (instanceController == null) {
+            throw new WebApplicationException("Instance with ID '" + instanceId + "' is unknown");
+        }
+        return instanceController.getRecentOutput(applicationId, maxLines);
+    }
+
     @Override
     public void writeToStdin(String instanceId, String applicationId, String data) {
         MinionProcessController processController = root.getProcessController();
@@ -148,7 +210,8 @@ public class NodeProcessResourceImpl implements NodeProcessResource {
 
         BHive hive = root.getHive();
         for (Key key : hive.execute(new ManifestListOperation().setManifestName(instanceId + "/"))) {
-            MinionRuntimeHistory history = InstanceNodeManifest.of(hive, key).getRuntimeHistory(hive).getFullHistory();
+            DeploymentPathProvider dpp = new DeploymentPathProvider(root.getDeploymentDir().resolve(instanceId), key.getTag());
+            MinionRuntimeHistory history = InstanceNodeManifest.of(hive, key).getRuntimeHistory(hive, dpp).getFullHistory();
             if (history.isEmpty()) {
                 continue;
             }
@@ -0,0 +1,239 @@
+package io.bdeploy.minion.remote.jersey;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.bdeploy.bhive.BHive;
+import io.bdeploy.bhive.model.Manifest;
+import io.bdeploy.common.ActivityReporter;
+import io.bdeploy.common.ActivityReporter.Activity;
+import io.bdeploy.common.util.NamedDaemonThreadFactory;
+import io.bdeploy.interfaces.configuration.instance.InstanceNodeConfiguration;
+import io.bdeploy.interfaces.configuration.pcu.InstanceNodeStatusDto;
+import io.bdeploy.interfaces.configuration.pcu.ProcessStatusDto;
+import io.bdeploy.interfaces.descriptor.application.ProcessControlDescriptor.ApplicationStartType;
+import io.bdeploy.interfaces.manifest.InstanceManifest;
+import io.bdeploy.interfaces.manifest.InstanceNodeManifest;
+import io.bdeploy.interfaces.manifest.state.InstanceOverallStateRecord;
+import io.bdeploy.interfaces.manifest.state.InstanceOverallStateRecord.OverallStatus;
+import io.bdeploy.ui.api.MultiNodeResult;
+import io.bdeploy.ui.api.NodeManager;
+import jakarta.ws.rs.core.SecurityContext;
+
+/**
+ * Calculates the {@link InstanceOverallStateRecord overall state} of all instances in a BHive.
+ * <p>
+ * The process status of all instances is fetched using a single request per node, which only transfers changes since the
+ * previous update. The overall state of each instance is then calculated from this snapshot in parallel. States are only written
+ * if they changed, or if the persisted state is about to be considered outdated.
+ */
+class OverallStatusAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(OverallStatusAggregator.class);
+
+    /** The maximum time to wait for nodes to report the status of all instances */
+    private static final Duration NODE_STATUS_TIMEOUT = Duration.ofSeconds(30);
+
+    /** Unchanged states are written again after this time, as states without recent timestamp are shown as unknown */
+    private static final Duration REFRESH_INTERVAL = Duration.ofMinutes(5);
+
+    private static final AtomicInteger threadNum = new AtomicInteger(0);
+
+    /** Shared by all updates, threads are only kept while updates are running */
+    private static final ExecutorService pool = createPool();
+
+    private final BHive hive;
+    private final NodeManager nodes;
+    private final SecurityContext context;
+    private final ActivityReporter reporter;
+
+    OverallStatusAggregator(BHive hive, NodeManager nodes, SecurityContext context, ActivityReporter reporter) {
+        this.hive = hive;
+        this.nodes = nodes;
+        this.context = context;
+        this.reporter = reporter;
+    }
+
+    /**
+     * Updates the recorded overall state of all instances.
+     */
+    void update() {
+        SortedSet<Manifest.Key> imKeys = InstanceManifest.scan(hive, true);
+        if (imKeys.isEmpty()) {
+            return;
+        }
+
+        try (Activity all = reporter.start("Fetch Instance Status", imKeys.size())) {
+            List<Future<InstanceInput>> loading = new ArrayList<>();
+            for (Manifest.Key imKey : imKeys) {
+                loading.add(pool.submit(() -> load(imKey)));
+            }
+
+            List<InstanceInput> inputs = new ArrayList<>();
+            for (Future<InstanceInput> future : loading) {
+                InstanceInput input = await(future);
+                if (input != null) {
+                    inputs.add(input);
+                } else {
+                    all.worked(1);
+                }
+            }
+
+            MultiNodeResult<Map<String, InstanceNodeStatusDto>> snapshot = fetchStatus(inputs);
+
+            List<Future<Void>> updates = new ArrayList<>();
+            for (InstanceInput input : inputs) {
+                updates.add(pool.submit(() -> {
+                    updateState(input, snapshot);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : updates) {
+                await(future);
+                all.workAndCancelIfRequested(1);
+            }
+        }
+    }
+
+    private static ExecutorService createPool() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new NamedDaemonThreadFactory(() -> "Overall Status " + threadNum.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @return the configuration required to calculate the overall state, <code>null</code> if the instance has no state.
+     */
+    private InstanceInput load(Manifest.Key imKey) {
+        InstanceManifest im = InstanceManifest.of(hive, imKey);
+        if (im.getState(hive).read().activeTag == null) {
+            return null; // no active tag means there cannot be any status.
+        }
+
+        InstanceInput input = new InstanceInput(im);
+        for (Map.Entry<String, Manifest.Key> entry : im.getInstanceNodeManifests().entrySet()) {
+            if (InstanceManifest.CLIENT_NODE_NAME.equals(entry.getKey())) {
+                continue; // don't check client.
+            }
+            input.nodeConfigs.put(entry.getKey(), InstanceNodeManifest.of(hive, entry.getValue()).getConfiguration());
+        }
+        return input;
+    }
+
+    /**
+     * @return the status of all given instances, fetched using a single request per node.
+     */
+    private MultiNodeResult<Map<String, InstanceNodeStatusDto>> fetchStatus(List<InstanceInput> inputs) {
+        SortedSet<String> nodeNames = new TreeSet<>();
+        List<String> instanceIds = new ArrayList<>();
+        for (InstanceInput input : inputs) {
+            nodeNames.addAll(input.nodeConfigs.keySet());
+            instanceIds.add(input.uuid);
+        }
+
+        return nodes.getProcessStatus(nodeNames, instanceIds, context, NODE_STATUS_TIMEOUT);
+    }
+
+    private void updateState(InstanceInput input, MultiNodeResult<Map<String, InstanceNodeStatusDto>> snapshot) {
+        List<String> stoppedApps = new ArrayList<>();
+        List<String> runningApps = new ArrayList<>();
+
+        OverallStatus overallStatus = OverallStatus.RUNNING;
+        List<String> overallStatusMessages = new ArrayList<>();
+
+        for (Map.Entry<String, InstanceNodeConfiguration> nodeCfg : input.nodeConfigs.entrySet()) {
+            String nodeName = nodeCfg.getKey();
+            Map<String, InstanceNodeStatusDto> statusOfNode = snapshot.getResults().get(nodeName);
+
+            if (statusOfNode == null) {
+                overallStatus = OverallStatus.WARNING;
+                overallStatusMessages.add("Node " + nodeName + " is not available");
+                continue;
+            }
+
+            InstanceNodeStatusDto statusOnNode = statusOfNode.getOrDefault(input.uuid, new InstanceNodeStatusDto());
+
+            for (var app : nodeCfg.getValue().applications) {
+                if (app.processControl.startType != ApplicationStartType.INSTANCE) {
+                    continue;
+                }
+
+                if (!statusOnNode.isAppDeployed(app.uid)) {
+                    log.warn("Expected application is not currently deployed: {}", app.uid);
+                    continue;
+                }
+
+                // instance application, check status
+                ProcessStatusDto status = statusOnNode.getStatus(app.uid);
+                if (status.processState.isStopped()) {
+                    stoppedApps.add(app.name);
+                } else {
+                    runningApps.add(app.name);
+                }
+            }
+        }
+
+        if (stoppedApps.isEmpty() && runningApps.isEmpty()) {
+            // this means that ther are no instance type applications on the instance.
+            if (overallStatus != OverallStatus.WARNING) {
+                overallStatus = OverallStatus.STOPPED;
+            }
+        } else if (stoppedApps.isEmpty() || runningApps.isEmpty()) {
+            // valid - either all stopped or all running.
+            if (overallStatus != OverallStatus.WARNING) {
+                overallStatus = runningApps.isEmpty() ? OverallStatus.STOPPED : OverallStatus.RUNNING;
+            }
+        } else {
+            // not ok, some apps started, some stopped - that will be a warning.
+            overallStatus = OverallStatus.WARNING;
+            overallStatusMessages.add(stoppedApps.size() + " instance type applications are not running.");
+        }
+
+        input.im.getOverallState(hive).updateIfChanged(overallStatus, overallStatusMessages, REFRESH_INTERVAL);
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while updating instance status", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot update instance status", e.getCause());
+        }
+    }
+
+    /**
+     * The configuration of a single instance required to calculate its overall state.
+     */
+    private static final class InstanceInput {
+
+        private final InstanceManifest im;
+        private final String uuid;
+        private final SortedMap<String, InstanceNodeConfiguration> nodeConfigs = new TreeMap<>();
+
+        private InstanceInput(InstanceManifest im) {
+            this.im = im;
+            this.uuid = im.getConfiguration().uuid;
+        }
+    }
+
+}
@@ -3,14 +3,22 @@ package io.bdeploy.minion.deploy;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -25,14 +33,20 @@ import io.bdeploy.bhive.op.ManifestLoadOperation;
 import io.bdeploy.common.security.RemoteService;
 import io.bdeploy.common.util.PathHelper;
 import io.bdeploy.interfaces.directory.EntryChunk;
+import io.bdeploy.interfaces.directory.EntryLines;
+import io.bdeploy.interfaces.directory.EntrySearchRequest;
+import io.bdeploy.interfaces.directory.EntrySearchResult;
 import io.bdeploy.interfaces.directory.RemoteDirectory;
 import io.bdeploy.interfaces.directory.RemoteDirectoryEntry;
 import io.bdeploy.interfaces.manifest.InstanceManifest;
 import io.bdeploy.interfaces.remote.CommonRootResource;
+import io.bdeploy.interfaces.remote.MasterNamedResource;
 import io.bdeploy.interfaces.remote.MasterRootResource;
 import io.bdeploy.minion.MinionRoot;
 import io.bdeploy.minion.TestFactory;
 import io.bdeploy.minion.TestMinion;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
 
 @ExtendWith(TestMinion.class)
 @ExtendWith(TestHive.class)
@@ -124,6 +138,134 @@ class DataFileTest {
 
         chunk = master.getNamedMaster("demo").getEntryContent("master", sub, 6 + System.lineSeparator().length(), 6);
         assertArrayEquals("Line 2".getBytes(StandardCharsets.UTF_8), chunk.content);
+
+        // follow the file, content appended while following must arrive while the stream is still open.
+        long followStart = offset;
+        long start = System.currentTimeMillis();
+        Response follow = master.getNamedMaster("demo").followEntryContent("master", sub, followStart, 20_000);
+        assertEquals(200, follow.getStatus());
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(follow.readEntity(InputStream.class), StandardCharsets.UTF_8))) {
+            assertEquals("Line 3", reader.readLine());
+
+            Files.write(testFile2, Collections.singletonList("Line 4"), StandardOpenOption.APPEND);
+            assertEquals("Line 4", reader.readLine());
+            assertTrue(System.currentTimeMillis() - start < 10_000, "Appended content not streamed while following");
+        }
+
+        // truncate the file, continuing to follow must tell about it.
+        Files.write(testFile2, Collections.singletonList("L"));
+        follow = master.getNamedMaster("demo").followEntryContent("master", sub, followStart, 100);
+        assertEquals(205, follow.getStatus());
+
+        // a file larger than the chunks read at once.
+        byte[] large = new byte[200_000];
+        Arrays.fill(large, (byte) 'x');
+        Files.write(testFile2, large);
+        chunk = master.getNamedMaster("demo").getEntryContent("master", sub, 0, 0);
+        assertArrayEquals(large, chunk.content);
+        assertEquals(large.length, chunk.endPointer);
+    }
+
+    @Test
+    void testSearch(BHive local, MasterRootResource master, CommonRootResource common, RemoteService remote, @TempDir Path tmp,
+            MinionRoot mr) throws IOException, InterruptedException {
+        Manifest.Key instance = TestFactory.createApplicationsAndInstance(local, common, remote, tmp, true);
+
+        String uuid = local.execute(new ManifestLoadOperation().setManifest(instance)).getLabels()
+                .get(InstanceManifest.INSTANCE_LABEL);
+
+        master.getNamedMaster("demo").install(instance);
+        master.getNamedMaster("demo").activate(instance);
+
+        // every 10th line is a continuation of the previous one without timestamp.
+        LocalDateTime base = LocalDateTime.of(2023, 1, 1, 0, 0);
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 10_000; ++i) {
+            if (i % 10 == 9) {
+                lines.add("    continuation of line " + i);
+            } else {
+                lines.add(format.format(base.plusSeconds(i)) + " | INFO | line " + i);
+            }
+        }
+
+        Path dataDir = mr.getDeploymentDir().resolve(uuid).resolve("data");
+        PathHelper.mkdirs(dataDir);
+        Files.write(dataDir.resolve("search.txt"), lines);
+
+        MasterNamedResource named = master.getNamedMaster("demo");
+        RemoteDirectoryEntry entry = named.getDataDirectorySnapshots(uuid).get(0).entries.stream()
+                .filter(e -> e.path.equals("search.txt")).findFirst().orElseThrow();
+
+        // jump to a line.
+        EntryLines range = named.getEntryLines("master", entry, 5_000, 3);
+        assertEquals(10_000, range.totalLines);
+        assertEquals(5_000, range.firstLine);
+        assertEquals(3, range.lines.size());
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(5_000 + i, range.lines.get(i).number);
+            assertEquals(lines.get(5_000 + i), range.lines.get(i).content);
+        }
+        EntryChunk raw = named.getEntryContent("master", entry, range.startPointer, range.endPointer - range.startPointer);
+        assertEquals(String.join(System.lineSeparator(), lines.subList(5_000, 5_003)) + System.lineSeparator(),
+                new String(raw.content, StandardCharsets.UTF_8));
+
+        // the last lines, including lines appended after the file has been indexed.
+        range = named.getEntryLines("master", entry, -1_000, 0);
+        assertEquals(9_000, range.firstLine);
+        assertEquals(1_000, range.lines.size());
+        assertEquals(lines.get(9_999), range.lines.get(999).content);
+
+        Files.write(dataDir.resolve("search.txt"), List.of("appended"), StandardOpenOption.APPEND);
+        range = named.getEntryLines("master", entry, -1, 0);
+        assertEquals(10_001, range.totalLines);
+        assertEquals(10_000, range.lines.get(0).number);
+        assertEquals("appended", range.lines.get(0).content);
+
+        // substring search.
+        EntrySearchRequest request = new EntrySearchRequest();
+        request.entry = entry;
+        request.query = "LINE 4242";
+        request.ignoreCase = true;
+        EntrySearchResult result = named.searchEntry("master", request);
+        assertEquals(1, result.matches.size());
+        assertEquals(4_242, result.matches.get(0).number);
+        assertEquals(lines.get(4_242), result.matches.get(0).content);
+        assertEquals(-1, result.nextLine);
+
+        // regex search, continued once the maximum amount of matches is reached.
+        request.query = "line 1\\d{3}$";
+        request.regex = true;
+        request.ignoreCase = false;
+        request.maxMatches = 600;
+        result = named.searchEntry("master", request);
+        assertEquals(600, result.matches.size());
+        assertEquals(1_000, result.matches.get(0).number);
+        assertEquals(1_600, result.nextLine);
+
+        request.startLine = result.nextLine;
+        result = named.searchEntry("master", request);
+        assertEquals(400, result.matches.size());
+        assertEquals(1_999, result.matches.get(399).number);
+        assertEquals(-1, result.nextLine);
+
+        // time range, lines without timestamp belong to the preceding line.
+        request.query = "line";
+        request.regex = false;
+        request.startLine = 0;
+        request.maxMatches = 0;
+        request.from = base.plusSeconds(100).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        request.to = base.plusSeconds(199).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        result = named.searchEntry("master", request);
+        assertEquals(100, result.matches.size());
+        assertEquals(100, result.matches.get(0).number);
+        assertEquals(199, result.matches.get(99).number);
+
+        request.query = "line (";
+        request.regex = true;
+        EntrySearchRequest invalid = request;
+        assertThrows(WebApplicationException.class, () -> named.searchEntry("master", invalid));
     }
 
 }
@@ -11,6 +11,8 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 
 import org.junit.jupiter.api.Test;
@@ -38,6 +40,8 @@ import io.bdeploy.common.util.Threads;
 import io.bdeploy.common.util.UuidHelper;
 import io.bdeploy.interfaces.InstanceImportExportHelper;
 import io.bdeploy.interfaces.cleanup.CleanupGroup;
+import io.bdeploy.interfaces.configuration.pcu.InstanceNodeStatusDto;
+import io.bdeploy.interfaces.configuration.pcu.InstanceNodeStatusSnapshotDto;
 import io.bdeploy.interfaces.configuration.pcu.InstanceStatusDto;
 import io.bdeploy.interfaces.configuration.pcu.ProcessDetailDto;
 import io.bdeploy.interfaces.configuration.pcu.ProcessState;
@@ -47,9 +51,14 @@ import io.bdeploy.interfaces.directory.RemoteDirectory;
 import io.bdeploy.interfaces.directory.RemoteDirectoryEntry;
 import io.bdeploy.interfaces.manifest.InstanceManifest;
 import io.bdeploy.interfaces.manifest.InstanceNodeManifest;
+import io.bdeploy.interfaces.manifest.history.runtime.MinionRuntimeHistory;
+import io.bdeploy.interfaces.manifest.state.InstanceOverallStateRecord;
+import io.bdeploy.interfaces.manifest.state.InstanceOverallStateRecord.OverallStatus;
 import io.bdeploy.interfaces.remote.CommonRootResource;
 import io.bdeploy.interfaces.remote.MasterRootResource;
 import io.bdeploy.interfaces.remote.NodeCleanupResource;
+import io.bdeploy.interfaces.remote.NodeProcessResource;
+import io.bdeploy.interfaces.remote.ResourceProvider;
 import io.bdeploy.interfaces.variables.DeploymentPathProvider.SpecialDirectory;
 import io.bdeploy.launcher.cli.LauncherCli;
 import io.bdeploy.launcher.cli.LauncherTool;
@@ -59,6 +68,7 @@ import io.bdeploy.minion.TestFactory;
 import io.bdeploy.minion.TestMinion;
 import io.bdeploy.pcu.ProcessController;
 import io.bdeploy.ui.api.CleanupResource;
+import io.bdeploy.ui.api.InstanceGroupResource;
 import io.bdeploy.ui.api.Minion;
 
 @ExtendWith(TestMinion.class)
@@ -72,7 +82,7 @@ class MinionDeployTest {
     @Test
     @SlowTest
     void testRemoteDeploy(BHive local, MasterRootResource master, CommonRootResource common, CleanupResource cr,
-            RemoteService remote, @TempDir Path tmp, ActivityReporter reporter, MinionRoot mr)
+            InstanceGroupResource igr, RemoteService remote, @TempDir Path tmp, ActivityReporter reporter, MinionRoot mr)
             throws IOException, InterruptedException {
         SortedMap<Key, ObjectId> inventoryStart = null;
         try (RemoteBHive rbh = RemoteBHive.forService(remote, JerseyRemoteBHive.DEFAULT_NAME, reporter)) {
@@ -117,6 +127,32 @@ class MinionDeployTest {
 
         assertTrue(status.isAppRunningOrScheduled("app"));
         assertEquals(ProcessState.RUNNING, status.node2Applications.get("master").getStatus("app").processState);
+        assertTrue(status.node2Error.isEmpty());
+
+        // the status of multiple instances can be fetched at once, unknown instances are omitted.
+        NodeProcessResource npr = ResourceProvider.getResource(remote, NodeProcessResource.class, null);
+        Map<String, InstanceNodeStatusDto> bulk = npr.getStatus(List.of(uuid, "unknown"));
+        assertEquals(Set.of(uuid), bulk.keySet());
+        assertEquals(ProcessState.RUNNING, bulk.get(uuid).getStatus("app").processState);
+
+        // a full snapshot is returned for an unknown epoch, afterwards only changes.
+        InstanceNodeStatusSnapshotDto snapshot = npr.getStatusSnapshot(null, 0);
+        assertTrue(snapshot.full);
+        assertEquals(ProcessState.RUNNING, snapshot.instances.get(uuid).getStatus("app").processState);
+
+        InstanceNodeStatusSnapshotDto changes = npr.getStatusSnapshot(snapshot.epoch, snapshot.version);
+        assertFalse(changes.full);
+        assertTrue(changes.instances.isEmpty());
+        assertEquals(snapshot.version, changes.version);
+
+        // updating the overall status uses the bulk status of all nodes. the application is started manually, so the
+        // instance is considered stopped.
+        master.getNamedMaster("demo").updateOverallStatus();
+        InstanceOverallStateRecord overallState = igr.getInstanceResource("demo").list().stream()
+                .filter(i -> uuid.equals(i.instanceConfiguration.uuid)).findFirst().orElseThrow().overallState;
+        assertEquals(OverallStatus.STOPPED, overallState.status);
+        assertTrue(overallState.messages.isEmpty());
+        assertTrue(overallState.timestamp > 0);
 
         ProcessDetailDto details = master.getNamedMaster("demo").getProcessDetails(uuid, "app");
         assertNotNull(details);
@@ -130,12 +166,22 @@ class MinionDeployTest {
         System.out.println(status);
         assertFalse(status.isAppRunningOrScheduled("app"));
 
+        changes = npr.getStatusSnapshot(snapshot.epoch, snapshot.version);
+        assertFalse(changes.full);
+        assertEquals(Set.of(uuid), changes.instances.keySet());
+        assertTrue(changes.version > snapshot.version);
+
         // instance has a single server application, fetch its id and query output
         InstanceManifest imf = InstanceManifest.of(local, instance);
         Key nodeKey = imf.getInstanceNodeManifests().get("master");
         InstanceNodeManifest inmf = InstanceNodeManifest.of(local, nodeKey);
         String appId = inmf.getConfiguration().applications.get(0).uid;
 
+        // the runtime history contains the state changes of the process.
+        MinionRuntimeHistory runtimeHistory = master.getNamedMaster("demo").getRuntimeHistory(uuid).getMinion2History()
+                .get("master").get(nodeKey.getTag());
+        assertTrue(runtimeHistory.getHistory().get(appId).getRecords().size() >= 2);
+
         RemoteDirectory id = master.getNamedMaster("demo").getOutputEntry(uuid, instance.getTag(), appId);
         assertNotNull(id);
         assertEquals(1, id.entries.size());
@@ -151,6 +197,9 @@ class MinionDeployTest {
         String content = new String(output.content, StandardCharsets.UTF_8);
         assertEquals(expectedText, content);
 
+        // the most recent output is kept in memory by the node.
+        assertEquals("Hello script", master.getNamedMaster("demo").getRecentOutput(uuid, appId, 10).get(0));
+
         /* STEP 7: generate client .bdeploy file and feed launcher */
         ClickAndStartDescriptor cdesc = new ClickAndStartDescriptor();
         cdesc.applicationId = "client";
@@ -180,14 +229,16 @@ class MinionDeployTest {
         List<CleanupGroup> groups = cr.calculate();
         assertEquals(2, groups.size());
         assertEquals("demo", groups.get(0).instanceGroup);
-        assertEquals(5, groups.get(0).actions.size());
+        // one more than before the overall status was updated above: the meta manifest recording the overall state of the
+        // instance is removed along with the instance.
+        assertEquals(6, groups.get(0).actions.size());
 
         assertEquals("master", groups.get(1).minion);
         // 1 instance node manifest, 1 application manifest, 1 dependent manifest
         // 1 instance version dir (not uninstalled before)
         // 1 instance data dir (last version removed), 2 stale pool dirs (application, dependent).
-        // 4 meta manifests (state of instance & runtime history).
-        assertEquals(11, groups.get(1).actions.size());
+        // 2 meta manifests (state of instance).
+        assertEquals(9, groups.get(1).actions.size());
 
         // now actually do it.
         cr.perform(groups);
@@ -0,0 +1,66 @@
+package io.bdeploy.minion.history;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.bdeploy.bhive.BHive;
+import io.bdeploy.bhive.TestHive;
+import io.bdeploy.bhive.meta.MetaManifest;
+import io.bdeploy.bhive.model.Manifest;
+import io.bdeploy.interfaces.configuration.pcu.ProcessState;
+import io.bdeploy.interfaces.manifest.history.runtime.MinionRuntimeHistory;
+import io.bdeploy.interfaces.manifest.history.runtime.MinionRuntimeHistoryManager;
+import io.bdeploy.interfaces.manifest.history.runtime.MinionRuntimeHistoryRecord;
+
+@ExtendWith(TestHive.class)
+class MinionRuntimeHistoryTest {
+
+    @Test
+    void journal(@TempDir Path tmp, BHive hive) throws IOException {
+        Manifest.Key key = new Manifest.Key("test/node", "1");
+        Path journal = tmp.resolve("history");
+
+        // history recorded by previous versions.
+        MinionRuntimeHistory legacy = new MinionRuntimeHistory();
+        legacy.recordEvent(new MinionRuntimeHistoryRecord(1, 0, ProcessState.RUNNING, "legacy", 1), "app1");
+        new MetaManifest<>(key, true, MinionRuntimeHistory.class).write(hive, legacy);
+
+        MinionRuntimeHistoryManager history = new MinionRuntimeHistoryManager(key, hive, journal);
+        assertEquals(1, history.getFullHistory().getHistory().get("app1").getRecords().size());
+
+        // enough events to compact the journal at least once.
+        for (int i = 0; i < 5_000; ++i) {
+            history.recordEvent(i, 0, ProcessState.RUNNING, i % 2 == 0 ? "app1" : "app2", "test");
+        }
+
+        MinionRuntimeHistory full = new MinionRuntimeHistoryManager(key, hive, journal).getFullHistory();
+        List<MinionRuntimeHistoryRecord> app1 = full.getHistory().get("app1").getRecords();
+        assertEquals(2_501, app1.size());
+        assertEquals(2_500, full.getHistory().get("app2").getRecords().size());
+
+        // order is kept, legacy events are contained exactly once.
+        assertEquals("legacy", app1.get(0).user);
+        for (int i = 1; i < app1.size(); ++i) {
+            assertEquals((i - 1) * 2, app1.get(i).pid);
+        }
+
+        // compacted segments are removed.
+        try (Stream<Path> files = Files.list(journal)) {
+            List<String> names = files.map(p -> p.getFileName().toString()).collect(Collectors.toList());
+            assertTrue(names.contains("snapshot.json"));
+            assertEquals(1, names.stream().filter(n -> n.endsWith(".journal")).count());
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package io.bdeploy.minion.nodes;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.bdeploy.common.SlowTest;
+import io.bdeploy.common.security.RemoteService;
+import io.bdeploy.common.util.Threads;
+import io.bdeploy.jersey.JerseyClientFactory;
+import io.bdeploy.jersey.ws.change.client.ObjectChangeClientWebSocket;
+import io.bdeploy.jersey.ws.change.msg.ObjectScope;
+import io.bdeploy.minion.MinionRoot;
+import io.bdeploy.minion.TestMinion;
+
+@ExtendWith(TestMinion.class)
+class NodeStatusPublisherTest {
+
+    @Test
+    @SlowTest
+    void heartbeat(RemoteService remote) throws InterruptedException {
+        CountDownLatch heartbeats = new CountDownLatch(2);
+        try (ObjectChangeClientWebSocket ws = JerseyClientFactory.get(remote).getObjectChangeWebSocket(c -> {
+            if (NodeStatusPublisher.OCT_NODE_STATUS.equals(c.type) && c.details.containsKey(NodeStatusPublisher.VERSION)) {
+                heartbeats.countDown();
+            }
+        })) {
+            ws.subscribe(NodeStatusPublisher.OCT_NODE_STATUS, ObjectScope.EMPTY);
+            assertTrue(heartbeats.await(3 * NodeStatusPublisher.HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    @SlowTest
+    void masterReceivesStatus(MinionRoot mr) {
+        NodeManagerImpl nodes = (NodeManagerImpl) mr.getNodeManager();
+        String self = nodes.getSelfName();
+
+        // the master connects to the node once it contacted it, and then relies on the heartbeats.
+        long deadline = System.currentTimeMillis() + 3 * NodeStatusPublisher.HEARTBEAT_INTERVAL_MS;
+        while (!nodes.isStatusPublished(self) && System.currentTimeMillis() < deadline) {
+            Threads.sleep(100);
+        }
+
+        assertTrue(nodes.isStatusPublished(self));
+        assertNotNull(nodes.getNodeConfigIfOnline(self));
+    }
+
+}
@@ -0,0 +1,181 @@
+package io.bdeploy.pcu;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+import org.glassfish.jersey.client.ClientProperties;
+
+import com.codahale.metrics.Timer;
+
+import io.bdeploy.common.metrics.Metrics;
+import io.bdeploy.common.metrics.Metrics.MetricGroup;
+import io.bdeploy.common.util.NamedDaemonThreadFactory;
+import io.bdeploy.interfaces.configuration.pcu.ProcessProbeResultDto;
+import io.bdeploy.interfaces.configuration.pcu.ProcessProbeResultDto.ProcessProbeType;
+import io.bdeploy.interfaces.descriptor.application.HttpEndpoint;
+import io.bdeploy.interfaces.descriptor.application.HttpEndpoint.HttpAuthenticationType;
+import io.bdeploy.interfaces.endpoints.CommonEndpointHelper;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Performs the HTTP probes of all {@link ProcessController}s of a node.
+ * <p>
+ * Probes are sent asynchronously and don't occupy a thread while waiting for the response. All probes share one
+ * {@link HttpClient} per distinct TLS configuration, which keeps connections to the (local) endpoints alive in between probes.
+ * The latency of each probe is recorded per {@link ProcessProbeType} in {@link MetricGroup#PROBES}.
+ */
+public class HttpProbeEngine {
+
+    private static final HttpProbeEngine DEFAULT = new HttpProbeEngine();
+
+    /** Used for probes which do not specify a timeout */
+    static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final AtomicInteger threadNum = new AtomicInteger(0);
+
+    private final ExecutorService executor;
+    private final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, WebTarget> digestTargets = new ConcurrentHashMap<>();
+
+    HttpProbeEngine() {
+        executor = Executors.newCachedThreadPool(new NamedDaemonThreadFactory(() -> "Probe " + threadNum.incrementAndGet()));
+    }
+
+    /**
+     * @return the probe engine shared by all controllers of this node.
+     */
+    public static HttpProbeEngine getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param period the period in which probes are repeated.
+     * @return a random delay to add to the initial delay of a periodic probe. This spreads the probes of many processes started at
+     *         the same time (e.g. after a restart of the node) across the period instead of sending them all at once.
+     */
+    public static Duration jitter(Duration period) {
+        long millis = period.toMillis();
+        return millis <= 0 ? Duration.ZERO : Duration.ofMillis(ThreadLocalRandom.current().nextLong(millis));
+    }
+
+    /**
+     * Probes the given endpoint.
+     *
+     * @param type the type of probe, used to categorize the recorded latency.
+     * @param endpoint the endpoint to probe, all variables already resolved.
+     * @param timeout the maximum time to wait for the response, {@link Duration#ZERO} to use the {@link #DEFAULT_TIMEOUT}.
+     * @return the result of the probe. Never completes exceptionally, failures are reported as result with status 500.
+     */
+    public CompletableFuture<ProcessProbeResultDto> probe(ProcessProbeType type, HttpEndpoint endpoint, Duration timeout) {
+        Duration actualTimeout = timeout.isZero() || timeout.isNegative() ? DEFAULT_TIMEOUT : timeout;
+        Timer.Context timer = Metrics.getMetric(MetricGroup.PROBES).timer(type.name()).time();
+
+        CompletableFuture<ProcessProbeResultDto> result;
+        try {
+            if (endpoint.authType == HttpAuthenticationType.DIGEST) {
+                // digest authentication requires a challenge/response which is not supported by HttpClient.
+                result = CompletableFuture.supplyAsync(() -> probeBlocking(type, endpoint, actualTimeout), executor);
+            } else {
+                result = getClient(endpoint).sendAsync(createRequest(endpoint, actualTimeout), BodyHandlers.ofString())
+                        .thenApply(rs -> toResult(type, rs));
+            }
+        } catch (Exception e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        return result.exceptionally(e -> failed(type, e)).whenComplete((r, e) -> timer.stop());
+    }
+
+    private HttpClient getClient(HttpEndpoint endpoint) {
+        return clients.computeIfAbsent(getClientKey(endpoint), k -> {
+            HttpClient.Builder builder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(CONNECT_TIMEOUT).followRedirects(HttpClient.Redirect.NEVER).executor(executor);
+            try {
+                SSLContext sslContext = CommonEndpointHelper.initSslContext(endpoint);
+                if (sslContext != null) {
+                    builder.sslContext(sslContext);
+                }
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot initialize TLS for probe", e);
+            }
+            return builder.build();
+        });
+    }
+
+    /**
+     * @return a key which is equal for all endpoints which can share a client.
+     */
+    private static String getClientKey(HttpEndpoint endpoint) {
+        if (!endpoint.secure) {
+            return "plain";
+        } else if (endpoint.trustAll) {
+            return "trustAll";
+        } else if (endpoint.trustStore != null && !endpoint.trustStore.isEmpty()) {
+            return "trustStore:" + endpoint.trustStore + ":" + endpoint.trustStorePass;
+        }
+        return "default";
+    }
+
+    private static HttpRequest createRequest(HttpEndpoint endpoint, Duration timeout) {
+        // probes are always performed locally, see CommonEndpointHelper#initClient
+        URI uri = URI.create(CommonEndpointHelper.initUri(endpoint, "localhost", null));
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(timeout).GET();
+        if (endpoint.authType == HttpAuthenticationType.BASIC) {
+            String credentials = endpoint.authUser + ":" + endpoint.authPass;
+            request.header("Authorization",
+                    "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.ISO_8859_1)));
+        }
+        return request.build();
+    }
+
+    private static ProcessProbeResultDto toResult(ProcessProbeType type, HttpResponse<String> rs) {
+        String body = rs.body();
+        return new ProcessProbeResultDto(type, rs.statusCode(), body == null || body.isEmpty() ? "Empty Response" : body,
+                System.currentTimeMillis());
+    }
+
+    private ProcessProbeResultDto probeBlocking(ProcessProbeType type, HttpEndpoint endpoint, Duration timeout) {
+        try {
+            String key = getClientKey(endpoint) + ":" + endpoint.port + endpoint.path + ":" + endpoint.authUser + ":"
+                    + endpoint.authPass;
+            WebTarget target = digestTargets.get(key);
+            if (target == null) {
+                target = CommonEndpointHelper.initClient(endpoint, null);
+                digestTargets.put(key, target);
+            }
+
+            Response rs = target.request().property(ClientProperties.CONNECT_TIMEOUT, (int) timeout.toMillis())
+                    .property(ClientProperties.READ_TIMEOUT, (int) timeout.toMillis()).get();
+            String resp = rs.hasEntity() ? rs.readEntity(String.class) : "Empty Response";
+            return new ProcessProbeResultDto(type, rs.getStatus(), resp, System.currentTimeMillis());
+        } catch (Exception e) {
+            return failed(type, e);
+        }
+    }
+
+    private static ProcessProbeResultDto failed(ProcessProbeType type, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return new ProcessProbeResultDto(type, 500, cause.toString(), System.currentTimeMillis());
+    }
+
+}
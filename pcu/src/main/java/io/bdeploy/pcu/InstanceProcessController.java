@@ -8,6 +8,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -61,12 +62,27 @@ public class InstanceProcessController {
     /** The instance UUID */
     private final String instanceUid;
 
+    /** Provides the versions assigned to status changes, shared by all instances of a node */
+    private final AtomicLong statusVersions;
+
+    /** The version of the last change of the status of this instance */
+    private volatile long statusVersion;
+
     /**
      * Create a new instance controller.
      */
     public InstanceProcessController(String instanceUid) {
+        this(instanceUid, new AtomicLong());
+    }
+
+    /**
+     * Create a new instance controller which assigns versions to status changes using the given counter.
+     */
+    InstanceProcessController(String instanceUid, AtomicLong statusVersions) {
         this.instanceUid = instanceUid;
+        this.statusVersions = statusVersions;
         this.logger.setMdcValue(instanceUid);
+        statusChanged();
     }
 
     /**
@@ -104,6 +120,7 @@ public class InstanceProcessController {
                 resolverWithApp.add(resolver);
                 controller.setVariableResolver(resolverWithApp);
 
+                controller.addStatusListener(event -> statusChanged());
                 if (runtimeHistory != null) {
                     controller.addStatusListener(event -> {
                         // Do not record planned events and transitions.
@@ -122,6 +139,7 @@ public class InstanceProcessController {
                 processList.add(controller);
                 logger.log(l -> l.debug("Creating new process controller."), tag, config.uid);
             }
+            statusChanged();
         } finally {
             writeLock.unlock();
         }
@@ -134,6 +152,7 @@ public class InstanceProcessController {
     public void setActiveTag(String activeTag) {
         logger.log(l -> l.info("Setting active tag to {}.", activeTag));
         this.activeTag = activeTag;
+        statusChanged();
     }
 
     /**
@@ -306,6 +325,20 @@ public class InstanceProcessController {
         strategy.stopAll(user, running, applicationIds);
     }
 
+    /**
+     * @return the version of the last change of the status of this instance, see {@link #getStatus()}.
+     */
+    public long getStatusVersion() {
+        return statusVersion;
+    }
+
+    private void statusChanged() {
+        // the counter guards the publication, so a version is never visible before it is stored, see MinionProcessController.
+        synchronized (statusVersions) {
+            statusVersion = statusVersions.incrementAndGet();
+        }
+    }
+
     /**
      * Returns runtime details about this instance node.
      *
@@ -344,6 +377,27 @@ public class InstanceProcessController {
         return processList.get(appId).getDetails();
     }
 
+    /**
+     * Returns the most recent output of the given application, which is kept in memory.
+     *
+     * @param appId
+     *            the application identifier
+     * @param maxLines
+     *            the maximum number of lines to return
+     * @return the most recent lines of output, the oldest one first
+     */
+    public List<String> getRecentOutput(String appId, int maxLines) {
+        // Get output if it is running or scheduled
+        ProcessController processController = findProcessController(appId, SET_RUNNING_SCHEDULED);
+        if (processController != null) {
+            return processController.getRecentOutput(maxLines);
+        }
+
+        // Get output of the activated version
+        ProcessList processList = processMap.get(activeTag);
+        return processList.get(appId).getRecentOutput(maxLines);
+    }
+
     /**
      * Detaches all running applications so that they cannot be controlled any more.
      * Only useful in JUNIT tests.
@@ -1,8 +1,11 @@
 package io.bdeploy.pcu;
 
+import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -10,6 +13,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import io.bdeploy.bhive.BHive;
 import io.bdeploy.bhive.model.Manifest.Key;
 import io.bdeploy.common.util.MdcLogger;
+import io.bdeploy.interfaces.configuration.pcu.InstanceNodeStatusSnapshotDto;
 import io.bdeploy.interfaces.configuration.pcu.ProcessDetailDto;
 import io.bdeploy.interfaces.manifest.InstanceNodeManifest;
 
@@ -29,6 +33,12 @@ public class MinionProcessController {
     /** Maps the UID of an instance to its controller */
     private final Map<String, InstanceProcessController> instance2Controller = new TreeMap<>();
 
+    /** Identifies the lifetime of this controller, status versions are not comparable across epochs */
+    private final String epoch = UUID.randomUUID().toString();
+
+    /** Provides the versions assigned to status changes of all instances */
+    private final AtomicLong statusVersions = new AtomicLong();
+
     /**
      * Sets the active manifest versions for each deployed instance.
      *
@@ -101,7 +111,7 @@ public class MinionProcessController {
             writeLock.lock();
             InstanceProcessController controller = instance2Controller.get(instanceId);
             if (controller == null) {
-                controller = new InstanceProcessController(instanceId);
+                controller = new InstanceProcessController(instanceId, statusVersions);
                 instance2Controller.put(instanceId, controller);
                 logger.log(l -> l.debug("Creating new instance controller."), instanceId);
             }
@@ -125,4 +135,52 @@ public class MinionProcessController {
         return ipc.getDetails(appUid);
     }
 
+    /**
+     * Returns the most recent output of the process launched for a given application.
+     *
+     * @param instanceId
+     *            the instance ID
+     * @param appUid
+     *            the application ID
+     * @param maxLines
+     *            the maximum number of lines to return
+     * @return the most recent lines of output, the oldest one first
+     */
+    public List<String> getRecentOutput(String instanceId, String appUid, int maxLines) {
+        InstanceProcessController ipc = get(instanceId);
+        return ipc.getRecentOutput(appUid, maxLines);
+    }
+
+    /**
+     * Returns the status of all instances which changed since the given version.
+     *
+     * @param epoch the epoch of the snapshot the given version belongs to, <code>null</code> if not known.
+     * @param since the version of the last known snapshot.
+     * @return the status of all instances changed since the given version. Contains the status of all instances if the given
+     *         epoch or version is not known.
+     */
+    public InstanceNodeStatusSnapshotDto getStatusSnapshot(String epoch, long since) {
+        InstanceNodeStatusSnapshotDto snapshot = new InstanceNodeStatusSnapshotDto();
+        snapshot.epoch = this.epoch;
+
+        // read the version first - changes while collecting the status are contained in the next snapshot (again). Versions are
+        // stored by the instances while holding the counter, so all changes up to the version read here are visible.
+        synchronized (statusVersions) {
+            snapshot.version = statusVersions.get();
+        }
+        snapshot.full = !this.epoch.equals(epoch) || since > snapshot.version;
+        try {
+            readLock.lock();
+            for (Map.Entry<String, InstanceProcessController> entry : instance2Controller.entrySet()) {
+                InstanceProcessController controller = entry.getValue();
+                if (snapshot.full || controller.getStatusVersion() > since) {
+                    snapshot.instances.put(entry.getKey(), controller.getStatus());
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        return snapshot;
+    }
+
 }
@@ -16,18 +16,12 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
-import org.glassfish.jersey.client.ClientProperties;
-
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
-
 import io.bdeploy.bhive.util.StorageHelper;
 import io.bdeploy.common.security.ApiAccessToken;
 import io.bdeploy.common.util.MdcLogger;
@@ -49,8 +43,6 @@ import io.bdeploy.interfaces.descriptor.application.HttpEndpoint.HttpEndpointTyp
 import io.bdeploy.interfaces.descriptor.application.LifenessProbeDescriptor;
 import io.bdeploy.interfaces.descriptor.application.StartupProbeDescriptor;
 import io.bdeploy.interfaces.endpoints.CommonEndpointHelper;
-import jakarta.ws.rs.client.WebTarget;
-import jakarta.ws.rs.core.Response;
 
 /**
  * Manages a single process.
@@ -82,6 +74,12 @@ public class ProcessController {
     /** Shown user on automated execution */
     private static final String DEFAULT_USER = ApiAccessToken.SYSTEM_USER;
 
+    /** Delay between the end of a startup probe and the next one */
+    private static final Duration STARTUP_PROBE_DELAY = Duration.ofMillis(500);
+
+    /** Delay between two captures of the output of the process */
+    private static final Duration CAPTURE_DELAY = Duration.ofSeconds(1);
+
     private final Path processDir;
     private final String instanceUid;
     private final String instanceTag;
@@ -93,8 +91,8 @@ public class ProcessController {
     /** The active task that has the lock */
     private String lockTask = null;
 
-    /** Executor used to schedule re-launching of application */
-    private final ScheduledExecutorService executorService;
+    /** Serially runs the monitoring and re-launching tasks of this application on the node-wide scheduler */
+    private final ProcessScheduler.TaskQueue scheduler;
 
     /** Task scheduled to monitor the up-time */
     private Future<?> uptimeTask;
@@ -108,6 +106,12 @@ public class ProcessController {
     /** Task scheduled to monitor process lifeness probe */
     private Future<?> aliveTask;
 
+    /** Task scheduled to capture and rotate the output of the process */
+    private Future<?> captureTask;
+
+    /** Captures the output of the process, guarded by itself */
+    private final ProcessOutputCapture output;
+
     /** The native process. Only used to evaluate exit code */
     private Process process;
 
@@ -157,6 +161,12 @@ public class ProcessController {
     /** The results of the last probe calls */
     private final Map<ProcessProbeType, ProcessProbeResultDto> lastProbeResults = new EnumMap<>(ProcessProbeType.class);
 
+    /** Guards the probe tasks and results, which are updated from probe responses */
+    private final Object probeLock = new Object();
+
+    /** Incremented whenever probes are cancelled, responses to probes sent before are discarded */
+    private long probeGeneration;
+
     /**
      * Creates a new process controller for the given configuration.
      *
@@ -177,8 +187,8 @@ public class ProcessController {
         this.processConfig = pc;
         this.recoverAttempts = pc.processControl.noOfRetries;
         this.processDir = processDir;
-        this.executorService = Executors.newSingleThreadScheduledExecutor(
-                new ThreadFactoryBuilder().setDaemon(true).setNameFormat(processConfig.uid).build());
+        this.scheduler = ProcessScheduler.getDefault().createQueue(processConfig.uid);
+        this.output = new ProcessOutputCapture(processDir.resolve(OUT_TXT));
     }
 
     @Override
@@ -313,7 +323,9 @@ public class ProcessController {
             dto.hasStdin = processStdin != null;
             dto.handle = ProcessControllerHelper.collectProcessInfo(processHandle);
         }
-        dto.lastProbes = new ArrayList<>(lastProbeResults.values());
+        synchronized (probeLock) {
+            dto.lastProbes = new ArrayList<>(lastProbeResults.values());
+        }
         return dto;
     }
 
@@ -423,6 +435,16 @@ public class ProcessController {
         }
     }
 
+    /**
+     * Returns the most recent output of the process. The output is kept in memory, thus this does not read the output file.
+     *
+     * @param maxLines the maximum number of lines to return
+     * @return the most recent lines of output, the oldest one first
+     */
+    public List<String> getRecentOutput(int maxLines) {
+        return output.getRecentLines(maxLines);
+    }
+
     /** Starts the application */
     private void doStart(boolean resetRecoverCount) {
         // Do nothing if already started
@@ -452,8 +474,16 @@ public class ProcessController {
 
         doCancelProbeTasks();
 
+        synchronized (output) {
+            try {
+                output.prepare();
+            } catch (IOException e) {
+                logger.log(l -> l.warn("Failed to roll output of previous launch.", e));
+            }
+        }
+
         try {
-            process = launch(processConfig.start, false);
+            process = launch(processConfig.start);
             processHandle = process.toHandle();
             processStdin = process.getOutputStream();
             processExit = processHandle.onExit();
@@ -467,11 +497,13 @@ public class ProcessController {
             ProcessControllerDto dto = new ProcessControllerDto();
             dto.pid = processHandle.pid();
             dto.startTime = ProcessControllerHelper.getProcessStartTimestampCorrected(logger, processHandle, startTime);
+            dto.appendOutput = true;
             Files.write(infoFile, StorageHelper.toRawBytes(dto), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
                     StandardOpenOption.SYNC);
             logger.log(l -> l.info("Successfully started application. PID = {}.", dto.pid));
 
             // Attach exit handle to get notified about termination
+            attachOutput(false, true);
             monitorProcess();
         } catch (IOException e) {
             logger.log(l -> l.error("Failed to launch application.", e));
@@ -587,6 +619,7 @@ public class ProcessController {
         long correctedStart = ProcessControllerHelper.getProcessStartTimestampCorrected(logger, processHandle, startTime);
         if (Long.compare(correctedStart, dto.startTime) == 0) {
             logger.log(l -> l.info("Successfully attached to application. PID = {}.", dto.pid));
+            attachOutput(true, dto.appendOutput);
             monitorProcess();
         } else {
             logger.log(l -> l.info("Discarding existing process information due to start time mismatch. {} != {}, PID = {}.",
@@ -607,6 +640,12 @@ public class ProcessController {
         processHandle = null;
         processStdin = null;
 
+        // Stop capturing output
+        if (captureTask != null) {
+            captureTask.cancel(false);
+            captureTask = null;
+        }
+
         // Cancel the hook that is notified when the process terminates
         if (processExit != null) {
             processExit.cancel(false);
@@ -728,58 +767,107 @@ public class ProcessController {
             if (rateInSeconds == 0) {
                 rateInSeconds = 1;
             }
-            uptimeTask = executorService.scheduleAtFixedRate(this::doCheckUptime, rateInSeconds, rateInSeconds, TimeUnit.SECONDS);
+            uptimeTask = scheduler.scheduleAtFixedRate(this::doCheckUptime, rateInSeconds, rateInSeconds, TimeUnit.SECONDS);
             String requiredUptime = ProcessControllerHelper.formatDuration(stableThreshold);
             logger.log(l -> l.info("Application will be marked as stable after: {}", requiredUptime));
         }
 
-        startupTask = executorService.scheduleWithFixedDelay(this::doCheckStarted, 500, 500, TimeUnit.MILLISECONDS);
+        captureTask = scheduler.scheduleWithFixedDelay(this::doCaptureOutput, CAPTURE_DELAY.toMillis(), CAPTURE_DELAY.toMillis(),
+                TimeUnit.MILLISECONDS);
+
+        synchronized (probeLock) {
+            long generation = probeGeneration;
+            startupTask = scheduler.schedule(() -> doCheckStarted(generation),
+                    STARTUP_PROBE_DELAY.plus(HttpProbeEngine.jitter(STARTUP_PROBE_DELAY)).toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Starts capturing the output of the process */
+    private void attachOutput(boolean recovered, boolean append) {
+        synchronized (output) {
+            try {
+                output.attach(recovered, append);
+            } catch (IOException e) {
+                logger.log(l -> l.warn("Failed to attach to output.", e));
+            }
+        }
+        if (!append) {
+            logger.log(l -> l.info("Output cannot be rotated as the process does not append to it."));
+        }
     }
 
-    private void doCheckStarted() {
+    /** Captures the output written by the process and rotates it if required */
+    private void doCaptureOutput() {
+        synchronized (output) {
+            try {
+                output.capture();
+            } catch (IOException e) {
+                logger.log(l -> l.warn("Failed to capture output.", e));
+            }
+        }
+    }
+
+    private void doCheckStarted(long generation) {
         StartupProbeDescriptor probe = processConfig.processControl.startupProbe;
+        if (probe == null) {
+            onStartupProbe(generation, true);
+            return;
+        }
+
+        Optional<HttpEndpoint> startupEp = processConfig.endpoints.http.stream().filter(ep -> ep.id.equals(probe.endpoint))
+                .findFirst();
+        if (startupEp.isEmpty() || startupEp.get().type != HttpEndpointType.PROBE_STARTUP) {
+            logger.log(l -> l.warn("Application defined startup probe endpoint {} missing or has wrong type.", probe.endpoint));
+            onStartupProbe(generation, true); // no way to check.
+            return;
+        }
+
+        doProbe(ProcessProbeType.STARTUP, 0, startupEp.get(), generation, running -> onStartupProbe(generation, running));
+    }
+
+    private void onStartupProbe(long generation, boolean running) {
+        if (!running) {
+            synchronized (probeLock) {
+                if (generation == probeGeneration) {
+                    startupTask = scheduler.schedule(() -> doCheckStarted(generation), STARTUP_PROBE_DELAY.toMillis(),
+                            TimeUnit.MILLISECONDS);
+                }
+            }
+            return;
+        }
 
         executeLocked("Probe Startup", DEFAULT_USER, () -> {
-            boolean running = false;
-            if (probe == null) {
-                running = true;
-            } else {
-                Optional<HttpEndpoint> startupEp = processConfig.endpoints.http.stream()
-                        .filter(ep -> ep.id.equals(probe.endpoint)).findFirst();
-                if (startupEp.isEmpty() || startupEp.get().type != HttpEndpointType.PROBE_STARTUP) {
-                    logger.log(l -> l.warn("Application defined startup probe endpoint {} missing or has wrong type.",
-                            probe.endpoint));
-                    running = true; // no way to check.
-                } else {
-                    running = doProbe(ProcessProbeType.STARTUP, 0, startupEp.get());
+            synchronized (probeLock) {
+                if (generation != probeGeneration) {
+                    return;
                 }
+                startupTask = null;
             }
 
-            if (running) {
-                var oldState = processState;
-                processState = oldState == ProcessState.RUNNING_UNSTABLE ? ProcessState.RUNNING_UNSTABLE : ProcessState.RUNNING;
-                logger.log(l -> l.info("Application status is now {}, was {}.", processState, oldState));
-
-                LifenessProbeDescriptor lifeness = processConfig.processControl.lifenessProbe;
-                if (lifeness != null) {
-                    Optional<HttpEndpoint> aliveEp = processConfig.endpoints.http.stream()
-                            .filter(ep -> ep.id.equals(lifeness.endpoint)).findFirst();
-                    if (aliveEp.isEmpty() || aliveEp.get().type != HttpEndpointType.PROBE_ALIVE) {
-                        logger.log(l -> l.warn("Application defined lifeness probe endpoint {} missing or has wrong type.",
-                                lifeness.endpoint));
-                    } else {
-                        aliveTask = executorService.scheduleWithFixedDelay(this::doCheckAlive, lifeness.initialDelaySeconds,
-                                lifeness.periodSeconds, TimeUnit.SECONDS);
+            var oldState = processState;
+            processState = oldState == ProcessState.RUNNING_UNSTABLE ? ProcessState.RUNNING_UNSTABLE : ProcessState.RUNNING;
+            logger.log(l -> l.info("Application status is now {}, was {}.", processState, oldState));
+
+            LifenessProbeDescriptor lifeness = processConfig.processControl.lifenessProbe;
+            if (lifeness != null) {
+                Optional<HttpEndpoint> aliveEp = processConfig.endpoints.http.stream()
+                        .filter(ep -> ep.id.equals(lifeness.endpoint)).findFirst();
+                if (aliveEp.isEmpty() || aliveEp.get().type != HttpEndpointType.PROBE_ALIVE) {
+                    logger.log(l -> l.warn("Application defined lifeness probe endpoint {} missing or has wrong type.",
+                            lifeness.endpoint));
+                } else {
+                    Duration initialDelay = Duration.ofSeconds(lifeness.initialDelaySeconds)
+                            .plus(HttpProbeEngine.jitter(Duration.ofSeconds(lifeness.periodSeconds)));
+                    synchronized (probeLock) {
+                        aliveTask = scheduler.schedule(() -> doCheckAlive(generation), initialDelay.toMillis(),
+                                TimeUnit.MILLISECONDS);
                     }
                 }
-
-                startupTask.cancel(false);
-                startupTask = null;
             }
         });
     }
 
-    private void doCheckAlive() {
+    private void doCheckAlive(long generation) {
         LifenessProbeDescriptor probe = processConfig.processControl.lifenessProbe;
         Optional<HttpEndpoint> aliveEp = processConfig.endpoints.http.stream().filter(ep -> ep.id.equals(probe.endpoint))
                 .findFirst();
@@ -790,44 +878,49 @@ public class ProcessController {
         }
 
         // Don't do this locked. If a probe blocks, we would like to be able to still stop the process (for example).
-        boolean alive = doProbe(ProcessProbeType.LIFENESS, probe.periodSeconds, aliveEp.get());
+        doProbe(ProcessProbeType.LIFENESS, probe.periodSeconds, aliveEp.get(), generation, alive -> {
+            executeLocked("Probe Alive", DEFAULT_USER, () -> {
+                if (processState == ProcessState.RUNNING && !alive) {
+                    processState = ProcessState.RUNNING_NOT_ALIVE;
+                } else if (processState == ProcessState.RUNNING_NOT_ALIVE && alive) {
+                    processState = ProcessState.RUNNING;
+                }
+            });
 
-        executeLocked("Probe Alive", DEFAULT_USER, () -> {
-            if (processState == ProcessState.RUNNING && !alive) {
-                processState = ProcessState.RUNNING_NOT_ALIVE;
-            } else if (processState == ProcessState.RUNNING_NOT_ALIVE && alive) {
-                processState = ProcessState.RUNNING;
+            synchronized (probeLock) {
+                if (generation == probeGeneration) {
+                    aliveTask = scheduler.schedule(() -> doCheckAlive(generation), probe.periodSeconds, TimeUnit.SECONDS);
+                }
             }
         });
     }
 
-    private boolean doProbe(ProcessProbeType type, long timeout, HttpEndpoint ep) {
-        if (ep == null) {
-            logger.log(l -> l.error("Null endpoint to probe {}", type));
-            return false;
-        }
-
+    /**
+     * Sends a probe to the given endpoint without waiting for the response. Once the response is available, the handler is
+     * called on the scheduler of this controller with whether the probe was successful - unless probes have been cancelled in
+     * the meantime.
+     */
+    private void doProbe(ProcessProbeType type, long timeout, HttpEndpoint ep, long generation, Consumer<Boolean> handler) {
+        CompletableFuture<ProcessProbeResultDto> response;
         try {
             HttpEndpoint processed = CommonEndpointHelper.processEndpoint(variableResolver, ep);
-            WebTarget client = CommonEndpointHelper.initClient(processed, null);
+            response = HttpProbeEngine.getDefault().probe(type, processed, Duration.ofSeconds(timeout));
+        } catch (Exception e) {
+            response = CompletableFuture
+                    .completedFuture(new ProcessProbeResultDto(type, 500, e.toString(), System.currentTimeMillis()));
+        }
 
-            if (timeout > 0) {
-                client.property(ClientProperties.CONNECT_TIMEOUT, timeout * 1000);
-                client.property(ClientProperties.READ_TIMEOUT, timeout * 1000);
+        response.thenAccept(result -> scheduler.schedule(() -> {
+            synchronized (probeLock) {
+                if (generation != probeGeneration) {
+                    return;
+                }
+                lastProbeResults.put(type, result);
             }
 
-            Response rs = client.request().get();
-            String resp = rs.hasEntity() ? rs.readEntity(String.class) : "Empty Response";
-            int status = rs.getStatus();
-
-            lastProbeResults.put(type, new ProcessProbeResultDto(type, status, resp, System.currentTimeMillis()));
-
             // defined as "OK" by kubernetes as well.
-            return status >= 200 && status < 400;
-        } catch (Exception e) {
-            lastProbeResults.put(type, new ProcessProbeResultDto(type, 500, e.toString(), System.currentTimeMillis()));
-            return false;
-        }
+            handler.accept(result.status >= 200 && result.status < 400);
+        }, 0, TimeUnit.MILLISECONDS));
     }
 
     /** Callback method that is executed when the process terminates */
@@ -837,6 +930,7 @@ public class ProcessController {
         String uptimeString = ProcessControllerHelper.formatDuration(uptime);
 
         doCancelProbeTasks();
+        doCaptureOutput();
 
         // Try to evaluate the exit code
         exitCode = ProcessControllerHelper.getExitCode(process);
@@ -889,10 +983,10 @@ public class ProcessController {
         Runnable task = () -> executeLocked("Restart", DEFAULT_USER, this::doRestart);
         if (delay.isZero()) {
             logger.log(l -> l.info("Re-launching application immediatly."));
-            recoverTask = executorService.schedule(task, 0, TimeUnit.SECONDS);
+            recoverTask = scheduler.schedule(task, 0, TimeUnit.SECONDS);
         } else {
             logger.log(l -> l.info("Waiting {} before re-launching application.", ProcessControllerHelper.formatDuration(delay)));
-            recoverTask = executorService.schedule(task, delay.getSeconds(), TimeUnit.SECONDS);
+            recoverTask = scheduler.schedule(task, delay.getSeconds(), TimeUnit.SECONDS);
         }
     }
 
@@ -938,24 +1032,21 @@ public class ProcessController {
     }
 
     /**
-     * Launches a new process using the given arguments.
+     * Launches a new process using the given arguments. The output is always appended to the output file, which allows
+     * {@link ProcessOutputCapture} to rotate it.
      *
      * @param cmd
      *            the command to execute
      * @return the process handle
      * @throws IOException in case of an error starting the {@link Process}.
      */
-    private Process launch(List<String> cmd, boolean append) throws IOException {
+    private Process launch(List<String> cmd) throws IOException {
         List<String> command = replaceVariables(cmd);
         logger.log(l -> l.debug("Launching new process {}", command));
 
         ProcessBuilder b = new ProcessBuilder(command).directory(processDir.toFile());
         b.redirectErrorStream(true);
-        if (append) {
-            b.redirectOutput(Redirect.appendTo(processDir.resolve(OUT_TXT).toFile()));
-        } else {
-            b.redirectOutput(Redirect.to(processDir.resolve(OUT_TXT).toFile()));
-        }
+        b.redirectOutput(Redirect.appendTo(processDir.resolve(OUT_TXT).toFile()));
         return b.start();
     }
 
@@ -1004,7 +1095,7 @@ public class ProcessController {
             logger.log(l -> l.info("Invoking configured stop command."));
             logger.log(l -> l.debug("Stop command: {}.", processConfig.stop));
 
-            Process stopProcess = launch(stopCommand, true);
+            Process stopProcess = launch(stopCommand);
 
             // Evaluate exit code of stop command
             boolean exited = stopProcess.waitFor(processConfig.processControl.gracePeriod, TimeUnit.MILLISECONDS);
@@ -1097,15 +1188,18 @@ public class ProcessController {
 
     /** Cancels potentially running startup and alive probe tasks */
     private void doCancelProbeTasks() {
-        lastProbeResults.clear();
+        synchronized (probeLock) {
+            probeGeneration++;
+            lastProbeResults.clear();
 
-        if (startupTask != null) {
-            startupTask.cancel(true);
-            startupTask = null;
-        }
-        if (aliveTask != null) {
-            aliveTask.cancel(true);
-            aliveTask = null;
+            if (startupTask != null) {
+                startupTask.cancel(true);
+                startupTask = null;
+            }
+            if (aliveTask != null) {
+                aliveTask.cancel(true);
+                aliveTask = null;
+            }
         }
     }
 
@@ -1143,6 +1237,9 @@ public class ProcessController {
          */
         public long startTime;
 
+        /** Whether the process appends to the output file, which is required to rotate it */
+        public boolean appendOutput;
+
     }
 
 }
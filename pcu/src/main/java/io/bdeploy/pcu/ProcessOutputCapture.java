@@ -0,0 +1,344 @@
+package io.bdeploy.pcu;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Captures the output of a process, which is redirected to a file by the operating system.
+ * <p>
+ * <b>Rotation:</b> Once the output file exceeds a maximum size or age, its content is moved to a segment file in the
+ * {@value #SEGMENT_DIR} directory next to it, named after the time of rotation (e.g. <code>out-20230131-123456-789.txt.gz</code>),
+ * optionally compressed. Only the newest segments are kept. The output file usually lives in the working directory of the
+ * process, so segments are kept in a directory of their own to never touch files written by the process itself.
+ * <p>
+ * As the process keeps its file handle, the output file is copied and truncated. This requires the process to write to the file
+ * in append mode - otherwise it would continue writing at its previous position. Output written between the last copy and the
+ * truncation is lost, which is a matter of microseconds.
+ * <p>
+ * <b>Limits:</b> Rotation and the in-memory buffer use fixed limits. They can only be changed from within this package, which is
+ * meant for tests.
+ * <p>
+ * <b>Recent output:</b> The most recent lines of output are kept in memory, bounded by number of lines as well as by size, so
+ * they can be queried without touching the disk. They are updated on each call to {@link #capture()}.
+ * <p>
+ * <b>Threading:</b> {@link #getRecentLines(int)} may be called from any thread, all other methods must be called serially.
+ */
+public class ProcessOutputCapture {
+
+    /** Name of the directory next to the output file which contains the rotated segments */
+    static final String SEGMENT_DIR = "out.d";
+
+    /** Prefix of the name of rotated segments */
+    static final String SEGMENT_PREFIX = "out-";
+
+    /** Suffix of the name of uncompressed rotated segments */
+    static final String SEGMENT_SUFFIX = ".txt";
+
+    /** Suffix of the name of compressed rotated segments */
+    static final String SEGMENT_SUFFIX_GZ = ".txt.gz";
+
+    /** Suffix of segments which are still being written */
+    private static final String PART_SUFFIX = ".part";
+
+    private static final DateTimeFormatter SEGMENT_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS")
+            .withZone(ZoneId.systemDefault());
+
+    /** The maximum amount of bytes read from the output file at once */
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+    /** The maximum amount of bytes per line kept in memory, the rest is skipped */
+    static final int MAX_LINE_LENGTH = 16 * 1024;
+
+    private final Path file;
+
+    private long maxSize = 20L * 1024 * 1024;
+    private Duration maxAge = Duration.ZERO;
+    private int maxSegments = 5;
+    private boolean compress = true;
+    private int maxLines = 1000;
+    private long maxBufferSize = 256L * 1024;
+
+    /** Whether the output file can be rotated, see {@link #attach(boolean, boolean)} */
+    private boolean rotate;
+
+    /** The offset in the output file up to which output has been captured */
+    private long position;
+
+    /** The time when the current output file has been started */
+    private Instant segmentStart = Instant.now();
+
+    /** The first bytes of a line which has not been terminated yet */
+    private byte[] pending = new byte[256];
+    private int pendingLength;
+    private boolean skipPending;
+
+    /** The most recent lines, guarded by itself */
+    private final ArrayDeque<String> lines = new ArrayDeque<>();
+    private long linesSize;
+
+    /**
+     * @param file the file the process writes its output to.
+     */
+    public ProcessOutputCapture(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @param maxSize the size in bytes after which the output is rotated, 0 to disable rotation by size.
+     */
+    void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param maxAge the age after which the output is rotated, {@link Duration#ZERO} to disable rotation by age.
+     */
+    void setMaxAge(Duration maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * @param maxSegments the number of rotated segments to keep, older ones are deleted.
+     */
+    void setMaxSegments(int maxSegments) {
+        this.maxSegments = maxSegments;
+    }
+
+    /**
+     * @param compress whether to compress rotated segments using GZIP.
+     */
+    void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * @param maxLines the maximum number of recent lines kept in memory.
+     * @param maxBufferSize the maximum number of characters of recent lines kept in memory.
+     */
+    void setBufferLimits(int maxLines, long maxBufferSize) {
+        this.maxLines = maxLines;
+        this.maxBufferSize = maxBufferSize;
+        synchronized (lines) {
+            trimLines();
+        }
+    }
+
+    /**
+     * Prepares the output file before a process is launched. Any output of a previous launch is moved to a segment, so the
+     * process starts with an empty file.
+     */
+    public void prepare() throws IOException {
+        if (Files.exists(file) && Files.size(file) > 0) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                position = Math.min(position, channel.size());
+                rotate(channel);
+            }
+        }
+        Files.write(file, new byte[0]);
+        position = 0;
+    }
+
+    /**
+     * Starts capturing the output of a launched process.
+     *
+     * @param recovered whether the process has been launched before this controller existed, e.g. before a restart of the node.
+     *            The recent lines are then initialized from the end of the output file.
+     * @param append whether the process writes to the output file in append mode, which is required for rotation.
+     */
+    public void attach(boolean recovered, boolean append) throws IOException {
+        this.rotate = append;
+        this.segmentStart = Instant.now();
+        this.pendingLength = 0;
+        this.skipPending = false;
+        if (recovered) {
+            long size = Files.exists(file) ? Files.size(file) : 0;
+            position = Math.max(0, size - maxBufferSize);
+            skipPending = position > 0; // started in the middle of a line.
+        } else {
+            position = 0;
+        }
+    }
+
+    /**
+     * Captures all output written since the last call and rotates the output file if required.
+     */
+    public void capture() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = read(channel);
+            if (!rotate || size == 0) {
+                return;
+            }
+            if ((maxSize > 0 && size > maxSize)
+                    || (!maxAge.isZero() && Duration.between(segmentStart, Instant.now()).compareTo(maxAge) > 0)) {
+                rotate(channel);
+            }
+        }
+    }
+
+    /**
+     * Captures all output up to the current end of the file.
+     *
+     * @return the size of the file.
+     */
+    private long read(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < position) {
+            // truncated by someone else.
+            position = 0;
+            pendingLength = 0;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_CHUNK_SIZE, Math.max(size - position, 1)));
+        byte[] bytes = buffer.array();
+        while (position < size) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), size - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; ++i) {
+                append(bytes[i]);
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private void append(byte b) {
+        if (b == '\n') {
+            int length = pendingLength;
+            if (length > 0 && pending[length - 1] == '\r') {
+                length--;
+            }
+            if (!skipPending) {
+                addLine(new String(pending, 0, length, StandardCharsets.UTF_8));
+            }
+            pendingLength = 0;
+            skipPending = false;
+        } else if (pendingLength < MAX_LINE_LENGTH) {
+            if (pendingLength == pending.length) {
+                pending = Arrays.copyOf(pending, Math.min(pending.length * 2, MAX_LINE_LENGTH));
+            }
+            pending[pendingLength++] = b;
+        }
+    }
+
+    private void addLine(String line) {
+        synchronized (lines) {
+            lines.addLast(line);
+            linesSize += line.length();
+            trimLines();
+        }
+    }
+
+    private void trimLines() {
+        while (!lines.isEmpty() && (lines.size() > maxLines || linesSize > maxBufferSize)) {
+            linesSize -= lines.removeFirst().length();
+        }
+    }
+
+    /**
+     * Moves the content of the output file to a new segment and truncates it.
+     */
+    private void rotate(FileChannel channel) throws IOException {
+        Instant now = Instant.now();
+        Path dir = Files.createDirectories(getSegmentDir(file));
+        Path segment = dir.resolve(SEGMENT_PREFIX + SEGMENT_TIME.format(now) + (compress ? SEGMENT_SUFFIX_GZ : SEGMENT_SUFFIX));
+        Path part = segment.resolveSibling(segment.getFileName() + PART_SUFFIX);
+
+        try (OutputStream os = compress ? new GZIPOutputStream(Files.newOutputStream(part), READ_CHUNK_SIZE)
+                : Files.newOutputStream(part)) {
+            long copied = 0;
+            long size;
+            // catch up with output written while copying, so that only a minimum of output is lost.
+            while ((size = read(channel)) > copied) {
+                while (copied < size) {
+                    copied += channel.transferTo(copied, size - copied, Channels.newChannel(os));
+                }
+            }
+            channel.truncate(0);
+        }
+        Files.move(part, segment, StandardCopyOption.REPLACE_EXISTING);
+
+        position = 0;
+        segmentStart = now;
+
+        List<Path> segments = getSegments();
+        for (int i = Math.max(maxSegments, 0); i < segments.size(); ++i) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * @return all rotated segments, the newest one first.
+     */
+    public List<Path> getSegments() throws IOException {
+        return getSegments(file);
+    }
+
+    /**
+     * @param file the file a process writes its output to.
+     * @return all rotated segments of the given output file, the newest one first.
+     */
+    public static List<Path> getSegments(Path file) throws IOException {
+        Path dir = getSegmentDir(file);
+        if (!Files.isDirectory(dir)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(ProcessOutputCapture::isSegment).sorted(Collections.reverseOrder()).collect(Collectors.toList());
+        }
+    }
+
+    private static Path getSegmentDir(Path file) {
+        return file.resolveSibling(SEGMENT_DIR);
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && (name.endsWith(SEGMENT_SUFFIX) || name.endsWith(SEGMENT_SUFFIX_GZ));
+    }
+
+    /**
+     * @param max the maximum number of lines to return.
+     * @return the most recent lines of output, the oldest one first. A last line which has not been terminated yet is not
+     *         included.
+     */
+    public List<String> getRecentLines(int max) {
+        synchronized (lines) {
+            List<String> result = new ArrayList<>(Math.max(0, Math.min(max, lines.size())));
+            Iterator<String> it = lines.descendingIterator();
+            while (it.hasNext() && result.size() < max) {
+                result.add(it.next());
+            }
+            Collections.reverse(result);
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,263 @@
+package io.bdeploy.pcu;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.bdeploy.common.util.NamedDaemonThreadFactory;
+
+/**
+ * Schedules the periodic and delayed tasks of all {@link ProcessController}s of a node.
+ * <p>
+ * A single timer thread keeps track of when tasks are due. Due tasks are run on a shared pool of worker threads which only
+ * exist as long as there is work to do, so idle controllers do not occupy any thread.
+ * <p>
+ * Each controller uses its own {@link TaskQueue}. Tasks of a single queue are never run concurrently and are run in the order
+ * they became due - the same guarantees a single threaded executor per controller provides.
+ */
+public class ProcessScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessScheduler.class);
+
+    private static final ProcessScheduler DEFAULT = new ProcessScheduler();
+
+    /** How long an idle worker thread is kept before it is discarded */
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
+
+    private static final AtomicInteger workerNum = new AtomicInteger(0);
+
+    private final ScheduledThreadPoolExecutor timer;
+    private final ThreadPoolExecutor workers;
+
+    ProcessScheduler() {
+        timer = new ScheduledThreadPoolExecutor(1, new NamedDaemonThreadFactory("Process Scheduler"));
+        timer.setRemoveOnCancelPolicy(true);
+        workers = new ThreadPoolExecutor(0, Integer.MAX_VALUE, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new NamedDaemonThreadFactory(() -> "Process Task " + workerNum.incrementAndGet()));
+    }
+
+    /**
+     * @return the scheduler shared by all controllers of this node.
+     */
+    public static ProcessScheduler getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param name the name of the owner of the queue. Worker threads carry this name while running tasks of the queue.
+     * @return a new queue which runs all its tasks serially.
+     */
+    public TaskQueue createQueue(String name) {
+        return new TaskQueue(name);
+    }
+
+    /**
+     * @return the amount of worker threads currently alive.
+     */
+    int getWorkerCount() {
+        return workers.getPoolSize();
+    }
+
+    /**
+     * Stops the timer and all workers. Pending tasks are not run anymore.
+     */
+    void shutdown() {
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Runs the tasks of a single owner serially on the shared workers of the {@link ProcessScheduler}.
+     */
+    public final class TaskQueue {
+
+        private final String name;
+        private final Deque<ScheduledTask> due = new ArrayDeque<>();
+        private boolean draining;
+
+        private TaskQueue(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Runs the given task once after the given delay.
+         */
+        public Future<?> schedule(Runnable task, long delay, TimeUnit unit) {
+            return new ScheduledTask(this, task, 0).arm(unit.toNanos(delay));
+        }
+
+        /**
+         * Runs the given task periodically. If a run takes longer than the period, the next run starts late but is not run
+         * concurrently. Subsequent runs are suppressed once a run fails.
+         */
+        public Future<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+            if (period <= 0) {
+                throw new IllegalArgumentException("Period must be positive: " + period);
+            }
+            return new ScheduledTask(this, task, unit.toNanos(period)).arm(unit.toNanos(initialDelay));
+        }
+
+        /**
+         * Runs the given task periodically, waiting the given delay between the end of one run and the start of the next one.
+         * Subsequent runs are suppressed once a run fails.
+         */
+        public Future<?> scheduleWithFixedDelay(Runnable task, long initialDelay, long delay, TimeUnit unit) {
+            if (delay <= 0) {
+                throw new IllegalArgumentException("Delay must be positive: " + delay);
+            }
+            return new ScheduledTask(this, task, -unit.toNanos(delay)).arm(unit.toNanos(initialDelay));
+        }
+
+        private synchronized void enqueue(ScheduledTask task) {
+            due.add(task);
+            if (!draining) {
+                draining = true;
+                workers.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            Thread thread = Thread.currentThread();
+            String workerName = thread.getName();
+            thread.setName(name);
+            try {
+                while (true) {
+                    ScheduledTask next;
+                    synchronized (this) {
+                        next = due.poll();
+                        if (next == null) {
+                            draining = false;
+                            return;
+                        }
+                    }
+                    next.run(thread);
+
+                    // a task might have been cancelled (and interrupted) while it was running, don't leak this to the next one.
+                    Thread.interrupted();
+                }
+            } finally {
+                thread.setName(workerName);
+            }
+        }
+    }
+
+    /**
+     * A single task of a {@link TaskQueue}. Armed on the timer whenever it is waiting for its next run.
+     */
+    private final class ScheduledTask implements Future<Void> {
+
+        private final TaskQueue queue;
+        private final Runnable command;
+
+        /** Zero for a single run, positive for a fixed rate, negative for a fixed delay (in nanoseconds) */
+        private final long period;
+
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+        private long nextRun;
+        private boolean cancelled;
+        private Thread runner;
+        private ScheduledFuture<?> armed;
+
+        private ScheduledTask(TaskQueue queue, Runnable command, long period) {
+            this.queue = queue;
+            this.command = command;
+            this.period = period;
+        }
+
+        private synchronized ScheduledTask arm(long delayNanos) {
+            nextRun = System.nanoTime() + delayNanos;
+            return rearm();
+        }
+
+        private synchronized ScheduledTask rearm() {
+            if (!cancelled) {
+                armed = timer.schedule(() -> queue.enqueue(this), nextRun - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+            return this;
+        }
+
+        private void run(Thread thread) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                runner = thread;
+            }
+
+            Throwable failure = null;
+            try {
+                command.run();
+            } catch (Throwable t) {
+                failure = t;
+            }
+
+            synchronized (this) {
+                runner = null;
+                if (cancelled) {
+                    return;
+                }
+                if (failure != null) {
+                    log.warn("Scheduled task of {} failed", queue.name, failure);
+                    completion.completeExceptionally(failure);
+                } else if (period == 0) {
+                    completion.complete(null);
+                } else {
+                    nextRun = period > 0 ? nextRun + period : System.nanoTime() - period;
+                    rearm();
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (this) {
+                if (cancelled || completion.isDone()) {
+                    return false;
+                }
+                cancelled = true;
+                if (armed != null) {
+                    armed.cancel(false);
+                }
+                if (mayInterruptIfRunning && runner != null) {
+                    runner.interrupt();
+                }
+            }
+            return completion.cancel(false);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return completion.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return completion.isDone();
+        }
+
+        @Override
+        public Void get() throws InterruptedException, ExecutionException {
+            return completion.get();
+        }
+
+        @Override
+        public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return completion.get(timeout, unit);
+        }
+    }
+
+}
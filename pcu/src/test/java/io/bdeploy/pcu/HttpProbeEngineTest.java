@@ -0,0 +1,114 @@
+package io.bdeploy.pcu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import io.bdeploy.common.SlowTest;
+import io.bdeploy.common.metrics.Metrics;
+import io.bdeploy.common.metrics.Metrics.MetricGroup;
+import io.bdeploy.interfaces.configuration.pcu.ProcessProbeResultDto;
+import io.bdeploy.interfaces.configuration.pcu.ProcessProbeResultDto.ProcessProbeType;
+import io.bdeploy.interfaces.descriptor.application.HttpEndpoint;
+import io.bdeploy.interfaces.endpoints.CommonEndpointHelper;
+import io.bdeploy.jersey.TestServer;
+import jakarta.ws.rs.core.Response;
+
+class HttpProbeEngineTest {
+
+    private final AtomicBoolean fakeStart = new AtomicBoolean(false);
+
+    @RegisterExtension
+    TestServer server = new TestServer(false, new Object[] { StartupProbe.class, new AbstractBinder() {
+
+        @Override
+        protected void configure() {
+            bind(fakeStart).named("startupFinished").to(AtomicBoolean.class);
+        }
+    } });
+
+    @Test
+    void probe() throws Exception {
+        HttpProbeEngine engine = new HttpProbeEngine();
+        HttpEndpoint ep = StartupProbe.createEndpoint(server);
+        long before = Metrics.getMetric(MetricGroup.PROBES).timer(ProcessProbeType.STARTUP.name()).getCount();
+
+        fakeStart.set(false);
+        ProcessProbeResultDto result = engine.probe(ProcessProbeType.STARTUP, ep, Duration.ZERO).get(10, TimeUnit.SECONDS);
+        assertEquals(StartupProbe.STATUS_NOT_STARTED, result.status);
+
+        fakeStart.set(true);
+        result = engine.probe(ProcessProbeType.STARTUP, ep, Duration.ZERO).get(10, TimeUnit.SECONDS);
+        assertEquals(200, result.status);
+        assertEquals("Started", result.message);
+
+        assertEquals(before + 2, Metrics.getMetric(MetricGroup.PROBES).timer(ProcessProbeType.STARTUP.name()).getCount());
+    }
+
+    @Test
+    void failure() throws Exception {
+        HttpProbeEngine engine = new HttpProbeEngine();
+        HttpEndpoint ep = StartupProbe.createEndpoint(server);
+        try (ServerSocket unused = new ServerSocket(0)) {
+            // nothing is accepting connections on this port.
+            ep.port = Integer.toString(unused.getLocalPort());
+        }
+
+        ProcessProbeResultDto result = engine.probe(ProcessProbeType.LIFENESS, ep, Duration.ofSeconds(2)).get(10,
+                TimeUnit.SECONDS);
+        assertEquals(500, result.status);
+    }
+
+    @SlowTest
+    @Test
+    void manyProbes() throws Exception {
+        int numProbes = 500;
+        HttpEndpoint ep = StartupProbe.createEndpoint(server);
+        fakeStart.set(true);
+
+        // the way probes have been performed before: a new client per probe.
+        long start = System.nanoTime();
+        for (int i = 0; i < numProbes; ++i) {
+            Response rs = CommonEndpointHelper.initClient(ep, null).request().get();
+            assertEquals(200, rs.getStatus());
+            rs.readEntity(String.class);
+        }
+        long perClient = System.nanoTime() - start;
+
+        HttpProbeEngine engine = new HttpProbeEngine();
+        engine.probe(ProcessProbeType.STARTUP, ep, Duration.ZERO).get(10, TimeUnit.SECONDS); // warm up the connection.
+
+        start = System.nanoTime();
+        for (int i = 0; i < numProbes; ++i) {
+            assertEquals(200, engine.probe(ProcessProbeType.STARTUP, ep, Duration.ZERO).get(10, TimeUnit.SECONDS).status);
+        }
+        long sequential = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<CompletableFuture<ProcessProbeResultDto>> results = new ArrayList<>();
+        for (int i = 0; i < numProbes; ++i) {
+            results.add(engine.probe(ProcessProbeType.STARTUP, ep, Duration.ZERO));
+        }
+        for (CompletableFuture<ProcessProbeResultDto> result : results) {
+            assertEquals(200, result.get(30, TimeUnit.SECONDS).status);
+        }
+        long concurrent = System.nanoTime() - start;
+
+        System.err.println(numProbes + " probes: new client per probe took " + TimeUnit.NANOSECONDS.toMillis(perClient)
+                + "ms, probe engine took " + TimeUnit.NANOSECONDS.toMillis(sequential) + "ms sequential, "
+                + TimeUnit.NANOSECONDS.toMillis(concurrent) + "ms concurrent.");
+        assertTrue(sequential < perClient, "Probe engine slower than a new client per probe");
+    }
+
+}
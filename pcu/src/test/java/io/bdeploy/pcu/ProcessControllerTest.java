@@ -34,6 +34,13 @@ class ProcessControllerTest {
         listener.await(TIMEOUT);
         assertEquals(ProcessState.RUNNING, process.getState());
 
+        // Output is captured while running
+        long deadline = System.currentTimeMillis() + TIMEOUT.toMillis();
+        while (process.getRecentOutput(10).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(Collections.singletonList("Hello script"), process.getRecentOutput(10));
+
         listener.expect(ProcessState.STOPPED);
         process.stop(null);
         listener.await(TIMEOUT);
@@ -0,0 +1,189 @@
+package io.bdeploy.pcu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProcessOutputCaptureTest {
+
+    @Test
+    void recentLines(@TempDir Path tmp) throws Exception {
+        Path out = tmp.resolve(ProcessController.OUT_TXT);
+        ProcessOutputCapture capture = new ProcessOutputCapture(out);
+        capture.setBufferLimits(3, 1024);
+        capture.prepare();
+        capture.attach(false, true);
+
+        write(out, "Line 1\r\nLine 2\nLine");
+        capture.capture();
+        assertEquals(List.of("Line 1", "Line 2"), capture.getRecentLines(10));
+
+        write(out, " 3\nLine 4\nLine 5\n");
+        capture.capture();
+        assertEquals(List.of("Line 3", "Line 4", "Line 5"), capture.getRecentLines(10));
+        assertEquals(List.of("Line 5"), capture.getRecentLines(1));
+
+        // bounded by size as well.
+        capture.setBufferLimits(3, 12);
+        assertEquals(List.of("Line 4", "Line 5"), capture.getRecentLines(10));
+    }
+
+    @Test
+    void rotateBySize(@TempDir Path tmp) throws Exception {
+        Path out = tmp.resolve(ProcessController.OUT_TXT);
+        ProcessOutputCapture capture = new ProcessOutputCapture(out);
+        capture.setMaxSize(100);
+        capture.setMaxSegments(2);
+        capture.prepare();
+        capture.attach(false, true);
+
+        write(out, "Small\n");
+        capture.capture();
+        assertTrue(capture.getSegments().isEmpty());
+
+        StringBuilder expected = new StringBuilder("Small\n");
+        for (int i = 0; i < 20; ++i) {
+            expected.append("Line ").append(i).append('\n');
+        }
+        write(out, expected.substring(6));
+        capture.capture();
+
+        List<Path> segments = capture.getSegments();
+        assertEquals(1, segments.size());
+        assertTrue(segments.get(0).getFileName().toString().endsWith(ProcessOutputCapture.SEGMENT_SUFFIX_GZ));
+        assertEquals(expected.toString(), readGz(segments.get(0)));
+        assertEquals(0, Files.size(out));
+        assertEquals("Line 19", capture.getRecentLines(1).get(0));
+
+        // output continues to be captured after the rotation.
+        write(out, "After\n");
+        capture.capture();
+        assertEquals("After", capture.getRecentLines(1).get(0));
+
+        // only the newest segments are kept.
+        for (int i = 0; i < 3; ++i) {
+            Thread.sleep(5); // segments are named by time.
+            write(out, expected.toString().replace("Line", "Run " + i));
+            capture.capture();
+        }
+        segments = capture.getSegments();
+        assertEquals(2, segments.size());
+        assertTrue(readGz(segments.get(0)).contains("Run 2 19"));
+        assertTrue(readGz(segments.get(1)).contains("Run 1 19"));
+    }
+
+    @Test
+    void rotateKeepsForeignFiles(@TempDir Path tmp) throws Exception {
+        Path out = tmp.resolve(ProcessController.OUT_TXT);
+        Path foreign = tmp.resolve("out-foo.txt");
+        Files.writeString(foreign, "Written by the application");
+
+        ProcessOutputCapture capture = new ProcessOutputCapture(out);
+        capture.setMaxSize(10);
+        capture.setMaxSegments(0);
+        capture.prepare();
+        capture.attach(false, true);
+
+        write(out, "Some output exceeding the size\n");
+        capture.capture();
+
+        assertTrue(capture.getSegments().isEmpty());
+        assertEquals(0, Files.size(out));
+        assertEquals("Written by the application", Files.readString(foreign));
+    }
+
+    @Test
+    void rotateByAge(@TempDir Path tmp) throws Exception {
+        Path out = tmp.resolve(ProcessController.OUT_TXT);
+        ProcessOutputCapture capture = new ProcessOutputCapture(out);
+        capture.setMaxAge(Duration.ofMillis(50));
+        capture.setCompress(false);
+        capture.prepare();
+        capture.attach(false, true);
+
+        write(out, "Old\n");
+        capture.capture();
+        assertTrue(capture.getSegments().isEmpty());
+
+        Thread.sleep(100);
+        capture.capture();
+
+        List<Path> segments = capture.getSegments();
+        assertEquals(1, segments.size());
+        assertTrue(segments.get(0).getFileName().toString().endsWith(ProcessOutputCapture.SEGMENT_SUFFIX));
+        assertEquals("Old\n", Files.readString(segments.get(0)));
+        assertEquals(0, Files.size(out));
+    }
+
+    @Test
+    void noRotationWithoutAppend(@TempDir Path tmp) throws Exception {
+        Path out = tmp.resolve(ProcessController.OUT_TXT);
+        ProcessOutputCapture capture = new ProcessOutputCapture(out);
+        capture.setMaxSize(10);
+        capture.prepare();
+        capture.attach(false, false);
+
+        write(out, "Some output exceeding the size\n");
+        capture.capture();
+        assertTrue(capture.getSegments().isEmpty());
+        assertEquals("Some output exceeding the size", capture.getRecentLines(1).get(0));
+    }
+
+    @Test
+    void prepareRollsPreviousOutput(@TempDir Path tmp) throws Exception {
+        Path out = tmp.resolve(ProcessController.OUT_TXT);
+        write(out, "Previous launch\n");
+
+        ProcessOutputCapture capture = new ProcessOutputCapture(out);
+        capture.prepare();
+
+        List<Path> segments = capture.getSegments();
+        assertEquals(1, segments.size());
+        assertEquals("Previous launch\n", readGz(segments.get(0)));
+        assertEquals(0, Files.size(out));
+    }
+
+    @Test
+    void recoveredStartsAtEnd(@TempDir Path tmp) throws Exception {
+        Path out = tmp.resolve(ProcessController.OUT_TXT);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            content.append("Line ").append(i).append('\n');
+        }
+        write(out, content.toString());
+
+        ProcessOutputCapture capture = new ProcessOutputCapture(out);
+        capture.setBufferLimits(1000, 100);
+        capture.attach(true, false);
+        capture.capture();
+
+        // only complete lines from the end of the file.
+        List<String> lines = capture.getRecentLines(1000);
+        assertEquals("Line 99", lines.get(lines.size() - 1));
+        assertTrue(lines.size() < 20);
+        assertTrue(lines.get(0).matches("Line \\d+"));
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static String readGz(Path file) throws IOException {
+        try (InputStream is = new GZIPInputStream(Files.newInputStream(file))) {
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+}
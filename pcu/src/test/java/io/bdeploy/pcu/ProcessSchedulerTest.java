@@ -0,0 +1,213 @@
+package io.bdeploy.pcu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.bdeploy.common.SlowTest;
+import io.bdeploy.pcu.ProcessScheduler.TaskQueue;
+
+class ProcessSchedulerTest {
+
+    private final ProcessScheduler scheduler = new ProcessScheduler();
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void serialExecution() throws Exception {
+        TaskQueue queue = scheduler.createQueue("serial");
+        AtomicInteger active = new AtomicInteger();
+        AtomicBoolean overlap = new AtomicBoolean();
+        CountDownLatch runs = new CountDownLatch(50);
+
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            tasks.add(queue.scheduleAtFixedRate(() -> {
+                if (active.incrementAndGet() > 1) {
+                    overlap.set(true);
+                }
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    active.decrementAndGet();
+                    runs.countDown();
+                }
+            }, 0, 1, TimeUnit.MILLISECONDS));
+        }
+
+        assertTrue(runs.await(10, TimeUnit.SECONDS));
+        tasks.forEach(t -> t.cancel(false));
+        assertFalse(overlap.get());
+    }
+
+    @Test
+    void singleRun() throws Exception {
+        TaskQueue queue = scheduler.createQueue("single");
+        AtomicReference<String> name = new AtomicReference<>();
+
+        Future<?> task = queue.schedule(() -> name.set(Thread.currentThread().getName()), 10, TimeUnit.MILLISECONDS);
+        task.get(10, TimeUnit.SECONDS);
+
+        assertTrue(task.isDone());
+        assertFalse(task.isCancelled());
+        assertEquals("single", name.get());
+    }
+
+    @Test
+    void cancelStopsPeriodicRuns() throws Exception {
+        TaskQueue queue = scheduler.createQueue("cancel");
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(3);
+
+        Future<?> task = queue.scheduleWithFixedDelay(() -> {
+            count.incrementAndGet();
+            started.countDown();
+        }, 0, 5, TimeUnit.MILLISECONDS);
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertTrue(task.cancel(false));
+        assertTrue(task.isDone());
+        assertTrue(task.isCancelled());
+        assertThrows(CancellationException.class, task::get);
+
+        int cancelledAt = count.get();
+        Thread.sleep(100);
+        assertEquals(cancelledAt, count.get());
+    }
+
+    @Test
+    void cancelInterruptsRunningTask() throws Exception {
+        TaskQueue queue = scheduler.createQueue("interrupt");
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicBoolean nextInterrupted = new AtomicBoolean(true);
+
+        Future<?> task = queue.schedule(() -> {
+            running.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+        Future<?> next = queue.schedule(() -> nextInterrupted.set(Thread.currentThread().isInterrupted()), 0,
+                TimeUnit.MILLISECONDS);
+
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        assertTrue(task.cancel(true));
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+
+        // the interrupt of the cancelled task must not hit the next task of the queue.
+        next.get(10, TimeUnit.SECONDS);
+        assertFalse(nextInterrupted.get());
+    }
+
+    @Test
+    void failureStopsPeriodicRuns() throws Exception {
+        TaskQueue queue = scheduler.createQueue("failure");
+        AtomicInteger count = new AtomicInteger();
+
+        Future<?> task = queue.scheduleAtFixedRate(() -> {
+            count.incrementAndGet();
+            throw new IllegalStateException("Expected");
+        }, 0, 5, TimeUnit.MILLISECONDS);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> task.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+
+        Thread.sleep(50);
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    void selfCancel() throws Exception {
+        TaskQueue queue = scheduler.createQueue("self");
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        Future<?>[] self = new Future<?>[1];
+
+        synchronized (self) {
+            self[0] = queue.scheduleWithFixedDelay(() -> {
+                synchronized (self) {
+                    if (count.incrementAndGet() == 3) {
+                        self[0].cancel(false);
+                        done.countDown();
+                    }
+                }
+            }, 0, 1, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(3, count.get());
+    }
+
+    @SlowTest
+    @Test
+    void manyQueues() throws Exception {
+        int numQueues = 5_000;
+        long periodMillis = 100;
+        int runsPerQueue = 20;
+
+        int threadsBefore = Thread.activeCount();
+        AtomicLong maxLateness = new AtomicLong();
+        AtomicLong sumLateness = new AtomicLong();
+        AtomicInteger maxWorkers = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(numQueues);
+
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < numQueues; ++i) {
+            TaskQueue queue = scheduler.createQueue("Queue " + i);
+            AtomicInteger runs = new AtomicInteger();
+            long initialDelay = i % periodMillis;
+            long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(initialDelay);
+            tasks.add(queue.scheduleAtFixedRate(() -> {
+                int run = runs.getAndIncrement();
+                if (run >= runsPerQueue) {
+                    return;
+                }
+                long lateness = System.nanoTime() - (start + TimeUnit.MILLISECONDS.toNanos(run * periodMillis));
+                maxLateness.accumulateAndGet(lateness, Math::max);
+                sumLateness.addAndGet(lateness);
+                maxWorkers.accumulateAndGet(scheduler.getWorkerCount(), Math::max);
+                if (run == runsPerQueue - 1) {
+                    finished.countDown();
+                }
+            }, initialDelay, periodMillis, TimeUnit.MILLISECONDS));
+        }
+
+        assertTrue(finished.await(2, TimeUnit.MINUTES));
+        tasks.forEach(t -> t.cancel(false));
+
+        long avgMicros = TimeUnit.NANOSECONDS.toMicros(sumLateness.get() / ((long) numQueues * runsPerQueue));
+        System.err.println(numQueues + " queues, " + runsPerQueue + " runs each every " + periodMillis + "ms: max "
+                + maxWorkers.get() + " workers, " + (Thread.activeCount() - threadsBefore) + " threads after run, average latency "
+                + avgMicros + "us, max latency " + TimeUnit.NANOSECONDS.toMillis(maxLateness.get()) + "ms.");
+
+        // a thread per queue is exactly what this is supposed to avoid.
+        assertTrue(maxWorkers.get() < numQueues / 10, "Too many workers: " + maxWorkers.get());
+    }
+
+}
@@ -17,6 +17,9 @@ import io.bdeploy.interfaces.configuration.instance.InstanceConfiguration;
 import io.bdeploy.interfaces.configuration.instance.InstanceConfiguration.InstancePurpose;
 import io.bdeploy.interfaces.configuration.instance.InstanceUpdateDto;
 import io.bdeploy.interfaces.descriptor.client.ClickAndStartDescriptor;
+import io.bdeploy.interfaces.directory.EntryLines;
+import io.bdeploy.interfaces.directory.EntrySearchRequest;
+import io.bdeploy.interfaces.directory.EntrySearchResult;
 import io.bdeploy.interfaces.directory.RemoteDirectory;
 import io.bdeploy.interfaces.directory.RemoteDirectoryEntry;
 import io.bdeploy.interfaces.manifest.attributes.CustomAttributesRecord;
@@ -216,6 +219,30 @@ public interface InstanceResource {
             @PathParam("minion") String minion, RemoteDirectoryEntry entry, @QueryParam("offset") long offset,
             @QueryParam("limit") long limit);
 
+    @POST
+    @Path("/{instance}/lines/{minion}")
+    @RequiredPermission(permission = Permission.READ)
+    public EntryLines getContentLines(@ActivityScope @PathParam("instance") String instanceId, @PathParam("minion") String minion,
+            RemoteDirectoryEntry entry, @QueryParam("first") long firstLine, @QueryParam("count") int count);
+
+    @POST
+    @Path("/{instance}/search/{minion}")
+    @RequiredPermission(permission = Permission.READ)
+    public EntrySearchResult searchContent(@ActivityScope @PathParam("instance") String instanceId,
+            @PathParam("minion") String minion, EntrySearchRequest request);
+
+    /**
+     * Streams the content of the given entry starting at the given offset, including all content appended while following it.
+     *
+     * @see io.bdeploy.interfaces.remote.CommonDirectoryEntryResource#followEntryContent(RemoteDirectoryEntry, long, long)
+     */
+    @POST
+    @Path("/{instance}/follow/{minion}")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    @RequiredPermission(permission = Permission.READ)
+    public Response followContent(@ActivityScope @PathParam("instance") String instanceId, @PathParam("minion") String minion,
+            RemoteDirectoryEntry entry, @QueryParam("offset") long offset, @QueryParam("timeout") long timeout);
+
     @POST
     @Path("/{instance}/request/{minion}")
     @RequiredPermission(permission = Permission.READ)
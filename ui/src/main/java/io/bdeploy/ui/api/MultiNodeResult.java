@@ -0,0 +1,52 @@
+package io.bdeploy.ui.api;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The outcome of a request which has been sent to multiple nodes, see
+ * {@link NodeManager#requestFromNodes(java.util.Collection, Class, jakarta.ws.rs.core.SecurityContext, java.util.function.Function, java.time.Duration)}.
+ * <p>
+ * Each node is contained either in the results or in the failures.
+ *
+ * @param <R> the type of the result of a single node.
+ */
+public class MultiNodeResult<R> {
+
+    private final SortedMap<String, R> results = new TreeMap<>();
+    private final SortedMap<String, String> failures = new TreeMap<>();
+
+    /**
+     * @param node the name of the node which responded.
+     * @param result the result of the node.
+     */
+    public void addResult(String node, R result) {
+        results.put(node, result);
+    }
+
+    /**
+     * @param node the name of the node which did not respond in time, failed or is not available.
+     * @param reason a human readable reason of the failure.
+     */
+    public void addFailure(String node, String reason) {
+        failures.put(node, reason);
+    }
+
+    /**
+     * @return the results of all nodes which responded in time. Key = name of the node.
+     */
+    public Map<String, R> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * @return the reason of failure for all nodes which did not respond in time, failed or are not available. Key = name of the
+     *         node.
+     */
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+}
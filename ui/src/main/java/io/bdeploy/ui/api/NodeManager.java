@@ -1,9 +1,13 @@
 package io.bdeploy.ui.api;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import io.bdeploy.common.security.RemoteService;
+import io.bdeploy.interfaces.configuration.pcu.InstanceNodeStatusDto;
 import io.bdeploy.interfaces.minion.MinionDto;
 import io.bdeploy.interfaces.minion.MinionStatusDto;
 import io.bdeploy.ui.api.impl.ChangeEventManager;
@@ -59,6 +63,47 @@ public interface NodeManager {
      */
     public <T> T getNodeResourceIfOnlineOrThrow(String node, Class<T> clazz, SecurityContext context);
 
+    /**
+     * Sends a request to multiple nodes in parallel. Requests are run on a pool of threads shared by all callers, which runs a
+     * limited number of requests per node at a time. Requests to a node which is busy wait for a previous one to finish.
+     * <p>
+     * Nodes which are not known or offline are not contacted. Nodes which do not respond within the given timeout are no longer
+     * waited for. Both are reported as failure along with nodes where the request failed.
+     *
+     * @param <T> one of the node remote interfaces.
+     * @param <R> the type of the result of the request.
+     * @param nodes the names of the nodes to contact.
+     * @param clazz the {@link Class} of one of the node remote interfaces.
+     * @param context the {@link SecurityContext} of the current operation.
+     * @param request the request to perform using the remote interface of a single node.
+     * @param timeout the maximum time to wait for all nodes to respond.
+     * @return the results of all nodes which responded in time, and the reason of failure for all others.
+     */
+    public <T, R> MultiNodeResult<R> requestFromNodes(Collection<String> nodes, Class<T> clazz, SecurityContext context,
+            Function<T, R> request, Duration timeout);
+
+    /**
+     * Sends a request to multiple nodes in parallel, see {@link #requestFromNodes(Collection, Class, SecurityContext, Function,
+     * Duration)}. The request is additionally passed the name of the node it is sent to.
+     */
+    public <T, R> MultiNodeResult<R> requestFromNodes(Collection<String> nodes, Class<T> clazz, SecurityContext context,
+            BiFunction<String, T, R> request, Duration timeout);
+
+    /**
+     * Fetches the process status of instances from multiple nodes in parallel, see
+     * {@link #requestFromNodes(Collection, Class, SecurityContext, Function, Duration)}.
+     * <p>
+     * The status of all instances on a node is kept, so only the changes since the last request need to be transferred.
+     *
+     * @param nodes the names of the nodes to contact.
+     * @param instanceIds the IDs of the instances to fetch the status of.
+     * @param context the {@link SecurityContext} of the current operation.
+     * @param timeout the maximum time to wait for all nodes to respond.
+     * @return per node the status of all given instances known to the node. Key = ID of the instance.
+     */
+    public MultiNodeResult<Map<String, InstanceNodeStatusDto>> getProcessStatus(Collection<String> nodes,
+            Collection<String> instanceIds, SecurityContext context, Duration timeout);
+
     /**
      * @return the configuration of the own running node process.
      */
@@ -15,6 +15,7 @@ import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 
 @Path("/processes")
@@ -64,6 +65,10 @@ public interface ProcessResource {
     @Path("/dataDirSnapshot")
     public List<RemoteDirectory> getDataDirSnapshot();
 
+    @GET
+    @Path("/{appId}/output")
+    public List<String> getRecentOutput(@ActivityScope @PathParam("appId") String appId, @QueryParam("lines") int lines);
+
     @POST
     @Path("/{appId}/stdin")
     @Consumes(MediaType.TEXT_PLAIN)
@@ -71,6 +71,9 @@ import io.bdeploy.interfaces.configuration.pcu.ProcessStatusDto;
 import io.bdeploy.interfaces.descriptor.application.HttpEndpoint;
 import io.bdeploy.interfaces.descriptor.client.ClickAndStartDescriptor;
 import io.bdeploy.interfaces.directory.EntryChunk;
+import io.bdeploy.interfaces.directory.EntryLines;
+import io.bdeploy.interfaces.directory.EntrySearchRequest;
+import io.bdeploy.interfaces.directory.EntrySearchResult;
 import io.bdeploy.interfaces.directory.RemoteDirectory;
 import io.bdeploy.interfaces.directory.RemoteDirectoryEntry;
 import io.bdeploy.interfaces.endpoints.CommonEndpointHelper;
@@ -101,6 +104,7 @@ import io.bdeploy.interfaces.variables.ApplicationVariableResolver;
 import io.bdeploy.interfaces.variables.CompositeResolver;
 import io.bdeploy.jersey.JerseyClientFactory;
 import io.bdeploy.jersey.JerseyOnBehalfOfFilter;
+import io.bdeploy.jersey.JerseyStreamingHelper;
 import io.bdeploy.jersey.JerseyWriteLockService.WriteLock;
 import io.bdeploy.ui.ProductUpdateService;
 import io.bdeploy.ui.RemoteEntryStreamRequestService;
@@ -1030,6 +1034,43 @@ public class InstanceResourceImpl implements InstanceResource {
         return new StringEntryChunkDto(chunk);
     }
 
+    @Override
+    public EntryLines getContentLines(String instanceId, String minion, RemoteDirectoryEntry entry, long firstLine, int count) {
+        InstanceManifest im = readInstance(instanceId, entry.tag);
+        if (im == null) {
+            throw new WebApplicationException("Cannot load " + instanceId + ":" + entry.tag, Status.NOT_FOUND);
+        }
+
+        RemoteService svc = mp.getControllingMaster(hive, im.getManifest());
+        MasterRootResource root = ResourceProvider.getVersionedResource(svc, MasterRootResource.class, context);
+        return root.getNamedMaster(group).getEntryLines(minion, entry, firstLine, count);
+    }
+
+    @Override
+    public EntrySearchResult searchContent(String instanceId, String minion, EntrySearchRequest request) {
+        InstanceManifest im = readInstance(instanceId, request.entry.tag);
+        if (im == null) {
+            throw new WebApplicationException("Cannot load " + instanceId + ":" + request.entry.tag, Status.NOT_FOUND);
+        }
+
+        RemoteService svc = mp.getControllingMaster(hive, im.getManifest());
+        MasterRootResource root = ResourceProvider.getVersionedResource(svc, MasterRootResource.class, context);
+        return root.getNamedMaster(group).searchEntry(minion, request);
+    }
+
+    @Override
+    public Response followContent(String instanceId, String minion, RemoteDirectoryEntry entry, long offset, long timeout) {
+        InstanceManifest im = readInstance(instanceId, entry.tag);
+        if (im == null) {
+            throw new WebApplicationException("Cannot load " + instanceId + ":" + entry.tag, Status.NOT_FOUND);
+        }
+
+        RemoteService svc = mp.getControllingMaster(hive, im.getManifest());
+        MasterRootResource root = ResourceProvider.getVersionedResource(svc, MasterRootResource.class, context);
+        Response response = root.getNamedMaster(group).followEntryContent(minion, entry, offset, timeout);
+        return JerseyStreamingHelper.passThroughContinuousResponse(response);
+    }
+
     @Override
     public String getContentStreamRequest(String instanceId, String minion, RemoteDirectoryEntry entry) {
         return resrs.createRequest(new EntryRequest(minion, instanceId, entry));
@@ -157,6 +157,12 @@ public class ProcessResourceImpl implements ProcessResource {
         return master.getDataDirectorySnapshots(instanceId);
     }
 
+    @Override
+    public List<String> getRecentOutput(String appId, int lines) {
+        MasterNamedResource master = getMasterResource();
+        return master.getRecentOutput(instanceId, appId, lines);
+    }
+
     @Override
     public void writeToStdin(String processId, String data) {
         MasterNamedResource master = getMasterResource();